@@ -239,7 +239,13 @@ public class Main {
 			LOGGER.warn("Capacity Controller plugin not specified in properties. Using the default one.", e);
 		}
 
-		ManagerController facade = new ManagerController(properties);
+		final ManagerController facade = new ManagerController(properties);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				facade.shutdown();
+			}
+		});
 		facade.setComputePlugin(computePlugin);
 		facade.setAuthorizationPlugin(authorizationPlugin);
 		facade.setLocalIdentityPlugin(localIdentityPlugin);
@@ -309,6 +315,7 @@ public class Main {
 			Series<Parameter> httpParameters = httpServer.getContext().getParameters();
 			httpParameters.add("http.requestHeaderSize", requestHeaderSize);
 			httpParameters.add("http.responseHeaderSize", responseHeaderSize);
+			MainHelper.setServerThreadParameters(httpParameters, properties);
 			
 			if (httpsEnabled) {
 				//Adding HTTPS server
@@ -331,6 +338,7 @@ public class Main {
 				}
 				parameters.add("http.requestHeaderSize", requestHeaderSize);
 				parameters.add("http.responseHeaderSize", responseHeaderSize);
+				MainHelper.setServerThreadParameters(parameters, properties);
 			}
 			
 			http.getDefaultHost().attach(application);
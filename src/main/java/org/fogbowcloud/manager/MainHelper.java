@@ -8,9 +8,15 @@ import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.plugins.AccountingPlugin;
 import org.fogbowcloud.manager.core.plugins.BenchmarkingPlugin;
 import org.fogbowcloud.manager.core.plugins.ComputePlugin;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.core.plugins.identity.cache.CachedIdentityPlugin;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+import org.restlet.data.Parameter;
+import org.restlet.util.Series;
 
 public class MainHelper {
 
+	private static final Logger LOGGER = Logger.getLogger(MainHelper.class);
 	private static final int MINIMUM_XMPP_TIMEOUT = 4000;
 	protected static final int EXIT_ERROR_CODE = 128;
 	protected static final int DEFAULT_XMPP_TIMEOUT = 15000; // 15 segundos
@@ -19,6 +25,10 @@ public class MainHelper {
 	protected static final boolean DEFAULT_HTTPS_ENABLED = false;
 	protected static final int DEFAULT_REQUEST_HEADER_SIZE = 1024*1024;
 	protected static final int DEFAULT_RESPONSE_HEADER_SIZE = 1024*1024;
+	protected static final int DEFAULT_HTTP_SERVER_MIN_THREADS = 8;
+	protected static final int DEFAULT_HTTP_SERVER_MAX_THREADS = 200;
+	protected static final int DEFAULT_HTTP_SERVER_MAX_QUEUED = 100;
+	protected static final int DEFAULT_HTTP_SERVER_ACCEPT_QUEUE_SIZE = 100;
 	
 	public static long getXMPPTimeout(Properties properties) {
 		String timeoutStr = properties.getProperty(ConfigurationConstants.XMPP_TIMEOUT);
@@ -49,7 +59,12 @@ public class MainHelper {
 				pluginProperties.put(newKey, properties.get(key));
 			}
 		}
-		return createInstance(prefix + ConfigurationConstants.IDENTITY_CLASS_KEY, pluginProperties);
+		IdentityPlugin identityPlugin = (IdentityPlugin) createInstance(
+				prefix + ConfigurationConstants.IDENTITY_CLASS_KEY, pluginProperties);
+		if (CachedIdentityPlugin.isEnabled(pluginProperties)) {
+			return new CachedIdentityPlugin(identityPlugin, pluginProperties);
+		}
+		return identityPlugin;
 	}
 
 	protected static Object createInstance(String propName, Properties properties) throws Exception {
@@ -77,6 +92,41 @@ public class MainHelper {
 				.newInstance(properties, accoutingPlugin);
 	}	
 
+	/**
+	 * Sets the worker threads and the queue of requests waiting for them, both
+	 * for the Jetty connector and for the internal one.
+	 */
+	public static void setServerThreadParameters(Series<Parameter> parameters, Properties properties) {
+		int minThreads = getServerParameter(properties, ConfigurationConstants.HTTP_SERVER_MIN_THREADS_KEY,
+				DEFAULT_HTTP_SERVER_MIN_THREADS);
+		int maxThreads = getServerParameter(properties, ConfigurationConstants.HTTP_SERVER_MAX_THREADS_KEY,
+				DEFAULT_HTTP_SERVER_MAX_THREADS);
+		int maxQueued = getServerParameter(properties, ConfigurationConstants.HTTP_SERVER_MAX_QUEUED_KEY,
+				DEFAULT_HTTP_SERVER_MAX_QUEUED);
+		int acceptQueueSize = getServerParameter(properties,
+				ConfigurationConstants.HTTP_SERVER_ACCEPT_QUEUE_SIZE_KEY, DEFAULT_HTTP_SERVER_ACCEPT_QUEUE_SIZE);
+		if (minThreads > maxThreads) {
+			throw new Error(ConfigurationConstants.HTTP_SERVER_MIN_THREADS_KEY + " is greater than "
+					+ ConfigurationConstants.HTTP_SERVER_MAX_THREADS_KEY + ".");
+		}
+
+		parameters.add("threadPool.minThreads", String.valueOf(minThreads));
+		parameters.add("threadPool.maxThreads", String.valueOf(maxThreads));
+		parameters.add("connector.acceptQueueSize", String.valueOf(acceptQueueSize));
+		parameters.add("minThreads", String.valueOf(minThreads));
+		parameters.add("maxThreads", String.valueOf(maxThreads));
+		parameters.add("maxQueued", String.valueOf(maxQueued));
+	}
+
+	private static int getServerParameter(Properties properties, String key, int defaultValue) {
+		int value = PropertiesUtil.getInt(properties, key, defaultValue);
+		if (value < 0) {
+			LOGGER.warn(key + " can not be negative. Using " + defaultValue + ".");
+			return defaultValue;
+		}
+		return value;
+	}
+
 	protected static void configureLog4j() {
 		ConsoleAppender console = new ConsoleAppender();
 		console.setThreshold(org.apache.log4j.Level.OFF);
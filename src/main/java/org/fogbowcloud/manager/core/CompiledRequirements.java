@@ -0,0 +1,239 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fogbowcloud.manager.core.RequirementsHelper.FlavorComparator;
+import org.fogbowcloud.manager.core.RequirementsHelper.ValueAndOperator;
+import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.core.model.Flavor;
+
+import condor.classad.ClassAdParser;
+import condor.classad.Env;
+import condor.classad.Expr;
+import condor.classad.Op;
+import condor.classad.RecordExpr;
+
+/**
+ * The requirements of an order parsed once, with the locations and the flavor
+ * attributes it refers to. It evaluates the requirements against flavors and
+ * federation members the same way {@link RequirementsHelper} does, without
+ * parsing them again. Instances are got with
+ * {@link RequirementsHelper#compile(String)} and can be shared by threads.
+ */
+public class CompiledRequirements {
+
+	private static final String[] FLAVOR_ATTRIBUTES = new String[] { RequirementsHelper.GLUE_DISK_TERM,
+			RequirementsHelper.GLUE_MEM_RAM_TERM, RequirementsHelper.GLUE_VCPU_TERM };
+
+	private final String requirements;
+	// null when there are no requirements or they are not an expression
+	private final Op expr;
+	private final List<String> locations = new ArrayList<String>();
+	private final Op locationExpr;
+	// flavor attributes referred by the requirements
+	private final List<String> flavorAttributes = new ArrayList<String>();
+	// flavor attributes evaluated -> requirements reduced to them
+	private final Map<List<String>, Op> flavorExprs = new ConcurrentHashMap<List<String>, Op>();
+	private final Map<String, String> smallestValues = new ConcurrentHashMap<String, String>();
+
+	protected CompiledRequirements(String requirements) {
+		this.requirements = requirements;
+		Expr parsedClassAd = null;
+		if (requirements != null && !requirements.isEmpty()) {
+			try {
+				parsedClassAd = new ClassAdParser(requirements).parse();
+			} catch (Exception e) {
+				// same as requirements that are not an expression
+			}
+		}
+		this.expr = parsedClassAd instanceof Op ? (Op) parsedClassAd : null;
+		if (expr == null) {
+			this.locationExpr = null;
+			return;
+		}
+
+		for (ValueAndOperator valueAndOperator : RequirementsHelper.findValuesInRequiremets(expr,
+				RequirementsHelper.GLUE_LOCATION_TERM)) {
+			if (valueAndOperator.getOperator() == RecordExpr.EQUAL) {
+				locations.add(valueAndOperator.getValue());
+			}
+		}
+		this.locationExpr = locations.isEmpty() ? null : RequirementsHelper.extractVariableExpression(expr,
+				RequirementsHelper.GLUE_LOCATION_TERM);
+
+		for (String attr : FLAVOR_ATTRIBUTES) {
+			if (!RequirementsHelper.findValuesInRequiremets(expr, attr).isEmpty()) {
+				flavorAttributes.add(attr);
+			}
+		}
+	}
+
+	public String getRequirements() {
+		return requirements;
+	}
+
+	public List<String> getLocations() {
+		return new ArrayList<String>(locations);
+	}
+
+	public boolean hasLocation() {
+		return !locations.isEmpty();
+	}
+
+	public boolean matchLocation(String valueLocation) {
+		if (locations.isEmpty()) {
+			return true;
+		}
+		if (locationExpr == null) {
+			return false;
+		}
+		Env env = new Env();
+		env.push((RecordExpr) new ClassAdParser("[" + RequirementsHelper.GLUE_LOCATION_TERM + " = "
+				+ RequirementsHelper.quoteLocation(valueLocation) + "]").parse());
+		return locationExpr.eval(env).isTrue();
+	}
+
+	/**
+	 * @return the members whose ids match the location of the requirements
+	 */
+	public List<FederationMember> filterMembers(List<FederationMember> federationMembers) {
+		if (locations.isEmpty()) {
+			return new ArrayList<FederationMember>(federationMembers);
+		}
+		List<FederationMember> allowedMembers = new ArrayList<FederationMember>();
+		for (FederationMember federationMember : federationMembers) {
+			if (matchLocation(federationMember.getId())) {
+				allowedMembers.add(federationMember);
+			}
+		}
+		return allowedMembers;
+	}
+
+	public boolean matches(Flavor flavor) {
+		if (expr == null || flavorAttributes.isEmpty()) {
+			return true;
+		}
+		try {
+			List<String> attrsSearched = new ArrayList<String>(flavorAttributes.size());
+			Env env = new Env();
+			for (String attr : flavorAttributes) {
+				String value = getFlavorValue(flavor, attr);
+				if (value != null && !value.isEmpty() && !value.equals(RequirementsHelper.VALUE_IGNORED)) {
+					attrsSearched.add(attr);
+				}
+				env.push((RecordExpr) new ClassAdParser("[" + attr + " = " + value + "]").parse());
+			}
+			Op flavorExpr = attrsSearched.isEmpty() ? null : getFlavorExpression(attrsSearched);
+			if (flavorExpr == null) {
+				return true;
+			}
+			return flavorExpr.eval(env).isTrue();
+		} catch (Exception e) {
+			return true;
+		}
+	}
+
+	/**
+	 * @return the flavors that match the requirements, in the same order
+	 */
+	public List<Flavor> filterFlavors(List<Flavor> flavors) {
+		List<Flavor> matchingFlavors = new ArrayList<Flavor>();
+		for (Flavor flavor : flavors) {
+			if (matches(flavor)) {
+				matchingFlavors.add(flavor);
+			}
+		}
+		return matchingFlavors;
+	}
+
+	public Flavor findSmallestFlavor(List<Flavor> flavors) {
+		List<Flavor> matchingFlavors = filterFlavors(flavors);
+		if (matchingFlavors.isEmpty()) {
+			return null;
+		}
+		Collections.sort(matchingFlavors, new FlavorComparator());
+		return matchingFlavors.get(0);
+	}
+
+	/**
+	 * @param sortedFlavors
+	 *            flavors sorted with {@link FlavorComparator}
+	 */
+	public Flavor findFirstMatchingFlavor(List<Flavor> sortedFlavors) {
+		for (Flavor flavor : sortedFlavors) {
+			if (matches(flavor)) {
+				return flavor;
+			}
+		}
+		return null;
+	}
+
+	public String getSmallestValueForAttribute(String attrName) {
+		if (expr == null) {
+			return RequirementsHelper.ZERO;
+		}
+		String smallestValue = smallestValues.get(attrName);
+		if (smallestValue == null) {
+			smallestValue = findSmallestValueForAttribute(attrName);
+			smallestValues.put(attrName, smallestValue);
+		}
+		return smallestValue;
+	}
+
+	private String findSmallestValueForAttribute(String attrName) {
+		Expr variableExpression = RequirementsHelper.extractVariableExpression(expr, attrName);
+		if (variableExpression == null || !(variableExpression instanceof Op)) {
+			return RequirementsHelper.ZERO;
+		}
+		Op opForAtt = (Op) variableExpression;
+
+		List<Integer> values = new ArrayList<Integer>();
+		for (ValueAndOperator valueAndOperator : RequirementsHelper.findValuesInRequiremets(expr, attrName)) {
+			int value = Integer.parseInt(valueAndOperator.getValue());
+			if (checkValue(opForAtt, attrName, String.valueOf(value - 1))) {
+				values.add(value - 1);
+			} else if (checkValue(opForAtt, attrName, String.valueOf(value))) {
+				values.add(value);
+			} else if (checkValue(opForAtt, attrName, String.valueOf(value + 1))) {
+				values.add(value + 1);
+			}
+		}
+
+		Collections.sort(values);
+
+		if (values.size() > 0) {
+			return String.valueOf(values.get(0));
+		}
+		return RequirementsHelper.ZERO;
+	}
+
+	private Op getFlavorExpression(List<String> attrsSearched) {
+		Op flavorExpr = flavorExprs.get(attrsSearched);
+		if (flavorExpr == null) {
+			flavorExpr = RequirementsHelper.extractVariablesExpression(expr, attrsSearched);
+			if (flavorExpr != null) {
+				flavorExprs.put(attrsSearched, flavorExpr);
+			}
+		}
+		return flavorExpr;
+	}
+
+	private static boolean checkValue(Op op, String attrName, String value) {
+		Env env = new Env();
+		env.push((RecordExpr) new ClassAdParser("[" + attrName + " = " + value + "]").parse());
+		return op.eval(env).isTrue();
+	}
+
+	private static String getFlavorValue(Flavor flavor, String attr) {
+		if (RequirementsHelper.GLUE_DISK_TERM.equals(attr)) {
+			return flavor.getDisk();
+		} else if (RequirementsHelper.GLUE_MEM_RAM_TERM.equals(attr)) {
+			return flavor.getMem();
+		}
+		return flavor.getCpu();
+	}
+}
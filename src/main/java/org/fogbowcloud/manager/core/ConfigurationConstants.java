@@ -37,7 +37,18 @@ public class ConfigurationConstants {
 
 	// periods
 	public static final String SCHEDULER_PERIOD_KEY = "scheduler_period";
+	public static final String SCHEDULER_WORKERS_KEY = "scheduler_workers";
+	public static final String SCHEDULER_EVENT_DRIVEN_KEY = "scheduler_event_driven";
+	public static final String SCHEDULER_SAFETY_NET_PERIOD_KEY = "scheduler_safety_net_period";
+	public static final String SCHEDULER_FORWARD_BACKOFF_KEY = "scheduler_forward_backoff";
 	public static final String INSTANCE_MONITORING_PERIOD_KEY = "instance_monitoring_period";
+	public static final String INSTANCE_MONITORING_BATCHED_KEY = "instance_monitoring_batched";
+	public static final String INSTANCE_MONITORING_MAX_IN_FLIGHT_KEY = "instance_monitoring_max_in_flight";
+	public static final String RESOURCES_INFO_MAX_IN_FLIGHT_KEY = "resources_info_max_in_flight";
+	public static final String RESOURCES_INFO_TIMEOUT_KEY = "resources_info_timeout";
+	public static final String RESOURCES_INFO_CACHE_ENABLED_KEY = "resources_info_cache_enabled";
+	public static final String RESOURCES_INFO_CACHE_TTL_KEY = "resources_info_cache_ttl";
+	public static final String RESOURCES_INFO_CACHE_MAX_STALENESS_KEY = "resources_info_cache_max_staleness";
 	public static final String TOKEN_UPDATE_PERIOD_KEY = "token_update_period";
 	public static final String SERVED_ORDER_MONITORING_PERIOD_KEY = "served_order_monitoring_period";
 	public static final String GARBAGE_COLLECTOR_PERIOD_KEY = "garbage_collector_period";
@@ -46,6 +57,13 @@ public class ConfigurationConstants {
 	public static final String ASYNC_ORDER_WAITING_INTERVAL_KEY = "async_request_waiting_interval";
 	public static final String MAXIMUM_ORDER_ATTEMPTS_PROPERTIES = ManagerControllerHelper.MonitoringHelper.MAXIMUM_ORDER_ATTEMPTS_PROPERTIES;
 	public static final String TIMEOUT_HTTP_REQUEST = "timeout_http_request";
+	
+	// HTTP connection pool shared by the plugins
+	public static final String HTTP_CLIENT_MAX_CONNECTIONS_KEY = "http_client_max_connections";
+	public static final String HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE_KEY = "http_client_max_connections_per_route";
+	public static final String HTTP_CLIENT_CONNECT_TIMEOUT_KEY = "http_client_connect_timeout";
+	public static final String HTTP_CLIENT_CONNECTION_REQUEST_TIMEOUT_KEY = "http_client_connection_request_timeout";
+	public static final String HTTP_CLIENT_IDLE_TIMEOUT_KEY = "http_client_idle_timeout";
 
 	// token host
 	public static final String TOKEN_HOST_PRIVATE_ADDRESS_KEY = "token_host_private_address";
@@ -69,6 +87,19 @@ public class ConfigurationConstants {
 	public static final String HTTP_REQUEST_HEADER_SIZE_KEY = "http_request_header_size";
 	public static final String HTTP_RESPONSE_HEADER_SIZE_KEY = "http_response_header_size";
 	
+	// HTTP server threads
+	public static final String HTTP_SERVER_MIN_THREADS_KEY = "http_server_min_threads";
+	public static final String HTTP_SERVER_MAX_THREADS_KEY = "http_server_max_threads";
+	public static final String HTTP_SERVER_MAX_QUEUED_KEY = "http_server_max_queued";
+	public static final String HTTP_SERVER_ACCEPT_QUEUE_SIZE_KEY = "http_server_accept_queue_size";
+	
+	// Requests of resources that wait for clouds or members
+	public static final String SLOW_RESOURCES_ASYNC_ENABLED_KEY = "slow_resources_async_enabled";
+	public static final String SLOW_RESOURCES_WORKERS_KEY = "slow_resources_workers";
+	public static final String SLOW_RESOURCES_QUEUE_SIZE_KEY = "slow_resources_queue_size";
+	public static final String SLOW_RESOURCES_MAX_PER_KEY_KEY = "slow_resources_max_per_key";
+	public static final String SLOW_RESOURCES_TIMEOUT_KEY = "slow_resources_timeout";
+	
 	public static final String ADMIN_USERS = "admin_users";
 	public static final String PROP_MAX_WHOISALIVE_MANAGER_COUNT = "max_whoisalive_manager_count";
 	
@@ -84,4 +115,18 @@ public class ConfigurationConstants {
 	//Network Data Store
 	public static final String NETWORK_DATA_STORE_URL = "network_datastore_url";
 	
+	// Data Store connection pool
+	public static final String DATASTORE_CONNECTION_POOL_SIZE = "datastore_connection_pool_size";
+	
+	// Identity cache, may be prefixed with local_ or federation_
+	public static final String IDENTITY_CACHE_ENABLED_KEY = "identity_cache_enabled";
+	public static final String IDENTITY_CACHE_MAX_SIZE_KEY = "identity_cache_max_size";
+	public static final String IDENTITY_CACHE_TTL_KEY = "identity_cache_ttl";
+	public static final String IDENTITY_CACHE_NEGATIVE_TTL_KEY = "identity_cache_negative_ttl";
+	
+	// Tokens of the local credentials
+	public static final String LOCAL_TOKEN_CACHE_ENABLED_KEY = "local_token_cache_enabled";
+	public static final String LOCAL_TOKEN_CACHE_TTL_KEY = "local_token_cache_ttl";
+	public static final String LOCAL_TOKEN_CACHE_REFRESH_MARGIN_KEY = "local_token_cache_refresh_margin";
+	
 }
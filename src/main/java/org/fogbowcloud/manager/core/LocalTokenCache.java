@@ -0,0 +1,286 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+import org.fogbowcloud.manager.occi.model.Token;
+
+/**
+ * Tokens of the local cloud, shared by the orders mapped to the same local
+ * credentials. A token is renewed through {@link IdentityPlugin#reIssueToken(Token)}
+ * when it gets closer than the refresh margin to its expiration date, and a
+ * new login is done only when there is no token or the renewal fails. Tokens
+ * without an expiration date are renewed after the cache TTL.
+ *
+ * Only one login or renewal runs at a time for the same credentials: the other
+ * callers wait for it, or keep using the current token while it is still valid.
+ * A token rejected by the cloud is dropped with {@link #invalidate(Map, Token)}
+ * and the next caller logs in again.
+ *
+ * {@link #renewExpiringTokens()} renews the tokens within the refresh margin
+ * ahead of the callers, so they do not wait for it. Tokens not requested since
+ * their last early renewal are dropped instead. Callers get copies of the cached
+ * tokens, so changing them does not change the cached ones.
+ */
+public class LocalTokenCache {
+
+	protected static final long DEFAULT_TTL = 300000; // 5 minutes
+	protected static final long DEFAULT_REFRESH_MARGIN = 60000; // 1 minute
+	private static final long MIN_RENEWAL_PERIOD = 1000; // 1 second
+
+	private static final Logger LOGGER = Logger.getLogger(LocalTokenCache.class);
+
+	private final IdentityPlugin identityPlugin;
+	private final long ttl;
+	private final long refreshMargin;
+	private final Map<Map<String, String>, CachedToken> tokens = new ConcurrentHashMap<Map<String, String>, CachedToken>();
+	private DateUtils dateUtils = new DateUtils();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong logins = new AtomicLong();
+	private final AtomicLong reIssues = new AtomicLong();
+	private final AtomicLong earlyRenewals = new AtomicLong();
+
+	public LocalTokenCache(IdentityPlugin identityPlugin, Properties properties) {
+		this.identityPlugin = identityPlugin;
+		this.ttl = PropertiesUtil.getLong(properties, ConfigurationConstants.LOCAL_TOKEN_CACHE_TTL_KEY,
+				DEFAULT_TTL);
+		this.refreshMargin = PropertiesUtil.getLong(properties,
+				ConfigurationConstants.LOCAL_TOKEN_CACHE_REFRESH_MARGIN_KEY, DEFAULT_REFRESH_MARGIN);
+	}
+
+	public static boolean isEnabled(Properties properties) {
+		return Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.LOCAL_TOKEN_CACHE_ENABLED_KEY));
+	}
+
+	public Token getToken(Map<String, String> credentials) {
+		if (credentials == null) {
+			return identityPlugin.createToken(credentials);
+		}
+		CachedToken cachedToken = getCachedToken(new HashMap<String, String>(credentials));
+
+		long now = dateUtils.currentTimeMillis();
+		Token token = cachedToken.getToken();
+		if (token != null && cachedToken.getRefreshTime() > now) {
+			hits.incrementAndGet();
+			return copy(token);
+		}
+		boolean stillValid = token != null && cachedToken.getExpirationTime() > now;
+		if (stillValid) {
+			// the current token is returned while someone else is renewing it
+			if (!cachedToken.getLock().tryLock()) {
+				hits.incrementAndGet();
+				return copy(token);
+			}
+		} else {
+			cachedToken.getLock().lock();
+		}
+		try {
+			now = dateUtils.currentTimeMillis();
+			if (cachedToken.getToken() != null && cachedToken.getRefreshTime() > now) {
+				hits.incrementAndGet();
+				return copy(cachedToken.getToken());
+			}
+			Token newToken = renew(credentials, cachedToken.getToken());
+			cachedToken.setToken(newToken, getExpirationTime(newToken, now), now);
+			return copy(newToken);
+		} finally {
+			cachedToken.getLock().unlock();
+		}
+	}
+
+	/**
+	 * Renews the valid tokens within the refresh margin whose renewal is not
+	 * running yet. A token that could not be renewed is kept, and the next
+	 * caller tries again.
+	 */
+	public void renewExpiringTokens() {
+		for (Entry<Map<String, String>, CachedToken> entry : tokens.entrySet()) {
+			CachedToken cachedToken = entry.getValue();
+			long now = dateUtils.currentTimeMillis();
+			if (cachedToken.getToken() == null || cachedToken.getRefreshTime() > now
+					|| cachedToken.getExpirationTime() <= now || !cachedToken.getLock().tryLock()) {
+				continue;
+			}
+			try {
+				Token token = cachedToken.getToken();
+				if (token == null || cachedToken.getRefreshTime() > now) {
+					continue;
+				}
+				if (removeIfNotRequested(entry.getKey(), cachedToken)) {
+					LOGGER.debug("Local token not requested since it was renewed, dropping it.");
+					continue;
+				}
+				Token newToken = renew(entry.getKey(), token);
+				cachedToken.setToken(newToken, getExpirationTime(newToken, now), now);
+				cachedToken.setRequested(false);
+				earlyRenewals.incrementAndGet();
+			} catch (Throwable e) {
+				LOGGER.warn("Could not renew local token before its expiration.", e);
+			} finally {
+				cachedToken.getLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return how often {@link #renewExpiringTokens()} must run for the
+	 *         tokens to be renewed within the refresh margin.
+	 */
+	public long getRenewalPeriod() {
+		return Math.max(MIN_RENEWAL_PERIOD, refreshMargin / 2);
+	}
+
+	public void invalidate(Map<String, String> credentials) {
+		if (credentials != null) {
+			tokens.remove(new HashMap<String, String>(credentials));
+		}
+	}
+
+	/**
+	 * Drops the token the cloud rejected, so the next
+	 * {@link #getToken(Map)} logs in again instead of reissuing it. Nothing is
+	 * done if the token was already replaced, e.g. by another caller that got
+	 * the same rejection.
+	 */
+	public void invalidate(Map<String, String> credentials, Token rejectedToken) {
+		if (credentials == null || rejectedToken == null) {
+			return;
+		}
+		CachedToken cachedToken = tokens.get(new HashMap<String, String>(credentials));
+		if (cachedToken == null) {
+			return;
+		}
+		cachedToken.getLock().lock();
+		try {
+			Token token = cachedToken.getToken();
+			if (token != null && token.getAccessId() != null
+					&& token.getAccessId().equals(rejectedToken.getAccessId())) {
+				LOGGER.debug("Local token rejected by the cloud, logging in again on the next request.");
+				cachedToken.setToken(null, 0, dateUtils.currentTimeMillis());
+			}
+		} finally {
+			cachedToken.getLock().unlock();
+		}
+	}
+
+	public int size() {
+		return tokens.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getLogins() {
+		return logins.get();
+	}
+
+	public long getReIssues() {
+		return reIssues.get();
+	}
+
+	public long getEarlyRenewals() {
+		return earlyRenewals.get();
+	}
+
+	protected void setDateUtils(DateUtils dateUtils) {
+		this.dateUtils = dateUtils;
+	}
+
+	private synchronized CachedToken getCachedToken(Map<String, String> key) {
+		CachedToken cachedToken = tokens.get(key);
+		if (cachedToken == null) {
+			cachedToken = new CachedToken();
+			tokens.put(key, cachedToken);
+		}
+		cachedToken.setRequested(true);
+		return cachedToken;
+	}
+
+	private synchronized boolean removeIfNotRequested(Map<String, String> key, CachedToken cachedToken) {
+		if (cachedToken.isRequested()) {
+			return false;
+		}
+		tokens.remove(key);
+		return true;
+	}
+
+	private Token renew(Map<String, String> credentials, Token token) {
+		if (token != null) {
+			try {
+				Token reIssuedToken = identityPlugin.reIssueToken(token);
+				if (reIssuedToken != null) {
+					reIssues.incrementAndGet();
+					return reIssuedToken;
+				}
+			} catch (Exception e) {
+				LOGGER.debug("Could not reissue local token, logging in again.", e);
+			}
+		}
+		logins.incrementAndGet();
+		return identityPlugin.createToken(credentials);
+	}
+
+	private static Token copy(Token token) {
+		Map<String, String> attributes = token.getAttributes() != null ? new HashMap<String, String>(
+				token.getAttributes()) : null;
+		return new Token(token.getAccessId(), token.getUser(), token.getExpirationDate(), attributes);
+	}
+
+	private long getExpirationTime(Token token, long now) {
+		Date expirationDate = token != null ? token.getExpirationDate() : null;
+		return expirationDate != null ? expirationDate.getTime() : now + ttl;
+	}
+
+	private class CachedToken {
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile Token token;
+		private volatile long expirationTime;
+		private volatile long refreshTime;
+		private volatile boolean requested;
+
+		public ReentrantLock getLock() {
+			return lock;
+		}
+
+		public Token getToken() {
+			return token;
+		}
+
+		public long getExpirationTime() {
+			return expirationTime;
+		}
+
+		public long getRefreshTime() {
+			return refreshTime;
+		}
+
+		public boolean isRequested() {
+			return requested;
+		}
+
+		public void setRequested(boolean requested) {
+			this.requested = requested;
+		}
+
+		public void setToken(Token token, long expirationTime, long now) {
+			this.token = token;
+			this.expirationTime = expirationTime;
+			// tokens that live less than the margin are renewed at half of their life
+			long margin = Math.min(refreshMargin, (expirationTime - now) / 2);
+			this.refreshTime = token != null ? expirationTime - margin : now;
+		}
+	}
+}
@@ -10,16 +10,27 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.mail.MessagingException;
 
@@ -32,10 +43,9 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.MainHelper;
 import org.fogbowcloud.manager.core.model.DateUtils;
 import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.model.Flavor;
@@ -58,6 +68,7 @@ import org.fogbowcloud.manager.core.plugins.localcredentails.MapperHelper;
 import org.fogbowcloud.manager.core.plugins.localcredentails.SingleMapperPlugin;
 import org.fogbowcloud.manager.core.plugins.util.SshClientPool;
 import org.fogbowcloud.manager.core.util.HttpRequestUtil;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
 import org.fogbowcloud.manager.core.util.UserdataUtils;
 import org.fogbowcloud.manager.occi.ManagerDataStoreController;
 import org.fogbowcloud.manager.occi.instance.Instance;
@@ -67,6 +78,7 @@ import org.fogbowcloud.manager.occi.model.Category;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.ResourceRepository;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.model.Token;
@@ -79,6 +91,7 @@ import org.fogbowcloud.manager.occi.storage.StorageAttribute;
 import org.fogbowcloud.manager.occi.storage.StorageLink;
 import org.fogbowcloud.manager.xmpp.AsyncPacketSender;
 import org.fogbowcloud.manager.xmpp.ManagerPacketHelper;
+import org.fogbowcloud.manager.xmpp.PacketFuture;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.Response;
@@ -92,6 +105,7 @@ public class ManagerController {
 
 	private static final int DEFAULT_MAX_WHOISALIVE_MANAGER_COUNT = 100;
 	private static final long DEFAULT_SCHEDULER_PERIOD = 30000; // 30 seconds
+	private static final long DEFAULT_SCHEDULER_SAFETY_NET_PERIOD = 300000; // 5 minutes
 	protected static final int DEFAULT_ASYNC_ORDER_WAITING_INTERVAL = 300000; // 5 minutes
 	private static final long DEFAULT_INSTANCE_IP_MONITORING_PERIOD = 10000; // 10 seconds
 	private static final int DEFAULT_MAX_IP_MONITORING_TRIES = 90; // 30 tries
@@ -100,12 +114,17 @@ public class ManagerController {
 	private static final int DEFAULT_CHECK_STILL_ALIVE_TIMES = 5; // 5 times
 	private static final long DEFAULT_CAPACITY_CONTROLLER_UPDATE_PERIOD = 600000; // 10 minutes
 	public static final int DEFAULT_MAX_POOL = 200;
+	protected static final int DEFAULT_SCHEDULER_WORKERS = 1;
+	protected static final int DEFAULT_INSTANCE_MONITORING_MAX_IN_FLIGHT = 10;
+	protected static final int DEFAULT_RESOURCES_INFO_MAX_IN_FLIGHT = 5;
+	protected static final long DEFAULT_RESOURCES_INFO_TIMEOUT = 30000; // 30 seconds
 	
 	private final ManagerTimer orderSchedulerTimer;
 	private final ManagerTimer instanceMonitoringTimer;
 	private final ManagerTimer servedOrderMonitoringTimer;
 	private final ManagerTimer accountingUpdaterTimer;
 	private final ManagerTimer capacityControllerUpdaterTimer;
+	private final ManagerTimer localTokenRenewalTimer;
 
 	private boolean forTest = false;
 	private Map<String, Token> instanceIdToToken = new HashMap<String, Token>();
@@ -122,6 +141,7 @@ public class ManagerController {
 	private StoragePlugin storagePlugin;
 	private NetworkPlugin networkPlugin;
 	private IdentityPlugin localIdentityPlugin;
+	private volatile LocalTokenCache localTokenCache;
 	private IdentityPlugin federationIdentityPlugin;
 	private PrioritizationPlugin prioritizationPlugin;
 	private MapperPlugin mapperPlugin;
@@ -132,11 +152,21 @@ public class ManagerController {
 	private ExecutorService benchmarkExecutor = Executors.newCachedThreadPool();
 	private SshClientPool sshClientPool = new SshClientPool();
 	private FailedBatch failedBatch = new FailedBatch();
+	private ExecutorService orderSchedulerExecutor;
+	private int orderSchedulerWorkers;
+	private ExecutorService instanceMonitoringExecutor;
+	private ExecutorService resourcesInfoExecutor;
+	private ResourcesInfoCache resourcesInfoCache;
+	private final Object preemptionLock = new Object();
+	private final Object orderSchedulingLock = new Object();
+	private ScheduledFuture<?> nextSchedulingRound;
+	private long nextSchedulingRoundTime = Long.MAX_VALUE;
+	private final Set<String> ordersBeingScheduled = Collections.newSetFromMap(
+			new ConcurrentHashMap<String, Boolean>());
 	private ManagerControllerHelper.MonitoringHelper monitoringHelper;
+	private ManagerControllerHelper.ForwardingBackoff forwardingBackoff;
 	
 	private DateUtils dateUtils = new DateUtils();
-
-	private PoolingHttpClientConnectionManager connectionManager;
 	
 	private static final Logger LOGGER = Logger.getLogger(ManagerController.class);
 
@@ -150,6 +180,7 @@ public class ManagerController {
 		}
 		this.properties = properties;		
 		this.monitoringHelper = new ManagerControllerHelper().new MonitoringHelper(this.properties);
+		this.forwardingBackoff = new ManagerControllerHelper().new ForwardingBackoff(this.properties);
 		setFlavorsProvided(ResourceRepository.getStaticFlavors(properties));
 		if (executor == null) {
 			this.orderSchedulerTimer = new ManagerTimer(Executors.newScheduledThreadPool(1));
@@ -157,12 +188,14 @@ public class ManagerController {
 			this.servedOrderMonitoringTimer = new ManagerTimer(Executors.newScheduledThreadPool(1));
 			this.accountingUpdaterTimer = new ManagerTimer(Executors.newScheduledThreadPool(1));
 			this.capacityControllerUpdaterTimer = new ManagerTimer(Executors.newScheduledThreadPool(1)); 
+			this.localTokenRenewalTimer = new ManagerTimer(Executors.newScheduledThreadPool(1));
 		} else {
 			this.orderSchedulerTimer = new ManagerTimer(executor);
 			this.instanceMonitoringTimer = new ManagerTimer(executor);
 			this.servedOrderMonitoringTimer = new ManagerTimer(executor);
 			this.accountingUpdaterTimer = new ManagerTimer(executor);
 			this.capacityControllerUpdaterTimer = new ManagerTimer(executor);
+			this.localTokenRenewalTimer = new ManagerTimer(executor);
 		}
 		this.managerDataStoreController = new ManagerDataStoreController(properties);
 		
@@ -368,6 +401,7 @@ public class ManagerController {
 						+ this.capacityControllerPlugin.getMaxCapacityToSupply(member));
 			}
 		}
+		orderSchedulingEvent();
 	}
 
 	protected int getMaxCapacityDefaultUser() {
@@ -376,11 +410,7 @@ public class ManagerController {
 			Order emptyOrder = null;
 			Map<String, String> defaultUserLocalCredentials = singleMapperPlugin
 					.getLocalCredentials(emptyOrder);
-			// Get default user's token
-			Token token = this.localIdentityPlugin.createToken(
-					defaultUserLocalCredentials);
-			
-			ResourcesInfo resourcesInfo = this.computePlugin.getResourcesInfo(token);
+			ResourcesInfo resourcesInfo = getCloudResourcesInfo(defaultUserLocalCredentials);
 			int maxCapacity = Integer.valueOf(resourcesInfo.getInstancesInUse()) 
 					+ Integer.valueOf(resourcesInfo.getInstancesIdle());
 			
@@ -405,6 +435,23 @@ public class ManagerController {
 
 	public void setLocalIdentityPlugin(IdentityPlugin identityPlugin) {
 		this.localIdentityPlugin = identityPlugin;
+		this.localTokenCache = LocalTokenCache.isEnabled(properties) ? 
+				new LocalTokenCache(identityPlugin, properties) : null;
+		if (localTokenCache != null && !localTokenRenewalTimer.isScheduled()) {
+			triggerLocalTokenRenewal(localTokenCache.getRenewalPeriod());
+		}
+	}
+
+	private void triggerLocalTokenRenewal(long period) {
+		localTokenRenewalTimer.scheduleAtFixedRate(new TimerTask() {
+			@Override
+			public void run() {
+				LocalTokenCache localTokenCache = getLocalTokenCache();
+				if (localTokenCache != null) {
+					localTokenCache.renewExpiringTokens();
+				}
+			}
+		}, period, period);
 	}
 
 	public void setFederationIdentityPlugin(IdentityPlugin federationIdentityPlugin) {
@@ -431,7 +478,7 @@ public class ManagerController {
 			Map<String, String> credentials = allLocalCredentials.get(localName);
 			List<Instance> instances = null;
 			try {
-				Token token = this.localIdentityPlugin.createToken(credentials);
+				Token token = createLocalToken(credentials);
 				instances = this.computePlugin.getInstances(token);
 				for (Instance instance : instances) {
 					if (this.instanceIdToToken.get(instance.getId()) == null) {
@@ -497,6 +544,8 @@ public class ManagerController {
 				this.members.add(member);
 			}
 		}
+		// new members or resources may fulfill the open orders
+		orderSchedulingEvent();
 	}
 
 	public List<FederationMember> getRendezvousMembers() {
@@ -549,8 +598,8 @@ public class ManagerController {
 		totalResourcesInfo.setId(properties.getProperty(ConfigurationConstants.XMPP_JID_KEY));
 
 		if (localCredentials != null) {
-			Token localToken = localIdentityPlugin.createToken(localCredentials);
-			totalResourcesInfo.addResource(computePlugin.getResourcesInfo(localToken));
+			Token localToken = createLocalToken(localCredentials);
+			totalResourcesInfo.addResource(getCloudResourcesInfo(localCredentials, localToken));
 			
 			try {
 				totalResourcesInfo.addResource(getResourceInfoInUseByUserId(localToken, userId, isLocal));			
@@ -559,40 +608,135 @@ public class ManagerController {
 						+ "memories in use by user id (" + userId + ").");
 			}
 		} else {
-			Map<String, Map<String, String>> allLocalCredentials = this.mapperPlugin.getAllLocalCredentials();
-			List<Map<String, String>> credentialsUsed = new ArrayList<Map<String, String>>();
-			for (String localName : allLocalCredentials.keySet()) {
-				Map<String, String> credentials = allLocalCredentials.get(localName);
-				if (credentialsUsed.contains(credentials)) {
-					continue;
+			for (ResourcesInfo resourcesInfo : getResourcesInfoOfAllCredentials(userId, isLocal)) {
+				totalResourcesInfo.addResource(resourcesInfo);
+			}
+		}
+		return totalResourcesInfo;
+	}
+
+	/**
+	 * Gets the resources of each distinct set of mapped local credentials, at
+	 * most resources_info_max_in_flight at a time. Credentials that do not
+	 * answer until resources_info_timeout are left out, so a slow cloud account
+	 * does not hold the whole result.
+	 */
+	private List<ResourcesInfo> getResourcesInfoOfAllCredentials(final String userId, final boolean isLocal) {
+		Map<Map<String, String>, String> distinctCredentials = new LinkedHashMap<Map<String, String>, String>();
+		Map<String, Map<String, String>> allLocalCredentials = this.mapperPlugin.getAllLocalCredentials();
+		for (String localName : allLocalCredentials.keySet()) {
+			Map<String, String> credentials = allLocalCredentials.get(localName);
+			if (!distinctCredentials.containsKey(credentials)) {
+				distinctCredentials.put(credentials, localName);
+			}
+		}
+		List<Order> orders = new ArrayList<Order>();
+		try {
+			orders = managerDataStoreController.getOrdersByUserId(userId, isLocal);
+		} catch (Exception e) {
+			LOGGER.warn("Did not possible get informations about instances, CPUs and "
+					+ "memories in use by user id (" + userId + ").");
+		}
+		final List<Order> userOrders = orders;
+
+		List<String> localNames = new ArrayList<String>();
+		List<Future<ResourcesInfo>> futures = new ArrayList<Future<ResourcesInfo>>();
+		ExecutorService executor = getResourcesInfoExecutor();
+		for (final Map.Entry<Map<String, String>, String> entry : distinctCredentials.entrySet()) {
+			localNames.add(entry.getValue());
+			futures.add(executor.submit(new Callable<ResourcesInfo>() {
+				@Override
+				public ResourcesInfo call() throws Exception {
+					return getResourcesInfo(entry.getKey(), entry.getValue(), userOrders, userId, isLocal);
 				}
-				credentialsUsed.add(credentials);
-				
-				ResourcesInfo resourcesInfo = null;
-				Token localToken = null;
-				try {
-					localToken = localIdentityPlugin.createToken(credentials);
-					resourcesInfo = computePlugin.getResourcesInfo(localToken);
-				} catch (Exception e) {
-					LOGGER.warn("Does not possible get resources info with credentials of " + localName);
+			}));
+		}
+
+		List<ResourcesInfo> resourcesInfos = new ArrayList<ResourcesInfo>();
+		long deadline = System.currentTimeMillis() + getResourcesInfoTimeout();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				resourcesInfos.add(futures.get(i).get(getRemainingTime(deadline), TimeUnit.MILLISECONDS));
+			} catch (TimeoutException e) {
+				futures.get(i).cancel(true);
+				LOGGER.warn("Timeout getting resources info with credentials of " + localNames.get(i));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				LOGGER.warn("Does not possible get resources info with credentials of " + localNames.get(i),
+						e.getCause());
+			}
+		}
+		return resourcesInfos;
+	}
+
+	private ResourcesInfo getResourcesInfo(Map<String, String> credentials, String localName,
+			List<Order> userOrders, String userId, boolean isLocal) {
+		ResourcesInfo resourcesInfo = new ResourcesInfo();
+		Token localToken = null;
+		try {
+			localToken = createLocalToken(credentials);
+			resourcesInfo.addResource(getCloudResourcesInfo(credentials, localToken));
+		} catch (Exception e) {
+			LOGGER.warn("Does not possible get resources info with credentials of " + localName);
+		}
+
+		try {
+			resourcesInfo.addResource(getResourceInfoInUseByUserId(localToken, userOrders, isLocal));
+		} catch (Exception e) {
+			LOGGER.warn("Did not possible get informations about instances, CPUs and "
+					+ "memories in use by user id (" + userId + ").");
+		}
+		return resourcesInfo;
+	}
+
+	private ResourcesInfo getCloudResourcesInfo(Map<String, String> localCredentials) {
+		if (getResourcesInfoCache() != null) {
+			return getResourcesInfoCache().get(localCredentials);
+		}
+		return computePlugin.getResourcesInfo(createLocalToken(localCredentials));
+	}
+
+	private ResourcesInfo getCloudResourcesInfo(Map<String, String> localCredentials, Token localToken) {
+		if (getResourcesInfoCache() != null) {
+			return getResourcesInfoCache().get(localCredentials);
+		}
+		return computePlugin.getResourcesInfo(localToken);
+	}
+
+	protected synchronized ResourcesInfoCache getResourcesInfoCache() {
+		if (resourcesInfoCache == null && ResourcesInfoCache.isEnabled(properties)) {
+			resourcesInfoCache = new ResourcesInfoCache(new ResourcesInfoCache.Loader() {
+				@Override
+				public ResourcesInfo load(Map<String, String> credentials) {
+					return computePlugin.getResourcesInfo(createLocalToken(credentials));
 				}
-				totalResourcesInfo.addResource(resourcesInfo);
+			}, properties);
+		}
+		return resourcesInfoCache;
+	}
 
-				try {
-					totalResourcesInfo.addResource(getResourceInfoInUseByUserId(localToken, userId, isLocal));			
-				} catch (Exception e) {
-					LOGGER.warn("Did not possible get informations about instances, CPUs and "
-							+ "memories in use by user id (" + userId + ").");
-				}				
-			}			
+	private synchronized ExecutorService getResourcesInfoExecutor() {
+		if (resourcesInfoExecutor == null) {
+			int maxInFlight = PropertiesUtil.getInt(properties,
+					ConfigurationConstants.RESOURCES_INFO_MAX_IN_FLIGHT_KEY, DEFAULT_RESOURCES_INFO_MAX_IN_FLIGHT);
+			resourcesInfoExecutor = createBoundedExecutor(Math.max(1, maxInFlight));
 		}
+		return resourcesInfoExecutor;
+	}
 
-		
-		return totalResourcesInfo;
+	private long getResourcesInfoTimeout() {
+		return PropertiesUtil.getLong(properties, ConfigurationConstants.RESOURCES_INFO_TIMEOUT_KEY,
+				DEFAULT_RESOURCES_INFO_TIMEOUT);
 	}
 	
 	protected ResourcesInfo getResourceInfoInUseByUserId(Token localToken, String userId, boolean isLocal) {
-		List<Order> localOrders = managerDataStoreController.getOrdersByUserId(userId, isLocal);
+		return getResourceInfoInUseByUserId(localToken, 
+				managerDataStoreController.getOrdersByUserId(userId, isLocal), isLocal);
+	}
+
+	private ResourcesInfo getResourceInfoInUseByUserId(Token localToken, List<Order> localOrders, boolean isLocal) {
 		int contInstance = 0;
 		double contCpu = 0;
 		double contMem = 0;
@@ -646,6 +790,11 @@ public class ManagerController {
 		return managerDataStoreController.getOrdersByUserId(userId, findLocalOrder);
 	}
 
+	public List<Order> getOrdersFromUser(String federationAccessToken, ResourceFilter filter) {
+		String userId = getUserId(federationAccessToken);
+		return managerDataStoreController.getOrdersByUserId(userId, true, filter);
+	}
+
 	public void removeAllOrders(String accessId) {
 		String userId = getUserId(accessId);
 		LOGGER.debug("Removing all orders of user id: " + userId);
@@ -676,7 +825,7 @@ public class ManagerController {
 		Order order = managerDataStoreController.getOrder(orderId, false);
 		if (order != null && order.getInstanceId() != null) {
 			try {
-				Token token = localIdentityPlugin.createToken(mapperPlugin.getLocalCredentials(accessId));
+				Token token = createLocalToken(mapperPlugin.getLocalCredentials(accessId));
 				String instanceId = order.getInstanceId();
 				if (order.getResourceKing().equals(OrderConstants.COMPUTE_TERM)) {
 					computePlugin.removeInstance(token, instanceId);					
@@ -773,7 +922,7 @@ public class ManagerController {
 		if (isFulfilledByLocalMember(order)) {
 			LOGGER.debug(order.getInstanceId() + " is local, getting its information in the local cloud.");
 			if (resourceKind.equals(OrderConstants.COMPUTE_TERM)) {
-				instance = this.computePlugin.getInstance(getFederationUserToken(order), order.getInstanceId());
+				instance = getLocalComputeInstance(order, getFederationUserToken(order), order.getInstanceId());
 				
 				instance.addAttribute(Instance.SSH_USERNAME_ATT, getSSHCommonUser());
 				Map<String, String> serviceAddresses = getExternalServiceAddresses(order.getId());
@@ -815,15 +964,7 @@ public class ManagerController {
 		return osCategory;
 	}
 
-	private CloseableHttpClient createReverseTunnelHttpClient() {
-		this.connectionManager = new PoolingHttpClientConnectionManager();
-		this.connectionManager.setMaxTotal(DEFAULT_MAX_POOL);
-		this.connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_POOL);
-		
-		return HttpRequestUtil.createHttpClient(this.connectionManager);
-	}
-
-	private HttpClient reverseTunnelHttpClient = createReverseTunnelHttpClient();
+	private HttpClient reverseTunnelHttpClient = HttpRequestUtil.createHttpClient();
 
 	@SuppressWarnings("unchecked")
 	private Map<String, String> getExternalServiceAddresses(String tokenId) {
@@ -972,6 +1113,9 @@ public class ManagerController {
 		}
 		
 		this.managerDataStoreController.updateOrder(order);
+		if (order.getState().equals(OrderState.OPEN)) {
+			orderSchedulingEvent();
+		}
 		if (instanceId != null) {
 			this.managerDataStoreController.removeAllStorageLinksByInstance(
 					normalizeFogbowResourceId(instanceId), order.getResourceKing());			
@@ -1064,6 +1208,7 @@ public class ManagerController {
 		if (!orderSchedulerTimer.isScheduled()) {
 			triggerOrderScheduler();
 		}
+		orderSchedulingEvent();
 	}
 	
 	public boolean isThereEnoughQuota(String requestingMemberId){
@@ -1208,7 +1353,48 @@ public class ManagerController {
 
 	protected Token getFederationUserToken(Order order) {
 		LOGGER.debug("Getting federation user token.");
-		return localIdentityPlugin.createToken(mapperPlugin.getLocalCredentials(order));
+		return createLocalToken(mapperPlugin.getLocalCredentials(order));
+	}
+
+	protected Token createLocalToken(Map<String, String> localCredentials) {
+		if (localTokenCache != null) {
+			return localTokenCache.getToken(localCredentials);
+		}
+		return localIdentityPlugin.createToken(localCredentials);
+	}
+
+	protected LocalTokenCache getLocalTokenCache() {
+		return localTokenCache;
+	}
+
+	/**
+	 * Drops the cached local token of the order after the cloud rejected it.
+	 * 
+	 * @return true if a new token can be asked for, which happens only when
+	 *         the local tokens are cached.
+	 */
+	private boolean invalidateLocalToken(Order order, Token rejectedToken) {
+		if (localTokenCache == null) {
+			return false;
+		}
+		localTokenCache.invalidate(mapperPlugin.getLocalCredentials(order), rejectedToken);
+		return true;
+	}
+
+	/**
+	 * Gets the instance from the local cloud, logging in again once if the
+	 * cached token of the order was rejected, e.g. after a cloud restart.
+	 */
+	private Instance getLocalComputeInstance(Order order, Token federationUserToken, String instanceId) {
+		try {
+			return computePlugin.getInstance(federationUserToken, instanceId);
+		} catch (OCCIException e) {
+			if (!ErrorType.UNAUTHORIZED.equals(e.getType()) || !invalidateLocalToken(order, federationUserToken)) {
+				throw e;
+			}
+			LOGGER.debug("Local token rejected while getting instance " + instanceId + ". Logging in again.", e);
+			return computePlugin.getInstance(getFederationUserToken(order), instanceId);
+		}
 	}
 
 	public Instance getInstanceForRemoteMember(String instanceId) {
@@ -1219,7 +1405,7 @@ public class ManagerController {
 			String orderResourceKind = servedOrder != null ? servedOrder.getResourceKing(): null;
 			Instance instance = null;
 			if (orderResourceKind == null || orderResourceKind.equals(OrderConstants.COMPUTE_TERM)) {
-				instance = computePlugin.getInstance(federationUserToken, instanceId);
+				instance = getLocalComputeInstance(servedOrder, federationUserToken, instanceId);
 				if (servedOrder != null) {
 					Map<String, String> serviceAddresses = getExternalServiceAddresses(servedOrder.getId());
 					if (serviceAddresses != null) {
@@ -1299,6 +1485,7 @@ public class ManagerController {
 		if (!orderSchedulerTimer.isScheduled()) {
 			triggerOrderScheduler();
 		}
+		orderSchedulingEvent();
 
 		return currentOrders;
 	}
@@ -1325,35 +1512,37 @@ public class ManagerController {
 		long monitorPeriod = ManagerControllerHelper.getInstanceMonitoringPeriod(this.properties);
 		this.monitoringHelper.checkFailedMonitoring(monitorPeriod);
 		
+		List<Order> monitoredOrders = new ArrayList<Order>();
 		for (Order order : this.managerDataStoreController.getAllLocalOrders()) {
 			if (order.getState().in(OrderState.FULFILLED, OrderState.DELETED, OrderState.SPAWNING)) {
 				turnOffTimer = false;
 			}
-			
 			if (order.getState().in(OrderState.FULFILLED, OrderState.DELETED)) {
-				boolean isNotFoundException = false;
-				try {
-					LOGGER.debug("Monitoring instance of order: " + order);
-					removeFailedInstance(order, getInstance(order, order.getResourceKing()));
-					this.monitoringHelper.eraseFailedMonitoringAttempts(order);
-				} catch (OCCIException e) {
-					LOGGER.debug("Error while getInstance of " + order.getInstanceId(), e);
-					
-					if (e.getType().equals(ErrorType.NOT_FOUND)) {
-						isNotFoundException = true;
-					} else {
-						this.monitoringHelper.addFailedMonitoringAttempt(order);
-					}
-				} catch (Throwable e) {
-					LOGGER.debug("Error while getInstance of " + order.getInstanceId(), e);
+				monitoredOrders.add(order);
+			}
+		}
+		
+		Map<String, InstanceStatus> instanceStatuses = getInstanceStatuses(monitoredOrders);
+		for (Order order : monitoredOrders) {
+			InstanceStatus instanceStatus = instanceStatuses.get(order.getId());
+			boolean isNotFoundException = false;
+			if (instanceStatus.getError() == null) {
+				removeFailedInstance(order, instanceStatus.getInstance());
+				this.monitoringHelper.eraseFailedMonitoringAttempts(order);
+			} else {
+				Throwable e = instanceStatus.getError();
+				LOGGER.debug("Error while getInstance of " + order.getInstanceId(), e);
+				if (e instanceof OCCIException && ((OCCIException) e).getType().equals(ErrorType.NOT_FOUND)) {
+					isNotFoundException = true;
+				} else {
 					this.monitoringHelper.addFailedMonitoringAttempt(order);
 				}
-				
-				if (isNotFoundException || this.monitoringHelper.isMaximumFailedMonitoringAttempts(order) 
-						|| (order.getState().equals(OrderState.DELETED) && order.getInstanceId() == null)) {
-					instanceRemoved(this.managerDataStoreController.getOrder(order.getId()));
-					this.monitoringHelper.eraseFailedMonitoringAttempts(order);
-				}
+			}
+			
+			if (isNotFoundException || this.monitoringHelper.isMaximumFailedMonitoringAttempts(order) 
+					|| (order.getState().equals(OrderState.DELETED) && order.getInstanceId() == null)) {
+				instanceRemoved(this.managerDataStoreController.getOrder(order.getId()));
+				this.monitoringHelper.eraseFailedMonitoringAttempts(order);
 			}
 		}
 
@@ -1363,6 +1552,248 @@ public class ManagerController {
 		}
 	}
 
+	/**
+	 * Gets the instance of each order, one order at a time. In batched mode, the
+	 * compute instances of the local cloud are listed once per federation user
+	 * token, the instances of remote members are requested at once and the
+	 * other instances are fetched concurrently, at most
+	 * instance_monitoring_max_in_flight at a time. Listed instances without a
+	 * state, as some plugins list only the ids, are fetched too, so failed
+	 * instances are still found.
+	 * 
+	 * @return the status of the instance by order id.
+	 */
+	protected Map<String, InstanceStatus> getInstanceStatuses(List<Order> orders) {
+		Map<String, InstanceStatus> instanceStatuses = new HashMap<String, InstanceStatus>();
+		if (!Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.INSTANCE_MONITORING_BATCHED_KEY))) {
+			for (Order order : orders) {
+				LOGGER.debug("Monitoring instance of order: " + order);
+				instanceStatuses.put(order.getId(), getInstanceStatus(order));
+			}
+			return instanceStatuses;
+		}
+
+		Map<String, Token> tokens = new HashMap<String, Token>();
+		Map<String, List<Order>> localComputeOrdersByToken = new HashMap<String, List<Order>>();
+		List<Order> otherOrders = new ArrayList<Order>();
+		for (Order order : orders) {
+			if (!isFulfilledByLocalMember(order) || !OrderConstants.COMPUTE_TERM.equals(order.getResourceKing())) {
+				otherOrders.add(order);
+				continue;
+			}
+			try {
+				Token token = getFederationUserToken(order);
+				List<Order> tokenOrders = localComputeOrdersByToken.get(token.getAccessId());
+				if (tokenOrders == null) {
+					tokenOrders = new ArrayList<Order>();
+					localComputeOrdersByToken.put(token.getAccessId(), tokenOrders);
+					tokens.put(token.getAccessId(), token);
+				}
+				tokenOrders.add(order);
+			} catch (Throwable e) {
+				instanceStatuses.put(order.getId(), new InstanceStatus(null, e));
+			}
+		}
+
+		for (String accessId : localComputeOrdersByToken.keySet()) {
+			List<Order> tokenOrders = localComputeOrdersByToken.get(accessId);
+			Map<String, Instance> instancesById = new HashMap<String, Instance>();
+			try {
+				for (Instance instance : computePlugin.getInstances(tokens.get(accessId))) {
+					instancesById.put(instance.getId(), instance);
+				}
+			} catch (Throwable e) {
+				for (Order order : tokenOrders) {
+					instanceStatuses.put(order.getId(), new InstanceStatus(null, e));
+				}
+				continue;
+			}
+			for (Order order : tokenOrders) {
+				Instance instance = instancesById.get(order.getInstanceId());
+				if (instance != null && instance.getState() != null) {
+					instanceStatuses.put(order.getId(), new InstanceStatus(instance, null));
+				} else {
+					// the listing may omit instances or their state, the instance itself tells them
+					otherOrders.add(order);
+				}
+			}
+		}
+
+		List<Order> remoteOrders = new ArrayList<Order>();
+		for (Iterator<Order> iterator = otherOrders.iterator(); iterator.hasNext();) {
+			Order order = iterator.next();
+			if (!isFulfilledByLocalMember(order)) {
+				remoteOrders.add(order);
+				iterator.remove();
+			}
+		}
+		Map<String, List<Order>> remoteOrdersByMember = groupByProvidingMember(remoteOrders);
+		Map<String, List<PacketFuture>> remoteInstances = requestRemoteInstances(remoteOrdersByMember,
+				instanceStatuses);
+
+		List<Future<InstanceStatus>> futures = new ArrayList<Future<InstanceStatus>>();
+		ExecutorService executor = getInstanceMonitoringExecutor();
+		for (final Order order : otherOrders) {
+			futures.add(executor.submit(new Callable<InstanceStatus>() {
+				@Override
+				public InstanceStatus call() throws Exception {
+					return getInstanceStatus(order);
+				}
+			}));
+		}
+		for (int i = 0; i < otherOrders.size(); i++) {
+			InstanceStatus instanceStatus;
+			try {
+				instanceStatus = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				instanceStatus = new InstanceStatus(null, e);
+			} catch (ExecutionException e) {
+				instanceStatus = new InstanceStatus(null, e.getCause());
+			}
+			instanceStatuses.put(otherOrders.get(i).getId(), instanceStatus);
+		}
+
+		collectRemoteInstances(remoteOrdersByMember, remoteInstances, instanceStatuses);
+		return instanceStatuses;
+	}
+
+	private static Map<String, List<Order>> groupByProvidingMember(List<Order> orders) {
+		Map<String, List<Order>> ordersByMember = new LinkedHashMap<String, List<Order>>();
+		for (Order order : orders) {
+			List<Order> memberOrders = ordersByMember.get(order.getProvidingMemberId());
+			if (memberOrders == null) {
+				memberOrders = new ArrayList<Order>();
+				ordersByMember.put(order.getProvidingMemberId(), memberOrders);
+			}
+			memberOrders.add(order);
+		}
+		return ordersByMember;
+	}
+
+	/**
+	 * Sends the requests for the instances of each providing member, without
+	 * waiting for the responses. Orders whose requests could not be sent get
+	 * their status right away.
+	 * 
+	 * @return the responses of each providing member.
+	 */
+	private Map<String, List<PacketFuture>> requestRemoteInstances(Map<String, List<Order>> ordersByMember,
+			Map<String, InstanceStatus> instanceStatuses) {
+		Map<String, List<PacketFuture>> responses = new HashMap<String, List<PacketFuture>>();
+		for (String memberId : ordersByMember.keySet()) {
+			List<String> instanceIds = new ArrayList<String>();
+			for (Order order : ordersByMember.get(memberId)) {
+				instanceIds.add(order.getInstanceId());
+			}
+			try {
+				responses.put(memberId, ManagerPacketHelper.getRemoteInstancesAsync(memberId, instanceIds, packetSender));
+			} catch (Throwable e) {
+				for (Order order : ordersByMember.get(memberId)) {
+					instanceStatuses.put(order.getId(), new InstanceStatus(null, e));
+				}
+			}
+		}
+		return responses;
+	}
+
+	/**
+	 * Waits for the responses sent by {@link #requestRemoteInstances(Map, Map)}.
+	 * Members that do not support batched requests are asked for each instance.
+	 */
+	private void collectRemoteInstances(Map<String, List<Order>> ordersByMember, 
+			Map<String, List<PacketFuture>> responses, Map<String, InstanceStatus> instanceStatuses) {
+		List<Order> singleOrders = new ArrayList<Order>();
+		long deadline = System.currentTimeMillis() + getXMPPTimeout();
+		for (String memberId : responses.keySet()) {
+			List<Order> memberOrders = ordersByMember.get(memberId);
+			Map<String, OCCIException> errors = new HashMap<String, OCCIException>();
+			Map<String, Instance> instances;
+			try {
+				instances = ManagerPacketHelper.getRemoteInstances(responses.get(memberId),
+						getRemainingTime(deadline), errors);
+			} catch (Throwable e) {
+				for (Order order : memberOrders) {
+					instanceStatuses.put(order.getId(), new InstanceStatus(null, e));
+				}
+				continue;
+			}
+			if (instances == null) {
+				LOGGER.debug("Member " + memberId + " does not support batched instance requests.");
+				singleOrders.addAll(memberOrders);
+				continue;
+			}
+			for (Order order : memberOrders) {
+				Instance instance = instances.get(order.getInstanceId());
+				if (instance != null) {
+					instanceStatuses.put(order.getId(), new InstanceStatus(instance, null));
+				} else {
+					OCCIException error = errors.get(order.getInstanceId());
+					instanceStatuses.put(order.getId(), new InstanceStatus(null, error != null ? error 
+							: new OCCIException(ErrorType.NOT_FOUND, ResponseConstants.NOT_FOUND)));
+				}
+			}
+		}
+
+		Map<String, PacketFuture> singleResponses = new HashMap<String, PacketFuture>();
+		for (Order order : singleOrders) {
+			singleResponses.put(order.getId(), ManagerPacketHelper.getRemoteInstanceAsync(
+					order.getProvidingMemberId(), order.getInstanceId(), packetSender));
+		}
+		deadline = System.currentTimeMillis() + getXMPPTimeout();
+		for (Order order : singleOrders) {
+			try {
+				instanceStatuses.put(order.getId(), new InstanceStatus(ManagerPacketHelper.getRemoteInstance(
+						singleResponses.get(order.getId()), getRemainingTime(deadline)), null));
+			} catch (Throwable e) {
+				instanceStatuses.put(order.getId(), new InstanceStatus(null, e));
+			}
+		}
+	}
+
+	private InstanceStatus getInstanceStatus(Order order) {
+		try {
+			return new InstanceStatus(getInstance(order, order.getResourceKing()), null);
+		} catch (Throwable e) {
+			return new InstanceStatus(null, e);
+		}
+	}
+
+	private synchronized ExecutorService getInstanceMonitoringExecutor() {
+		if (instanceMonitoringExecutor == null) {
+			int maxInFlight = PropertiesUtil.getInt(properties,
+					ConfigurationConstants.INSTANCE_MONITORING_MAX_IN_FLIGHT_KEY, DEFAULT_INSTANCE_MONITORING_MAX_IN_FLIGHT);
+			instanceMonitoringExecutor = createBoundedExecutor(Math.max(1, maxInFlight));
+		}
+		return instanceMonitoringExecutor;
+	}
+
+	private static ExecutorService createBoundedExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	protected static class InstanceStatus {
+
+		private final Instance instance;
+		private final Throwable error;
+
+		public InstanceStatus(Instance instance, Throwable error) {
+			this.instance = instance;
+			this.error = error;
+		}
+
+		public Instance getInstance() {
+			return instance;
+		}
+
+		public Throwable getError() {
+			return error;
+		}
+	}
+
 	private void removeFailedInstance(Order order, Instance instance) {
 		if (instance == null) {
 			return;
@@ -1382,6 +1813,10 @@ public class ManagerController {
 			return;
 		}
 
+		if (isEventDrivenScheduling()) {
+			// events would forward the order again at once to members that just failed it
+			allowedMembers = forwardingBackoff.filterMembers(allowedMembers);
+		}
 		FederationMember member = memberPickerPlugin.pick(allowedMembers);
 		if (member == null) {
 			return;
@@ -1398,6 +1833,8 @@ public class ManagerController {
 
 		LOGGER.info("Submiting order " + order + " to member " + memberAddress);		
 		this.managerDataStoreController.addOrderSyncronous(order.getId(), dateUtils.currentTimeMillis(), order.getProvidingMemberId());
+		// checkPedingOrders reopens the order if the member does not answer in time
+		orderSchedulingEvent(getAsyncOrderWaitingInterval() + 1);
 		ManagerPacketHelper.asynchronousRemoteOrder(order.getId(), categoriesCopy, xOCCIAttCopy, memberAddress, 
 				federationIdentityPlugin.getForwardableToken(order.getFederationToken()), 
 				packetSender, new AsynchronousOrderCallback() {
@@ -1409,9 +1846,11 @@ public class ManagerController {
 							return;
 						}
 						if (instanceId == null) {
+							forwardingBackoff.addFailedForward(memberAddress);
 							if (order.getState().equals(OrderState.PENDING)) {
 								order.setState(OrderState.OPEN);
 								managerDataStoreController.updateOrder(order);
+								orderSchedulingEvent();
 							}
 							return;
 						}
@@ -1420,6 +1859,7 @@ public class ManagerController {
 							return;
 						}
 
+						forwardingBackoff.eraseFailedForwards(memberAddress);
 						// reseting time stamp
 						managerDataStoreController.updateOrderSyncronous(order.getId(), dateUtils.currentTimeMillis());
 
@@ -1443,6 +1883,7 @@ public class ManagerController {
 							if (order.getState().equals(OrderState.PENDING)) {
 								order.setState(OrderState.OPEN);
 								managerDataStoreController.updateOrder(order);
+								orderSchedulingEvent();
 							}
 							return;
 						}
@@ -1452,11 +1893,15 @@ public class ManagerController {
 					public void error(Throwable t) {
 						LOGGER.debug("The order " + order + " forwarded to " + memberAddress
 								+ " gets error ", t);
+						forwardingBackoff.addFailedForward(memberAddress);
 						if (order.getState().equals(OrderState.PENDING)) {
 							order.setState(OrderState.OPEN);
 						}
 						order.setProvidingMemberId(null);
 						managerDataStoreController.updateOrder(order);
+						if (order.getState().equals(OrderState.OPEN)) {
+							orderSchedulingEvent();
+						}
 					}
 				});
 	}
@@ -1594,6 +2039,11 @@ public class ManagerController {
 		if (this.forTest) { return; }		
 		String schedulerPeriodStr = properties.getProperty(ConfigurationConstants.SCHEDULER_PERIOD_KEY);
 		long schedulerPeriod = schedulerPeriodStr == null ? DEFAULT_SCHEDULER_PERIOD : Long.valueOf(schedulerPeriodStr);
+		if (isEventDrivenScheduling()) {
+			// events submit the orders, polling only catches what they miss
+			schedulerPeriod = Math.max(schedulerPeriod, PropertiesUtil.getLong(properties,
+					ConfigurationConstants.SCHEDULER_SAFETY_NET_PERIOD_KEY, DEFAULT_SCHEDULER_SAFETY_NET_PERIOD));
+		}
 		orderSchedulerTimer.scheduleAtFixedRate(new TimerTask() {
 			@Override
 			public void run() {
@@ -1606,60 +2056,275 @@ public class ManagerController {
 		}, 0, schedulerPeriod);
 	}
 
+	protected boolean isEventDrivenScheduling() {
+		return Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.SCHEDULER_EVENT_DRIVEN_KEY));
+	}
+
+	/**
+	 * Asks for a scheduling round as soon as possible, in event-driven mode.
+	 * Events received before the round starts are served by the same round.
+	 */
+	protected void orderSchedulingEvent() {
+		orderSchedulingEvent(0);
+	}
+
+	/**
+	 * Asks for a scheduling round after the delay, in event-driven mode. At
+	 * most one round is outstanding: an earlier request replaces it and a
+	 * later request is served by it. Each round asks for the round of the
+	 * forwarded orders and member backoffs still waiting, see
+	 * {@link #scheduleNextSchedulingRound()}.
+	 */
+	protected void orderSchedulingEvent(long delay) {
+		if (this.forTest || !isEventDrivenScheduling()) { return; }
+		final long roundTime = dateUtils.currentTimeMillis() + Math.max(0, delay);
+		synchronized (orderSchedulingLock) {
+			if (nextSchedulingRoundTime <= roundTime) {
+				return;
+			}
+			if (nextSchedulingRound != null) {
+				nextSchedulingRound.cancel(false);
+			}
+			nextSchedulingRoundTime = roundTime;
+			nextSchedulingRound = orderSchedulerTimer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					synchronized (orderSchedulingLock) {
+						if (nextSchedulingRoundTime == roundTime) {
+							nextSchedulingRoundTime = Long.MAX_VALUE;
+							nextSchedulingRound = null;
+						}
+					}
+					checkAndSubmitOpenOrders();
+				}
+			}, Math.max(0, delay));
+		}
+	}
+
+	/**
+	 * Asks for the round that reopens the forwarded orders not answered in time
+	 * or forwards the open orders once a member backoff is over, in
+	 * event-driven mode.
+	 */
+	private void scheduleNextSchedulingRound() {
+		if (this.forTest || !isEventDrivenScheduling()) { return; }
+		long nextRoundTime = Long.MAX_VALUE;
+		for (Order order : managerDataStoreController.getOrdersByState(OrderState.PENDING)) {
+			nextRoundTime = Math.min(nextRoundTime, order.getSyncronousTime() + getAsyncOrderWaitingInterval() + 1);
+		}
+		if (!managerDataStoreController.getOrdersIn(OrderState.OPEN).isEmpty()) {
+			nextRoundTime = Math.min(nextRoundTime, forwardingBackoff.getNextRetryTime());
+		}
+		if (nextRoundTime != Long.MAX_VALUE) {
+			orderSchedulingEvent(nextRoundTime - dateUtils.currentTimeMillis());
+		}
+	}
+
 	protected void checkAndSubmitOpenOrders() {
-		boolean allFulfilled = true;
 		failedBatch.clear();
 		LOGGER.debug("Checking and submiting orders.");
 
 		// removing orders that reach timeout
 		checkPedingOrders();
-		for (Order order : new ArrayList<Order>(managerDataStoreController.getOrdersIn(OrderState.OPEN))) {
-			if (!order.getState().equals(OrderState.OPEN)) {
-				LOGGER.debug("The order " + order.getId() + " is no longer open.");
+		List<List<Order>> batches = getBatchesInSchedulingOrder(
+				managerDataStoreController.getOrdersIn(OrderState.OPEN));
+		boolean allFulfilled = submitBatches(batches);
+		if (allFulfilled) {
+			LOGGER.info("All orders fulfilled.");
+		}
+		scheduleNextSchedulingRound();
+	}
+
+	/**
+	 * Orders of the same batch stay together, in their original order, so that
+	 * the failure of one of them is seen by the next ones ({@link FailedBatch}).
+	 * Batches are interleaved among federation users: the first batch of each
+	 * user, then the second batch of each user and so on.
+	 */
+	protected List<List<Order>> getBatchesInSchedulingOrder(List<Order> openOrders) {
+		Map<String, List<Order>> batchesById = new LinkedHashMap<String, List<Order>>();
+		Map<String, List<List<Order>>> batchesByUser = new LinkedHashMap<String, List<List<Order>>>();
+		for (Order order : openOrders) {
+			String batchKey = order.getBatchId() != null ? order.getBatchId() : "order:" + order.getId();
+			List<Order> batch = batchesById.get(batchKey);
+			if (batch == null) {
+				batch = new ArrayList<Order>();
+				batchesById.put(batchKey, batch);
+				String userId = order.getFederationToken() != null
+						&& order.getFederationToken().getUser() != null ? order
+						.getFederationToken().getUser().getId() : null;
+				List<List<Order>> userBatches = batchesByUser.get(userId);
+				if (userBatches == null) {
+					userBatches = new ArrayList<List<Order>>();
+					batchesByUser.put(userId, userBatches);
+				}
+				userBatches.add(batch);
+			}
+			batch.add(order);
+		}
+
+		List<List<Order>> batches = new ArrayList<List<Order>>();
+		for (int round = 0; batches.size() < batchesById.size(); round++) {
+			for (List<List<Order>> userBatches : batchesByUser.values()) {
+				if (round < userBatches.size()) {
+					batches.add(userBatches.get(round));
+				}
+			}
+		}
+		return batches;
+	}
+
+	/**
+	 * Submits each batch as a task of the order scheduler workers and waits for
+	 * all of them. With a single worker the batches run in the calling thread.
+	 * 
+	 * @return true if every order was fulfilled.
+	 */
+	protected boolean submitBatches(List<List<Order>> batches) {
+		ExecutorService executor = getOrderSchedulerExecutor();
+		if (executor == null) {
+			boolean allFulfilled = true;
+			for (List<Order> batch : batches) {
+				allFulfilled &= submitBatch(batch);
+			}
+			return allFulfilled;
+		}
+
+		List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+		for (final List<Order> batch : batches) {
+			results.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return submitBatch(batch);
+				}
+			}));
+		}
+		boolean allFulfilled = true;
+		for (Future<Boolean> result : results) {
+			try {
+				allFulfilled &= result.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException e) {
+				LOGGER.error("Error while submitting a batch of orders.", e.getCause());
+				allFulfilled = false;
+			}
+		}
+		return allFulfilled;
+	}
+
+	protected boolean submitBatch(List<Order> batch) {
+		boolean allFulfilled = true;
+		for (Order order : batch) {
+			if (!ordersBeingScheduled.add(order.getId())) {
+				LOGGER.debug("The order " + order.getId() + " is already being scheduled.");
+				allFulfilled = false;
 				continue;
 			}
-			
-			LOGGER.debug(order.getId() + " being considered for scheduling.");
-			if (order.isIntoValidPeriod()) {
-				boolean isFulfilled = false;
-				
-				if (order.isLocal()) {
-					String requirements = order.getRequirements();
-					List<FederationMember> allowedFederationMembers = getAllowedFederationMembers(requirements);
-
-					if (RequirementsHelper.matchLocation(requirements,
-							properties.getProperty(ConfigurationConstants.XMPP_JID_KEY))) {
-
-						if (!isFulfilled
-								&& !failedBatch.batchExists(order.getBatchId(), FailedBatchType.FEDERATION_USER)) {
-							isFulfilled = createLocalInstanceWithFederationUser(order);
-							if (!isFulfilled) {
-								failedBatch.failBatch(order.getBatchId(), FailedBatchType.FEDERATION_USER);
-							}
-						}
-					}
-					if (!isFulfilled) {
-						createAsynchronousRemoteInstance(order, allowedFederationMembers);
-					}
-					allFulfilled &= isFulfilled;
-				} else { // it is served Order
-					if (!failedBatch.batchExists(order.getBatchId(), FailedBatchType.FEDERATION_USER)) {
+			try {
+				allFulfilled &= submitOpenOrder(order);
+			} catch (Throwable e) {
+				LOGGER.error("Error while submitting order " + order.getId(), e);
+				allFulfilled = false;
+			} finally {
+				ordersBeingScheduled.remove(order.getId());
+			}
+		}
+		return allFulfilled;
+	}
+
+	/**
+	 * @return true if the order was fulfilled or is no longer open.
+	 */
+	protected boolean submitOpenOrder(Order order) {
+		// the order may have changed since the open orders were listed
+		order = managerDataStoreController.getOrder(order.getId());
+		if (order == null || !OrderState.OPEN.equals(order.getState())) {
+			LOGGER.debug("The order is no longer open.");
+			return true;
+		}
+
+		LOGGER.debug(order.getId() + " being considered for scheduling.");
+		if (order.isIntoValidPeriod()) {
+			boolean isFulfilled = false;
+
+			if (order.isLocal()) {
+				String requirements = order.getRequirements();
+				List<FederationMember> allowedFederationMembers = getAllowedFederationMembers(requirements);
+
+				if (RequirementsHelper.matchLocation(requirements,
+						properties.getProperty(ConfigurationConstants.XMPP_JID_KEY))) {
+
+					if (!isFulfilled
+							&& !failedBatch.batchExists(order.getBatchId(), FailedBatchType.FEDERATION_USER)) {
 						isFulfilled = createLocalInstanceWithFederationUser(order);
 						if (!isFulfilled) {
 							failedBatch.failBatch(order.getBatchId(), FailedBatchType.FEDERATION_USER);
 						}
 					}
-					allFulfilled &= isFulfilled;
 				}
-			} else if (order.isExpired()) {
-				order.setState(OrderState.CLOSED);
-				this.managerDataStoreController.updateOrder(order);
-			} else {
-				allFulfilled = false;
+				if (!isFulfilled) {
+					createAsynchronousRemoteInstance(order, allowedFederationMembers);
+				}
+				return isFulfilled;
+			} else { // it is served Order
+				if (!failedBatch.batchExists(order.getBatchId(), FailedBatchType.FEDERATION_USER)) {
+					isFulfilled = createLocalInstanceWithFederationUser(order);
+					if (!isFulfilled) {
+						failedBatch.failBatch(order.getBatchId(), FailedBatchType.FEDERATION_USER);
+					}
+				}
+				return isFulfilled;
 			}
+		} else if (order.isExpired()) {
+			order.setState(OrderState.CLOSED);
+			this.managerDataStoreController.updateOrder(order);
+			return true;
 		}
-		if (allFulfilled) {
-			LOGGER.info("All orders fulfilled.");
+		return false;
+	}
+
+	/**
+	 * @return null when a single worker is configured.
+	 */
+	protected synchronized ExecutorService getOrderSchedulerExecutor() {
+		if (orderSchedulerExecutor == null) {
+			if (orderSchedulerWorkers == 0) {
+				orderSchedulerWorkers = Math.max(1, PropertiesUtil.getInt(properties,
+						ConfigurationConstants.SCHEDULER_WORKERS_KEY, DEFAULT_SCHEDULER_WORKERS));
+			}
+			if (orderSchedulerWorkers <= 1) {
+				return null;
+			}
+			orderSchedulerExecutor = createBoundedExecutor(orderSchedulerWorkers);
+		}
+		return orderSchedulerExecutor;
+	}
+
+	/**
+	 * Cancels the timers of the manager and stops their threads, and the
+	 * threads of the order scheduling, instance monitoring and resources info
+	 * workers. To be called when the manager is stopped.
+	 */
+	public void shutdown() {
+		LOGGER.info("Shutting down the manager timers and workers.");
+		orderSchedulerTimer.shutdown();
+		instanceMonitoringTimer.shutdown();
+		servedOrderMonitoringTimer.shutdown();
+		accountingUpdaterTimer.shutdown();
+		capacityControllerUpdaterTimer.shutdown();
+		localTokenRenewalTimer.shutdown();
+		synchronized (this) {
+			for (ExecutorService executor : new ExecutorService[] { orderSchedulerExecutor,
+					instanceMonitoringExecutor, resourcesInfoExecutor }) {
+				if (executor != null) {
+					executor.shutdownNow();
+				}
+			}
+			orderSchedulerExecutor = null;
+			instanceMonitoringExecutor = null;
+			resourcesInfoExecutor = null;
 		}
 	}
 
@@ -1674,12 +2339,9 @@ public class ManagerController {
 			if (!getValidator().canReceiveFrom(federationMember)) {
 				continue;
 			}
-			if (!RequirementsHelper.matchLocation(requirements, federationMember.getId())) {
-				continue;
-			}
 			allowedFederationMembers.add(federationMember);
 		}
-		return allowedFederationMembers;
+		return RequirementsHelper.compile(requirements).filterMembers(allowedFederationMembers);
 	}
 
 	protected void monitorServedOrders() {
@@ -1688,25 +2350,25 @@ public class ManagerController {
 		this.monitoringHelper.checkFailedMonitoring(monitorPeriod);
 
 		List<Order> servedOrders = this.managerDataStoreController.getAllServedOrders();
+		Map<String, OCCIException> servedOrderErrors = checkServedOrdersBeingUsed(servedOrders);
 		for (Order order : servedOrders) {
-			try {
-				isInstanceBeingUsedByRemoteMember(order);
+			OCCIException e = servedOrderErrors.get(order.getId());
+			if (e == null) {
 				this.monitoringHelper.eraseFailedMonitoringAttempts(order);
 				continue;
-			} catch (OCCIException e) {				
-				if (e.getType().equals(ErrorType.NOT_FOUND) || this.monitoringHelper.isMaximumFailedMonitoringAttempts(order)) {
-					LOGGER.debug("The instance " + order.getInstanceId() + " is not being used anymore by " 
-							+ order.getRequestingMemberId() + " and will be removed.", e);
-					
-					if (order.getInstanceId() != null) {
-						try {
-							removeInstanceForRemoteMember(order.getInstanceId());			
-						} catch (Exception ex) {}
-					}
-					this.managerDataStoreController.excludeOrder(order.getId());
-				} else {
-					this.monitoringHelper.addFailedMonitoringAttempt(order);
+			}
+			if (e.getType().equals(ErrorType.NOT_FOUND) || this.monitoringHelper.isMaximumFailedMonitoringAttempts(order)) {
+				LOGGER.debug("The instance " + order.getInstanceId() + " is not being used anymore by " 
+						+ order.getRequestingMemberId() + " and will be removed.", e);
+				
+				if (order.getInstanceId() != null) {
+					try {
+						removeInstanceForRemoteMember(order.getInstanceId());			
+					} catch (Exception ex) {}
 				}
+				this.managerDataStoreController.excludeOrder(order.getId());
+			} else {
+				this.monitoringHelper.addFailedMonitoringAttempt(order);
 			}
 		}
 
@@ -1716,11 +2378,80 @@ public class ManagerController {
 		}
 	}
 
-	private boolean isInstanceBeingUsedByRemoteMember(Order servedOrder) {
+	/**
+	 * Asks each requesting member, in a single request, which of its served
+	 * orders are still being used. Members that do not answer the batched
+	 * request, as members running a release without it, are asked for each
+	 * served order.
+	 * 
+	 * @return the error of each served order that is not being used or could not
+	 *         be checked, by order id.
+	 */
+	private Map<String, OCCIException> checkServedOrdersBeingUsed(List<Order> servedOrders) {
+		Map<String, List<Order>> ordersByMember = new LinkedHashMap<String, List<Order>>();
+		for (Order order : servedOrders) {
+			List<Order> memberOrders = ordersByMember.get(order.getRequestingMemberId());
+			if (memberOrders == null) {
+				memberOrders = new ArrayList<Order>();
+				ordersByMember.put(order.getRequestingMemberId(), memberOrders);
+			}
+			memberOrders.add(order);
+		}
+
+		Map<String, PacketFuture> responses = new HashMap<String, PacketFuture>();
+		for (String memberId : ordersByMember.keySet()) {
+			responses.put(memberId, ManagerPacketHelper.checkIfInstancesAreBeingUsedByRemoteMemberAsync(
+					memberId, ordersByMember.get(memberId), packetSender));
+		}
+
+		Map<String, OCCIException> errors = new HashMap<String, OCCIException>();
+		List<Order> singleOrders = new ArrayList<Order>();
+		long deadline = System.currentTimeMillis() + getXMPPTimeout();
+		for (String memberId : ordersByMember.keySet()) {
+			List<Order> memberOrders = ordersByMember.get(memberId);
+			try {
+				Set<String> ordersNotBeingUsed = ManagerPacketHelper.getOrdersNotBeingUsedByRemoteMember(
+						responses.get(memberId), getRemainingTime(deadline));
+				if (ordersNotBeingUsed == null) {
+					LOGGER.debug("Member " + memberId + " did not answer the batched instance being used request."
+							+ " Checking each served order.");
+					singleOrders.addAll(memberOrders);
+					continue;
+				}
+				for (Order order : memberOrders) {
+					if (ordersNotBeingUsed.contains(order.getId())) {
+						errors.put(order.getId(), new OCCIException(ErrorType.NOT_FOUND, ResponseConstants.NOT_FOUND));
+					}
+				}
+			} catch (OCCIException e) {
+				LOGGER.error("Error while checking if instances are being used by " + memberId, e);
+				for (Order order : memberOrders) {
+					errors.put(order.getId(), e);
+				}
+			}
+		}
+
+		Map<String, PacketFuture> singleResponses = new HashMap<String, PacketFuture>();
+		for (Order order : singleOrders) {
+			singleResponses.put(order.getId(), ManagerPacketHelper.checkIfInstanceIsBeingUsedByRemoteMemberAsync(
+					order.getGlobalInstanceId(), order, packetSender));
+		}
+		deadline = System.currentTimeMillis() + getXMPPTimeout();
+		for (Order order : singleOrders) {
+			try {
+				isInstanceBeingUsedByRemoteMember(order, singleResponses.get(order.getId()), deadline);
+			} catch (OCCIException e) {
+				errors.put(order.getId(), e);
+			}
+		}
+		return errors;
+	}
+
+	private boolean isInstanceBeingUsedByRemoteMember(Order servedOrder, PacketFuture response, long deadline) {
 		String globalInstanceId = null;
 		try {
 			globalInstanceId = servedOrder.getGlobalInstanceId();
-			ManagerPacketHelper.checkIfInstanceIsBeingUsedByRemoteMember(globalInstanceId, servedOrder, packetSender);
+			ManagerPacketHelper.checkIfInstanceIsBeingUsedByRemoteMember(response, getRemainingTime(deadline));
 			return true;
 		} catch (OCCIException e) {
 			LOGGER.error("Error while checking if instance " + globalInstanceId + " is being used by "
@@ -1735,20 +2466,33 @@ public class ManagerController {
 			if (timoutReached(order.getSyncronousTime())) {
 				LOGGER.debug("The forwarded order " + order.getId()
 						+ " reached timeout and is been removed from asynchronousOrders list.");
+				forwardingBackoff.addFailedForward(order.getProvidingMemberId());
 				order.setState(OrderState.OPEN);
 				this.managerDataStoreController.updateOrder(order);		
 			}			
 		}
 	}
 
-	private boolean timoutReached(long timeStamp) {
-		long nowMilli = dateUtils.currentTimeMillis();
-		Date now = new Date(nowMilli);
+	private long getXMPPTimeout() {
+		return MainHelper.getXMPPTimeout(properties);
+	}
+
+	private static long getRemainingTime(long deadline) {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
 
+	private int getAsyncOrderWaitingInterval() {
 		String asyncOrderWaitingIntervalStr = properties
 				.getProperty(ConfigurationConstants.ASYNC_ORDER_WAITING_INTERVAL_KEY);
-		final int asyncRequestWaitingInterval = asyncOrderWaitingIntervalStr == null
+		return asyncOrderWaitingIntervalStr == null
 				? DEFAULT_ASYNC_ORDER_WAITING_INTERVAL : Integer.valueOf(asyncOrderWaitingIntervalStr);
+	}
+
+	private boolean timoutReached(long timeStamp) {
+		long nowMilli = dateUtils.currentTimeMillis();
+		Date now = new Date(nowMilli);
+
+		final int asyncRequestWaitingInterval = getAsyncOrderWaitingInterval();
 
 		Calendar c = Calendar.getInstance();
 		c.setTime(new Date(timeStamp));		
@@ -1818,8 +2562,21 @@ public class ManagerController {
 				
 				Map<String, String> xOCCIAttCopy = new HashMap<String, String>(order.getxOCCIAtt());
 				removePublicKeyFromCategoriesAndAttributes(xOCCIAttCopy, categories);
-				String instanceId = computePlugin.requestInstance(federationUserToken, categories, xOCCIAttCopy,
-						localImageId);
+				String instanceId;
+				try {
+					instanceId = computePlugin.requestInstance(federationUserToken, categories, xOCCIAttCopy,
+							localImageId);
+				} catch (OCCIException e) {
+					if (!ErrorType.UNAUTHORIZED.equals(e.getType())
+							|| !invalidateLocalToken(order, federationUserToken)) {
+						throw e;
+					}
+					LOGGER.debug("Local token rejected while requesting instance for order " + order.getId()
+							+ ". Logging in again.", e);
+					federationUserToken = getFederationUserToken(order);
+					instanceId = computePlugin.requestInstance(federationUserToken, categories, xOCCIAttCopy,
+							localImageId);
+				}
 				order.setState(OrderState.SPAWNING);
 				order.setInstanceId(instanceId);
 				order.setProvidingMemberId(properties.getProperty(ConfigurationConstants.XMPP_JID_KEY));
@@ -1830,14 +2587,17 @@ public class ManagerController {
 				ErrorType errorType = e.getType();
 				if (errorType == ErrorType.QUOTA_EXCEEDED) {
 					LOGGER.warn("Order failed locally for quota exceeded.", e);
-					ArrayList<Order> ordersWithInstances = new ArrayList<Order>(
-							managerDataStoreController.getOrdersIn(OrderState.FULFILLED, OrderState.DELETED));
-					Order orderToPreempt = prioritizationPlugin.takeFrom(order, ordersWithInstances);
-					if (orderToPreempt == null) {
-						throw e;
+					// scheduler workers must not pick the same order to preempt
+					synchronized (preemptionLock) {
+						ArrayList<Order> ordersWithInstances = new ArrayList<Order>(
+								managerDataStoreController.getOrdersIn(OrderState.FULFILLED, OrderState.DELETED));
+						Order orderToPreempt = prioritizationPlugin.takeFrom(order, ordersWithInstances);
+						if (orderToPreempt == null) {
+							throw e;
+						}
+						preemption(orderToPreempt);
+						checkInstancePreempted(federationUserToken, orderToPreempt);
 					}
-					preemption(orderToPreempt);
-					checkInstancePreempted(federationUserToken, orderToPreempt);
 					return createInstance(order);
 				} else if (errorType == ErrorType.UNAUTHORIZED) {
 					LOGGER.warn("Order failed locally for user unauthorized.", e);
@@ -1938,6 +2698,7 @@ public class ManagerController {
 
 	public void setDateUtils(DateUtils dateUtils) {
 		this.dateUtils = dateUtils;
+		this.forwardingBackoff.setDateUtils(dateUtils);
 	}
 
 	public FederationMemberAuthorizationPlugin getValidator() {
@@ -1994,34 +2755,62 @@ public class ManagerController {
 		List<Order> ordersFromUser = getOrdersFromUser(authToken);
 		List<Instance> allFullInstances = new ArrayList<Instance>();
 		LOGGER.debug("Getting all instances and your information.");
+		// remote instances are requested at once, so the local ones are read while they travel
+		List<Order> remoteOrders = new ArrayList<Order>();
 		for (Order order : ordersFromUser) {
-			if (!order.getResourceKing().equals(OrderConstants.COMPUTE_TERM)) {
-				continue;
+			if (order.getResourceKing().equals(OrderConstants.COMPUTE_TERM) && !isFulfilledByLocalMember(order)) {
+				LOGGER.debug(order.getInstanceId() + " is remote, going out to " + order.getProvidingMemberId()
+						+ " to get its information.");
+				remoteOrders.add(order);
 			}
+		}
+		Map<String, List<Order>> remoteOrdersByMember = groupByProvidingMember(remoteOrders);
+		Map<String, InstanceStatus> remoteInstances = new HashMap<String, InstanceStatus>();
+		Map<String, List<PacketFuture>> responses = requestRemoteInstances(remoteOrdersByMember, remoteInstances);
+		
+		try {
+			for (Order order : ordersFromUser) {
+				if (!order.getResourceKing().equals(OrderConstants.COMPUTE_TERM)) {
+					continue;
+				}
 			
-			Instance instance = null;
-			if (isFulfilledByLocalMember(order)) {
-				LOGGER.debug(order.getInstanceId() + " is local, getting its information in the local cloud.");
-				instance = this.computePlugin.getInstance(getFederationUserToken(order), order.getInstanceId());
+				Instance instance = null;
+				if (isFulfilledByLocalMember(order)) {
+					LOGGER.debug(order.getInstanceId() + " is local, getting its information in the local cloud.");
+					instance = getLocalComputeInstance(order, getFederationUserToken(order), order.getInstanceId());
 
-				Map<String, String> serviceAddresses = getExternalServiceAddresses(order.getId());
-				if (serviceAddresses != null) {
-					instance.addAttribute(Instance.SSH_PUBLIC_ADDRESS_ATT, serviceAddresses.get(SSH_SERVICE_NAME));
-					instance.addAttribute(Instance.SSH_USERNAME_ATT, getSSHCommonUser());
-					serviceAddresses.remove(SSH_SERVICE_NAME);
-					instance.addAttribute(Instance.EXTRA_PORTS_ATT, new JSONObject(serviceAddresses).toString());
-				}
+					Map<String, String> serviceAddresses = getExternalServiceAddresses(order.getId());
+					if (serviceAddresses != null) {
+						instance.addAttribute(Instance.SSH_PUBLIC_ADDRESS_ATT, serviceAddresses.get(SSH_SERVICE_NAME));
+						instance.addAttribute(Instance.SSH_USERNAME_ATT, getSSHCommonUser());
+						serviceAddresses.remove(SSH_SERVICE_NAME);
+						instance.addAttribute(Instance.EXTRA_PORTS_ATT, new JSONObject(serviceAddresses).toString());
+					}
 
-				Category osCategory = getImageCategory(order.getCategories());
-				if (osCategory != null) {
-					instance.addResource(ResourceRepository.createImageResource(osCategory.getTerm()));
+					Category osCategory = getImageCategory(order.getCategories());
+					if (osCategory != null) {
+						instance.addResource(ResourceRepository.createImageResource(osCategory.getTerm()));
+					}
+				} else {
+					if (!responses.isEmpty()) {
+						collectRemoteInstances(remoteOrdersByMember, responses, remoteInstances);
+						responses.clear();
+					}
+					InstanceStatus instanceStatus = remoteInstances.get(order.getId());
+					if (instanceStatus.getError() instanceof RuntimeException) {
+						throw (RuntimeException) instanceStatus.getError();
+					} else if (instanceStatus.getError() != null) {
+						throw new OCCIException(ErrorType.BAD_REQUEST, instanceStatus.getError().getMessage());
+					}
+					instance = instanceStatus.getInstance();
 				}
-			} else {
-				LOGGER.debug(order.getInstanceId() + " is remote, going out to " + order.getProvidingMemberId()
-						+ " to get its information.");
-				instance = getRemoteInstance(order);
+				allFullInstances.add(instance);
+			}
+		} finally {
+			// a local instance that failed leaves the remote requests unanswered
+			for (List<PacketFuture> memberResponses : responses.values()) {
+				ManagerPacketHelper.cancel(memberResponses);
 			}
-			allFullInstances.add(instance);
 		}
 		return allFullInstances;
 	}
@@ -2122,6 +2911,16 @@ public class ManagerController {
 	}		
 
 	public List<AccountingInfo> getAccountingInfo(String federationAccessId, String resourceKing) {
+		return getAccountingPluginForAdmin(federationAccessId, resourceKing).getAccountingInfo();
+	}
+
+	public List<AccountingInfo> getAccountingInfo(String federationAccessId, String resourceKing,
+			long startTime, long endTime) {
+		return getAccountingPluginForAdmin(federationAccessId, resourceKing).getAccountingInfo(
+				startTime, endTime);
+	}
+
+	private AccountingPlugin getAccountingPluginForAdmin(String federationAccessId, String resourceKing) {
 		Token federationToken = getTokenFromFederationIdP(federationAccessId);
 		if (federationToken == null) {
 			throw new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED);
@@ -2132,10 +2931,9 @@ public class ManagerController {
 		}
 		
 		if (resourceKing.equals(OrderConstants.COMPUTE_TERM)) {
-			return computeAccountingPlugin.getAccountingInfo();
+			return computeAccountingPlugin;
 		}
-		return storageAccountingPlugin.getAccountingInfo();
-		
+		return storageAccountingPlugin;
 	}
 
 	protected boolean isAdminUser(Token federationToken) {
@@ -2186,11 +2984,11 @@ public class ManagerController {
 	protected class FailedBatch {
 		private Map<String, FailedBatchType> failedBatches = new HashMap<String, FailedBatchType>();
 
-		public void failBatch(String batchId, FailedBatchType failedBatchType) {
+		public synchronized void failBatch(String batchId, FailedBatchType failedBatchType) {
 			failedBatches.put(batchId, failedBatchType);
 		}
 
-		public boolean batchExists(String batchId, FailedBatchType failedBatchType) {
+		public synchronized boolean batchExists(String batchId, FailedBatchType failedBatchType) {
 			if (failedBatches.get(batchId) != null) {
 				return true;
 			}
@@ -2199,7 +2997,10 @@ public class ManagerController {
 
 		protected List<String> getFailedBatchIdsPerType(FailedBatchType failedBatchType) {
 			List<String> failedBatchIds = new ArrayList<String>();
-			HashMap<String, FailedBatchType> newFailedBatches = new HashMap<String, FailedBatchType>(failedBatches);
+			HashMap<String, FailedBatchType> newFailedBatches;
+			synchronized (this) {
+				newFailedBatches = new HashMap<String, FailedBatchType>(failedBatches);
+			}
 			for (String key : newFailedBatches.keySet()) {
 				if (newFailedBatches.get(key).equals(failedBatchType)) {
 					failedBatchIds.add(key);
@@ -2208,7 +3009,7 @@ public class ManagerController {
 			return failedBatchIds;
 		}
 
-		public void clear() {
+		public synchronized void clear() {
 			failedBatches.clear();
 		}
 	}
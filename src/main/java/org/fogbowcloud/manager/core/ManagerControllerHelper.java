@@ -1,13 +1,17 @@
 package org.fogbowcloud.manager.core;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
 import org.fogbowcloud.manager.occi.order.Order;
 
 public class ManagerControllerHelper {
@@ -138,4 +142,101 @@ public class ManagerControllerHelper {
 		}
 		
 	}
+	
+	/**
+	 * Keeps the members that did not fulfill the last orders forwarded to them
+	 * out of the scheduling for a while. The wait starts at
+	 * scheduler_forward_backoff and doubles on each failure in a row, up to
+	 * {@link #MAXIMUM_BACKOFF}.
+	 */
+	public class ForwardingBackoff {
+		
+		public static final long DEFAULT_BACKOFF = 10000; // 10 seconds
+		public static final long MAXIMUM_BACKOFF = 1000 * 60 * 5; // 5 minutes
+		
+		private DateUtils dateUtils = new DateUtils();
+		private Map<String, MemberBackoff> memberBackoffs;
+		private long backoff;
+		
+		public ForwardingBackoff(Properties properties) {
+			this.memberBackoffs = new HashMap<String, MemberBackoff>();
+			this.backoff = Math.max(0, PropertiesUtil.getLong(properties,
+					ConfigurationConstants.SCHEDULER_FORWARD_BACKOFF_KEY, DEFAULT_BACKOFF));
+		}
+		
+		public synchronized void addFailedForward(String memberId) {
+			if (memberId == null) {
+				return;
+			}
+			MemberBackoff memberBackoff = this.memberBackoffs.get(memberId);
+			int failures = memberBackoff == null ? 1 : memberBackoff.getFailures() + 1;
+			long wait = Math.min(this.backoff << Math.min(failures - 1, 20), MAXIMUM_BACKOFF);
+			this.memberBackoffs.put(memberId, new MemberBackoff(failures, this.dateUtils.currentTimeMillis() + wait));
+			LOGGER.debug("Member " + memberId + " failed " + failures + " forwarded orders in a row."
+					+ " Not forwarding orders to it for " + wait + " ms.");
+		}
+		
+		public synchronized void eraseFailedForwards(String memberId) {
+			this.memberBackoffs.remove(memberId);
+		}
+		
+		public synchronized boolean isBackingOff(String memberId) {
+			MemberBackoff memberBackoff = this.memberBackoffs.get(memberId);
+			return memberBackoff != null && memberBackoff.getRetryTime() > this.dateUtils.currentTimeMillis();
+		}
+		
+		/**
+		 * @return the members orders can be forwarded to now.
+		 */
+		public synchronized List<FederationMember> filterMembers(List<FederationMember> members) {
+			if (this.memberBackoffs.isEmpty()) {
+				return members;
+			}
+			List<FederationMember> availableMembers = new ArrayList<FederationMember>();
+			for (FederationMember member : members) {
+				if (!isBackingOff(member.getId())) {
+					availableMembers.add(member);
+				}
+			}
+			return availableMembers;
+		}
+		
+		/**
+		 * @return when the first member backing off can receive orders again, or
+		 *         Long.MAX_VALUE if no member is backing off.
+		 */
+		public synchronized long getNextRetryTime() {
+			long now = this.dateUtils.currentTimeMillis();
+			long nextRetryTime = Long.MAX_VALUE;
+			for (MemberBackoff memberBackoff : this.memberBackoffs.values()) {
+				if (memberBackoff.getRetryTime() > now) {
+					nextRetryTime = Math.min(nextRetryTime, memberBackoff.getRetryTime());
+				}
+			}
+			return nextRetryTime;
+		}
+		
+		public void setDateUtils(DateUtils dateUtils) {
+			this.dateUtils = dateUtils;
+		}
+		
+		protected class MemberBackoff {
+			
+			private int failures;
+			private long retryTime;
+			
+			public MemberBackoff(int failures, long retryTime) {
+				this.failures = failures;
+				this.retryTime = retryTime;
+			}
+			
+			public int getFailures() {
+				return failures;
+			}
+			
+			public long getRetryTime() {
+				return retryTime;
+			}
+		}
+	}
 }
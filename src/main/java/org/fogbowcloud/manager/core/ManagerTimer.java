@@ -18,6 +18,10 @@ public class ManagerTimer {
 	}
 
 	public void scheduleAtFixedRate(final Runnable task, long delay, long period) {
+		if (executor.isShutdown()) {
+			LOGGER.debug("Timer already shut down, the task will not be scheduled.");
+			return;
+		}
 		this.future = executor.scheduleWithFixedDelay(new Runnable() {
 			@Override
 			public void run() {
@@ -30,6 +34,30 @@ public class ManagerTimer {
 		}, delay, period, TimeUnit.MILLISECONDS);
 	}
 
+	/**
+	 * Runs the task once, after the delay, in the same executor as the periodic
+	 * task. It does not change the periodic schedule.
+	 * 
+	 * @return the scheduled task, to cancel it before it runs, or null if the
+	 *         timer was shut down.
+	 */
+	public ScheduledFuture<?> schedule(final Runnable task, long delay) {
+		if (executor.isShutdown()) {
+			LOGGER.debug("Timer already shut down, the task will not be scheduled.");
+			return null;
+		}
+		return executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (Throwable e) {
+					LOGGER.error("Failed while executing timer task", e);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
 	public void cancel() {
 		if (future != null) {
 			future.cancel(false);
@@ -37,6 +65,15 @@ public class ManagerTimer {
 		future = null;
 	}
 
+	/**
+	 * Cancels the periodic task and stops the threads of the executor, with
+	 * the tasks scheduled to run once.
+	 */
+	public void shutdown() {
+		cancel();
+		executor.shutdownNow();
+	}
+
 	public boolean isScheduled() {
 		return future != null && !future.isCancelled();
 	}
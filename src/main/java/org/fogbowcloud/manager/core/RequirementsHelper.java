@@ -1,18 +1,17 @@
 package org.fogbowcloud.manager.core;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.fogbowcloud.manager.core.model.Flavor;
 
 import condor.classad.AttrRef;
 import condor.classad.ClassAdParser;
-import condor.classad.Env;
 import condor.classad.Expr;
 import condor.classad.Op;
-import condor.classad.RecordExpr;
 
 public class RequirementsHelper {
 	protected static final String ZERO = "0";
@@ -21,6 +20,9 @@ public class RequirementsHelper {
 	public static final String GLUE_VCPU_TERM = "Glue2vCPU";
 	public static final String GLUE_DISK_TERM = "Glue2Disk";
 	public static final String GLUE_MEM_RAM_TERM = "Glue2RAM";
+	private static final int MAX_COMPILED_REQUIREMENTS = 1000;
+	private static final ConcurrentMap<String, CompiledRequirements> COMPILED_REQUIREMENTS = 
+			new ConcurrentHashMap<String, CompiledRequirements>();
 
 	public static boolean checkSyntax(String requirementsString) {
 		if (requirementsString == null || requirementsString.isEmpty()) {
@@ -35,123 +37,46 @@ public class RequirementsHelper {
 		return false;
 	}
 
-	public static String getSmallestValueForAttribute(String requirementsStr, String attrName) {
-		if (requirementsStr == null) {
-			return ZERO;
-		}
-		ClassAdParser classAdParser = new ClassAdParser(requirementsStr);
-		Expr parsedClassAd = classAdParser.parse();
-		if (!(parsedClassAd instanceof Op)) {
-			return ZERO;
-		}
-		Op expr = (Op) parsedClassAd;		
-		Expr variableExpression = extractVariableExpression(expr, attrName);
-		if (variableExpression == null || !(variableExpression instanceof Op)) {
-			return ZERO;
-		}
-		Op opForAtt = (Op) variableExpression;
-		
-		List<Integer> values = new ArrayList<Integer>();
-		List<ValueAndOperator> findValuesInRequiremets = findValuesInRequiremets(expr, attrName);
-		for (ValueAndOperator valueAndOperator : findValuesInRequiremets) {
-			int value = Integer.parseInt(valueAndOperator.getValue());
-			if (checkValue(opForAtt, attrName, String.valueOf(value - 1))) {
-				values.add(value - 1);
-			} else if (checkValue(opForAtt, attrName, String.valueOf(value))) {
-				values.add(value);
-			} else if (checkValue(opForAtt, attrName, String.valueOf(value + 1))) {
-				values.add(value + 1);
+	/**
+	 * @return the requirements parsed, shared with the other callers that
+	 *         evaluate the same requirements
+	 */
+	public static CompiledRequirements compile(String requirementsStr) {
+		String key = requirementsStr == null ? "" : requirementsStr;
+		CompiledRequirements compiledRequirements = COMPILED_REQUIREMENTS.get(key);
+		if (compiledRequirements == null) {
+			if (COMPILED_REQUIREMENTS.size() >= MAX_COMPILED_REQUIREMENTS) {
+				COMPILED_REQUIREMENTS.clear();
+			}
+			compiledRequirements = new CompiledRequirements(requirementsStr);
+			CompiledRequirements previous = COMPILED_REQUIREMENTS.putIfAbsent(key, compiledRequirements);
+			if (previous != null) {
+				compiledRequirements = previous;
 			}
 		}
-		
-		Collections.sort(values);
-		
-		if (values.size() > 0) {
-			return String.valueOf(values.get(0));			
-		}
-		return ZERO;
+		return compiledRequirements;
 	}
-	
-	private static boolean checkValue(Op op, String attrName, String value) {
-		Env env = new Env();
-		env.push((RecordExpr) new ClassAdParser("[" + attrName + " = " + value + "]").parse());
-		return op.eval(env).isTrue();		
+
+	public static String getSmallestValueForAttribute(String requirementsStr, String attrName) {
+		return compile(requirementsStr).getSmallestValueForAttribute(attrName);
 	}
 	
 	public static boolean matches(Flavor flavor, String requirementsStr) {
-		try {
-			if (requirementsStr == null  || requirementsStr.isEmpty()) {
-				return true;
-			}
-			
-			ClassAdParser classAdParser = new ClassAdParser(requirementsStr);		
-			Op expr = (Op) classAdParser.parse();
-			
-			List<String> listAttrSearched = new ArrayList<String>();
-			List<String> listAttrProvided = new ArrayList<String>();
-			listAttrProvided.add(RequirementsHelper.GLUE_DISK_TERM);
-			listAttrProvided.add(RequirementsHelper.GLUE_MEM_RAM_TERM);
-			listAttrProvided.add(RequirementsHelper.GLUE_VCPU_TERM);
-			
-			Env env = new Env();
-			String value = null;
-			for (String attr : listAttrProvided) {
-				List<ValueAndOperator> findValuesInRequiremets = findValuesInRequiremets(expr, attr);
-				if (findValuesInRequiremets.size() > 0) {
-					listAttrSearched.add(attr);
-					if (attr.equals(RequirementsHelper.GLUE_DISK_TERM) 
-							&& requirementsStr.contains(RequirementsHelper.GLUE_DISK_TERM)) {
-						value = flavor.getDisk();
-						if (value == null || 
-								(value != null && value.equals(VALUE_IGNORED) || value.isEmpty())) {
-							listAttrSearched.remove(attr);							
-						}
-					} else if (attr.equals(RequirementsHelper.GLUE_MEM_RAM_TERM) 
-							&& requirementsStr.contains(RequirementsHelper.GLUE_MEM_RAM_TERM)) {
-						value = flavor.getMem();
-						if (value == null || 
-								value != null && (value.equals(VALUE_IGNORED) || value.isEmpty())) {
-							listAttrSearched.remove(attr);							
-						}
-					} else if (attr.equals(RequirementsHelper.GLUE_VCPU_TERM) 
-							&& requirementsStr.contains(RequirementsHelper.GLUE_VCPU_TERM)) {
-						value = flavor.getCpu();
-						if (value == null || 
-								value != null && (value.equals(VALUE_IGNORED) || value.isEmpty())) {
-							listAttrSearched.remove(attr);
-						}
-					}
-					env.push((RecordExpr) new ClassAdParser("[" + attr + " = " + value + "]").parse());
-				}
-			}					
-			
-			if (listAttrSearched.isEmpty()) {
-				return true;
-			}
-			expr = extractVariablesExpression(expr, listAttrSearched);
-			
-			return expr.eval(env).isTrue();
-		} catch (Exception e) {
-			return true;
-		}
+		return compile(requirementsStr).matches(flavor);
 	}
 	
 	public static Flavor findSmallestFlavor(List<Flavor> flavors, String requirementsStr) {
-		List<Flavor> listFlavor = new ArrayList<Flavor>();
-		for (Flavor flavor : flavors) {
-			if (matches(flavor, requirementsStr)) {
-				listFlavor.add(flavor);
-			}
-		}
-
-		if (listFlavor.isEmpty()) {
-			return null;
-		}
-
-		Collections.sort(listFlavor, new FlavorComparator());
+		return compile(requirementsStr).findSmallestFlavor(flavors);
+	}
 
-		return listFlavor.get(0);
-	}	
+	/**
+	 * @param sortedFlavors
+	 *            flavors sorted with {@link FlavorComparator}
+	 * @return the first flavor that matches the requirements
+	 */
+	public static Flavor findFirstMatchingFlavor(List<Flavor> sortedFlavors, String requirementsStr) {
+		return compile(requirementsStr).findFirstMatchingFlavor(sortedFlavors);
+	}
 	
 	public static Op extractVariableExpression(Op expr, String attName) {
 		if (expr.arg1 instanceof AttrRef) {
@@ -229,24 +154,7 @@ public class RequirementsHelper {
 	}
 	
 	public static boolean matchLocation(String requirementsStr, String valueLocation) {
-		if (!RequirementsHelper.hasLocation(requirementsStr)) {
-			return true;
-		}
-		
-		ClassAdParser classAdParser = new ClassAdParser(requirementsStr);
-		Op expr = (Op) classAdParser.parse();
-
-		valueLocation = quoteLocation(valueLocation);
-		Env env = new Env();
-		env.push((RecordExpr) new ClassAdParser("[" + GLUE_LOCATION_TERM + " = " + valueLocation
-				+ "]").parse());
-
-		Expr opForAtt = extractVariableExpression(expr, GLUE_LOCATION_TERM);
-		
-		if (opForAtt == null) {
-			return false;
-		}
-		return opForAtt.eval(env).isTrue(); 
+		return compile(requirementsStr).matchLocation(valueLocation);
 	}
 
 	public static List<ValueAndOperator> findValuesInRequiremets(Op expr, String attName) {
@@ -276,32 +184,11 @@ public class RequirementsHelper {
 	}
 
 	public static List<String> getLocations(String requirementsStr) {
-		List<String> locations = new ArrayList<String>();
-		if (requirementsStr == null || requirementsStr.isEmpty()) {
-			return locations;
-		}
-		ClassAdParser classAdParser = new ClassAdParser(requirementsStr);
-		Expr parsedClassAd = classAdParser.parse();
-		if (!(parsedClassAd instanceof Op)) {
-			return locations;
-		}
-		Op expr = (Op) parsedClassAd;
-		List<ValueAndOperator> findValuesInRequiremets = findValuesInRequiremets(expr,
-				GLUE_LOCATION_TERM);
-		for (ValueAndOperator valueAndOperator : findValuesInRequiremets) {
-			if (valueAndOperator.getOperator() == RecordExpr.EQUAL) {
-				locations.add(valueAndOperator.getValue());
-			}
-		}
-		return locations;
+		return compile(requirementsStr).getLocations();
 	}
 	
 	public static boolean hasLocation(String requirementsStr) {
-		List<String> locationsInRequiremets = getLocations(requirementsStr);
-		if (locationsInRequiremets.isEmpty()) {
-			return false;
-		}
-		return true;
+		return compile(requirementsStr).hasLocation();
 	}
 
 	protected static class ValueAndOperator {
@@ -322,23 +209,39 @@ public class RequirementsHelper {
 		}
 	}
 
-	protected static class FlavorComparator implements Comparator<Flavor> {
+	public static class FlavorComparator implements Comparator<Flavor> {
 		private final int MEM_VALUE_RELEVANCE = 1;
 		private final int VCPU_VALUE_RELEVANCE = 1;
 
+		/**
+		 * Flavors whose values do not parse go after all the others, so the
+		 * order stays consistent whatever flavors are compared.
+		 */
 		@Override
 		public int compare(Flavor flavorOne, Flavor flavorTwo) {
+			boolean oneComparable = isComparable(flavorOne);
+			boolean twoComparable = isComparable(flavorTwo);
+			if (!oneComparable || !twoComparable) {
+				return Boolean.compare(twoComparable, oneComparable);
+			}
+			Double oneRelevance = calculateRelevance(flavorOne, flavorTwo);
+			Double twoRelevance = calculateRelevance(flavorTwo, flavorOne);
+			if (oneRelevance.doubleValue() != twoRelevance.doubleValue()) {
+				return oneRelevance.compareTo(twoRelevance);
+			}	
+			Double oneDisk = Double.parseDouble(flavorOne.getDisk());
+			Double twoDisk = Double.parseDouble(flavorTwo.getDisk());
+			return oneDisk.compareTo(twoDisk);
+		}
+
+		private static boolean isComparable(Flavor flavor) {
 			try {
-				Double oneRelevance = calculateRelevance(flavorOne, flavorTwo);
-				Double twoRelevance = calculateRelevance(flavorTwo, flavorOne);
-				if (oneRelevance.doubleValue() != twoRelevance.doubleValue()) {
-					return oneRelevance.compareTo(twoRelevance);
-				}	
-				Double oneDisk = Double.parseDouble(flavorOne.getDisk());
-				Double twoDisk = Double.parseDouble(flavorTwo.getDisk());
-				return oneDisk.compareTo(twoDisk);
+				Double.parseDouble(flavor.getCpu());
+				Double.parseDouble(flavor.getMem());
+				Double.parseDouble(flavor.getDisk());
+				return true;
 			} catch (Exception e) {
-				return 0;
+				return false;
 			}
 		}
 
@@ -0,0 +1,246 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.ResourcesInfo;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+
+/**
+ * Snapshots of the resources of the local cloud, by local credentials. A
+ * snapshot younger than the TTL is returned as is. An older snapshot is still
+ * returned while a new one is loaded in background, unless it is older than
+ * the max staleness, when the caller waits for the new snapshot. Snapshots
+ * neither loaded nor requested within the max staleness are evicted, so the
+ * credentials no longer used do not pile up.
+ */
+public class ResourcesInfoCache {
+
+	protected static final long DEFAULT_TTL = 30000; // 30 seconds
+	protected static final long DEFAULT_MAX_STALENESS = 300000; // 5 minutes
+
+	private static final Logger LOGGER = Logger.getLogger(ResourcesInfoCache.class);
+
+	public interface Loader {
+
+		public ResourcesInfo load(Map<String, String> credentials);
+
+	}
+
+	private final Loader loader;
+	private final Executor refreshExecutor;
+	private final long ttl;
+	private final long maxStaleness;
+	private final Map<Map<String, String>, Snapshot> snapshots = new HashMap<Map<String, String>, Snapshot>();
+	private long lastEvictionTime;
+	private DateUtils dateUtils = new DateUtils();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+
+	public ResourcesInfoCache(Loader loader, Properties properties) {
+		this(loader, properties, createRefreshExecutor());
+	}
+
+	protected ResourcesInfoCache(Loader loader, Properties properties, Executor refreshExecutor) {
+		this.loader = loader;
+		this.refreshExecutor = refreshExecutor;
+		this.ttl = PropertiesUtil.getLong(properties, ConfigurationConstants.RESOURCES_INFO_CACHE_TTL_KEY,
+				DEFAULT_TTL);
+		this.maxStaleness = Math.max(ttl, PropertiesUtil.getLong(properties,
+				ConfigurationConstants.RESOURCES_INFO_CACHE_MAX_STALENESS_KEY, DEFAULT_MAX_STALENESS));
+	}
+
+	public static boolean isEnabled(Properties properties) {
+		return Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.RESOURCES_INFO_CACHE_ENABLED_KEY));
+	}
+
+	public ResourcesInfo get(Map<String, String> credentials) {
+		if (credentials == null) {
+			return loader.load(credentials);
+		}
+		final Map<String, String> key = new HashMap<String, String>(credentials);
+		Snapshot snapshot = getSnapshot(key);
+
+		long age = dateUtils.currentTimeMillis() - snapshot.getLoadTime();
+		ResourcesInfo resourcesInfo = snapshot.getResourcesInfo();
+		if (resourcesInfo != null && age < ttl) {
+			hits.incrementAndGet();
+			return copy(resourcesInfo);
+		}
+		if (resourcesInfo != null && age < maxStaleness) {
+			staleHits.incrementAndGet();
+			if (snapshot.startRefresh()) {
+				final Snapshot refreshing = snapshot;
+				try {
+					refreshExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								load(key, refreshing);
+							} catch (Throwable e) {
+								LOGGER.warn("Could not refresh resources info snapshot.", e);
+							}
+						}
+					});
+				} catch (Exception e) {
+					refreshing.endRefresh();
+					LOGGER.warn("Could not schedule resources info refresh.", e);
+				}
+			}
+			return copy(resourcesInfo);
+		}
+		return copy(load(key, snapshot));
+	}
+
+	public void invalidate(Map<String, String> credentials) {
+		if (credentials != null) {
+			synchronized (snapshots) {
+				snapshots.remove(new HashMap<String, String>(credentials));
+			}
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getStaleHits() {
+		return staleHits.get();
+	}
+
+	public long getLoads() {
+		return loads.get();
+	}
+
+	protected void setDateUtils(DateUtils dateUtils) {
+		this.dateUtils = dateUtils;
+	}
+
+	protected int size() {
+		synchronized (snapshots) {
+			return snapshots.size();
+		}
+	}
+
+	private Snapshot getSnapshot(Map<String, String> key) {
+		long now = dateUtils.currentTimeMillis();
+		synchronized (snapshots) {
+			if (now - lastEvictionTime >= maxStaleness) {
+				evictStaleSnapshots(now);
+			}
+			Snapshot snapshot = snapshots.get(key);
+			if (snapshot == null) {
+				snapshot = new Snapshot();
+				snapshots.put(key, snapshot);
+			}
+			snapshot.setAccessTime(now);
+			return snapshot;
+		}
+	}
+
+	/**
+	 * Removes the snapshots that could only be returned after a new load. A
+	 * caller still using one of them keeps it, and the next caller gets a new
+	 * snapshot.
+	 */
+	private void evictStaleSnapshots(long now) {
+		lastEvictionTime = now;
+		Iterator<Snapshot> iterator = snapshots.values().iterator();
+		while (iterator.hasNext()) {
+			Snapshot snapshot = iterator.next();
+			if (now - Math.max(snapshot.getLoadTime(), snapshot.getAccessTime()) >= maxStaleness) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Loads only once at a time for the same credentials, the callers
+	 * waiting for a load get its result.
+	 */
+	private ResourcesInfo load(Map<String, String> credentials, Snapshot snapshot) {
+		long requestTime = dateUtils.currentTimeMillis();
+		synchronized (snapshot) {
+			try {
+				if (snapshot.getResourcesInfo() != null && snapshot.getLoadTime() >= requestTime) {
+					return snapshot.getResourcesInfo();
+				}
+				loads.incrementAndGet();
+				ResourcesInfo resourcesInfo = loader.load(credentials);
+				if (resourcesInfo != null) {
+					snapshot.setResourcesInfo(resourcesInfo, dateUtils.currentTimeMillis());
+				}
+				return resourcesInfo;
+			} finally {
+				snapshot.endRefresh();
+			}
+		}
+	}
+
+	private static ResourcesInfo copy(ResourcesInfo resourcesInfo) {
+		if (resourcesInfo == null) {
+			return null;
+		}
+		return new ResourcesInfo(resourcesInfo.getId(), resourcesInfo.getCpuIdle(),
+				resourcesInfo.getCpuInUse(), resourcesInfo.getMemIdle(), resourcesInfo.getMemInUse(),
+				resourcesInfo.getInstancesIdle(), resourcesInfo.getInstancesInUse(),
+				resourcesInfo.getCpuInUseByUser(), resourcesInfo.getMemInUseByUser(),
+				resourcesInfo.getInstancesInUseByUser());
+	}
+
+	private static Executor createRefreshExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static class Snapshot {
+
+		private volatile ResourcesInfo resourcesInfo;
+		private volatile long loadTime;
+		private volatile long accessTime;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		public ResourcesInfo getResourcesInfo() {
+			return resourcesInfo;
+		}
+
+		public long getLoadTime() {
+			return loadTime;
+		}
+
+		public long getAccessTime() {
+			return accessTime;
+		}
+
+		public void setAccessTime(long accessTime) {
+			this.accessTime = accessTime;
+		}
+
+		public void setResourcesInfo(ResourcesInfo resourcesInfo, long loadTime) {
+			this.resourcesInfo = resourcesInfo;
+			this.loadTime = loadTime;
+		}
+
+		public boolean startRefresh() {
+			return refreshing.compareAndSet(false, true);
+		}
+
+		public void endRefresh() {
+			refreshing.set(false);
+		}
+	}
+}
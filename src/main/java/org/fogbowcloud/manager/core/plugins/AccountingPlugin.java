@@ -2,6 +2,7 @@ package org.fogbowcloud.manager.core.plugins;
 
 import java.util.List;
 
+import org.fogbowcloud.manager.core.plugins.accounting.AccountingAggregate;
 import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
 import org.fogbowcloud.manager.occi.order.Order;
 
@@ -11,6 +12,18 @@ public interface AccountingPlugin {
 
 	public List<AccountingInfo> getAccountingInfo();
 	
+	/**
+	 * @return the usage accounted from startTime (inclusive) to endTime
+	 *         (exclusive), in milliseconds since the epoch
+	 */
+	public List<AccountingInfo> getAccountingInfo(long startTime, long endTime);
+	
 	public AccountingInfo getAccountingInfo(String user, String requestingMember, String providingMember);
+	
+	/**
+	 * @return the totals of the accounting kept in memory, or null if the
+	 *         plugin does not keep them
+	 */
+	public AccountingAggregate getAccountingAggregate();
 
 }
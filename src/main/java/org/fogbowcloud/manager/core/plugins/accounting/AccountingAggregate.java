@@ -0,0 +1,166 @@
+package org.fogbowcloud.manager.core.plugins.accounting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory totals of the accounting entries, kept by the accounting plugins
+ * as they account usage. It answers the usage between two members and the
+ * donations and consumptions of a member without going through all the
+ * entries.
+ */
+public class AccountingAggregate {
+
+	private final Map<AccountingEntryKey, AccountingInfo> entries = new LinkedHashMap<AccountingEntryKey, AccountingInfo>();
+	// requesting member -> providing member -> usage
+	private final Map<String, Map<String, double[]>> usageByRequestingMember = new HashMap<String, Map<String, double[]>>();
+	// providing member -> requesting member -> usage
+	private final Map<String, Map<String, double[]>> usageByProvidingMember = new HashMap<String, Map<String, double[]>>();
+	private final Map<String, double[]> totalByProvidingMember = new HashMap<String, double[]>();
+	private double totalUsage;
+
+	public AccountingAggregate() {
+	}
+
+	public AccountingAggregate(List<AccountingInfo> accounting) {
+		add(accounting);
+	}
+
+	public synchronized void add(List<AccountingInfo> accounting) {
+		if (accounting == null) {
+			return;
+		}
+		for (AccountingInfo accountingInfo : accounting) {
+			add(accountingInfo);
+		}
+	}
+
+	public synchronized void add(AccountingInfo accountingInfo) {
+		String requestingMember = accountingInfo.getRequestingMember();
+		String providingMember = accountingInfo.getProvidingMember();
+		double usage = accountingInfo.getUsage();
+
+		AccountingEntryKey key = new AccountingEntryKey(accountingInfo.getUser(), requestingMember,
+				providingMember);
+		AccountingInfo entry = entries.get(key);
+		if (entry == null) {
+			entry = new AccountingInfo(accountingInfo.getUser(), requestingMember, providingMember);
+			entries.put(key, entry);
+		}
+		entry.addConsumption(usage);
+
+		getCounter(usageByRequestingMember, requestingMember, providingMember)[0] += usage;
+		getCounter(usageByProvidingMember, providingMember, requestingMember)[0] += usage;
+		getCounter(totalByProvidingMember, providingMember)[0] += usage;
+		totalUsage += usage;
+	}
+
+	/**
+	 * @return the entries with some usage to add, or not accounted yet
+	 */
+	public synchronized List<AccountingInfo> getChangedEntries(Collection<AccountingInfo> accounting) {
+		List<AccountingInfo> changedEntries = new ArrayList<AccountingInfo>();
+		for (AccountingInfo accountingInfo : accounting) {
+			if (accountingInfo.getUsage() != 0 || !entries.containsKey(new AccountingEntryKey(
+					accountingInfo.getUser(), accountingInfo.getRequestingMember(),
+					accountingInfo.getProvidingMember()))) {
+				changedEntries.add(accountingInfo);
+			}
+		}
+		return changedEntries;
+	}
+
+	/**
+	 * @return the usage of resources of providingMember by users of requestingMember
+	 */
+	public synchronized double getUsage(String requestingMember, String providingMember) {
+		Map<String, double[]> usageByProvider = usageByRequestingMember.get(requestingMember);
+		if (usageByProvider == null || !usageByProvider.containsKey(providingMember)) {
+			return 0;
+		}
+		return usageByProvider.get(providingMember)[0];
+	}
+
+	public synchronized double getTotalProvidedBy(String providingMember) {
+		double[] total = totalByProvidingMember.get(providingMember);
+		return total == null ? 0 : total[0];
+	}
+
+	public synchronized double getTotalUsage() {
+		return totalUsage;
+	}
+
+	/**
+	 * @return how much localMemberId consumed from and donated to each member
+	 *         it has accounting entries with
+	 */
+	public synchronized Map<String, ResourceUsage> getMembersUsage(String localMemberId) {
+		Map<String, ResourceUsage> membersUsage = new HashMap<String, ResourceUsage>();
+		Map<String, double[]> consumedFrom = usageByRequestingMember.get(localMemberId);
+		if (consumedFrom != null) {
+			for (Map.Entry<String, double[]> entry : consumedFrom.entrySet()) {
+				getResourceUsage(membersUsage, entry.getKey()).addConsumption(entry.getValue()[0]);
+			}
+		}
+		Map<String, double[]> donatedTo = usageByProvidingMember.get(localMemberId);
+		if (donatedTo != null) {
+			for (Map.Entry<String, double[]> entry : donatedTo.entrySet()) {
+				getResourceUsage(membersUsage, entry.getKey()).addDonation(entry.getValue()[0]);
+			}
+		}
+		return membersUsage;
+	}
+
+	public synchronized AccountingInfo getAccountingInfo(String user, String requestingMember,
+			String providingMember) {
+		AccountingInfo entry = entries.get(new AccountingEntryKey(user, requestingMember, providingMember));
+		return entry == null ? null : copy(entry);
+	}
+
+	public synchronized List<AccountingInfo> getAccountingInfo() {
+		List<AccountingInfo> accounting = new ArrayList<AccountingInfo>();
+		for (AccountingInfo entry : entries.values()) {
+			accounting.add(copy(entry));
+		}
+		return accounting;
+	}
+
+	private static ResourceUsage getResourceUsage(Map<String, ResourceUsage> membersUsage, String memberId) {
+		ResourceUsage resourceUsage = membersUsage.get(memberId);
+		if (resourceUsage == null) {
+			resourceUsage = new ResourceUsage(memberId);
+			membersUsage.put(memberId, resourceUsage);
+		}
+		return resourceUsage;
+	}
+
+	private static double[] getCounter(Map<String, Map<String, double[]>> counters, String firstKey,
+			String secondKey) {
+		Map<String, double[]> innerCounters = counters.get(firstKey);
+		if (innerCounters == null) {
+			innerCounters = new HashMap<String, double[]>();
+			counters.put(firstKey, innerCounters);
+		}
+		return getCounter(innerCounters, secondKey);
+	}
+
+	private static double[] getCounter(Map<String, double[]> counters, String key) {
+		double[] counter = counters.get(key);
+		if (counter == null) {
+			counter = new double[1];
+			counters.put(key, counter);
+		}
+		return counter;
+	}
+
+	private static AccountingInfo copy(AccountingInfo accountingInfo) {
+		AccountingInfo copy = new AccountingInfo(accountingInfo.getUser(),
+				accountingInfo.getRequestingMember(), accountingInfo.getProvidingMember());
+		copy.addConsumption(accountingInfo.getUsage());
+		return copy;
+	}
+}
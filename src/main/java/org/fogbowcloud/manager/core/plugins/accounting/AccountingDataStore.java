@@ -1,19 +1,17 @@
 package org.fogbowcloud.manager.core.plugins.accounting;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DataStoreConnectionPool;
 import org.fogbowcloud.manager.occi.DataStoreHelper;
 
 public class AccountingDataStore {
@@ -26,16 +24,35 @@ public class AccountingDataStore {
 	protected static final String REQUESTING_MEMBER_COL = "requesting_member";
 	protected static final String PROVIDING_MEMBER_COL = "providing_member";
 	protected static final String USAGE_COL = "usage";
+	protected static final String HISTORY_TABLE_NAME = "usage_history";
+	protected static final String BUCKET_SIZE_COL = "bucket_size";
+	protected static final String BUCKET_START_COL = "bucket_start";
+	
+	public static final long MINUTE_BUCKET = 60 * 1000;
+	public static final long HOUR_BUCKET = 60 * MINUTE_BUCKET;
+	public static final long DAY_BUCKET = 24 * HOUR_BUCKET;
+	protected static final long[] BUCKET_SIZES = new long[] { DAY_BUCKET, HOUR_BUCKET, MINUTE_BUCKET };
+	// minute and hour buckets older than that are removed, the day buckets are kept
+	protected static final long MINUTE_BUCKETS_RETENTION = 2 * DAY_BUCKET;
+	protected static final long HOUR_BUCKETS_RETENTION = 90 * DAY_BUCKET;
 	protected static final String DEFAULT_DATASTORE_NAME = "datastore_accounting.slite";
 	protected static final String ERROR_WHILE_INITIALIZING_THE_DATA_STORE = 
 			"Error while initializing the Accouting DataStore.";
 
+	private static final String SELECT_LAST_HISTORY_UPDATE_SQL = "SELECT MAX(bucket_start) FROM "
+			+ HISTORY_TABLE_NAME + " WHERE bucket_size = " + MINUTE_BUCKET;
+
 	private String dataStoreURL;
+	private DataStoreConnectionPool connectionPool;
+	// time of the last update, the retention of the history is relative to it
+	private volatile long lastHistoryUpdate;
 
 	public static final Logger LOGGER = Logger.getLogger(AccountingDataStore.class);
 	
 	public AccountingDataStore(Properties properties, String defaultDatastoreNamePrefix) {		
 		setDataStoreURL(properties, defaultDatastoreNamePrefix);
+		this.connectionPool = DataStoreConnectionPool.getPool(dataStoreURL,
+				DataStoreConnectionPool.getMaxSize(properties));
 
 		Statement statement = null;
 		Connection connection = null;
@@ -54,7 +71,23 @@ public class AccountingDataStore {
 							+ "usage DOUBLE,"
 							+ "PRIMARY KEY (user, requesting_member, providing_member)"
 							+ ")");
-			statement.close();
+			statement.execute("CREATE TABLE IF NOT EXISTS usage_history("
+							+ "bucket_size BIGINT NOT NULL, "
+							+ "bucket_start BIGINT NOT NULL, "
+							+ "user VARCHAR(255) NOT NULL, "
+							+ "requesting_member VARCHAR(255) NOT NULL, "
+							+ "providing_member VARCHAR(255) NOT NULL, "
+							+ "usage DOUBLE,"
+							+ "PRIMARY KEY (bucket_size, bucket_start, user, requesting_member, providing_member)"
+							+ ")");
+			ResultSet rs = statement.executeQuery(SELECT_LAST_HISTORY_UPDATE_SQL);
+			try {
+				if (rs.next()) {
+					lastHistoryUpdate = rs.getLong(1);
+				}
+			} finally {
+				rs.close();
+			}
 		} catch (Exception e) {
 			LOGGER.error(ERROR_WHILE_INITIALIZING_THE_DATA_STORE, e);
 			throw new Error(ERROR_WHILE_INITIALIZING_THE_DATA_STORE, e);
@@ -66,10 +99,31 @@ public class AccountingDataStore {
 	private static final String UPDATE_MEMBER_USAGE_SQL = "UPDATE " + USAGE_TABLE_NAME
 			+ " SET usage = usage + ? WHERE user = ? AND requesting_member = ? AND providing_member = ?";
 	
-	private static final String INSERT_MEMBER_USAGE_SQL = "INSERT INTO " + USAGE_TABLE_NAME
-			+ " VALUES(?, ?, ?, ?)";
+	// the usage is added by the update statement, so new entries start with zero
+	private static final String INSERT_MEMBER_USAGE_SQL = "INSERT OR IGNORE INTO " + USAGE_TABLE_NAME
+			+ " VALUES(?, ?, ?, 0)";
+	
+	private static final String UPDATE_HISTORY_USAGE_SQL = "UPDATE " + HISTORY_TABLE_NAME
+			+ " SET usage = usage + ? WHERE bucket_size = ? AND bucket_start = ? AND user = ?"
+			+ " AND requesting_member = ? AND providing_member = ?";
+	
+	private static final String INSERT_HISTORY_USAGE_SQL = "INSERT OR IGNORE INTO " + HISTORY_TABLE_NAME
+			+ " VALUES(?, ?, ?, ?, ?, 0)";
+	
+	private static final String DELETE_OLD_HISTORY_SQL = "DELETE FROM " + HISTORY_TABLE_NAME
+			+ " WHERE bucket_size = ? AND bucket_start < ?";
 	
 	public boolean update(List<AccountingInfo> usage) {
+		return update(usage, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Adds the usage of each entry to the accounting, creating the entries
+	 * that do not exist yet. The usage is also added to the minute, hour and
+	 * day buckets of the history that contain time. All entries are written in
+	 * one transaction, and none is written if any of them is invalid.
+	 */
+	public boolean update(List<AccountingInfo> usage, long time) {
 		LOGGER.debug("Updating usage into database.");
 		LOGGER.debug("Usage=" + usage);
 
@@ -77,9 +131,19 @@ public class AccountingDataStore {
 			LOGGER.warn("Members and users must not be null.");
 			return false;
 		}
+		for (AccountingInfo accountingInfo : usage) {
+			if (accountingInfo.getUser() == null || accountingInfo.getRequestingMember() == null
+					|| accountingInfo.getProvidingMember() == null) {
+				LOGGER.warn("Members and users must not be null. AccountingInfo=" + accountingInfo);
+				return false;
+			}
+		}
 		
 		PreparedStatement updateMemberStatement = null;
 		PreparedStatement insertMemberStatement = null;
+		PreparedStatement updateHistoryStatement = null;
+		PreparedStatement insertHistoryStatement = null;
+		PreparedStatement deleteHistoryStatement = null;
 		
 		Connection connection = null;
 
@@ -89,17 +153,49 @@ public class AccountingDataStore {
 
 			insertMemberStatement = connection.prepareStatement(INSERT_MEMBER_USAGE_SQL);
 			updateMemberStatement = connection.prepareStatement(UPDATE_MEMBER_USAGE_SQL);
+			insertHistoryStatement = connection.prepareStatement(INSERT_HISTORY_USAGE_SQL);
+			updateHistoryStatement = connection.prepareStatement(UPDATE_HISTORY_USAGE_SQL);
+			deleteHistoryStatement = connection.prepareStatement(DELETE_OLD_HISTORY_SQL);
 		
-			addMemberStatements(usage, updateMemberStatement, insertMemberStatement);
+			for (AccountingInfo accountingInfo : usage) {
+				insertMemberStatement.setString(1, accountingInfo.getUser());
+				insertMemberStatement.setString(2, accountingInfo.getRequestingMember());
+				insertMemberStatement.setString(3, accountingInfo.getProvidingMember());
+				insertMemberStatement.addBatch();
+
+				updateMemberStatement.setDouble(1, accountingInfo.getUsage());
+				updateMemberStatement.setString(2, accountingInfo.getUser());
+				updateMemberStatement.setString(3, accountingInfo.getRequestingMember());
+				updateMemberStatement.setString(4, accountingInfo.getProvidingMember());
+				updateMemberStatement.addBatch();
+				
+				if (accountingInfo.getUsage() != 0) {
+					addHistoryStatements(accountingInfo, time, insertHistoryStatement,
+							updateHistoryStatement);
+				}
+			}
+			
+			deleteHistoryStatement.setLong(1, MINUTE_BUCKET);
+			deleteHistoryStatement.setLong(2, getBucketStart(time - MINUTE_BUCKETS_RETENTION, MINUTE_BUCKET));
+			deleteHistoryStatement.addBatch();
+			deleteHistoryStatement.setLong(1, HOUR_BUCKET);
+			deleteHistoryStatement.setLong(2, getBucketStart(time - HOUR_BUCKETS_RETENTION, HOUR_BUCKET));
+			deleteHistoryStatement.addBatch();
 
 			if (hasBatchExecutionError(insertMemberStatement.executeBatch())
-					| hasBatchExecutionError(updateMemberStatement.executeBatch())) {
+					| hasBatchExecutionError(updateMemberStatement.executeBatch())
+					| hasBatchExecutionError(insertHistoryStatement.executeBatch())
+					| hasBatchExecutionError(updateHistoryStatement.executeBatch())
+					| hasBatchExecutionError(deleteHistoryStatement.executeBatch())) {
 				LOGGER.debug("Rollback will be executed.");
 				connection.rollback();
 				return false;
 			}
 
 			connection.commit();
+			if (time > lastHistoryUpdate) {
+				lastHistoryUpdate = time;
+			}
 			return true;
 		} catch (SQLException e) {
 			LOGGER.error("Couldn't account usage.", e);
@@ -112,12 +208,39 @@ public class AccountingDataStore {
 			}
 			return false;
 		} finally {
-			List<Statement> statements = Arrays.asList(
-					new Statement[] { updateMemberStatement, insertMemberStatement });
+			List<Statement> statements = Arrays.asList(new Statement[] { updateMemberStatement,
+					insertMemberStatement, updateHistoryStatement, insertHistoryStatement,
+					deleteHistoryStatement });
 			close(statements, connection);
 		}
 	}
 	
+	private void addHistoryStatements(AccountingInfo accountingInfo, long time,
+			PreparedStatement insertHistoryStatement, PreparedStatement updateHistoryStatement)
+			throws SQLException {
+		for (long bucketSize : BUCKET_SIZES) {
+			long bucketStart = getBucketStart(time, bucketSize);
+			insertHistoryStatement.setLong(1, bucketSize);
+			insertHistoryStatement.setLong(2, bucketStart);
+			insertHistoryStatement.setString(3, accountingInfo.getUser());
+			insertHistoryStatement.setString(4, accountingInfo.getRequestingMember());
+			insertHistoryStatement.setString(5, accountingInfo.getProvidingMember());
+			insertHistoryStatement.addBatch();
+
+			updateHistoryStatement.setDouble(1, accountingInfo.getUsage());
+			updateHistoryStatement.setLong(2, bucketSize);
+			updateHistoryStatement.setLong(3, bucketStart);
+			updateHistoryStatement.setString(4, accountingInfo.getUser());
+			updateHistoryStatement.setString(5, accountingInfo.getRequestingMember());
+			updateHistoryStatement.setString(6, accountingInfo.getProvidingMember());
+			updateHistoryStatement.addBatch();
+		}
+	}
+	
+	protected static long getBucketStart(long time, long bucketSize) {
+		return time - (time % bucketSize);
+	}
+	
 	private boolean hasBatchExecutionError(int[] executeBatch) {
 		for (int i : executeBatch) {
 			if (i == PreparedStatement.EXECUTE_FAILED) {
@@ -126,63 +249,11 @@ public class AccountingDataStore {
 		}
 		return false;
 	}
-	
-	private void addMemberStatements(List<AccountingInfo> usage,
-			PreparedStatement updateMemberStatement, PreparedStatement insertMemberStatement)
-			throws SQLException {
-		
-		List<AccountingEntryKey> entryKeys = getEntryKeys();
-
-		LOGGER.debug("Database entry keys=" + entryKeys);
-		
-		// preprocessing data
-		Map<AccountingEntryKey, AccountingInfo> processedUsage = new HashMap<AccountingEntryKey, AccountingInfo>();
-		
-		for (AccountingInfo accountingInfo : usage) {
-			// insert operation
-			AccountingEntryKey currentKey = new AccountingEntryKey(accountingInfo.getUser(), accountingInfo
-					.getRequestingMember(), accountingInfo.getProvidingMember());
-			if (!entryKeys.contains(currentKey)) {
-
-				if (processedUsage.containsKey(currentKey)) {
-					processedUsage.get(currentKey).addConsumption(accountingInfo.getUsage());
-				} else {
-					processedUsage.put(currentKey, accountingInfo);
-				}				
-			} else { // update operation
-				processedUsage.put(currentKey, accountingInfo);
-			}
-		}
-		
-		// creating statements
-		for (AccountingEntryKey currentKey : processedUsage.keySet()) {
-			AccountingInfo accountingEntry = processedUsage.get(currentKey);
-			// inserting new usage entry
-			if (!entryKeys.contains(currentKey)) {
-
-				LOGGER.debug("New accountingEntry=" + accountingEntry);
-				insertMemberStatement.setString(1, accountingEntry.getUser());
-				insertMemberStatement.setString(2, accountingEntry.getRequestingMember());
-				insertMemberStatement.setString(3, accountingEntry.getProvidingMember());
-				insertMemberStatement.setDouble(4, accountingEntry.getUsage());
-				insertMemberStatement.addBatch();
-				
-			} else { // updating an existing entry
-				LOGGER.debug("Existing accountingEntry=" + accountingEntry);
-				updateMemberStatement.setDouble(1, accountingEntry.getUsage());
-				updateMemberStatement.setString(2, accountingEntry.getUser());
-				updateMemberStatement.setString(3, accountingEntry.getRequestingMember());
-				updateMemberStatement.setString(4, accountingEntry.getProvidingMember());
-				updateMemberStatement.addBatch();
-			}
-		}
-	}
 
 	private static final String SELECT_ALL_USAGE_SQL = "SELECT * FROM " + USAGE_TABLE_NAME;
-		
-	private List<AccountingEntryKey> getEntryKeys() {
-		LOGGER.debug("Getting database keys.");
 
+	public List<AccountingInfo> getAccountingInfo() {
+		LOGGER.debug("Getting AccounintgInfo...");
 		Statement statement = null;
 		Connection conn = null;
 		try {
@@ -190,34 +261,110 @@ public class AccountingDataStore {
 			statement = conn.createStatement();
 
 			statement.execute(SELECT_ALL_USAGE_SQL);
-			ResultSet rs = statement.getResultSet();
-
-			List<AccountingEntryKey> dbKeys = new ArrayList<AccountingEntryKey>();
-			while (rs.next()) {
-				dbKeys.add(new AccountingEntryKey(rs.getString(USER_COL), rs
-						.getString(REQUESTING_MEMBER_COL), rs.getString(PROVIDING_MEMBER_COL)));
-			}
-			return dbKeys;
+			return createAccounting(statement.getResultSet());
 		} catch (SQLException e) {
 			LOGGER.error("Couldn't get keys from DB.", e);
 			return null;
+		} finally {
+			close(statement, conn);
 		}
 	}
 
-	public List<AccountingInfo> getAccountingInfo() {
-		LOGGER.debug("Getting AccounintgInfo...");
-		Statement statement = null;
+	private static final String SELECT_HISTORY_USAGE_SQL = "SELECT user, requesting_member, providing_member,"
+			+ " SUM(usage) AS usage FROM " + HISTORY_TABLE_NAME + " WHERE %s"
+			+ " GROUP BY user, requesting_member, providing_member";
+	
+	private static final String HISTORY_RANGE_CONDITION = "(bucket_size = ? AND bucket_start >= ? AND bucket_start < ?)";
+	
+	/**
+	 * Sums the usage accounted from startTime (inclusive) to endTime
+	 * (exclusive), rounded to whole minutes. The range is read from the day
+	 * buckets it covers, then from hour and minute buckets at its edges, so at
+	 * most a few hundred buckets are read for each entry, whatever the length
+	 * of the history. Edges older than the retention of the minute or hour
+	 * buckets are widened to the enclosing hour or day buckets, so the usage
+	 * of a whole hour or day is counted there instead of none.
+	 */
+	public List<AccountingInfo> getAccountingInfo(long startTime, long endTime) {
+		LOGGER.debug("Getting AccountingInfo from " + startTime + " to " + endTime);
+		long start = getBucketStart(startTime, MINUTE_BUCKET);
+		long end = getBucketStart(endTime + MINUTE_BUCKET - 1, MINUTE_BUCKET);
+		long[] edges = new long[] { start, end };
+		widenToRetainedBuckets(edges, MINUTE_BUCKET, HOUR_BUCKET, MINUTE_BUCKETS_RETENTION);
+		widenToRetainedBuckets(edges, HOUR_BUCKET, DAY_BUCKET, HOUR_BUCKETS_RETENTION);
+		if (edges[0] != start || edges[1] != end) {
+			LOGGER.debug("The minute or hour buckets at the edges were removed, reading from " 
+					+ edges[0] + " to " + edges[1]);
+		}
+		List<long[]> ranges = new ArrayList<long[]>();
+		addBucketRanges(ranges, edges[0], edges[1], 0);
+		if (ranges.isEmpty()) {
+			return new ArrayList<AccountingInfo>();
+		}
+
+		StringBuilder conditions = new StringBuilder();
+		for (int i = 0; i < ranges.size(); i++) {
+			conditions.append(i == 0 ? "" : " OR ").append(HISTORY_RANGE_CONDITION);
+		}
+
+		PreparedStatement statement = null;
 		Connection conn = null;
 		try {
 			conn = getConnection();
-			statement = conn.createStatement();
-
-			statement.execute(SELECT_ALL_USAGE_SQL);
+			statement = conn.prepareStatement(String.format(SELECT_HISTORY_USAGE_SQL, conditions));
+			int index = 1;
+			for (long[] range : ranges) {
+				statement.setLong(index++, range[0]);
+				statement.setLong(index++, range[1]);
+				statement.setLong(index++, range[2]);
+			}
+			statement.execute();
 			return createAccounting(statement.getResultSet());
 		} catch (SQLException e) {
-			LOGGER.error("Couldn't get keys from DB.", e);
+			LOGGER.error("Couldn't get accounting history from DB.", e);
 			return null;
-		}	
+		} finally {
+			close(statement, conn);
+		}
+	}
+
+	/**
+	 * Widens the edges of [edges[0], edges[1]) that would be read from buckets
+	 * of the given size already removed by the retention to the enclosing
+	 * buckets of the coarser size.
+	 */
+	private void widenToRetainedBuckets(long[] edges, long bucketSize, long coarserBucketSize, long retention) {
+		long oldestBucket = getBucketStart(lastHistoryUpdate - retention, bucketSize);
+		if (edges[0] < oldestBucket) {
+			edges[0] = getBucketStart(edges[0], coarserBucketSize);
+		}
+		if (getBucketStart(edges[1], coarserBucketSize) < oldestBucket) {
+			edges[1] = getBucketStart(edges[1] + coarserBucketSize - 1, coarserBucketSize);
+		}
+	}
+
+	/**
+	 * Covers [start, end) with the biggest buckets aligned within it, leaving
+	 * the edges to the smaller bucket sizes.
+	 */
+	private static void addBucketRanges(List<long[]> ranges, long start, long end, int bucketSizeIndex) {
+		if (start >= end) {
+			return;
+		}
+		long bucketSize = BUCKET_SIZES[bucketSizeIndex];
+		if (bucketSizeIndex == BUCKET_SIZES.length - 1) {
+			ranges.add(new long[] { bucketSize, start, end });
+			return;
+		}
+		long firstBucket = getBucketStart(start + bucketSize - 1, bucketSize);
+		long lastBucket = getBucketStart(end, bucketSize);
+		if (firstBucket >= lastBucket) {
+			addBucketRanges(ranges, start, end, bucketSizeIndex + 1);
+			return;
+		}
+		addBucketRanges(ranges, start, firstBucket, bucketSizeIndex + 1);
+		ranges.add(new long[] { bucketSize, firstBucket, lastBucket });
+		addBucketRanges(ranges, lastBucket, end, bucketSizeIndex + 1);
 	}
 
 	private static final String SELECT_SPECIFIC_USAGE_SQL = "SELECT * FROM " + USAGE_TABLE_NAME
@@ -267,7 +414,7 @@ public class AccountingDataStore {
 	 */
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(this.dataStoreURL);
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -275,11 +422,6 @@ public class AccountingDataStore {
 	}
 	
 	private void close(Statement statement, Connection conn) {
-		if (statement == null) {
-			LOGGER.error("Statement is null");
-			return;
-		}
-		
 		List<Statement> statements = Arrays.asList(new Statement[] { statement });
 		close(statements, conn);
 	}
@@ -288,7 +430,7 @@ public class AccountingDataStore {
 		if (statements != null && !statements.isEmpty()) {
 			for (Statement statement : statements) {
 				try {
-					if (!statement.isClosed()) {
+					if (statement != null && !statement.isClosed()) {
 						statement.close();
 					}
 				} catch (SQLException e) {
@@ -17,6 +17,7 @@ public class FCUAccountingPlugin implements AccountingPlugin {
 
 	private BenchmarkingPlugin benchmarkingPlugin;
 	private AccountingDataStore db;
+	private AccountingAggregate accountingAggregate;
 	private DateUtils dateUtils;
 	private long lastUpdate;
 
@@ -38,6 +39,7 @@ public class FCUAccountingPlugin implements AccountingPlugin {
 		properties.put(AccountingDataStore.ACCOUNTING_DATASTORE_URL, 
 				properties.getProperty(getDataStoreUrl()));
 		db = new AccountingDataStore(properties, DEFAULT_NAME_DATASTORE_PREFIX);
+		accountingAggregate = new AccountingAggregate(db.getAccountingInfo());
 	}
 
 	@Override
@@ -77,8 +79,10 @@ public class FCUAccountingPlugin implements AccountingPlugin {
 		}
 
 		LOGGER.debug("current usage=" + usage);
+		List<AccountingInfo> changedUsage = accountingAggregate.getChangedEntries(usage.values());
 
-		if ((usage.isEmpty()) || db.update(new ArrayList<AccountingInfo>(usage.values()))) {
+		if ((changedUsage.isEmpty()) || db.update(changedUsage, now)) {
+			accountingAggregate.add(changedUsage);
 			this.lastUpdate = now;
 			LOGGER.debug("Updating lastUpdate to " + this.lastUpdate);
 		}
@@ -98,11 +102,21 @@ public class FCUAccountingPlugin implements AccountingPlugin {
 		return db.getAccountingInfo();
 	}
 
+	@Override
+	public List<AccountingInfo> getAccountingInfo(long startTime, long endTime) {
+		return db.getAccountingInfo(startTime, endTime);
+	}
+
 	@Override
 	public AccountingInfo getAccountingInfo(String user, String requestingMember,
 			String providingMember) {
 		return db.getAccountingInfo(user, requestingMember, providingMember);
 	}
+
+	@Override
+	public AccountingAggregate getAccountingAggregate() {
+		return accountingAggregate;
+	}
 	
 	public static void main(String[] args) {
 		System.out.println(AccountingDataStore.class.getSimpleName());
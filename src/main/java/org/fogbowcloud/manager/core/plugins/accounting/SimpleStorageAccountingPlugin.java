@@ -16,6 +16,7 @@ import org.fogbowcloud.manager.occi.order.OrderAttribute;
 public class SimpleStorageAccountingPlugin implements AccountingPlugin {
 
 	private AccountingDataStore db;
+	private AccountingAggregate accountingAggregate;
 	private DateUtils dateUtils;
 	private long lastUpdate;
 
@@ -35,6 +36,7 @@ public class SimpleStorageAccountingPlugin implements AccountingPlugin {
 		properties.put(AccountingDataStore.ACCOUNTING_DATASTORE_URL, 
 				properties.getProperty(getDataStoreUrl()));
 		db = new AccountingDataStore(properties, DEFAULT_NAME_DATASTORE_PREFIX);
+		accountingAggregate = new AccountingAggregate(db.getAccountingInfo());
 	}
 
 	@Override
@@ -78,8 +80,10 @@ public class SimpleStorageAccountingPlugin implements AccountingPlugin {
 		}
 
 		LOGGER.debug("current usage=" + usage);
+		List<AccountingInfo> changedUsage = accountingAggregate.getChangedEntries(usage.values());
 
-		if ((usage.isEmpty()) || db.update(new ArrayList<AccountingInfo>(usage.values()))) {
+		if ((changedUsage.isEmpty()) || db.update(changedUsage, now)) {
+			accountingAggregate.add(changedUsage);
 			this.lastUpdate = now;
 			LOGGER.debug("Updating lastUpdate to " + this.lastUpdate);
 		}
@@ -100,9 +104,19 @@ public class SimpleStorageAccountingPlugin implements AccountingPlugin {
 		return db.getAccountingInfo();
 	}
 
+	@Override
+	public List<AccountingInfo> getAccountingInfo(long startTime, long endTime) {
+		return db.getAccountingInfo(startTime, endTime);
+	}
+
 	@Override
 	public AccountingInfo getAccountingInfo(String user, String requestingMember,
 			String providingMember) {
 		return db.getAccountingInfo(user, requestingMember, providingMember);
+	}
+
+	@Override
+	public AccountingAggregate getAccountingAggregate() {
+		return accountingAggregate;
 	}	
 }
@@ -1,7 +1,6 @@
 package org.fogbowcloud.manager.core.plugins.benchmarking.ssh;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -9,6 +8,7 @@ import java.sql.Statement;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DataStoreConnectionPool;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 
@@ -25,6 +25,7 @@ public class SHHBenchmarkingDataStore {
 	protected static final String POWER = "power";
 	
 	private String dataStoreURL;
+	private DataStoreConnectionPool connectionPool;
 
 	public SHHBenchmarkingDataStore(Properties properties) {
 		this.dataStoreURL = properties.getProperty(SHH_BENCHMARKING_DATASTORE_URL);
@@ -32,6 +33,8 @@ public class SHHBenchmarkingDataStore {
 			throw new OCCIException(ErrorType.BAD_REQUEST, ERROR_WHILE_INITIALIZING 
 					+ " " + SHH_BENCHMARKING_DATASTORE_URL + " is required."); 
 		}
+		this.connectionPool = DataStoreConnectionPool.getPool(dataStoreURL,
+				DataStoreConnectionPool.getMaxSize(properties));
 		
 		Statement statement = null;
 		Connection connection = null;
@@ -152,7 +155,7 @@ public class SHHBenchmarkingDataStore {
 	
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(this.dataStoreURL);
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -1,12 +1,12 @@
 package org.fogbowcloud.manager.core.plugins.capacitycontroller.fairnessdriven;
 
-import java.util.List;
 import java.util.Properties;
 
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.plugins.AccountingPlugin;
-import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
+import org.fogbowcloud.manager.core.plugins.accounting.AccountingAggregate;
+import org.fogbowcloud.manager.core.plugins.prioritization.nof.NoFHelper;
 
 //TODO review all class
 public class GlobalFairnessDrivenController extends FairnessDrivenCapacityController{
@@ -36,17 +36,10 @@ public class GlobalFairnessDrivenController extends FairnessDrivenCapacityContro
 	protected void updateFairness() {
 		this.hillClimbingController.setLastFairness(
 				this.hillClimbingController.getCurrentFairness());
-		double currentConsumed = 0;
-		double currentDonated = 0;
-		List<AccountingInfo> accountingList = accountingPlugin.getAccountingInfo();
-		for(AccountingInfo accountingInfo : accountingList){
-			if (accountingInfo.getProvidingMember().equals(properties
-					.getProperty(ConfigurationConstants.XMPP_JID_KEY))) {						
-				currentDonated += accountingInfo.getUsage();
-			} else {
-				currentConsumed += accountingInfo.getUsage();
-			}
-		}
+		AccountingAggregate accountingAggregate = NoFHelper.getAccountingAggregate(accountingPlugin);
+		double currentDonated = accountingAggregate.getTotalProvidedBy(properties
+				.getProperty(ConfigurationConstants.XMPP_JID_KEY));
+		double currentConsumed = Math.max(0, accountingAggregate.getTotalUsage() - currentDonated);
 		this.hillClimbingController.setCurrentFairness(
 				getFairness(currentConsumed, currentDonated));
 	}
@@ -7,7 +7,7 @@ import java.util.Properties;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.plugins.AccountingPlugin;
-import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
+import org.fogbowcloud.manager.core.plugins.prioritization.nof.NoFHelper;
 
 public class PairwiseFairnessDrivenController extends FairnessDrivenCapacityController {	
 	
@@ -64,24 +64,13 @@ public class PairwiseFairnessDrivenController extends FairnessDrivenCapacityCont
 	}
 	
 	private double getCurrentDonated(FederationMember member){
-		double donated = 0;
-		for(AccountingInfo accountingInfo : this.accountingPlugin.getAccountingInfo())
-			if ( accountingInfo.getProvidingMember().equals(this.properties.getProperty(
-					ConfigurationConstants.XMPP_JID_KEY)) 
-					&& accountingInfo.getRequestingMember().equals(member.getId()))
-				donated += accountingInfo.getUsage();
-		return donated;
+		return NoFHelper.getAccountingAggregate(this.accountingPlugin).getUsage(member.getId(),
+				this.properties.getProperty(ConfigurationConstants.XMPP_JID_KEY));
 	}
 	
 	private double getCurrentConsumed(FederationMember member){
-		double consumed = 0;
-		for (AccountingInfo accountingInfo : this.accountingPlugin.getAccountingInfo())
-			if (accountingInfo.getRequestingMember().equals(
-					this.properties.getProperty(ConfigurationConstants.XMPP_JID_KEY)) 
-					&& accountingInfo.getProvidingMember().equals(member.getId())) {				
-				consumed += accountingInfo.getUsage();				
-			}
-		return consumed;
+		return NoFHelper.getAccountingAggregate(this.accountingPlugin).getUsage(
+				this.properties.getProperty(ConfigurationConstants.XMPP_JID_KEY), member.getId());
 	}
 	
 	@Override
@@ -0,0 +1,70 @@
+package org.fogbowcloud.manager.core.plugins.common.openstack;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.Charsets;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.plugins.util.JsonStreamReader;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.ResponseConstants;
+import org.json.JSONException;
+
+public class OpenStackHelper {
+
+	private static final Logger LOGGER = Logger.getLogger(OpenStackHelper.class);
+
+	/**
+	 * Turns the status of an OpenStack response into the exception of the
+	 * plugin, if it is an error.
+	 */
+	public interface StatusChecker {
+
+		void checkStatusResponse(HttpResponse response, String message);
+	}
+
+	/**
+	 * Reads only the given fields of the objects listed by the endpoint under
+	 * listName, straight from the response stream. The body of an error
+	 * response is read whole and given to the checker.
+	 */
+	public static List<Map<String, String>> doGetListRequest(HttpClient client, String endpoint,
+			String authToken, StatusChecker checker, String listName, String... fields) throws JSONException {
+		HttpResponse response = null;
+		String responseStr = null;
+		List<Map<String, String>> objects = null;
+		try {
+			HttpGet request = new HttpGet(endpoint);
+			request.addHeader(OCCIHeaders.X_AUTH_TOKEN, authToken);
+			request.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.JSON_CONTENT_TYPE);
+			request.addHeader(OCCIHeaders.ACCEPT, OCCIHeaders.JSON_CONTENT_TYPE);
+			response = client.execute(request);
+			if (response.getStatusLine().getStatusCode() <= HttpStatus.SC_NO_CONTENT) {
+				objects = JsonStreamReader.create(response.getEntity()).readObjects(
+						new String[] { listName }, fields);
+			} else {
+				responseStr = EntityUtils.toString(response.getEntity(), Charsets.UTF_8);
+			}
+		} catch (JSONException e) {
+			throw e;
+		} catch (Exception e) {
+			LOGGER.error("Could not make GET request.", e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+		} finally {
+			try {
+				EntityUtils.consume(response.getEntity());
+			} catch (Throwable t) {
+				// Do nothing
+			}
+		}
+		checker.checkStatusResponse(response, responseStr);
+		return objects;
+	}
+}
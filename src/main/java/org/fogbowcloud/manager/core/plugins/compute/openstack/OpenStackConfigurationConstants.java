@@ -52,6 +52,8 @@ public class OpenStackConfigurationConstants {
 
 	public static final String COMPUTE_HTTPCLIENT_TIMEOUT = "compute_httpclient_timeout";
 	
+	public static final String COMPUTE_NOVAV2_FLAVORS_REFRESH_INTERVAL = "compute_novav2_flavors_refresh_interval";
+	
 	/*
 	 * JSON Constants
 	 */
@@ -7,6 +7,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.Charsets;
 import org.apache.http.HttpResponse;
@@ -21,13 +28,17 @@ import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
-import org.fogbowcloud.manager.core.RequirementsHelper;
 import org.fogbowcloud.manager.core.model.Flavor;
 import org.fogbowcloud.manager.core.model.ImageState;
 import org.fogbowcloud.manager.core.model.ResourcesInfo;
 import org.fogbowcloud.manager.core.plugins.ComputePlugin;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper.StatusChecker;
+import org.fogbowcloud.manager.core.plugins.util.FlavorCatalog;
 import org.fogbowcloud.manager.core.plugins.util.HttpPatch;
+import org.fogbowcloud.manager.core.plugins.util.JsonStreamReader;
 import org.fogbowcloud.manager.core.util.HttpRequestUtil;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
 import org.fogbowcloud.manager.occi.OCCIConstants;
 import org.fogbowcloud.manager.occi.instance.Instance;
 import org.fogbowcloud.manager.occi.instance.Instance.Link;
@@ -53,9 +64,12 @@ import org.restlet.data.Status;
 public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 
 	protected static final int DEFAULT_HTTPCLIENT_TIMEOUT = 10000; // 10 seconds 
+	private static final int FLAVOR_DETAIL_THREADS = 5;
 	
 	private static final String OS_VOLUME_ATTACHMENTS = "/os-volume_attachments";
 	private static final String SERVERS = "/servers";
+	private static final String SERVERS_JSON_FIELD = "servers";
+	private static final String FLAVORS_JSON_FIELD = "flavors";
 	private static final String SUFFIX_ENDPOINT_FLAVORS = "/flavors";
 	private static final String SUFFIX_ENDPOINT_NETWORKS = "/networks";
 	private static final String NO_VALID_HOST_WAS_FOUND = "No valid host was found";
@@ -87,7 +101,8 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 	private Map<String, String> fogbowTermToOpenStack = new HashMap<String, String>();
 	private HttpClient client;
 	private Integer httpClientTimeout;
-	private List<Flavor> flavors;
+	private FlavorCatalog flavorCatalog;
+	private ExecutorService flavorDetailExecutor;
 
 	private static final Logger LOGGER = Logger.getLogger(OpenStackNovaV2ComputePlugin.class);
 	
@@ -123,7 +138,20 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 			httpClientTimeout = Integer.parseInt(timeoutStr);		
 		} catch (Exception e) {}
 		
-		flavors = new ArrayList<Flavor>();	
+		long flavorsRefreshInterval = PropertiesUtil.getLong(properties,
+				OpenStackConfigurationConstants.COMPUTE_NOVAV2_FLAVORS_REFRESH_INTERVAL,
+				FlavorCatalog.DEFAULT_REFRESH_INTERVAL);
+		
+		ThreadPoolExecutor detailExecutor = new ThreadPoolExecutor(FLAVOR_DETAIL_THREADS,
+				FLAVOR_DETAIL_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		detailExecutor.allowCoreThreadTimeOut(true);
+		flavorDetailExecutor = detailExecutor;
+		flavorCatalog = new FlavorCatalog(new FlavorCatalog.Loader() {
+			@Override
+			public List<Flavor> load(Token token, List<Flavor> currentFlavors) throws Exception {
+				return loadFlavors(token, currentFlavors);
+			}
+		}, flavorsRefreshInterval);
 		
 		initClient();
 	}
@@ -198,82 +226,82 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 		}
 	}
 
-	protected synchronized void updateFlavors(Token token) {
-		try {
-			String tenantId = token.getAttributes().get(TENANT_ID);
-			if (tenantId == null) {
-				return;
-			}
-			
-			String endpoint = computeV2APIEndpoint + tenantId + SUFFIX_ENDPOINT_FLAVORS;
-			String authToken = token.getAccessId();
-			String jsonResponseFlavors = doGetRequest(endpoint, authToken);
+	protected void updateFlavors(Token token) {
+		flavorCatalog.update(token);
+	}
 
-			Map<String, String> nameToFlavorId = new HashMap<String, String>();
+	/**
+	 * @return the flavors listed by the cloud, keeping the current ones that
+	 *         are still listed and getting the details of the new ones in
+	 *         parallel. Flavors whose details can not be got are left out until
+	 *         the next update.
+	 */
+	private List<Flavor> loadFlavors(Token token, List<Flavor> currentFlavors) throws JSONException {
+		String tenantId = token.getAttributes().get(TENANT_ID);
+		if (tenantId == null) {
+			return null;
+		}
+		
+		String endpoint = computeV2APIEndpoint + tenantId + SUFFIX_ENDPOINT_FLAVORS;
+		String authToken = token.getAccessId();
+		List<Map<String, String>> jsonFlavors = doGetListRequest(endpoint, authToken, 
+				FLAVORS_JSON_FIELD, NAME_JSON_FIELD, ID_JSON_FIELD);
 
-			JSONArray jsonArrayFlavors = new JSONObject(jsonResponseFlavors)
-					.getJSONArray("flavors");
-			for (int i = 0; i < jsonArrayFlavors.length(); i++) {
-				JSONObject itemFlavor = jsonArrayFlavors.getJSONObject(i);
-				nameToFlavorId.put(itemFlavor.getString("name"), itemFlavor.getString("id"));
-			}
+		Map<String, String> nameToFlavorId = new HashMap<String, String>();
+		for (Map<String, String> itemFlavor : jsonFlavors) {
+			nameToFlavorId.put(JsonStreamReader.getString(itemFlavor, NAME_JSON_FIELD),
+					JsonStreamReader.getString(itemFlavor, ID_JSON_FIELD));
+		}
 
-			List<Flavor> newFlavors = detailFlavors(endpoint, authToken, nameToFlavorId);
-			if (newFlavors != null) {
-				this.flavors.addAll(newFlavors);			
+		List<Flavor> flavors = new ArrayList<Flavor>();
+		for (Flavor flavor : currentFlavors) {
+			if (nameToFlavorId.remove(flavor.getName()) != null) {
+				flavors.add(flavor);
 			}
-			removeInvalidFlavors(nameToFlavorId);
-
-		} catch (Exception e) {
-			LOGGER.warn("Error while updating flavors.", e);
 		}
+		flavors.addAll(detailFlavors(endpoint, authToken, nameToFlavorId));
+		return flavors;
 	}
 
-	private List<Flavor> detailFlavors(String endpoint, String authToken,
-			Map<String, String> nameToIdFlavor) throws JSONException {
-		List<Flavor> newFlavors = new ArrayList<Flavor>();
-		List<Flavor> flavorsCopy = new ArrayList<Flavor>(flavors);
-		for (String flavorName : nameToIdFlavor.keySet()) {
-			boolean containsFlavor = false;
-			for (Flavor flavor : flavorsCopy) {
-				if (flavor.getName().equals(flavorName)) {
-					containsFlavor = true;
-					break;
+	private List<Flavor> detailFlavors(final String endpoint, final String authToken,
+			Map<String, String> nameToIdFlavor) {
+		List<Future<Flavor>> futureFlavors = new ArrayList<Future<Flavor>>();
+		for (final String flavorId : nameToIdFlavor.values()) {
+			futureFlavors.add(flavorDetailExecutor.submit(new Callable<Flavor>() {
+				@Override
+				public Flavor call() throws Exception {
+					return detailFlavor(endpoint + "/" + flavorId, authToken);
 				}
+			}));
+		}
+		
+		List<Flavor> newFlavors = new ArrayList<Flavor>();
+		for (Future<Flavor> futureFlavor : futureFlavors) {
+			try {
+				newFlavors.add(futureFlavor.get());
+			} catch (ExecutionException e) {
+				LOGGER.warn("Error while getting flavor details.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
 			}
-			if (containsFlavor) {
-				continue;
-			}
-			String newEndpoint = endpoint + "/" + nameToIdFlavor.get(flavorName);
-			String jsonResponseSpecificFlavor = doGetRequest(newEndpoint, authToken);
-
-			JSONObject specificFlavor = new JSONObject(jsonResponseSpecificFlavor)
-					.getJSONObject("flavor");
-
-			String id = specificFlavor.getString("id");
-			String name = specificFlavor.getString("name");
-			String disk = specificFlavor.getString("disk");
-			String ram = specificFlavor.getString("ram");
-			String vcpus = specificFlavor.getString("vcpus");
-
-			newFlavors.add(new Flavor(name, id, vcpus, ram, disk));		
 		}
 		return newFlavors;
 	}
 
-	private void removeInvalidFlavors(Map<String, String> nameToIdFlavor) {
-		ArrayList<Flavor> copyFlavors = new ArrayList<Flavor>(flavors);		
-		for (Flavor flavor : copyFlavors) {
-			boolean containsFlavor = false;
-			for (String flavorName : nameToIdFlavor.keySet()) {
-				if (flavorName.equals(flavor.getName())) {
-					containsFlavor = true;
-				}
-			}
-			if (!containsFlavor) {
-				this.flavors.remove(flavor);
-			}
-		}
+	private Flavor detailFlavor(String endpoint, String authToken) throws JSONException {
+		String jsonResponseSpecificFlavor = doGetRequest(endpoint, authToken);
+
+		JSONObject specificFlavor = new JSONObject(jsonResponseSpecificFlavor)
+				.getJSONObject("flavor");
+
+		String id = specificFlavor.getString("id");
+		String name = specificFlavor.getString("name");
+		String disk = specificFlavor.getString("disk");
+		String ram = specificFlavor.getString("ram");
+		String vcpus = specificFlavor.getString("vcpus");
+
+		return new Flavor(name, id, vcpus, ram, disk);
 	}
 
 	private void deleteKeyName(Token token, String keyName) {
@@ -373,20 +401,12 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 	public List<Instance> getInstances(Token token) {
 		String requestEndpoint = computeV2APIEndpoint + token.getAttributes().get(TENANT_ID)
 				+ SERVERS;
-		String jsonResponse = doGetRequest(requestEndpoint, token.getAccessId());
-		return getInstancesFromJson(jsonResponse);
-	}
-	
-	private List<Instance> getInstancesFromJson(String json) {
-		LOGGER.debug("Getting instances from json: " + json);
 		List<Instance> instances = new ArrayList<Instance>();
-		JSONObject root;
 		try {
-			root = new JSONObject(json);
-			JSONArray servers = root.getJSONArray("servers");
-			for (int i = 0; i < servers.length(); i++) {
-				JSONObject currentServer = servers.getJSONObject(i);
-				instances.add(new Instance(currentServer.getString(ID_JSON_FIELD)));
+			List<Map<String, String>> servers = doGetListRequest(requestEndpoint, token.getAccessId(), 
+					SERVERS_JSON_FIELD, ID_JSON_FIELD);
+			for (Map<String, String> currentServer : servers) {
+				instances.add(new Instance(JsonStreamReader.getString(currentServer, ID_JSON_FIELD)));
 			}
 		} catch (JSONException e) {
 			LOGGER.warn("There was an exception while getting instances from json.", e);
@@ -633,6 +653,20 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 		return responseStr;
 	}
 	
+	/**
+	 * Reads only the given fields of the objects listed by the endpoint,
+	 * straight from the response stream.
+	 */
+	protected List<Map<String, String>> doGetListRequest(String endpoint, String authToken,
+			String listName, String... fields) throws JSONException {
+		return OpenStackHelper.doGetListRequest(client, endpoint, authToken, new StatusChecker() {
+			@Override
+			public void checkStatusResponse(HttpResponse response, String message) {
+				OpenStackNovaV2ComputePlugin.this.checkStatusResponse(response, message);
+			}
+		}, listName, fields);
+	}
+	
 	protected String doPostRequest(String endpoint, String authToken, JSONObject json) {
 		HttpResponse response = null;
 		String responseStr = null;
@@ -729,15 +763,12 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
 
 	@Override
 	public String getImageId(Token token, String imageName) {
-		String responseJsonImages = doGetRequest(glanceV2APIEndpoint + V2_IMAGES,
-				token.getAccessId());
-
 		try {
-			JSONArray arrayImages = new JSONObject(responseJsonImages)
-					.getJSONArray(IMAGES_JSON_FIELD);
-			for (int i = 0; i < arrayImages.length(); i++) {
-				if (arrayImages.getJSONObject(i).getString(NAME_JSON_FIELD).equals(imageName)) {
-					return arrayImages.getJSONObject(i).getString(ID_JSON_FIELD);
+			List<Map<String, String>> images = doGetListRequest(glanceV2APIEndpoint + V2_IMAGES,
+					token.getAccessId(), IMAGES_JSON_FIELD, NAME_JSON_FIELD, ID_JSON_FIELD);
+			for (Map<String, String> image : images) {
+				if (JsonStreamReader.getString(image, NAME_JSON_FIELD).equals(imageName)) {
+					return JsonStreamReader.getString(image, ID_JSON_FIELD);
 				}
 			}
 		} catch (JSONException e) {
@@ -795,18 +826,24 @@ public class OpenStackNovaV2ComputePlugin implements ComputePlugin {
         return responseStr;
     }
 
+	/**
+	 * @return the current flavors, sorted from the smallest to the biggest.
+	 *         The list can not be modified, use {@link #setFlavors(List)}.
+	 */
 	public List<Flavor> getFlavors() {
-		return this.flavors;
+		return flavorCatalog.getFlavors();
 	}
 	
 	public void setFlavors(List<Flavor> flavors) {
-		this.flavors = flavors;
+		flavorCatalog.setFlavors(flavors);
 	}
 	
 	public Flavor getFlavor(Token token, String requirements) {
-		updateFlavors(token);
-		// Finding flavor
-		return RequirementsHelper.findSmallestFlavor(getFlavors(), requirements);
+		return flavorCatalog.findSmallestFlavor(token, requirements);
+	}
+
+	protected FlavorCatalog getFlavorCatalog() {
+		return flavorCatalog;
 	}
 	
 	protected int getHttpClientTimeout() {
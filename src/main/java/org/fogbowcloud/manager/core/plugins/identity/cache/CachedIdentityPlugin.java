@@ -0,0 +1,255 @@
+package org.fogbowcloud.manager.core.plugins.identity.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.core.plugins.util.Credential;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.ResponseConstants;
+import org.fogbowcloud.manager.occi.model.Token;
+
+/**
+ * Decorates an {@link IdentityPlugin} caching the results of getToken and
+ * isValid by access id. Tokens are kept until the cache TTL or their own
+ * expiration date, whichever comes first. Rejected access ids are kept for the
+ * negative TTL, so repeated requests with a bad access id do not reach the
+ * identity service. The cache holds at most identity_cache_max_size access
+ * ids, evicting the least recently used ones.
+ */
+public class CachedIdentityPlugin implements IdentityPlugin {
+
+	protected static final int DEFAULT_MAX_SIZE = 1000;
+	protected static final long DEFAULT_TTL = 60000; // 1 minute
+	protected static final long DEFAULT_NEGATIVE_TTL = 10000; // 10 seconds
+
+	private static final Logger LOGGER = Logger.getLogger(CachedIdentityPlugin.class);
+
+	private final IdentityPlugin identityPlugin;
+	private final int maxSize;
+	private final long ttl;
+	private final long negativeTtl;
+	private final Map<String, CacheEntry> entries;
+	private DateUtils dateUtils = new DateUtils();
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public CachedIdentityPlugin(IdentityPlugin identityPlugin, Properties properties) {
+		this.identityPlugin = identityPlugin;
+		this.maxSize = PropertiesUtil.getInt(properties, ConfigurationConstants.IDENTITY_CACHE_MAX_SIZE_KEY,
+				DEFAULT_MAX_SIZE);
+		this.ttl = PropertiesUtil.getLong(properties, ConfigurationConstants.IDENTITY_CACHE_TTL_KEY, DEFAULT_TTL);
+		this.negativeTtl = PropertiesUtil.getLong(properties, ConfigurationConstants.IDENTITY_CACHE_NEGATIVE_TTL_KEY,
+				DEFAULT_NEGATIVE_TTL);
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+				if (size() > CachedIdentityPlugin.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static boolean isEnabled(Properties properties) {
+		return Boolean.parseBoolean(properties.getProperty(ConfigurationConstants.IDENTITY_CACHE_ENABLED_KEY));
+	}
+
+	@Override
+	public Token createToken(Map<String, String> userCredentials) {
+		Token token = identityPlugin.createToken(userCredentials);
+		if (token != null && token.getAccessId() != null) {
+			putToken(token.getAccessId(), token);
+		}
+		return token;
+	}
+
+	@Override
+	public Token reIssueToken(Token token) {
+		Token reIssuedToken = identityPlugin.reIssueToken(token);
+		if (reIssuedToken != null && reIssuedToken.getAccessId() != null) {
+			putToken(reIssuedToken.getAccessId(), reIssuedToken);
+		}
+		return reIssuedToken;
+	}
+
+	@Override
+	public Token getToken(String accessId) {
+		CacheEntry entry = getEntry(accessId);
+		if (entry != null && entry.getToken() != null) {
+			return copy(entry.getToken());
+		}
+		if (entry != null && !entry.isValid()) {
+			throw new OCCIException(ErrorType.UNAUTHORIZED, entry.getErrorMessage() != null ? 
+					entry.getErrorMessage() : ResponseConstants.UNAUTHORIZED);
+		}
+
+		Token token;
+		try {
+			token = identityPlugin.getToken(accessId);
+		} catch (OCCIException e) {
+			if (ErrorType.UNAUTHORIZED.equals(e.getType())) {
+				putInvalid(accessId, e.getMessage());
+			}
+			throw e;
+		}
+		if (token != null) {
+			putToken(accessId, token);
+		}
+		return token;
+	}
+
+	@Override
+	public boolean isValid(String accessId) {
+		CacheEntry entry = getEntry(accessId);
+		if (entry != null) {
+			return entry.isValid();
+		}
+
+		boolean valid = identityPlugin.isValid(accessId);
+		if (valid) {
+			put(accessId, new CacheEntry(null, true, null, dateUtils.currentTimeMillis() + ttl));
+		} else {
+			putInvalid(accessId, null);
+		}
+		return valid;
+	}
+
+	@Override
+	public Credential[] getCredentials() {
+		return identityPlugin.getCredentials();
+	}
+
+	@Override
+	public String getAuthenticationURI() {
+		return identityPlugin.getAuthenticationURI();
+	}
+
+	@Override
+	public Token getForwardableToken(Token originalToken) {
+		return identityPlugin.getForwardableToken(originalToken);
+	}
+
+	public IdentityPlugin getIdentityPlugin() {
+		return identityPlugin;
+	}
+
+	public synchronized void invalidate(String accessId) {
+		entries.remove(accessId);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	protected void setDateUtils(DateUtils dateUtils) {
+		this.dateUtils = dateUtils;
+	}
+
+	private synchronized CacheEntry getEntry(String accessId) {
+		CacheEntry entry = entries.get(accessId);
+		if (entry != null && entry.getExpirationTime() <= dateUtils.currentTimeMillis()) {
+			entries.remove(accessId);
+			entry = null;
+		}
+		if (entry == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		if ((hits + misses) % 1000 == 0) {
+			LOGGER.debug("Identity cache hit rate: " + getHitRate() + ", size: " + entries.size()
+					+ ", evictions: " + evictions);
+		}
+		return entry;
+	}
+
+	private void putToken(String accessId, Token token) {
+		long expirationTime = dateUtils.currentTimeMillis() + ttl;
+		Date tokenExpirationDate = token.getExpirationDate();
+		if (tokenExpirationDate != null) {
+			expirationTime = Math.min(expirationTime, tokenExpirationDate.getTime());
+		}
+		if (expirationTime > dateUtils.currentTimeMillis()) {
+			put(accessId, new CacheEntry(copy(token), true, null, expirationTime));
+		}
+	}
+
+	private void putInvalid(String accessId, String errorMessage) {
+		put(accessId, new CacheEntry(null, false, errorMessage, dateUtils.currentTimeMillis() + negativeTtl));
+	}
+
+	private synchronized void put(String accessId, CacheEntry entry) {
+		if (accessId != null) {
+			entries.put(accessId, entry);
+		}
+	}
+
+	private static Token copy(Token token) {
+		Map<String, String> attributes = token.getAttributes() != null ?
+				new HashMap<String, String>(token.getAttributes()) : null;
+		return new Token(token.getAccessId(), token.getUser(), null, attributes);
+	}
+
+	private static class CacheEntry {
+
+		private final Token token;
+		private final boolean valid;
+		private final String errorMessage;
+		private final long expirationTime;
+
+		public CacheEntry(Token token, boolean valid, String errorMessage, long expirationTime) {
+			this.token = token;
+			this.valid = valid;
+			this.errorMessage = errorMessage;
+			this.expirationTime = expirationTime;
+		}
+
+		public Token getToken() {
+			return token;
+		}
+
+		public boolean isValid() {
+			return valid;
+		}
+
+		public String getErrorMessage() {
+			return errorMessage;
+		}
+
+		public long getExpirationTime() {
+			return expirationTime;
+		}
+	}
+}
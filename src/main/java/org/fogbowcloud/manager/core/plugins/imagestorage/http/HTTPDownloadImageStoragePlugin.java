@@ -38,8 +38,8 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.model.ImageState;
 import org.fogbowcloud.manager.core.plugins.ComputePlugin;
@@ -64,6 +64,7 @@ public class HTTPDownloadImageStoragePlugin extends StaticImageStoragePlugin {
 	private final String keystorePassword;
 	private final String[] acceptedFormats;
 	private final String conversionOutputFormat;
+	private HttpClient client;
 	
 	public HTTPDownloadImageStoragePlugin(Properties properties, ComputePlugin computePlugin) {
 		super(properties, computePlugin);
@@ -332,11 +333,13 @@ public class HTTPDownloadImageStoragePlugin extends StaticImageStoragePlugin {
 		InputStream instream = null;
 		File tempFile = null;
 		try {
-			httpclient = keystorePath == null ? HttpClients.createMinimal() : createSSLClient();
+			httpclient = getClient();
 			HttpGet httpget = new HttpGet(imageURL);
 			HttpResponse response = httpclient.execute(httpget);
 			
 			if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+				// releases the connection to the pool
+				EntityUtils.consumeQuietly(response.getEntity());
 				return null;
 			}
 			
@@ -423,6 +426,13 @@ public class HTTPDownloadImageStoragePlugin extends StaticImageStoragePlugin {
 	    return untaredFiles;
 	}
 
+	private synchronized HttpClient getClient() throws Exception {
+		if (client == null) {
+			client = keystorePath == null ? HttpRequestUtil.createHttpClient() : createSSLClient();
+		}
+		return client;
+	}
+
 	private HttpClient createSSLClient() throws Exception {
 		KeyStore trustStore  = KeyStore.getInstance(KeyStore.getDefaultType());
         FileInputStream instream = new FileInputStream(new File(keystorePath));
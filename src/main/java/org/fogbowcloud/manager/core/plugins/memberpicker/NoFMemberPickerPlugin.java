@@ -11,7 +11,6 @@ import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.plugins.AccountingPlugin;
 import org.fogbowcloud.manager.core.plugins.FederationMemberPickerPlugin;
-import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
 import org.fogbowcloud.manager.core.plugins.accounting.ResourceUsage;
 import org.fogbowcloud.manager.core.plugins.prioritization.nof.FederationMemberDebt;
 import org.fogbowcloud.manager.core.plugins.prioritization.nof.FederationMemberDebtComparator;
@@ -37,9 +36,8 @@ public class NoFMemberPickerPlugin implements FederationMemberPickerPlugin {
 	
 	@Override
 	public FederationMember pick(List<FederationMember> members) {
-		List<AccountingInfo> accounting = accoutingPlugin.getAccountingInfo();
 		Map<String, ResourceUsage> membersUsage = NoFHelper.calculateMembersUsage(localMemberId,
-				accounting);
+				accoutingPlugin);
 		LinkedList<FederationMemberDebt> reputableMembers = new LinkedList<FederationMemberDebt>();
 
 		for (FederationMember currentMember : members) {			
@@ -19,8 +19,11 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.plugins.NetworkPlugin;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper.StatusChecker;
 import org.fogbowcloud.manager.core.plugins.compute.openstack.OpenStackConfigurationConstants;
 import org.fogbowcloud.manager.core.plugins.storage.openstack.OpenStackV2StoragePlugin;
+import org.fogbowcloud.manager.core.plugins.util.JsonStreamReader;
 import org.fogbowcloud.manager.core.util.HttpRequestUtil;
 import org.fogbowcloud.manager.occi.OCCIConstants;
 import org.fogbowcloud.manager.occi.instance.Instance;
@@ -226,19 +229,19 @@ public class OpenStackV2NetworkPlugin implements NetworkPlugin {
 		}		
 		String endpoint = this.networkV2APIEndpoint + SUFIX_ENDPOINT_PORTS
 				+ "?" + KEY_TENANT_ID + "=" + tenantId;
-		String responseStr = doGetRequest(endpoint, token.getAccessId());
+		String subnetIdField = KEY_FIXES_IPS + "." + KEY_JSON_SUBNET_ID;
 		
 		try {
+			List<Map<String, String>> routerPorts = doGetListRequest(endpoint, token.getAccessId(), 
+					KEY_JSON_PORTS, KEY_NETWORK_ID, KEY_DEVICE_OWNER, KEY_DEVICE_ID, subnetIdField);
 			List<String> subnets = new ArrayList<String>();
-			JSONObject rootServer = new JSONObject(responseStr);
-			JSONArray routerPortsJSONArray = rootServer.optJSONArray(KEY_JSON_PORTS);
-			for (int i = 0; i < routerPortsJSONArray.length(); i++) {
+			for (Map<String, String> routerPort : routerPorts) {
 				
-				String networkId = routerPortsJSONArray.optJSONObject(i).optString(KEY_NETWORK_ID);
+				String networkId = JsonStreamReader.optString(routerPort, KEY_NETWORK_ID);
 				
 				if (networkId.equals(instanceId)) {
 
-					String deviceOwner = routerPortsJSONArray.optJSONObject(i).optString(KEY_DEVICE_OWNER);				
+					String deviceOwner = JsonStreamReader.optString(routerPort, KEY_DEVICE_OWNER);				
 
 					boolean thereIsInstance = deviceOwner.equals(COMPUTE_NOVA);
 					if (thereIsInstance) {
@@ -247,12 +250,14 @@ public class OpenStackV2NetworkPlugin implements NetworkPlugin {
 					}
 					
 					if(NETWORK_ROUTER.equals(deviceOwner)){
-						routerIdToRemove = routerPortsJSONArray.optJSONObject(i).optString(KEY_DEVICE_ID);
+						routerIdToRemove = JsonStreamReader.optString(routerPort, KEY_DEVICE_ID);
 					}
 					
 					if (!deviceOwner.equals(NETWORK_DHCP)) {
-						String subnetId = routerPortsJSONArray.optJSONObject(i).optJSONArray(KEY_FIXES_IPS)
-								.optJSONObject(0).optString(KEY_JSON_SUBNET_ID);
+						String subnetId = routerPort.get(subnetIdField);
+						if (subnetId == null) {
+							throw new JSONException("Port has no " + subnetIdField + ".");
+						}
 						subnets.add(subnetId);						
 					}
 					
@@ -477,6 +482,20 @@ public class OpenStackV2NetworkPlugin implements NetworkPlugin {
 		return responseStr;
 	}	
 	
+	/**
+	 * Reads only the given fields of the objects listed by the endpoint,
+	 * straight from the response stream.
+	 */
+	protected List<Map<String, String>> doGetListRequest(String endpoint, String authToken,
+			String listName, String... fields) throws JSONException {
+		return OpenStackHelper.doGetListRequest(client, endpoint, authToken, new StatusChecker() {
+			@Override
+			public void checkStatusResponse(HttpResponse response, String message) {
+				OpenStackV2NetworkPlugin.this.checkStatusResponse(response, message);
+			}
+		}, listName, fields);
+	}
+	
 	protected String doGetRequest(String endpoint, String authToken) {
 		HttpResponse response = null;
 		String responseStr = null;
@@ -11,7 +11,6 @@ import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.plugins.AccountingPlugin;
 import org.fogbowcloud.manager.core.plugins.PrioritizationPlugin;
-import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
 import org.fogbowcloud.manager.core.plugins.accounting.ResourceUsage;
 import org.fogbowcloud.manager.occi.order.Order;
 
@@ -55,8 +54,7 @@ public class NoFPrioritizationPlugin implements PrioritizationPlugin {
 		
 		List<String> servedMemberIds = getServedMemberIds(ordersWithInstance);
 		LOGGER.debug("Current servedMemberIds=" + servedMemberIds);
-		List<AccountingInfo> accounting = accountingPlugin.getAccountingInfo();
-		Map<String, ResourceUsage> membersUsage = NoFHelper.calculateMembersUsage(localMemberId, accounting);
+		Map<String, ResourceUsage> membersUsage = NoFHelper.calculateMembersUsage(localMemberId, accountingPlugin);
 		LOGGER.debug("Current membersUsage=" + membersUsage);		
 		LinkedList<FederationMemberDebt> memberDebts = calctMemberDebts(servedMemberIds, membersUsage);
 		if (memberDebts.isEmpty()) {
@@ -17,6 +17,9 @@ import org.apache.http.entity.StringEntity;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.plugins.StoragePlugin;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper;
+import org.fogbowcloud.manager.core.plugins.common.openstack.OpenStackHelper.StatusChecker;
+import org.fogbowcloud.manager.core.plugins.util.JsonStreamReader;
 import org.fogbowcloud.manager.core.util.HttpRequestUtil;
 import org.fogbowcloud.manager.occi.instance.Instance;
 import org.fogbowcloud.manager.occi.model.Category;
@@ -29,7 +32,6 @@ import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.OrderAttribute;
 import org.fogbowcloud.manager.occi.order.OrderConstants;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -95,8 +97,12 @@ public class OpenStackV2StoragePlugin implements StoragePlugin {
 		}		
 		
 		String endpoint = this.storageV2APIEndpoint + tenantId + SUFIX_ENDPOINT_VOLUMES;
-		String responseStr = doGetRequest(endpoint, token.getAccessId());
-		return getInstancesFromJson(responseStr);
+		try {
+			return getInstances(doGetListRequest(endpoint, token.getAccessId(), KEY_JSON_VOLUMES, KEY_JSON_ID));
+		} catch (JSONException e) {
+			LOGGER.warn("There was an exception while getting instances from json.", e);
+		}
+		return null;
 	}
 
 	@Override
@@ -156,6 +162,20 @@ public class OpenStackV2StoragePlugin implements StoragePlugin {
 		return responseStr;
 	}	
 	
+	/**
+	 * Reads only the given fields of the objects listed by the endpoint,
+	 * straight from the response stream.
+	 */
+	protected List<Map<String, String>> doGetListRequest(String endpoint, String authToken,
+			String listName, String... fields) throws JSONException {
+		return OpenStackHelper.doGetListRequest(client, endpoint, authToken, new StatusChecker() {
+			@Override
+			public void checkStatusResponse(HttpResponse response, String message) {
+				OpenStackV2StoragePlugin.this.checkStatusResponse(response, message);
+			}
+		}, listName, fields);
+	}
+	
 	protected String doGetRequest(String endpoint, String authToken) {
 		HttpResponse response = null;
 		String responseStr = null;
@@ -246,19 +266,24 @@ public class OpenStackV2StoragePlugin implements StoragePlugin {
 	
 	protected List<Instance> getInstancesFromJson(String json) {
 		try {
-			JSONObject rootServer = new JSONObject(json);
-			JSONArray jsonArray = rootServer.getJSONArray(OpenStackV2StoragePlugin.KEY_JSON_VOLUMES);
-			List<Instance> instances = new ArrayList<Instance>();
-			for (int i = 0; i < jsonArray.length(); i++) {
-				JSONObject volumeJsonObject = jsonArray.getJSONObject(i);
-				instances.add(new Instance(volumeJsonObject.getString(KEY_JSON_ID)));				
-			}
-
-			return instances;
-		} catch (JSONException e) {
+			return getInstances(new JsonStreamReader(json).readObjects(
+					new String[] { KEY_JSON_VOLUMES }, KEY_JSON_ID));
+		} catch (Exception e) {
 			LOGGER.warn("There was an exception while getting instances from json.", e);
 		}
 		return null;
+	}
+	
+	private List<Instance> getInstances(List<Map<String, String>> volumes) throws JSONException {
+		List<Instance> instances = new ArrayList<Instance>();
+		for (Map<String, String> volume : volumes) {
+			String id = volume.get(KEY_JSON_ID);
+			if (id == null) {
+				throw new JSONException("Volume has no " + KEY_JSON_ID + ".");
+			}
+			instances.add(new Instance(id));
+		}
+		return instances;
 	}		
 	
 	protected JSONObject generateJsonEntityToCreateInstance(String size) throws JSONException {
@@ -0,0 +1,133 @@
+package org.fogbowcloud.manager.core.plugins.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.RequirementsHelper;
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.Flavor;
+import org.fogbowcloud.manager.occi.model.Token;
+
+/**
+ * Flavors of a cloud, kept as an immutable snapshot sorted from the smallest
+ * to the biggest flavor. The flavors are loaded when the catalog is empty;
+ * after that, a snapshot older than the refresh interval is still used while
+ * a new one is loaded in background, with the token of the request that found
+ * it old. Requests never wait for the cloud once there are flavors.
+ */
+public class FlavorCatalog {
+
+	public static final long DEFAULT_REFRESH_INTERVAL = 60000; // 1 minute
+
+	private static final Logger LOGGER = Logger.getLogger(FlavorCatalog.class);
+
+	public interface Loader {
+
+		/**
+		 * @return the flavors of the cloud, reusing the current ones that are
+		 *         still there
+		 */
+		public List<Flavor> load(Token token, List<Flavor> currentFlavors) throws Exception;
+
+	}
+
+	private final Loader loader;
+	private final long refreshInterval;
+	private final Executor refreshExecutor;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private volatile List<Flavor> flavors = Collections.emptyList();
+	private volatile long updateTime;
+	private DateUtils dateUtils = new DateUtils();
+
+	public FlavorCatalog(Loader loader, long refreshInterval) {
+		this(loader, refreshInterval, createRefreshExecutor());
+	}
+
+	protected FlavorCatalog(Loader loader, long refreshInterval, Executor refreshExecutor) {
+		this.loader = loader;
+		this.refreshInterval = refreshInterval;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	/**
+	 * @return the current snapshot, which can not be modified
+	 */
+	public List<Flavor> getFlavors() {
+		return flavors;
+	}
+
+	public void setFlavors(List<Flavor> flavors) {
+		List<Flavor> sortedFlavors = flavors != null ? new ArrayList<Flavor>(flavors) : new ArrayList<Flavor>();
+		Collections.sort(sortedFlavors, new RequirementsHelper.FlavorComparator());
+		this.flavors = Collections.unmodifiableList(sortedFlavors);
+		this.updateTime = dateUtils.currentTimeMillis();
+	}
+
+	/**
+	 * Loads the flavors now. The current snapshot is kept if they can not be
+	 * loaded.
+	 */
+	public synchronized void update(Token token) {
+		try {
+			List<Flavor> newFlavors = loader.load(token, flavors);
+			if (newFlavors != null) {
+				setFlavors(newFlavors);
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Error while updating flavors.", e);
+		}
+	}
+
+	/**
+	 * @return the smallest flavor that matches the requirements
+	 */
+	public Flavor findSmallestFlavor(Token token, String requirements) {
+		if (flavors.isEmpty()) {
+			update(token);
+		} else if (dateUtils.currentTimeMillis() - updateTime >= refreshInterval) {
+			refresh(token);
+		}
+		return RequirementsHelper.findFirstMatchingFlavor(flavors, requirements);
+	}
+
+	protected void setDateUtils(DateUtils dateUtils) {
+		this.dateUtils = dateUtils;
+	}
+
+	private void refresh(final Token token) {
+		if (!refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		// failed refreshes are only tried again after the interval
+		updateTime = dateUtils.currentTimeMillis();
+		try {
+			refreshExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						update(token);
+					} finally {
+						refreshing.set(false);
+					}
+				}
+			});
+		} catch (Exception e) {
+			refreshing.set(false);
+			LOGGER.warn("Could not schedule flavors refresh.", e);
+		}
+	}
+
+	private static Executor createRefreshExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+}
@@ -0,0 +1,457 @@
+package org.fogbowcloud.manager.core.plugins.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.codec.Charsets;
+import org.apache.http.HttpEntity;
+import org.json.JSONException;
+
+/**
+ * Reads a JSON document token by token, without building the tree of
+ * {@link org.json.JSONObject}s. Listings of the clouds may have thousands of
+ * entries of which the plugins need a few fields, so
+ * {@link #readObjects(String[], String...)} keeps only those fields and skips
+ * everything else as it is read.
+ */
+public class JsonStreamReader implements Closeable {
+
+	public enum JsonToken {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private static final int EMPTY_DOCUMENT = 0;
+	private static final int NONEMPTY_DOCUMENT = 1;
+	private static final int EMPTY_OBJECT = 2;
+	private static final int DANGLING_NAME = 3;
+	private static final int NONEMPTY_OBJECT = 4;
+	private static final int EMPTY_ARRAY = 5;
+	private static final int NONEMPTY_ARRAY = 6;
+
+	private final Reader reader;
+	private final char[] buffer = new char[8192];
+	private int position;
+	private int limit;
+
+	private int[] scopes = new int[32];
+	private int scopesSize = 1;
+	private JsonToken peeked;
+	private final StringBuilder text = new StringBuilder();
+
+	public JsonStreamReader(Reader reader) {
+		this.reader = reader;
+		this.scopes[0] = EMPTY_DOCUMENT;
+	}
+
+	public JsonStreamReader(String json) {
+		this(new StringReader(json));
+	}
+
+	public static JsonStreamReader create(HttpEntity entity) throws IOException {
+		return new JsonStreamReader(new InputStreamReader(entity.getContent(), Charsets.UTF_8));
+	}
+
+	public JsonToken peek() throws IOException, JSONException {
+		if (peeked != null) {
+			return peeked;
+		}
+		int scope = scopes[scopesSize - 1];
+		int c;
+		switch (scope) {
+		case EMPTY_ARRAY:
+		case NONEMPTY_ARRAY:
+			c = nextNonWhitespace();
+			if (c == ']') {
+				return peeked = JsonToken.END_ARRAY;
+			}
+			if (scope == NONEMPTY_ARRAY) {
+				if (c != ',') {
+					throw syntaxError("Expected ',' or ']'");
+				}
+				c = nextNonWhitespace();
+			}
+			scopes[scopesSize - 1] = NONEMPTY_ARRAY;
+			return peeked = readValue(c);
+		case EMPTY_OBJECT:
+		case NONEMPTY_OBJECT:
+			c = nextNonWhitespace();
+			if (c == '}') {
+				return peeked = JsonToken.END_OBJECT;
+			}
+			if (scope == NONEMPTY_OBJECT) {
+				if (c != ',') {
+					throw syntaxError("Expected ',' or '}'");
+				}
+				c = nextNonWhitespace();
+			}
+			if (c != '"') {
+				throw syntaxError("Expected a name");
+			}
+			readString();
+			scopes[scopesSize - 1] = DANGLING_NAME;
+			return peeked = JsonToken.NAME;
+		case DANGLING_NAME:
+			if (nextNonWhitespace() != ':') {
+				throw syntaxError("Expected ':'");
+			}
+			scopes[scopesSize - 1] = NONEMPTY_OBJECT;
+			return peeked = readValue(nextNonWhitespace());
+		case EMPTY_DOCUMENT:
+			scopes[scopesSize - 1] = NONEMPTY_DOCUMENT;
+			return peeked = readValue(nextNonWhitespace());
+		default:
+			return peeked = JsonToken.END_DOCUMENT;
+		}
+	}
+
+	public boolean hasNext() throws IOException, JSONException {
+		JsonToken token = peek();
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+				&& token != JsonToken.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException, JSONException {
+		consume(JsonToken.BEGIN_OBJECT);
+		push(EMPTY_OBJECT);
+	}
+
+	public void endObject() throws IOException, JSONException {
+		consume(JsonToken.END_OBJECT);
+		scopesSize--;
+	}
+
+	public void beginArray() throws IOException, JSONException {
+		consume(JsonToken.BEGIN_ARRAY);
+		push(EMPTY_ARRAY);
+	}
+
+	public void endArray() throws IOException, JSONException {
+		consume(JsonToken.END_ARRAY);
+		scopesSize--;
+	}
+
+	public String nextName() throws IOException, JSONException {
+		consume(JsonToken.NAME);
+		return text.toString();
+	}
+
+	/**
+	 * @return the text of the next string, number or boolean, or null for a
+	 *         JSON null
+	 */
+	public String nextString() throws IOException, JSONException {
+		JsonToken token = peek();
+		if (token == JsonToken.NULL) {
+			peeked = null;
+			return null;
+		}
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER && token != JsonToken.BOOLEAN) {
+			throw syntaxError("Expected a value but was " + token);
+		}
+		peeked = null;
+		return text.toString();
+	}
+
+	public void skipValue() throws IOException, JSONException {
+		JsonToken token = peek();
+		if (token == JsonToken.BEGIN_OBJECT) {
+			beginObject();
+			while (hasNext()) {
+				nextName();
+				skipValue();
+			}
+			endObject();
+		} else if (token == JsonToken.BEGIN_ARRAY) {
+			beginArray();
+			while (hasNext()) {
+				skipValue();
+			}
+			endArray();
+		} else if (token == JsonToken.NAME) {
+			nextName();
+			skipValue();
+		} else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY
+				|| token == JsonToken.END_DOCUMENT) {
+			throw syntaxError("Expected a value but was " + token);
+		} else {
+			peeked = null;
+		}
+	}
+
+	/**
+	 * Reads the array found following the names of path from the root object,
+	 * keeping only the given fields of each of its objects. A field like
+	 * "fixed_ips.subnet_id" is read from a nested object, or from the first
+	 * object of a nested array that has it.
+	 *
+	 * @throws JSONException
+	 *             if there is no array at path
+	 */
+	public List<Map<String, String>> readObjects(String[] path, String... fields) throws IOException,
+			JSONException {
+		List<Map<String, String>> objects = optObjects(path, fields);
+		if (objects == null) {
+			throw new JSONException("JSON has no array at " + Arrays.toString(path) + ".");
+		}
+		return objects;
+	}
+
+	/**
+	 * Same as {@link #readObjects(String[], String...)}, but returns null if
+	 * there is no array at path.
+	 */
+	public List<Map<String, String>> optObjects(String[] path, String... fields) throws IOException,
+			JSONException {
+		for (String name : path) {
+			if (peek() != JsonToken.BEGIN_OBJECT) {
+				return null;
+			}
+			beginObject();
+			if (!skipTo(name)) {
+				return null;
+			}
+		}
+		if (peek() != JsonToken.BEGIN_ARRAY) {
+			return null;
+		}
+
+		Set<String> wantedFields = new HashSet<String>(Arrays.asList(fields));
+		Set<String> wantedObjects = new HashSet<String>();
+		for (String field : fields) {
+			for (int i = field.indexOf('.'); i >= 0; i = field.indexOf('.', i + 1)) {
+				wantedObjects.add(field.substring(0, i));
+			}
+		}
+
+		List<Map<String, String>> objects = new ArrayList<Map<String, String>>();
+		beginArray();
+		while (hasNext()) {
+			if (peek() != JsonToken.BEGIN_OBJECT) {
+				skipValue();
+				continue;
+			}
+			Map<String, String> object = new HashMap<String, String>();
+			readFields(object, "", wantedFields, wantedObjects);
+			objects.add(object);
+		}
+		endArray();
+		return objects;
+	}
+
+	/**
+	 * @return the field of an object read by {@link #readObjects(String[], String...)}
+	 * @throws JSONException
+	 *             if the object has no such field
+	 */
+	public static String getString(Map<String, String> object, String name) throws JSONException {
+		String value = object.get(name);
+		if (value == null) {
+			throw new JSONException("JSON object has no " + name + ".");
+		}
+		return value;
+	}
+
+	/**
+	 * @return the field of an object read by {@link #readObjects(String[], String...)},
+	 *         or an empty string if the object has no such field
+	 */
+	public static String optString(Map<String, String> object, String name) {
+		String value = object.get(name);
+		return value == null ? "" : value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Skips the values of the current object until the given name.
+	 *
+	 * @return false if the object ends without it
+	 */
+	private boolean skipTo(String name) throws IOException, JSONException {
+		while (hasNext()) {
+			if (nextName().equals(name)) {
+				return true;
+			}
+			skipValue();
+		}
+		return false;
+	}
+
+	private void readFields(Map<String, String> object, String prefix, Set<String> wantedFields,
+			Set<String> wantedObjects) throws IOException, JSONException {
+		beginObject();
+		while (hasNext()) {
+			String name = prefix + nextName();
+			JsonToken token = peek();
+			if (wantedFields.contains(name) && token != JsonToken.BEGIN_OBJECT
+					&& token != JsonToken.BEGIN_ARRAY) {
+				String value = nextString();
+				if (!object.containsKey(name)) {
+					object.put(name, value);
+				}
+			} else if (wantedObjects.contains(name) && token == JsonToken.BEGIN_OBJECT) {
+				readFields(object, name + ".", wantedFields, wantedObjects);
+			} else if (wantedObjects.contains(name) && token == JsonToken.BEGIN_ARRAY) {
+				beginArray();
+				while (hasNext()) {
+					if (peek() == JsonToken.BEGIN_OBJECT) {
+						readFields(object, name + ".", wantedFields, wantedObjects);
+					} else {
+						skipValue();
+					}
+				}
+				endArray();
+			} else {
+				skipValue();
+			}
+		}
+		endObject();
+	}
+
+	private void consume(JsonToken expected) throws IOException, JSONException {
+		JsonToken token = peek();
+		if (token != expected) {
+			throw syntaxError("Expected " + expected + " but was " + token);
+		}
+		peeked = null;
+	}
+
+	private void push(int scope) {
+		if (scopesSize == scopes.length) {
+			scopes = Arrays.copyOf(scopes, scopesSize * 2);
+		}
+		scopes[scopesSize++] = scope;
+	}
+
+	private JsonToken readValue(int c) throws IOException, JSONException {
+		switch (c) {
+		case '{':
+			return JsonToken.BEGIN_OBJECT;
+		case '[':
+			return JsonToken.BEGIN_ARRAY;
+		case '"':
+			readString();
+			return JsonToken.STRING;
+		case -1:
+			throw syntaxError("Unexpected end of the document");
+		default:
+			text.setLength(0);
+			text.append((char) c);
+			while (fill() && !isDelimiter(buffer[position])) {
+				text.append(buffer[position++]);
+			}
+			String literal = text.toString();
+			if (literal.equals("true") || literal.equals("false")) {
+				return JsonToken.BOOLEAN;
+			}
+			if (literal.equals("null")) {
+				return JsonToken.NULL;
+			}
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				return JsonToken.NUMBER;
+			}
+			throw syntaxError("Unexpected value " + literal);
+		}
+	}
+
+	private void readString() throws IOException, JSONException {
+		text.setLength(0);
+		while (true) {
+			int c = read();
+			if (c == -1) {
+				throw syntaxError("Unterminated string");
+			}
+			if (c == '"') {
+				return;
+			}
+			if (c != '\\') {
+				text.append((char) c);
+				continue;
+			}
+			c = read();
+			switch (c) {
+			case 'b':
+				text.append('\b');
+				break;
+			case 'f':
+				text.append('\f');
+				break;
+			case 'n':
+				text.append('\n');
+				break;
+			case 'r':
+				text.append('\r');
+				break;
+			case 't':
+				text.append('\t');
+				break;
+			case 'u':
+				int codePoint = 0;
+				for (int i = 0; i < 4; i++) {
+					int digit = Character.digit(read(), 16);
+					if (digit < 0) {
+						throw syntaxError("Invalid unicode escape");
+					}
+					codePoint = codePoint * 16 + digit;
+				}
+				text.append((char) codePoint);
+				break;
+			case -1:
+				throw syntaxError("Unterminated string");
+			default:
+				text.append((char) c);
+			}
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			int c = read();
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				return c;
+			}
+		}
+	}
+
+	private static boolean isDelimiter(char c) {
+		return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\t' || c == '\n'
+				|| c == '\r';
+	}
+
+	private int read() throws IOException {
+		return fill() ? buffer[position++] : -1;
+	}
+
+	/**
+	 * @return false at the end of the stream
+	 */
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		int read = reader.read(buffer, 0, buffer.length);
+		if (read <= 0) {
+			return false;
+		}
+		position = 0;
+		limit = read;
+		return true;
+	}
+
+	private JSONException syntaxError(String message) {
+		return new JSONException(message + " at scope " + scopesSize + ".");
+	}
+}
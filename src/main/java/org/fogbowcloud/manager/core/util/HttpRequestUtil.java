@@ -1,21 +1,61 @@
 package org.fogbowcloud.manager.core.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 
+/**
+ * Creates the HTTP clients of the manager and its plugins. Clients without a
+ * connection manager or SSL socket factory of their own share one pool of
+ * connections, so connections to the cloud endpoints are kept alive and
+ * reused by all plugins. Clients with their own SSL socket factory (e.g. with
+ * a client certificate of a user) can not share connections with the others
+ * and get a pool of their own, with the same limits, whose idle connections
+ * are evicted along with the shared ones.
+ */
 public class HttpRequestUtil {
 	
 	private static final Logger LOGGER = Logger.getLogger(HttpRequestUtil.class);	
 	public static int DEFAULT_TIMEOUT_REQUEST = 60000; // 1 minute
+	public static final int DEFAULT_MAX_CONNECTIONS = 200;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000; // 10 seconds
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 10000; // 10 seconds
+	public static final int DEFAULT_IDLE_TIMEOUT = 30000; // 30 seconds
+	private static final int VALIDATE_AFTER_INACTIVITY = 2000; // 2 seconds
 	
 	private static Integer timeoutHttpRequest;
+	private static int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private static int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+	private static int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private static int connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+	private static int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+	
+	private static PoolingHttpClientConnectionManager connectionManager;
+	private static ScheduledExecutorService idleConnectionsEvictor;
+	// pools of the clients with their own SSL socket factory, dropped with their clients
+	private static final Set<PoolingHttpClientConnectionManager> sslConnectionManagers = Collections
+			.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<PoolingHttpClientConnectionManager, Boolean>()));
 	
 	public static void init(Properties properties) {
 		try {
@@ -33,6 +73,120 @@ public class HttpRequestUtil {
 			throw e;
 		}
 		LOGGER.info("The default HttpRequestUtil timeout is: " + timeoutHttpRequest + " ms.");
+		initConnectionPool(properties);
+	}
+	
+	protected static synchronized void initConnectionPool(Properties properties) {
+		maxConnections = PropertiesUtil.getInt(properties,
+				ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_KEY, DEFAULT_MAX_CONNECTIONS);
+		maxConnectionsPerRoute = PropertiesUtil.getInt(properties,
+				ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE_KEY, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+		connectTimeout = PropertiesUtil.getInt(properties,
+				ConfigurationConstants.HTTP_CLIENT_CONNECT_TIMEOUT_KEY, DEFAULT_CONNECT_TIMEOUT);
+		connectionRequestTimeout = PropertiesUtil.getInt(properties,
+				ConfigurationConstants.HTTP_CLIENT_CONNECTION_REQUEST_TIMEOUT_KEY, DEFAULT_CONNECTION_REQUEST_TIMEOUT);
+		idleTimeout = PropertiesUtil.getInt(properties, ConfigurationConstants.HTTP_CLIENT_IDLE_TIMEOUT_KEY,
+				DEFAULT_IDLE_TIMEOUT);
+		if (connectionManager != null) {
+			connectionManager.setMaxTotal(maxConnections);
+			connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		}
+		LOGGER.info("HTTP connection pool: " + maxConnections + " connections, " + maxConnectionsPerRoute
+				+ " per route, idle timeout of " + idleTimeout + " ms.");
+	}
+	
+	/**
+	 * @return the pool shared by the clients created without a connection
+	 *         manager or SSL socket factory of their own
+	 */
+	public static synchronized PoolingHttpClientConnectionManager getConnectionManager() {
+		if (connectionManager == null) {
+			connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(maxConnections);
+			connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+			connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+			idleConnectionsEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "http-idle-connections-evictor");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			final long period = Math.max(1000, idleTimeout / 2);
+			idleConnectionsEvictor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					evictIdleConnections();
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+		return connectionManager;
+	}
+	
+	protected static void evictIdleConnections() {
+		try {
+			PoolingHttpClientConnectionManager connectionManager = getConnectionManager();
+			evictIdleConnections(connectionManager);
+			List<PoolingHttpClientConnectionManager> sslManagers;
+			synchronized (sslConnectionManagers) {
+				sslManagers = new ArrayList<PoolingHttpClientConnectionManager>(sslConnectionManagers);
+			}
+			for (PoolingHttpClientConnectionManager sslManager : sslManagers) {
+				evictIdleConnections(sslManager);
+			}
+			PoolStats stats = connectionManager.getTotalStats();
+			if (stats.getPending() > 0) {
+				LOGGER.warn("HTTP connection pool is exhausted: " + stats);
+			} else {
+				LOGGER.debug("HTTP connection pool: " + stats);
+			}
+		} catch (Throwable e) {
+			LOGGER.warn("Could not evict idle HTTP connections.", e);
+		}
+	}
+	
+	private static void evictIdleConnections(PoolingHttpClientConnectionManager connectionManager) {
+		connectionManager.closeExpiredConnections();
+		connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * @return a pool for a client with its own SSL socket factory, with the
+	 *         limits of the shared one
+	 */
+	protected static PoolingHttpClientConnectionManager createSSLConnectionManager(
+			SSLConnectionSocketFactory sslsf) {
+		PoolingHttpClientConnectionManager sslConnectionManager = new PoolingHttpClientConnectionManager(
+				RegistryBuilder.<ConnectionSocketFactory> create()
+						.register("http", PlainConnectionSocketFactory.getSocketFactory())
+						.register("https", sslsf).build());
+		sslConnectionManager.setMaxTotal(maxConnections);
+		sslConnectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		sslConnectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+		// starts the evictor if no client of the shared pool did it yet
+		getConnectionManager();
+		sslConnectionManagers.add(sslConnectionManager);
+		return sslConnectionManager;
+	}
+	
+	protected static int getSSLConnectionManagersCount() {
+		return sslConnectionManagers.size();
+	}
+	
+	/**
+	 * @return leased, pending, available and max connections of the shared pool
+	 */
+	public static PoolStats getPoolStats() {
+		return getConnectionManager().getTotalStats();
+	}
+	
+	public static int getLeasedConnections() {
+		return getPoolStats().getLeased();
+	}
+	
+	public static int getPendingConnections() {
+		return getPoolStats().getPending();
 	}
 	
 	public static CloseableHttpClient createHttpClient() {
@@ -55,9 +209,20 @@ public class HttpRequestUtil {
 		setDefaultResquestConfig(timeout, builder);
 		setSSLConnection(sslsf, builder);
 		setConnectionManager(connManager, builder);
+		if (connManager == null && sslsf == null) {
+			setSharedConnectionManager(builder);
+		} else if (connManager == null) {
+			setConnectionManager(createSSLConnectionManager(sslsf), builder);
+		}
 		
 		return builder.build();
 	}
+	
+	protected static void setSharedConnectionManager(HttpClientBuilder builder) {
+		builder.setConnectionManager(getConnectionManager());
+		// closing one of the clients must not shut the pool down
+		builder.setConnectionManagerShared(true);
+	}
 
 	protected static void setDefaultResquestConfig(Integer timeout, HttpClientBuilder builder) {
 		RequestConfig.Builder requestBuilder = RequestConfig.custom();		
@@ -66,6 +231,8 @@ public class HttpRequestUtil {
 		}
 		LOGGER.debug("Creating httpclient with timeout: " + timeout);
 		requestBuilder = requestBuilder.setSocketTimeout(timeout);
+		requestBuilder = requestBuilder.setConnectTimeout(timeout > 0 ? Math.min(connectTimeout, timeout) : connectTimeout);
+		requestBuilder = requestBuilder.setConnectionRequestTimeout(connectionRequestTimeout);
 		builder.setDefaultRequestConfig(requestBuilder.build());
 	}
 
@@ -78,6 +245,8 @@ public class HttpRequestUtil {
 	protected static void setSSLConnection(SSLConnectionSocketFactory sslsf, HttpClientBuilder builder) {
 		if (sslsf != null) {
 			builder.setSSLSocketFactory(sslsf);
+			builder.setMaxConnTotal(maxConnections);
+			builder.setMaxConnPerRoute(maxConnectionsPerRoute);
 		}
 	}
 	
@@ -0,0 +1,47 @@
+package org.fogbowcloud.manager.core.util;
+
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads numeric settings of the manager properties. A missing or empty value
+ * gives the default, and so does an invalid one, with a warning, so a typo in
+ * the configuration does not stop the manager.
+ */
+public class PropertiesUtil {
+
+	private static final Logger LOGGER = Logger.getLogger(PropertiesUtil.class);
+
+	/**
+	 * @param properties manager properties, may be null.
+	 */
+	public static long getLong(Properties properties, String key, long defaultValue) {
+		String value = properties == null ? null : properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid " + key + ": " + value + ". Using " + defaultValue + ".");
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * @param properties manager properties, may be null.
+	 */
+	public static int getInt(Properties properties, String key, int defaultValue) {
+		String value = properties == null ? null : properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid " + key + ": " + value + ". Using " + defaultValue + ".");
+			return defaultValue;
+		}
+	}
+}
@@ -10,9 +10,9 @@ import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.order.OrderConstants;
-import org.json.JSONException;
 import org.restlet.data.MediaType;
 import org.restlet.engine.adapter.HttpRequest;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 import org.restlet.resource.ServerResource;
@@ -20,9 +20,12 @@ import org.restlet.resource.ServerResource;
 public class AccountingServerResource extends ServerResource {
 
 	private static final Logger LOGGER = Logger.getLogger(AccountingServerResource.class);
+	// milliseconds since the epoch, to get the usage accounted between them
+	protected static final String START_TIME_PARAMETER = "start";
+	protected static final String END_TIME_PARAMETER = "end";
 
 	@Get
-	public StringRepresentation fetch() {
+	public Representation fetch() {
 		LOGGER.debug("Executing the accounting fetch method");
 		OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
@@ -32,17 +35,31 @@ public class AccountingServerResource extends ServerResource {
 		
 		List<AccountingInfo> accountingInfo = null;
 		String uri = getRequest().getOriginalRef().toString();
+		if (uri.contains("?")) {
+			uri = uri.substring(0, uri.indexOf("?"));
+		}
+		String resourceKing = null;
 		if (uri.endsWith(OrderConstants.COMPUTE_TERM)) {
-			accountingInfo = application.getAccountingInfo(authToken, OrderConstants.COMPUTE_TERM);
+			resourceKing = OrderConstants.COMPUTE_TERM;
 		} else if (uri.endsWith(OrderConstants.STORAGE_TERM)) {
-			accountingInfo = application.getAccountingInfo(authToken, OrderConstants.STORAGE_TERM);
-		}		
+			resourceKing = OrderConstants.STORAGE_TERM;
+		}
+		if (resourceKing != null) {
+			String startTime = getQuery().getValues(START_TIME_PARAMETER);
+			String endTime = getQuery().getValues(END_TIME_PARAMETER);
+			if (startTime == null && endTime == null) {
+				accountingInfo = application.getAccountingInfo(authToken, resourceKing);
+			} else {
+				accountingInfo = application.getAccountingInfo(authToken, resourceKing,
+						parseTime(startTime, 0), parseTime(endTime, System.currentTimeMillis()));
+			}
+		}
 		
 		List<String> listAccept = HeaderUtils.getAccept(req.getHeaders());
 		String acceptType = getAccept(listAccept);
 		if (acceptType.equals(OCCIHeaders.JSON_CONTENT_TYPE)) {
 			LOGGER.debug("Response will be returned in Json format.");
-			return generateJsonResponse(accountingInfo);
+			return JsonSerializer.accounting(accountingInfo);
 		} else if (acceptType.equals(MediaType.TEXT_PLAIN.toString())) {
 			LOGGER.debug("Response will be returned in Text Plain format.");
 			return generateTextPlainResponse(accountingInfo);
@@ -51,6 +68,17 @@ public class AccountingServerResource extends ServerResource {
 				ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 	}
 	
+	private static long parseTime(String time, long defaultTime) {
+		if (time == null || time.isEmpty()) {
+			return defaultTime;
+		}
+		try {
+			return Long.parseLong(time.trim());
+		} catch (NumberFormatException e) {
+			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+		}
+	}
+	
 	private String getAccept(List<String> listAccept) {
 		if (listAccept.size() > 0 ) {
 			if (listAccept.get(0).contains(MediaType.TEXT_PLAIN.toString())) {
@@ -79,16 +107,5 @@ public class AccountingServerResource extends ServerResource {
 		}
 		return new StringRepresentation(response.toString(), MediaType.TEXT_PLAIN);
 	}
-		
-	private StringRepresentation generateJsonResponse(List<AccountingInfo> accountingInfo) {
-		try {
-			return new StringRepresentation(JSONHelper.mountAccountingInfoJSON(accountingInfo)
-					.toString(), MediaType.APPLICATION_JSON);
-		} catch (JSONException e) {
-			LOGGER.error("Error while mounting JSON response.", e);
-			throw new OCCIException(ErrorType.INTERNAL_SERVER_ERROR,
-					"Error while mounting JSON response.");
-		}
-	}
 }
 
@@ -0,0 +1,497 @@
+package org.fogbowcloud.manager.occi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Bounded pool of SQLite connections shared by every data store pointing to the
+ * same URL. Connections are opened in WAL journal mode, so readers do not block
+ * the writer, and keep the prepared statements created through
+ * {@link Connection#prepareStatement(String)} to be reused by the next borrower.
+ *
+ * Connections handed out by the pool are returned to it when closed. A
+ * transaction left open by the borrower is rolled back before the connection
+ * becomes idle again.
+ */
+public class DataStoreConnectionPool {
+
+	private static final Logger LOGGER = Logger.getLogger(DataStoreConnectionPool.class);
+
+	public static final int DEFAULT_MAX_SIZE = 10;
+	public static final long DEFAULT_BORROW_TIMEOUT = 30000;
+	protected static final String BUSY_TIMEOUT = "30000";
+
+	private static final Map<String, DataStoreConnectionPool> POOLS = new HashMap<String, DataStoreConnectionPool>();
+
+	private final String dataStoreURL;
+	private final int maxSize;
+	private final long borrowTimeout;
+	private Semaphore permits;
+	private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+	private int openConnections = 0;
+	private long generation = 0;
+
+	private final AtomicLong borrows = new AtomicLong();
+	private final AtomicLong waits = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong statementCacheHits = new AtomicLong();
+	private final AtomicLong statementCacheMisses = new AtomicLong();
+
+	protected DataStoreConnectionPool(String dataStoreURL, int maxSize, long borrowTimeout) {
+		this.dataStoreURL = dataStoreURL;
+		this.maxSize = maxSize;
+		this.borrowTimeout = borrowTimeout;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Returns the pool of the given URL, creating it with <code>maxSize</code>
+	 * connections if it does not exist yet.
+	 */
+	public static DataStoreConnectionPool getPool(String dataStoreURL, int maxSize) {
+		synchronized (POOLS) {
+			DataStoreConnectionPool pool = POOLS.get(dataStoreURL);
+			if (pool == null) {
+				pool = new DataStoreConnectionPool(dataStoreURL, maxSize > 0 ? maxSize
+						: DEFAULT_MAX_SIZE, DEFAULT_BORROW_TIMEOUT);
+				POOLS.put(dataStoreURL, pool);
+			}
+			return pool;
+		}
+	}
+
+	public static DataStoreConnectionPool getPool(String dataStoreURL) {
+		return getPool(dataStoreURL, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param properties manager properties, may be null.
+	 */
+	public static int getMaxSize(Properties properties) {
+		return PropertiesUtil.getInt(properties, ConfigurationConstants.DATASTORE_CONNECTION_POOL_SIZE,
+				DEFAULT_MAX_SIZE);
+	}
+
+	public static Properties getConnectionProperties() {
+		SQLiteConfig config = new SQLiteConfig();
+		config.enforceForeignKeys(true);
+		config.setBusyTimeout(BUSY_TIMEOUT);
+		config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+		config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+		return config.toProperties();
+	}
+
+	public Connection getConnection() throws SQLException {
+		borrows.incrementAndGet();
+		Semaphore permits = getPermits();
+		if (!permits.tryAcquire()) {
+			waits.incrementAndGet();
+			boolean acquired = false;
+			try {
+				acquired = permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!acquired) {
+				timeouts.incrementAndGet();
+				throw new SQLException("Timed out waiting for a connection to " + dataStoreURL);
+			}
+		}
+
+		try {
+			PooledConnection pooledConnection = takeIdle();
+			if (pooledConnection == null) {
+				pooledConnection = open();
+			}
+			return pooledConnection.lend(permits);
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the idle connections and renews the permits. Connections borrowed
+	 * at this moment are closed when returned. It is meant for a database file
+	 * replaced on disk, as tests do, and is not called by the data stores.
+	 */
+	public void reset() {
+		LinkedList<PooledConnection> toClose;
+		synchronized (this) {
+			generation++;
+			permits = new Semaphore(maxSize, true);
+			toClose = new LinkedList<PooledConnection>(idleConnections);
+			idleConnections.clear();
+		}
+		for (PooledConnection pooledConnection : toClose) {
+			discard(pooledConnection);
+		}
+	}
+
+	/**
+	 * Resets and forgets every pool, so the next data store opens new
+	 * connections. To be used only by tests, before removing database files.
+	 */
+	protected static void resetPools() {
+		synchronized (POOLS) {
+			for (DataStoreConnectionPool pool : POOLS.values()) {
+				pool.reset();
+			}
+			POOLS.clear();
+		}
+	}
+
+	private synchronized Semaphore getPermits() {
+		return permits;
+	}
+
+	private synchronized PooledConnection takeIdle() {
+		return idleConnections.poll();
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection connection = DriverManager.getConnection(dataStoreURL, getConnectionProperties());
+		synchronized (this) {
+			openConnections++;
+			return new PooledConnection(connection, generation);
+		}
+	}
+
+	private void giveBack(PooledConnection pooledConnection, Semaphore borrowedPermits) {
+		try {
+			boolean reusable = true;
+			try {
+				pooledConnection.releaseStatements();
+				Connection connection = pooledConnection.getConnection();
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+					connection.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				LOGGER.warn("Couldn't reset pooled connection to " + dataStoreURL, e);
+				reusable = false;
+			}
+			synchronized (this) {
+				if (reusable && pooledConnection.getGeneration() == generation) {
+					idleConnections.addFirst(pooledConnection);
+					return;
+				}
+			}
+			discard(pooledConnection);
+		} finally {
+			borrowedPermits.release();
+		}
+	}
+
+	private void discard(PooledConnection pooledConnection) {
+		synchronized (this) {
+			openConnections--;
+		}
+		pooledConnection.closeStatements();
+		try {
+			pooledConnection.getConnection().close();
+		} catch (SQLException e) {
+			LOGGER.warn("Couldn't close pooled connection to " + dataStoreURL, e);
+		}
+	}
+
+	public String getDataStoreURL() {
+		return dataStoreURL;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized int getOpenConnections() {
+		return openConnections;
+	}
+
+	public synchronized int getIdleConnections() {
+		return idleConnections.size();
+	}
+
+	public int getActiveConnections() {
+		return maxSize - getPermits().availablePermits();
+	}
+
+	public long getBorrowCount() {
+		return borrows.get();
+	}
+
+	public long getWaitCount() {
+		return waits.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	public long getStatementCacheHits() {
+		return statementCacheHits.get();
+	}
+
+	public long getStatementCacheMisses() {
+		return statementCacheMisses.get();
+	}
+
+	@Override
+	public String toString() {
+		return "DataStoreConnectionPool [url=" + dataStoreURL + ", max=" + maxSize + ", open="
+				+ getOpenConnections() + ", idle=" + getIdleConnections() + ", active="
+				+ getActiveConnections() + ", borrows=" + getBorrowCount() + ", waits="
+				+ getWaitCount() + ", timeouts=" + getTimeoutCount() + ", statementCacheHits="
+				+ getStatementCacheHits() + ", statementCacheMisses=" + getStatementCacheMisses() + "]";
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	/**
+	 * Physical connection kept by the pool, with its prepared statements.
+	 */
+	private class PooledConnection {
+
+		private final Connection connection;
+		private final long generation;
+		private final Map<String, CachedStatement> statements = new HashMap<String, CachedStatement>();
+
+		public PooledConnection(Connection connection, long generation) {
+			this.connection = connection;
+			this.generation = generation;
+		}
+
+		public Connection getConnection() {
+			return connection;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
+
+		public Connection lend(Semaphore permits) {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new BorrowedConnection(this, permits));
+		}
+
+		public PreparedStatement prepareStatement(String sql) throws SQLException {
+			CachedStatement cachedStatement = statements.get(sql);
+			if (cachedStatement != null && !cachedStatement.isInUse()) {
+				statementCacheHits.incrementAndGet();
+			} else {
+				statementCacheMisses.incrementAndGet();
+				if (cachedStatement != null) {
+					// same SQL prepared twice by one borrower: the second one is not cached
+					return connection.prepareStatement(sql);
+				}
+				cachedStatement = new CachedStatement(connection.prepareStatement(sql));
+				statements.put(sql, cachedStatement);
+			}
+			return cachedStatement.lend();
+		}
+
+		/**
+		 * Statements the borrower did not close are released with the connection.
+		 */
+		public void releaseStatements() {
+			for (CachedStatement cachedStatement : statements.values()) {
+				if (cachedStatement.isInUse()) {
+					try {
+						cachedStatement.release(cachedStatement.getLease());
+					} catch (SQLException e) {
+						LOGGER.debug("Couldn't release cached statement.", e);
+					}
+				}
+			}
+		}
+
+		public void closeStatements() {
+			for (CachedStatement cachedStatement : statements.values()) {
+				try {
+					cachedStatement.getStatement().close();
+				} catch (SQLException e) {
+					LOGGER.debug("Couldn't close cached statement.", e);
+				}
+			}
+			statements.clear();
+		}
+	}
+
+	private class BorrowedConnection implements InvocationHandler {
+
+		private final PooledConnection pooledConnection;
+		private final Semaphore permits;
+		private boolean closed = false;
+
+		public BorrowedConnection(PooledConnection pooledConnection, Semaphore permits) {
+			this.pooledConnection = pooledConnection;
+			this.permits = permits;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("close")) {
+				if (!closed) {
+					closed = true;
+					giveBack(pooledConnection, permits);
+				}
+				return null;
+			}
+			if (name.equals("isClosed")) {
+				return closed;
+			}
+			if (name.equals("equals")) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if (name.equals("toString")) {
+				return "Pooled " + pooledConnection.getConnection();
+			}
+			if (closed) {
+				throw new SQLException("Connection already returned to the pool.");
+			}
+			if (name.equals("prepareStatement") && args != null && args.length == 1) {
+				return pooledConnection.prepareStatement((String) args[0]);
+			}
+			return DataStoreConnectionPool.invoke(pooledConnection.getConnection(), method, args);
+		}
+	}
+
+	/**
+	 * Prepared statement kept open between borrows. Closing it only clears its
+	 * parameters and the result set it produced.
+	 */
+	private static class CachedStatement {
+
+		private final PreparedStatement statement;
+		private boolean inUse = false;
+		private long lease = 0;
+		private ResultSet resultSet;
+
+		public CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+		}
+
+		public PreparedStatement getStatement() {
+			return statement;
+		}
+
+		public boolean isInUse() {
+			return inUse;
+		}
+
+		public long getLease() {
+			return lease;
+		}
+
+		public PreparedStatement lend() {
+			inUse = true;
+			lease++;
+			return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, new BorrowedStatement(this, lease));
+		}
+
+		/**
+		 * Does nothing if the statement was lent again since <code>lendLease</code>.
+		 */
+		public void release(long lendLease) throws SQLException {
+			if (!inUse || lendLease != lease) {
+				return;
+			}
+			inUse = false;
+			try {
+				closeResultSet();
+			} finally {
+				statement.clearParameters();
+				statement.clearBatch();
+			}
+		}
+
+		private void closeResultSet() throws SQLException {
+			if (resultSet != null) {
+				ResultSet toClose = resultSet;
+				resultSet = null;
+				toClose.close();
+			}
+		}
+
+		public Object execute(Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("executeQuery") || name.equals("execute") || name.equals("executeUpdate")) {
+				closeResultSet();
+			}
+			Object result = DataStoreConnectionPool.invoke(statement, method, args);
+			if (result instanceof ResultSet) {
+				resultSet = (ResultSet) result;
+			}
+			return result;
+		}
+	}
+
+	private static class BorrowedStatement implements InvocationHandler {
+
+		private final CachedStatement cachedStatement;
+		private final long lease;
+		private boolean closed = false;
+
+		public BorrowedStatement(CachedStatement cachedStatement, long lease) {
+			this.cachedStatement = cachedStatement;
+			this.lease = lease;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if (name.equals("close")) {
+				if (!closed) {
+					closed = true;
+					cachedStatement.release(lease);
+				}
+				return null;
+			}
+			if (name.equals("isClosed")) {
+				return closed || cachedStatement.getLease() != lease || !cachedStatement.isInUse();
+			}
+			if (name.equals("equals")) {
+				return proxy == args[0];
+			}
+			if (name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			if (closed || cachedStatement.getLease() != lease) {
+				throw new SQLException("Statement already closed.");
+			}
+			return cachedStatement.execute(method, args);
+		}
+	}
+}
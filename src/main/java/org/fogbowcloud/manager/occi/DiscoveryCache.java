@@ -0,0 +1,109 @@
+package org.fogbowcloud.manager.occi;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the Category lines of the query interface responses, so the discovery
+ * document is not rebuilt from the resources on every request. Entries are
+ * kept for one {@link org.fogbowcloud.manager.occi.model.ResourceRepository}
+ * version and dropped when images, flavors or templates are added to it.
+ */
+public class DiscoveryCache {
+
+	protected static final int MAX_ENTRIES = 32;
+
+	private final Map<String, Discovery> entries = new LinkedHashMap<String, Discovery>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Discovery> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	private long version = -1;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @return the key of a response, made of the categories it was filtered
+	 *         by and of the resources of the local cloud it includes
+	 */
+	public static String getKey(List<String> filterCategories, String localCloudResources) {
+		StringBuilder key = new StringBuilder();
+		if (filterCategories != null) {
+			for (String filterCategory : filterCategories) {
+				key.append(filterCategory).append("\n");
+			}
+		}
+		key.append("\n");
+		if (localCloudResources != null) {
+			key.append(localCloudResources);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @return the response kept for the key, or null if there is none for the
+	 *         given resources version
+	 */
+	public synchronized Discovery get(long resourcesVersion, String key) {
+		Discovery discovery = resourcesVersion == version ? entries.get(key) : null;
+		if (discovery == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return discovery;
+	}
+
+	public synchronized Discovery put(long resourcesVersion, String key, String categories) {
+		if (resourcesVersion != version) {
+			entries.clear();
+			version = resourcesVersion;
+		}
+		Discovery discovery = new Discovery(categories, resourcesVersion + "-"
+				+ Integer.toHexString(categories.hashCode()));
+		entries.put(key, discovery);
+		return discovery;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public static class Discovery {
+
+		private final String categories;
+		private final String tag;
+
+		private Discovery(String categories, String tag) {
+			this.categories = categories;
+			this.tag = tag;
+		}
+
+		/**
+		 * @return the "Category: " lines of the response
+		 */
+		public String getCategories() {
+			return categories;
+		}
+
+		/**
+		 * @return the entity tag of the response, without quotes
+		 */
+		public String getTag() {
+			return tag;
+		}
+	}
+}
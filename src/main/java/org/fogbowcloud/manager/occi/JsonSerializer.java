@@ -0,0 +1,154 @@
+package org.fogbowcloud.manager.occi;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
+import org.fogbowcloud.manager.occi.instance.Instance;
+import org.fogbowcloud.manager.occi.instance.Instance.Link;
+import org.fogbowcloud.manager.occi.model.Category;
+import org.fogbowcloud.manager.occi.model.JsonStreamRepresentation;
+import org.fogbowcloud.manager.occi.model.JsonStreamWriter;
+import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.restlet.representation.Representation;
+
+/**
+ * application/json responses of the OCCI resources. Listings are objects with
+ * an array of entries, e.g. {"orders":[...]}, so fields can be added to them
+ * later. The accounting response keeps the format of
+ * {@link JSONHelper#mountAccountingInfoJSON(List)}.
+ */
+public class JsonSerializer {
+
+	public static final String ORDERS = "orders";
+	public static final String INSTANCES = "instances";
+	public static final String MEMBERS = "members";
+	public static final String ACCOUNTING = "accounting";
+
+	public static Representation orders(final List<Order> orders) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				json.beginObject().name(ORDERS).beginArray();
+				for (Order order : orders) {
+					writeOrder(json, order);
+				}
+				json.endArray().endObject();
+			}
+		};
+	}
+
+	public static Representation order(final Order order) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				writeOrder(json, order);
+			}
+		};
+	}
+
+	public static Representation instances(final List<Instance> instances) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				json.beginObject().name(INSTANCES).beginArray();
+				for (Instance instance : instances) {
+					writeInstance(json, instance);
+				}
+				json.endArray().endObject();
+			}
+		};
+	}
+
+	public static Representation instance(final Instance instance) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				writeInstance(json, instance);
+			}
+		};
+	}
+
+	public static Representation members(final List<FederationMember> members) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				json.beginObject().name(MEMBERS).beginArray();
+				for (FederationMember member : members) {
+					json.beginObject().name("id").value(member.getId()).endObject();
+				}
+				json.endArray().endObject();
+			}
+		};
+	}
+
+	public static Representation accounting(final List<AccountingInfo> accountingInfo) {
+		return new JsonStreamRepresentation() {
+			@Override
+			protected void write(JsonStreamWriter json) throws IOException {
+				json.beginObject().name(ACCOUNTING).beginArray();
+				if (accountingInfo != null) {
+					for (AccountingInfo entry : accountingInfo) {
+						json.beginObject().name("user").value(entry.getUser())
+								.name("requestingMember").value(entry.getRequestingMember())
+								.name("providingMember").value(entry.getProvidingMember())
+								.name("usage").value(entry.getUsage()).endObject();
+					}
+				}
+				json.endArray().endObject();
+			}
+		};
+	}
+
+	protected static void writeOrder(JsonStreamWriter json, Order order) throws IOException {
+		json.beginObject();
+		json.name("id").value(order.getId());
+		json.name("state").value(order.getState() == null ? null : order.getState().getValue());
+		json.name("requestingMember").value(order.getRequestingMemberId());
+		json.name("providingMember").value(order.getProvidingMemberId());
+		json.name("instanceId").value(order.getGlobalInstanceId());
+		json.name("categories").beginArray();
+		if (order.getCategories() != null) {
+			for (Category category : order.getCategories()) {
+				writeCategory(json, category);
+			}
+		}
+		json.endArray();
+		json.name("attributes").value(order.getxOCCIAtt());
+		json.endObject();
+	}
+
+	protected static void writeInstance(JsonStreamWriter json, Instance instance) throws IOException {
+		json.beginObject();
+		json.name("id").value(instance.getId());
+		if (instance.getState() != null) {
+			json.name("state").value(instance.getState().getOcciState());
+		}
+		if (instance.getResources() != null) {
+			json.name("categories").beginArray();
+			for (Resource resource : instance.getResources()) {
+				writeCategory(json, resource.getCategory());
+			}
+			json.endArray();
+		}
+		if (instance.getLinks() != null) {
+			json.name("links").beginArray();
+			for (Link link : instance.getLinks()) {
+				json.beginObject().name("name").value(link.getName()).name("attributes")
+						.value(link.getAttributes()).endObject();
+			}
+			json.endArray();
+		}
+		if (instance.getAttributes() != null) {
+			json.name("attributes").value(instance.getAttributes());
+		}
+		json.endObject();
+	}
+
+	private static void writeCategory(JsonStreamWriter json, Category category) throws IOException {
+		json.beginObject().name("term").value(category.getTerm()).name("scheme").value(category.getScheme())
+				.name("class").value(category.getCatClass()).endObject();
+	}
+}
@@ -1,7 +1,6 @@
 package org.fogbowcloud.manager.occi;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,22 +9,25 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
 import org.fogbowcloud.manager.occi.order.OrderState;
 import org.fogbowcloud.manager.occi.storage.StorageLink;
 import org.json.JSONException;
 import org.json.JSONObject;
-import org.sqlite.SQLiteConfig;
 
 public class ManagerDataStore {
 
 	public static final String ERROR_WHILE_INITIALIZING_THE_DATA_STORE = "Error while initializing the Manager DataStore.";
 	private static final Logger LOGGER = Logger.getLogger(ManagerDataStore.class);
 	public static final String MANAGER_DATASTORE_URL = "manager_datastore_url";
+	public static final String MANAGER_DATASTORE_ORDER_INDEX = "manager_datastore_order_index";
 	private static final String DEFAULT_DATASTORE_NAME = "datastore_manager.slite";
 	protected static final String MANAGER_DATASTORE_SQLITE_DRIVER = "org.sqlite.JDBC";
 	protected static final String ORDER_TABLE_NAME = "t_order";
@@ -43,6 +45,7 @@ public class ManagerDataStore {
 	protected static final String UPDATED = "updated";
 	protected static final String SYNCRONOUS_STATUS = "asyncronous_status";
 	protected static final String SYNCRONOUS_TIMESTAMP = "asyncronous_timestamp";
+	protected static final String USER_ID = "user_id";
 	
 	protected static final String STORAGELINK_TABLE_NAME = "t_storagelink";
 	protected static final String STORAGELINK_ID = "storage_link_id";
@@ -53,11 +56,15 @@ public class ManagerDataStore {
 	protected static final String FEDERTION_MEMBER_ID = "federation_member_id";
 	
 	private String dataStoreURL;
+	private DataStoreConnectionPool connectionPool;
+	private OrderIndex orderIndex;
 
 	public ManagerDataStore(Properties properties) {
 		String dataStoreURLProperties = properties.getProperty(MANAGER_DATASTORE_URL);
 		this.dataStoreURL = DataStoreHelper.getDataStoreUrl(dataStoreURLProperties,
 				DEFAULT_DATASTORE_NAME);
+		this.connectionPool = DataStoreConnectionPool.getPool(this.dataStoreURL,
+				DataStoreConnectionPool.getMaxSize(properties));
 		
 		Statement statement = null;
 		Connection connection = null;
@@ -82,7 +89,9 @@ public class ManagerDataStore {
 							+ UPDATED + " TIMESTAMP, "
 							+ SYNCRONOUS_STATUS + " BOOLEAN, "
 							+ SYNCRONOUS_TIMESTAMP + " TIMESTAMP, "
-							+ XOCCI_ATTRIBUTES + " TEXT)");
+							+ XOCCI_ATTRIBUTES + " TEXT, "
+							+ USER_ID + " VARCHAR(255), "
+							+ RESOURCE_KIND + " VARCHAR(255))");
 			statement.execute("CREATE TABLE IF NOT EXISTS " + STORAGELINK_TABLE_NAME + "(" 
 							+ STORAGELINK_ID + " VARCHAR(255) PRIMARY KEY, "
 							+ SOURCE + " VARCHAR(255), "
@@ -97,58 +106,155 @@ public class ManagerDataStore {
 							+ "FOREIGN KEY (" + ORDER_ID + ") REFERENCES " 
 							+ ORDER_TABLE_NAME + "(" + ORDER_ID + ") ON DELETE CASCADE)");			
 			statement.close();
+			
+			migrateOrderTable(connection);
 		} catch (Exception e) {
 			LOGGER.error(ERROR_WHILE_INITIALIZING_THE_DATA_STORE, e);
 			throw new Error(ERROR_WHILE_INITIALIZING_THE_DATA_STORE, e);
 		} finally {
 			close(statement, connection);
 		}
+		
+		if (!"false".equalsIgnoreCase(properties.getProperty(MANAGER_DATASTORE_ORDER_INDEX))) {
+			this.orderIndex = OrderIndex.getIndex(this.dataStoreURL);
+			synchronized (getWriteLock()) {
+				this.orderIndex.load(getStoredOrders(null));
+			}
+			LOGGER.debug("Order index rebuilt with " + this.orderIndex.size() + " orders.");
+		}
+	}
+	
+	/**
+	 * The order index is shared by the data stores of the same URL, so their
+	 * writes to the table and to the index are serialized on the index, and
+	 * the index sees them in the same order as the table.
+	 */
+	private Object getWriteLock() {
+		return this.orderIndex != null ? this.orderIndex : this;
+	}
+	
+	private static final String[] ORDER_TABLE_INDEXES = new String[] {
+			"CREATE INDEX IF NOT EXISTS idx_order_state ON " + ORDER_TABLE_NAME 
+					+ "(" + STATE + ", " + RESOURCE_KIND + ")",
+			"CREATE INDEX IF NOT EXISTS idx_order_instance_id ON " + ORDER_TABLE_NAME 
+					+ "(" + INSTANCE_ID + ")",
+			"CREATE INDEX IF NOT EXISTS idx_order_is_local ON " + ORDER_TABLE_NAME 
+					+ "(" + IS_LOCAL + ")",
+			"CREATE INDEX IF NOT EXISTS idx_order_user_id ON " + ORDER_TABLE_NAME 
+					+ "(" + USER_ID + ", " + IS_LOCAL + ")" };
+	
+	private static final String SELECT_ORDER_TO_MIGRATE_SQL = "SELECT " + ORDER_ID + ", " 
+			+ FEDERATION_TOKEN + ", " + XOCCI_ATTRIBUTES + " FROM " + ORDER_TABLE_NAME;
+	
+	private static final String UPDATE_MIGRATED_ORDER_SQL = "UPDATE " + ORDER_TABLE_NAME + " SET "
+			+ USER_ID + "=?, " + RESOURCE_KIND + "=? WHERE " + ORDER_ID + "=?";
+	
+	/**
+	 * Tables created before the user and resource kind columns existed get them
+	 * here, filled from the federation token and xOCCI attributes of each order.
+	 */
+	private void migrateOrderTable(Connection connection) throws SQLException, JSONException {
+		Statement statement = null;
+		PreparedStatement updateOrderStmt = null;
+		try {
+			statement = connection.createStatement();
+			List<String> columns = new ArrayList<String>();
+			ResultSet resultSet = statement.executeQuery("PRAGMA table_info(" + ORDER_TABLE_NAME + ")");
+			while (resultSet.next()) {
+				columns.add(resultSet.getString("name"));
+			}
+			resultSet.close();
+			
+			if (!columns.contains(USER_ID) || !columns.contains(RESOURCE_KIND)) {
+				LOGGER.info("Adding " + USER_ID + " and " + RESOURCE_KIND + " columns to " + ORDER_TABLE_NAME);
+				connection.setAutoCommit(false);
+				if (!columns.contains(USER_ID)) {
+					statement.execute("ALTER TABLE " + ORDER_TABLE_NAME + " ADD COLUMN " 
+							+ USER_ID + " VARCHAR(255)");
+				}
+				if (!columns.contains(RESOURCE_KIND)) {
+					statement.execute("ALTER TABLE " + ORDER_TABLE_NAME + " ADD COLUMN " 
+							+ RESOURCE_KIND + " VARCHAR(255)");
+				}
+				
+				updateOrderStmt = connection.prepareStatement(UPDATE_MIGRATED_ORDER_SQL);
+				resultSet = statement.executeQuery(SELECT_ORDER_TO_MIGRATE_SQL);
+				while (resultSet.next()) {
+					Token federationToken = Token.fromJSON(resultSet.getString(2));
+					Map<String, String> xOCCIAtt = JSONHelper.getXOCCIAttrFromJSON(resultSet.getString(3));
+					updateOrderStmt.setString(1, federationToken != null && federationToken.getUser() != null ? 
+							federationToken.getUser().getId() : null);
+					updateOrderStmt.setString(2, xOCCIAtt != null ? 
+							xOCCIAtt.get(OrderAttribute.RESOURCE_KIND.getValue()) : null);
+					updateOrderStmt.setString(3, resultSet.getString(1));
+					updateOrderStmt.addBatch();
+				}
+				resultSet.close();
+				updateOrderStmt.executeBatch();
+				connection.commit();
+				connection.setAutoCommit(true);
+			}
+			
+			for (String createIndex : ORDER_TABLE_INDEXES) {
+				statement.execute(createIndex);
+			}
+		} finally {
+			close(updateOrderStmt, null);
+			close(statement, null);
+		}
 	}
 	
 	private static final String INSERT_ORDER_SQL = "INSERT INTO " + ORDER_TABLE_NAME
 			+ " (" + ORDER_ID + "," + INSTANCE_ID + "," + PROVIDING_MEMBER_ID + "," + REQUESTING_MEMBER_ID + "," 
 			+ FEDERATION_TOKEN + "," + FULFILLED_TIME + "," + IS_LOCAL + "," + STATE + "," + CATEGORIES + ","
-			+ UPDATED + "," + XOCCI_ATTRIBUTES + ")"			
-			+ " VALUES (?,?,?,?,?,?,?,?,?,?,?)";
+			+ UPDATED + "," + XOCCI_ATTRIBUTES + "," + USER_ID + "," + RESOURCE_KIND + ")"			
+			+ " VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)";
 	
 	public boolean addOrder(Order order) throws SQLException, JSONException {
-		PreparedStatement orderStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
-			
-			orderStmt = connection.prepareStatement(INSERT_ORDER_SQL);
-			orderStmt.setString(1, order.getId());
-			orderStmt.setString(2, order.getInstanceId());
-			orderStmt.setString(3, order.getProvidingMemberId());
-			orderStmt.setString(4, order.getRequestingMemberId());
-			orderStmt.setString(5, order.getFederationToken().toJSON().toString());
-			orderStmt.setLong(6, order.getFulfilledTime());
-			orderStmt.setBoolean(7, order.isLocal());
-			orderStmt.setString(8, order.getState() != null ? 
-					order.getState().toString() : null);
-			orderStmt.setString(9, JSONHelper.mountCategoriesJSON(order.getCategories()).toString());
-			orderStmt.setTimestamp(10, new Timestamp(new Date().getTime()));
-			JSONObject xOCCIAtt = JSONHelper.mountXOCCIAttrJSON(order.getxOCCIAtt());
-			orderStmt.setString(11, xOCCIAtt != null ? xOCCIAtt.toString() : null);
-			orderStmt.executeUpdate();
-			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't create order.", e);
+		synchronized (getWriteLock()) {
+			PreparedStatement orderStmt = null;
+			Connection connection = null;
 			try {
-				if (connection != null) {
-					connection.rollback();
+				connection = getConnection();
+				connection.setAutoCommit(false);
+			
+				orderStmt = connection.prepareStatement(INSERT_ORDER_SQL);
+				orderStmt.setString(1, order.getId());
+				orderStmt.setString(2, order.getInstanceId());
+				orderStmt.setString(3, order.getProvidingMemberId());
+				orderStmt.setString(4, order.getRequestingMemberId());
+				orderStmt.setString(5, order.getFederationToken().toJSON().toString());
+				orderStmt.setLong(6, order.getFulfilledTime());
+				orderStmt.setBoolean(7, order.isLocal());
+				orderStmt.setString(8, order.getState() != null ? 
+						order.getState().toString() : null);
+				orderStmt.setString(9, JSONHelper.mountCategoriesJSON(order.getCategories()).toString());
+				orderStmt.setTimestamp(10, new Timestamp(new Date().getTime()));
+				JSONObject xOCCIAtt = JSONHelper.mountXOCCIAttrJSON(order.getxOCCIAtt());
+				orderStmt.setString(11, xOCCIAtt != null ? xOCCIAtt.toString() : null);
+				orderStmt.setString(12, OrderIndex.getUserId(order));
+				orderStmt.setString(13, order.getResourceKing());
+				orderStmt.executeUpdate();
+			
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.add(order);
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't create order.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} finally {
+				close(orderStmt, connection);
 			}
-		} finally {
-			close(orderStmt, connection);
+			return false;
 		}
-		return false;
 	}
 	
 	private static final String GET_ORDERS_SQL = "SELECT " + ORDER_ID + ", " + INSTANCE_ID + ", "
@@ -157,10 +263,121 @@ public class ManagerDataStore {
 			+ ", " + SYNCRONOUS_STATUS + " FROM " + ORDER_TABLE_NAME;
 	
 	public List<Order> getOrders() throws SQLException, JSONException {
-		return getOrders(null);
+		if (this.orderIndex != null) {
+			return this.orderIndex.getAll();
+		}
+		return getStoredOrders(null);
 	}
 	
 	public List<Order> getOrders(OrderState orderState) throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			if (orderState == null) {
+				return this.orderIndex.getAll();
+			}
+			return this.orderIndex.getByState(null, orderState);
+		}
+		return getStoredOrders(orderState);
+	}
+	
+	/**
+	 * @param resourceKind null means orders of any resource kind.
+	 */
+	public List<Order> getOrdersIn(String resourceKind, OrderState... orderStates) throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			return this.orderIndex.getByState(resourceKind, orderStates);
+		}
+		if (orderStates.length == 0) {
+			return new ArrayList<Order>();
+		}
+		return getStoredOrders(null, resourceKind, null, null, null, orderStates);
+	}
+	
+	public List<Order> getOrdersByUserId(String userId) throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			return this.orderIndex.getByUserId(userId);
+		}
+		if (userId == null) {
+			return new ArrayList<Order>();
+		}
+		return getStoredOrders(null, null, userId, null, null);
+	}
+	
+	public List<Order> getOrdersByUserId(String userId, boolean isLocal) throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			return this.orderIndex.getByUserId(userId, isLocal);
+		}
+		if (userId == null) {
+			return new ArrayList<Order>();
+		}
+		return getStoredOrders(null, null, userId, null, isLocal);
+	}
+	
+	/**
+	 * Without the order index, the orders of the user are read and filtered
+	 * one by one.
+	 */
+	public List<Order> getOrdersByUserId(String userId, boolean isLocal, ResourceFilter filter)
+			throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			return this.orderIndex.getByUserId(userId, isLocal, filter);
+		}
+		List<Order> orders = new ArrayList<Order>();
+		for (Order order : getOrdersByUserId(userId, isLocal)) {
+			if (filter.matches(order)) {
+				orders.add(order);
+			}
+		}
+		return orders;
+	}
+	
+	public List<Order> getOrdersByLocality(boolean isLocal) throws SQLException, JSONException {
+		if (this.orderIndex != null) {
+			return this.orderIndex.getByLocality(isLocal);
+		}
+		return getStoredOrders(null, null, null, null, isLocal);
+	}
+	
+	public Order getOrderByInstanceId(String instanceId, OrderState... orderStates) throws SQLException, JSONException {
+		List<Order> orders;
+		if (this.orderIndex != null) {
+			orders = this.orderIndex.getByInstanceId(instanceId, orderStates);
+		} else if (instanceId == null || orderStates.length == 0) {
+			orders = new ArrayList<Order>();
+		} else {
+			orders = getStoredOrders(null, null, null, instanceId, null, orderStates);
+		}
+		return orders.isEmpty() ? null : orders.get(0);
+	}
+	
+	private static void addPredicate(List<String> predicates, List<Object> parameters, 
+			String column, Object value) {
+		if (value instanceof Boolean) {
+			// booleans are stored as integers by the driver
+			value = ((Boolean) value) ? 1 : 0;
+		}
+		if (value != null) {
+			predicates.add(column + "=?");
+			parameters.add(value);
+		}
+	}
+	
+	/**
+	 * Reads the orders from the table. It rebuilds the order index and serves the
+	 * queries when the index is disabled.
+	 */
+	protected List<Order> getStoredOrders(OrderState orderState) throws SQLException, JSONException {
+		if (orderState == null) {
+			return getStoredOrders(null, null, null, null, null);
+		}
+		return getStoredOrders(null, null, null, null, null, orderState);
+	}
+	
+	/**
+	 * Filters the orders in SQL. Null arguments and an empty state list match any
+	 * order. Orders are returned in insertion order.
+	 */
+	protected List<Order> getStoredOrders(String orderId, String resourceKind, String userId,
+			String instanceId, Boolean isLocal, OrderState... orderStates) throws SQLException, JSONException {
 		PreparedStatement ordersStmt = null;
 		Connection connection = null;
 		List<Order> orders = new ArrayList<Order>();
@@ -168,14 +385,31 @@ public class ManagerDataStore {
 			connection = getConnection();
 			connection.setAutoCommit(false);
 			
-			String ordersStmtStr = GET_ORDERS_SQL;
-			if (orderState != null) {
-				ordersStmtStr += " WHERE " + STATE + "=?";
+			List<String> predicates = new ArrayList<String>();
+			List<Object> parameters = new ArrayList<Object>();
+			addPredicate(predicates, parameters, ORDER_ID, orderId);
+			addPredicate(predicates, parameters, RESOURCE_KIND, resourceKind);
+			addPredicate(predicates, parameters, USER_ID, userId);
+			addPredicate(predicates, parameters, INSTANCE_ID, instanceId);
+			addPredicate(predicates, parameters, IS_LOCAL, isLocal);
+			if (orderStates.length > 0) {
+				StringBuilder statePredicate = new StringBuilder(STATE + " IN (");
+				for (int i = 0; i < orderStates.length; i++) {
+					statePredicate.append(i == 0 ? "?" : ",?");
+					parameters.add(orderStates[i].toString());
+				}
+				predicates.add(statePredicate.append(")").toString());
+			}
+			
+			StringBuilder ordersStmtStr = new StringBuilder(GET_ORDERS_SQL);
+			for (int i = 0; i < predicates.size(); i++) {
+				ordersStmtStr.append(i == 0 ? " WHERE " : " AND ").append(predicates.get(i));
 			}
+			ordersStmtStr.append(" ORDER BY rowid");
 			
-			ordersStmt = connection.prepareStatement(ordersStmtStr);
-			if (orderState != null) {
-				ordersStmt.setString(1, orderState.toString());		
+			ordersStmt = connection.prepareStatement(ordersStmtStr.toString());
+			for (int i = 0; i < parameters.size(); i++) {
+				ordersStmt.setObject(i + 1, parameters.get(i));
 			}
 			ResultSet resultSet = ordersStmt.executeQuery();
 			while (resultSet.next()) {
@@ -210,60 +444,22 @@ public class ManagerDataStore {
 		return orders;
 	}		
 	
-	private static final String GET_SPECIFIC_ORDER_SQL = GET_ORDERS_SQL + " WHERE " + ORDER_ID + "=?";
-			
 	public Order getOrder(String orderId) throws SQLException, JSONException  {
 		return getOrder(orderId, false);
 	}
 	
 	public Order getOrder(String orderId, boolean isOrderSyncronous) throws SQLException, JSONException  {
-		PreparedStatement ordersStmt = null;
-		Connection connection = null;
 		Order order = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
-			
-			String specificOrderStmtStr = GET_SPECIFIC_ORDER_SQL;
-			
-			if (isOrderSyncronous) {
-				specificOrderStmtStr += " AND " + SYNCRONOUS_STATUS + "=?";
-			}
-			
-			ordersStmt = connection.prepareStatement(specificOrderStmtStr);
-			ordersStmt.setString(1, orderId);
-			if (isOrderSyncronous) {
-				ordersStmt.setBoolean(2, isOrderSyncronous);
-			}
-			ResultSet resultSet = ordersStmt.executeQuery();
-			if (resultSet.next()) {
-				resultSet.getString(1);
-				
-				order = new Order(resultSet.getString(1), Token.fromJSON(resultSet
-						.getString(5)), resultSet.getString(2), resultSet.getString(3), resultSet
-						.getString(4), resultSet.getLong(6), resultSet.getBoolean(7), OrderState
-						.getState(resultSet.getString(8)), JSONHelper.getCategoriesFromJSON(resultSet
-						.getString(9)), JSONHelper.getXOCCIAttrFromJSON(resultSet.getString(10)));
-				order.setSyncronousTime(resultSet.getLong(11));
-				order.setSyncronousStatus(resultSet.getBoolean(12));
-			}
-					
-			connection.commit();
-			
-			return order;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't retrieve order.", e);
-			try {
-				if (connection != null) {
-					connection.rollback();
-				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
-			}
-		} finally {
-			close(ordersStmt, connection);
+		if (this.orderIndex != null) {
+			order = this.orderIndex.get(orderId);
+		} else if (orderId != null) {
+			List<Order> orders = getStoredOrders(orderId, null, null, null, null);
+			order = orders.isEmpty() ? null : orders.get(0);
+		}
+		if (order == null || isOrderSyncronous && !order.isSyncronousStatus()) {
+			return null;
 		}
-		return null;
+		return order;
 	}	
 
 	private static final String REMOVE_ORDER_SQL = "DELETE"
@@ -271,141 +467,164 @@ public class ManagerDataStore {
 			+ " WHERE " + ORDER_ID + " = ?";
 	
 	public boolean removeOrder(Order order) throws SQLException {
-		PreparedStatement removeOrderStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
+		synchronized (getWriteLock()) {
+			PreparedStatement removeOrderStmt = null;
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				connection.setAutoCommit(false);
 			
-			removeOrderStmt = connection.prepareStatement(REMOVE_ORDER_SQL);
-			removeOrderStmt.setString(1, order.getId());
-			removeOrderStmt.executeUpdate();
+				removeOrderStmt = connection.prepareStatement(REMOVE_ORDER_SQL);
+				removeOrderStmt.setString(1, order.getId());
+				removeOrderStmt.executeUpdate();
 			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't remove order.", e);
-			try {
-				if (connection != null) {
-					connection.rollback();
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.remove(order.getId());
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't remove order.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} finally {
+				close(removeOrderStmt, connection);
 			}
-		} finally {
-			close(removeOrderStmt, connection);
+			return false;
 		}
-		return false;
 	}	
 	
 	private static final String REMOVE_ALL_ORDER_SQL = "DELETE"
 			+ " FROM " + ORDER_TABLE_NAME;
 	
 	public boolean removeAllOrder() throws SQLException {
-		PreparedStatement removeOrderStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
+		synchronized (getWriteLock()) {
+			PreparedStatement removeOrderStmt = null;
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				connection.setAutoCommit(false);
 			
-			removeOrderStmt = connection.prepareStatement(REMOVE_ALL_ORDER_SQL);
-			removeOrderStmt.executeUpdate();
+				removeOrderStmt = connection.prepareStatement(REMOVE_ALL_ORDER_SQL);
+				removeOrderStmt.executeUpdate();
 			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't remove all order.", e);
-			try {
-				if (connection != null) {
-					connection.rollback();
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.clear();
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't remove all order.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} finally {
+				close(removeOrderStmt, connection);
 			}
-		} finally {
-			close(removeOrderStmt, connection);
+			return false;
 		}
-		return false;
 	}		
 	
 	private static final String UPDATE_ORDER_SQL = "UPDATE " + ORDER_TABLE_NAME + " SET "
 			+ INSTANCE_ID + "=?," + PROVIDING_MEMBER_ID + "=? ,"
 			+ REQUESTING_MEMBER_ID + "=?," + FEDERATION_TOKEN + "=? ," + FULFILLED_TIME
 			+ "=? ," + IS_LOCAL + "=? ," + STATE + "=? ," + CATEGORIES + "=?," + UPDATED
-			+ "=?," + XOCCI_ATTRIBUTES + "=?" + " WHERE " + ORDER_ID + "=?";
+			+ "=?," + XOCCI_ATTRIBUTES + "=?," + USER_ID + "=?," + RESOURCE_KIND + "=?" 
+			+ " WHERE " + ORDER_ID + "=?";
 	
 	public boolean updateOrder(Order order) throws SQLException, JSONException {
-		PreparedStatement updateOrderStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
-			
-			updateOrderStmt = connection.prepareStatement(UPDATE_ORDER_SQL);
-			updateOrderStmt.setString(1, order.getInstanceId());
-			updateOrderStmt.setString(2, order.getProvidingMemberId());
-			updateOrderStmt.setString(3, order.getRequestingMemberId());
-			updateOrderStmt.setString(4, order.getFederationToken().toJSON().toString());
-			updateOrderStmt.setLong(5, order.getFulfilledTime());
-			updateOrderStmt.setBoolean(6, order.isLocal());
-			updateOrderStmt.setString(7, order.getState() != null ? 
-					order.getState().toString() : null);
-			updateOrderStmt.setString(8, JSONHelper.mountCategoriesJSON(order.getCategories()).toString());
-			updateOrderStmt.setTimestamp(9, new Timestamp(new Date().getTime()));			
-			updateOrderStmt.setString(10, JSONHelper.mountXOCCIAttrJSON(order.getxOCCIAtt()).toString());
-			updateOrderStmt.setString(11, order.getId());
-			updateOrderStmt.executeUpdate();
-			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't update order.", e);
+		synchronized (getWriteLock()) {
+			PreparedStatement updateOrderStmt = null;
+			Connection connection = null;
 			try {
-				if (connection != null) {
-					connection.rollback();
+				connection = getConnection();
+				connection.setAutoCommit(false);
+			
+				updateOrderStmt = connection.prepareStatement(UPDATE_ORDER_SQL);
+				updateOrderStmt.setString(1, order.getInstanceId());
+				updateOrderStmt.setString(2, order.getProvidingMemberId());
+				updateOrderStmt.setString(3, order.getRequestingMemberId());
+				updateOrderStmt.setString(4, order.getFederationToken().toJSON().toString());
+				updateOrderStmt.setLong(5, order.getFulfilledTime());
+				updateOrderStmt.setBoolean(6, order.isLocal());
+				updateOrderStmt.setString(7, order.getState() != null ? 
+						order.getState().toString() : null);
+				updateOrderStmt.setString(8, JSONHelper.mountCategoriesJSON(order.getCategories()).toString());
+				updateOrderStmt.setTimestamp(9, new Timestamp(new Date().getTime()));			
+				updateOrderStmt.setString(10, JSONHelper.mountXOCCIAttrJSON(order.getxOCCIAtt()).toString());
+				updateOrderStmt.setString(11, OrderIndex.getUserId(order));
+				updateOrderStmt.setString(12, order.getResourceKing());
+				updateOrderStmt.setString(13, order.getId());
+				updateOrderStmt.executeUpdate();
+			
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.replace(order);
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't update order.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} finally {
+				close(updateOrderStmt, connection);
 			}
-		} finally {
-			close(updateOrderStmt, connection);
+			return false;
 		}
-		return false;
 	}
 	
 	private static final String UPDATE_ORDER_ASYNCRONOUS_SQL = "UPDATE " + ORDER_TABLE_NAME + " SET "
 			+ SYNCRONOUS_TIMESTAMP + "=? , " + SYNCRONOUS_STATUS + "=?" + " WHERE " + ORDER_ID + "=?";
 	
 	public boolean updateOrderAsyncronous(String orderId, long syncronousTime, boolean syncronousStatus) throws SQLException, JSONException {
-		PreparedStatement updateOrderStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
-			
-			updateOrderStmt = connection.prepareStatement(UPDATE_ORDER_ASYNCRONOUS_SQL);
-			updateOrderStmt.setTimestamp(1, new Timestamp(syncronousTime));
-			updateOrderStmt.setBoolean(2, syncronousStatus);
-			updateOrderStmt.setString(3, orderId);
-			updateOrderStmt.executeUpdate();
-			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't update order asyncronous.", e);
+		synchronized (getWriteLock()) {
+			PreparedStatement updateOrderStmt = null;
+			Connection connection = null;
 			try {
-				if (connection != null) {
-					connection.rollback();
+				connection = getConnection();
+				connection.setAutoCommit(false);
+			
+				updateOrderStmt = connection.prepareStatement(UPDATE_ORDER_ASYNCRONOUS_SQL);
+				updateOrderStmt.setTimestamp(1, new Timestamp(syncronousTime));
+				updateOrderStmt.setBoolean(2, syncronousStatus);
+				updateOrderStmt.setString(3, orderId);
+				updateOrderStmt.executeUpdate();
+			
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.updateSyncronous(orderId, syncronousTime, syncronousStatus);
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
-			}
-		} catch (Exception e) {
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't update order asyncronous.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} catch (Exception e) {
 			
-		} finally {
-			close(updateOrderStmt, connection);
+			} finally {
+				close(updateOrderStmt, connection);
+			}
+			return false;
 		}
-		return false;
 	}
 		
 	private static final String COUNT_ORDER_SQL = "SELECT COUNT(*) FROM " + ORDER_TABLE_NAME;	
@@ -418,17 +637,16 @@ public class ManagerDataStore {
 			connection.setAutoCommit(false);
 			
 			StringBuilder stringBuilder = new StringBuilder(COUNT_ORDER_SQL);
-			
-			int auxCount = 0;
-			for (OrderState orderState : orderStates) {
-				if (auxCount++ == 0) {
-					stringBuilder.append(" ");
-					stringBuilder.append("WHERE " + STATE + "=\'" + orderState.toString() + "\'");
-					continue;
-				}
-				stringBuilder.append(" OR " + STATE + "=\'" + orderState.toString() + "\'");
+			for (int i = 0; i < orderStates.size(); i++) {
+				stringBuilder.append(i == 0 ? " WHERE " + STATE + " IN (?" : ",?");
+			}
+			if (!orderStates.isEmpty()) {
+				stringBuilder.append(")");
 			}
 			countOrderStmt = connection.prepareStatement(stringBuilder.toString());
+			for (int i = 0; i < orderStates.size(); i++) {
+				countOrderStmt.setString(i + 1, orderStates.get(i).toString());
+			}
 			ResultSet resultSet = countOrderStmt.executeQuery();
 			if (resultSet.next()) {
 				return resultSet.getInt(1);
@@ -732,44 +950,46 @@ public class ManagerDataStore {
 	
 	@SuppressWarnings("resource")
 	public boolean removeAllValuesInAllTable() {
-		PreparedStatement removeAllValueInAllTableStmt = null;
-		Connection connection = null;
-		try {
-			connection = getConnection();
-			connection.setAutoCommit(false);
+		synchronized (getWriteLock()) {
+			PreparedStatement removeAllValueInAllTableStmt = null;
+			Connection connection = null;
+			try {
+				connection = getConnection();
+				connection.setAutoCommit(false);
 			
-			removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_FEDERATION_MEMBER_TABLE_SQL);
-			removeAllValueInAllTableStmt.executeUpdate();
+				removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_FEDERATION_MEMBER_TABLE_SQL);
+				removeAllValueInAllTableStmt.executeUpdate();
 			
-			removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_ORDER_TABLE_SQL);
-			removeAllValueInAllTableStmt.executeUpdate();
+				removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_ORDER_TABLE_SQL);
+				removeAllValueInAllTableStmt.executeUpdate();
 			
-			removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_STORAGELINK_TABLE_SQL);
-			removeAllValueInAllTableStmt.executeUpdate();
+				removeAllValueInAllTableStmt = connection.prepareStatement(REMOVE_ALL_VALUES_STORAGELINK_TABLE_SQL);
+				removeAllValueInAllTableStmt.executeUpdate();
 			
-			connection.commit();
-			return true;
-		} catch (SQLException e) {
-			LOGGER.error("Couldn't remove all values in all table servered.", e);
-			try {
-				if (connection != null) {
-					connection.rollback();
+				connection.commit();
+				if (this.orderIndex != null) {
+					this.orderIndex.clear();
 				}
-			} catch (SQLException e1) {
-				LOGGER.error("Couldn't rollback transaction.", e1);
+				return true;
+			} catch (SQLException e) {
+				LOGGER.error("Couldn't remove all values in all table servered.", e);
+				try {
+					if (connection != null) {
+						connection.rollback();
+					}
+				} catch (SQLException e1) {
+					LOGGER.error("Couldn't rollback transaction.", e1);
+				}
+			} finally {
+				close(removeAllValueInAllTableStmt, connection);
 			}
-		} finally {
-			close(removeAllValueInAllTableStmt, connection);
+			return false;		
 		}
-		return false;		
 	}
 	
 	public Connection getConnection() throws SQLException {
 		try {
-			SQLiteConfig config = new SQLiteConfig();
-			config.enforceForeignKeys(true);  
-			config.setBusyTimeout("30000");
-			return DriverManager.getConnection(this.dataStoreURL, config.toProperties());				
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -9,6 +9,7 @@ import java.util.Properties;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderConstants;
 import org.fogbowcloud.manager.occi.order.OrderState;
@@ -45,24 +46,13 @@ public class ManagerDataStoreController {
 	}
 	
 	public List<Order> getOrdersByUser(String userId) {
-		List<Order> userOrdersFound = new ArrayList<Order>();
 		try {
-			List<Order> ordersDB = this.managerDatabase.getOrders();
-			for (Order order : ordersDB) {
-				boolean hasTheSameUserId = order != null && order.getFederationToken() != null 
-						&& order.getFederationToken().getUser() != null 
-						&& order.getFederationToken().getUser().getId().equals(userId);
-				
-				if (hasTheSameUserId) {
-					userOrdersFound.add(order);
-				}
-			}
+			return this.managerDatabase.getOrdersByUserId(userId);
 		} catch (Exception e) {
 			String errorMsg = "Error while try to get orders by user.";
 			LOGGER.error(errorMsg, e);
 			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		return userOrdersFound;
 	}
 	
 	public void addOrder(Order order) {
@@ -80,24 +70,13 @@ public class ManagerDataStoreController {
 	}
 	
 	public List<Order> getOrdersIn(String resourceKind, OrderState... states) {
-		List<Order> ordersInStateFound = new LinkedList<Order>();
 		try {
-			List<Order> ordersDB = this.managerDatabase.getOrders();
-			for (Order order : ordersDB) {
-				if (order.getState().in(states)) {
-					if (resourceKind != null && !resourceKind.equals(order.getResourceKing())) {
-						continue;
-					}
-					
-					ordersInStateFound.add(order);
-				}
-			}
+			return new LinkedList<Order>(this.managerDatabase.getOrdersIn(resourceKind, states));
 		} catch (Exception e) {
 			String errorMsg = "Error while try to get orders by states and resource king.";
 			LOGGER.error(errorMsg, e);
 			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		return ordersInStateFound;
 	}
 
 	public Order getOrder(String orderId) {
@@ -126,19 +105,21 @@ public class ManagerDataStoreController {
 	}
 	
 	public Order getOrder(String userId, String orderId, boolean lookingForLocalOrder) {
-		List<Order> userOrders = getOrdersByUser(userId);
-		if (userOrders == null) {
-			LOGGER.debug("User id " + userId + " does not have orders.");
-			return null;
+		Order order = null;
+		try {
+			order = this.managerDatabase.getOrder(orderId);
+		} catch (Exception e) {
+			String errorMsg = "Error while try to get order.";
+			LOGGER.error(errorMsg, e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		for (Order order : userOrders) {
-			if (order.getId().equals(orderId)) {
-				if (lookingForLocalOrder && order.isLocal() 
-						|| !lookingForLocalOrder && !order.isLocal()) {
-					LOGGER.debug("Getting order " + order + " owner by user id " + userId);
-					return order;					
-				}
-			}
+		boolean hasTheSameUserId = order != null && order.getFederationToken() != null 
+				&& order.getFederationToken().getUser() != null 
+				&& order.getFederationToken().getUser().getId().equals(userId);
+		if (hasTheSameUserId && (lookingForLocalOrder && order.isLocal() 
+				|| !lookingForLocalOrder && !order.isLocal())) {
+			LOGGER.debug("Getting order " + order + " owner by user id " + userId);
+			return order;
 		}
 		LOGGER.debug("Order " + orderId + " owner by user id " + userId + " was not found.");
 		return null;
@@ -150,45 +131,44 @@ public class ManagerDataStoreController {
 	
 	public List<Order> getOrdersByUserId(String userId, boolean lookingForLocalOrder) {
 		LOGGER.debug("Getting local orders by user id " + userId);
-		List<Order> userOrders = getOrdersByUser(userId);
-		if (userOrders == null) {
-			return new LinkedList<Order>();
-		}		
-		LinkedList<Order> userLocalOrders = new LinkedList<Order>();
-		for (Order order : userOrders) {
-			if (lookingForLocalOrder && order.isLocal() 
-					|| !lookingForLocalOrder && !order.isLocal()) {
-				userLocalOrders.add(order);
-			}
+		try {
+			return new LinkedList<Order>(this.managerDatabase.getOrdersByUserId(userId, lookingForLocalOrder));
+		} catch (Exception e) {
+			String errorMsg = "Error while try to get orders by user.";
+			LOGGER.error(errorMsg, e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
+		}
+	}
+
+	public List<Order> getOrdersByUserId(String userId, boolean lookingForLocalOrder, ResourceFilter filter) {
+		LOGGER.debug("Getting local orders by user id " + userId + " with filter " + filter);
+		try {
+			return this.managerDatabase.getOrdersByUserId(userId, lookingForLocalOrder, filter);
+		} catch (Exception e) {
+			String errorMsg = "Error while try to get orders by user.";
+			LOGGER.error(errorMsg, e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		return userLocalOrders;
 	}
 
 	public void removeOrderByUserId(String userId) {
-		List<Order> ordersByUser = getOrdersByUser(userId);
-		for (Order order : ordersByUser != null ? ordersByUser: new ArrayList<Order>()) {
-			boolean onlyLocal = order.isLocal();
-			if (onlyLocal) {
-				removeOrder(order.getId());
-			}
+		for (Order order : getOrdersByUserId(userId, true)) {
+			removeOrder(order.getId());
 		}
 	}
 
 	public void removeOrder(String orderId) {
 		LOGGER.debug("Removing orderId " + orderId);
 		try {
-			List<Order> orders  = this.managerDatabase.getOrders();
-			for (Order order : orders) {					
-				if (order.getId().equals(orderId) && order.isLocal()) {
-					if (order.getState().equals(OrderState.CLOSED)) {
-						
-						LOGGER.debug("Order " + orderId + " does not have an instance. Excluding order.");
-						this.managerDatabase.removeOrder(order);
-					} else {
-						order.setState(OrderState.DELETED);
-						this.managerDatabase.updateOrder(order);
-					}
-					return;
+			Order order = this.managerDatabase.getOrder(orderId);
+			if (order != null && order.isLocal()) {
+				if (order.getState().equals(OrderState.CLOSED)) {
+					
+					LOGGER.debug("Order " + orderId + " does not have an instance. Excluding order.");
+					this.managerDatabase.removeOrder(order);
+				} else {
+					order.setState(OrderState.DELETED);
+					this.managerDatabase.updateOrder(order);
 				}
 			}
 		} catch (Exception e) {
@@ -201,12 +181,9 @@ public class ManagerDataStoreController {
 	public void excludeOrder(String orderId) {
 		LOGGER.debug("Excluding orderId " + orderId);
 		try {
-			List<Order> ordersDB = this.managerDatabase.getOrders();
-			for (Order order : ordersDB) {			
-				if (order.getId().equals(orderId)) {
-					this.managerDatabase.removeOrder(order);
-					return;
-				}
+			Order order = this.managerDatabase.getOrder(orderId);
+			if (order != null) {
+				this.managerDatabase.removeOrder(order);
 			}
 		} catch (Exception e) {
 			String errorMsg = "Error while try to exclude order (" + orderId + ").";
@@ -226,36 +203,32 @@ public class ManagerDataStoreController {
 	}
 	
 	public List<Order> getAllLocalOrders() {
-		List<Order> localOrdersFound = new LinkedList<Order>();
-		List<Order> orders = getAllOrders();
-		for (Order order : orders) {
-			if (order.isLocal()){
-				localOrdersFound.add(order);
-			}
-		}
-		return localOrdersFound;
+		return getAllOrders(true);
 	}
 	
 	public List<Order> getAllServedOrders() {
-		List<Order> remoteOrdersFound = new LinkedList<Order>();
-		List<Order> orders = getAllOrders();
-		for (Order order : orders) {
-			if (!order.isLocal()){
-				remoteOrdersFound.add(order);
-			}
+		return getAllOrders(false);
+	}
+	
+	private List<Order> getAllOrders(boolean isLocal) {
+		try {
+			return new LinkedList<Order>(this.managerDatabase.getOrdersByLocality(isLocal));
+		} catch (Exception e) {
+			String errorMsg = "Error while try to get all order.";
+			LOGGER.error(errorMsg, e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		return remoteOrdersFound;
 	}
 	
 	public Order getOrderByInstance(String instanceId) {
-		List<Order> orders = getAllOrders();
-		for (Order order : orders) {
-			if (order.getState().in(OrderState.FULFILLED, OrderState.SPAWNING, OrderState.DELETED)
-					&& instanceId.equals(order.getInstanceId())) {
-				return order;
-			}
+		try {
+			return this.managerDatabase.getOrderByInstanceId(instanceId, 
+					OrderState.FULFILLED, OrderState.SPAWNING, OrderState.DELETED);
+		} catch (Exception e) {
+			String errorMsg = "Error while try to get order by instance (" + instanceId + ").";
+			LOGGER.error(errorMsg, e);
+			throw new OCCIException(ErrorType.BAD_REQUEST, errorMsg);
 		}
-		return null;
 	}
 	
 	public List<StorageLink> getStorageLinksByUser(String userId) {
@@ -378,7 +351,7 @@ public class ManagerDataStoreController {
 
 	public List<Order> getOrdersByState(OrderState orderState) {
 		try {
-			return this.managerDatabase.getOrders(OrderState.PENDING);
+			return this.managerDatabase.getOrders(orderState);
 		} catch (Exception e) {
 			String errorMsg = "Error while try to get orders by status(" + orderState + ").";
 			LOGGER.error(errorMsg, e);
@@ -19,6 +19,7 @@ import org.fogbowcloud.manager.occi.model.Category;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
 import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.network.NetworkServerResource;
 import org.fogbowcloud.manager.occi.order.Order;
@@ -38,6 +39,8 @@ import org.restlet.util.Series;
 public class OCCIApplication extends Application {
 
 	private ManagerController managerFacade;
+	private SlowResourceExecutor slowResourceExecutor;
+	private final DiscoveryCache discoveryCache = new DiscoveryCache();
 
 	public OCCIApplication(ManagerController facade) {
 		this.managerFacade = facade;
@@ -167,6 +170,10 @@ public class OCCIApplication extends Application {
 		return managerFacade.getOrdersFromUser(authToken);
 	}
 
+	public List<Order> getOrdersFromUser(String authToken, ResourceFilter filter) {
+		return managerFacade.getOrdersFromUser(authToken, filter);
+	}
+
 	public void removeAllOrders(String authToken) {
 		managerFacade.removeAllOrders(authToken);
 	}
@@ -240,6 +247,30 @@ public class OCCIApplication extends Application {
 	public Properties getProperties() {
 		return managerFacade.getProperties();
 	}
+
+	/**
+	 * @return the executor of the calls that may wait for clouds or other
+	 *         members, configured by the manager properties
+	 */
+	public synchronized SlowResourceExecutor getSlowResourceExecutor() {
+		if (slowResourceExecutor == null) {
+			slowResourceExecutor = new SlowResourceExecutor(getProperties());
+		}
+		return slowResourceExecutor;
+	}
+
+	public DiscoveryCache getDiscoveryCache() {
+		return discoveryCache;
+	}
+
+	@Override
+	public synchronized void stop() throws Exception {
+		if (slowResourceExecutor != null) {
+			slowResourceExecutor.shutdown();
+			slowResourceExecutor = null;
+		}
+		super.stop();
+	}
 	
 	public List<Flavor> getFlavorsProvided(){
 		return managerFacade.getFlavorsProvided();
@@ -253,6 +284,11 @@ public class OCCIApplication extends Application {
 		return managerFacade.getAccountingInfo(authToken, resourceKing);
 	}
 
+	public List<AccountingInfo> getAccountingInfo(String authToken, String resourceKing,
+			long startTime, long endTime) {
+		return managerFacade.getAccountingInfo(authToken, resourceKing, startTime, endTime);
+	}
+
 	public ResourceUsage getUsages(String authToken, String memberId) {
 		return managerFacade.getUsages(authToken, memberId);
 	}
@@ -0,0 +1,374 @@
+package org.fogbowcloud.manager.occi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.fogbowcloud.manager.occi.model.Category;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
+import org.fogbowcloud.manager.occi.model.ResourceFilter.CategoryCriterion;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
+import org.fogbowcloud.manager.occi.order.OrderState;
+
+/**
+ * In-memory view of the order table, kept up to date by {@link ManagerDataStore}
+ * after each write. Orders are indexed by id, state, federation user id, instance
+ * id, resource kind, category term and attribute value. Every order is stored and returned as a copy, so callers
+ * may change the orders they receive without affecting the index.
+ *
+ * Results keep the insertion order of the orders, as a full scan of the table would.
+ */
+public class OrderIndex {
+
+	private static final Map<String, OrderIndex> INDEXES = new HashMap<String, OrderIndex>();
+	// longer values, as user data and public keys, are compared without an index
+	protected static final int MAX_INDEXED_ATTRIBUTE_LENGTH = 256;
+
+	private long sequence = 0;
+	private Map<String, IndexedOrder> orders = new HashMap<String, IndexedOrder>();
+	private Map<OrderState, SortedMap<Long, String>> ordersByState = new HashMap<OrderState, SortedMap<Long, String>>();
+	private Map<String, SortedMap<Long, String>> ordersByUserId = new HashMap<String, SortedMap<Long, String>>();
+	private Map<String, SortedMap<Long, String>> ordersByInstanceId = new HashMap<String, SortedMap<Long, String>>();
+	private Map<String, SortedMap<Long, String>> ordersByResourceKind = new HashMap<String, SortedMap<Long, String>>();
+	private Map<String, SortedMap<Long, String>> ordersByCategoryTerm = new HashMap<String, SortedMap<Long, String>>();
+	private Map<String, SortedMap<Long, String>> ordersByAttribute = new HashMap<String, SortedMap<Long, String>>();
+
+	/**
+	 * Data stores pointing to the same URL share the same index.
+	 */
+	public static OrderIndex getIndex(String dataStoreURL) {
+		synchronized (INDEXES) {
+			OrderIndex orderIndex = INDEXES.get(dataStoreURL);
+			if (orderIndex == null) {
+				orderIndex = new OrderIndex();
+				INDEXES.put(dataStoreURL, orderIndex);
+			}
+			return orderIndex;
+		}
+	}
+
+	public synchronized void load(List<Order> storedOrders) {
+		clear();
+		for (Order order : storedOrders) {
+			index(sequence++, copy(order, order.getSyncronousTime(), order.isSyncronousStatus()));
+		}
+	}
+
+	/**
+	 * Orders are added as they are stored in a new row: without synchronous information.
+	 */
+	public synchronized void add(Order order) {
+		remove(order.getId());
+		index(sequence++, copy(order, 0, false));
+	}
+
+	public synchronized boolean replace(Order order) {
+		IndexedOrder indexedOrder = orders.get(order.getId());
+		if (indexedOrder == null) {
+			return false;
+		}
+		unindex(indexedOrder);
+		Order oldOrder = indexedOrder.getOrder();
+		index(indexedOrder.getSequence(), copy(order, oldOrder.getSyncronousTime(),
+				oldOrder.isSyncronousStatus()));
+		return true;
+	}
+
+	public synchronized void updateSyncronous(String orderId, long syncronousTime, boolean syncronousStatus) {
+		IndexedOrder indexedOrder = orders.get(orderId);
+		if (indexedOrder == null) {
+			return;
+		}
+		indexedOrder.getOrder().setSyncronousTime(syncronousTime);
+		indexedOrder.getOrder().setSyncronousStatus(syncronousStatus);
+	}
+
+	public synchronized void remove(String orderId) {
+		IndexedOrder indexedOrder = orders.get(orderId);
+		if (indexedOrder != null) {
+			unindex(indexedOrder);
+		}
+	}
+
+	public synchronized void clear() {
+		orders.clear();
+		ordersByState.clear();
+		ordersByUserId.clear();
+		ordersByInstanceId.clear();
+		ordersByResourceKind.clear();
+		ordersByCategoryTerm.clear();
+		ordersByAttribute.clear();
+	}
+
+	public synchronized int size() {
+		return orders.size();
+	}
+
+	public synchronized Order get(String orderId) {
+		IndexedOrder indexedOrder = orders.get(orderId);
+		if (indexedOrder == null) {
+			return null;
+		}
+		return copy(indexedOrder.getOrder());
+	}
+
+	public synchronized List<Order> getAll() {
+		SortedMap<Long, String> allOrders = new TreeMap<Long, String>();
+		for (IndexedOrder indexedOrder : orders.values()) {
+			allOrders.put(indexedOrder.getSequence(), indexedOrder.getOrder().getId());
+		}
+		return getOrders(allOrders, null, null);
+	}
+
+	public synchronized List<Order> getByLocality(boolean isLocal) {
+		SortedMap<Long, String> localityOrders = new TreeMap<Long, String>();
+		for (IndexedOrder indexedOrder : orders.values()) {
+			if (indexedOrder.getOrder().isLocal() == isLocal) {
+				localityOrders.put(indexedOrder.getSequence(), indexedOrder.getOrder().getId());
+			}
+		}
+		return getOrders(localityOrders, null, null);
+	}
+
+	/**
+	 * @param resourceKind null means any resource kind.
+	 */
+	public synchronized List<Order> getByState(String resourceKind, OrderState... states) {
+		SortedMap<Long, String> stateOrders = new TreeMap<Long, String>();
+		for (OrderState state : states) {
+			SortedMap<Long, String> indexedIds = ordersByState.get(state);
+			if (indexedIds != null) {
+				stateOrders.putAll(indexedIds);
+			}
+		}
+		return getOrders(stateOrders, resourceKind, null);
+	}
+
+	public synchronized List<Order> getByUserId(String userId) {
+		return getOrders(ordersByUserId.get(userId), null, null);
+	}
+
+	public synchronized List<Order> getByUserId(String userId, boolean isLocal) {
+		return getOrders(ordersByUserId.get(userId), null, isLocal);
+	}
+
+	/**
+	 * Reads the orders of the user that match the filter from the indexes of
+	 * its categories, state and attribute values, so the cost follows the
+	 * number of orders with those values instead of the number of orders of
+	 * the user. The user's orders are read instead when they are fewer, or
+	 * when an attribute value is too long to be indexed.
+	 */
+	public synchronized List<Order> getByUserId(String userId, boolean isLocal, ResourceFilter filter) {
+		List<Order> ordersFound = new ArrayList<Order>();
+		SortedMap<Long, String> userOrders = ordersByUserId.get(userId);
+		if (userOrders == null) {
+			return ordersFound;
+		}
+		SortedMap<Long, String> candidates = new TreeMap<Long, String>();
+		boolean scanUserOrders = filter.isEmpty();
+		if (filter.filtersState()) {
+			OrderState state = filter.getState();
+			addAll(candidates, state == null ? null : ordersByState.get(state));
+		}
+		for (CategoryCriterion category : filter.getCategories()) {
+			addAll(candidates, ordersByCategoryTerm.get(category.getTerm()));
+		}
+		for (Map.Entry<String, String> attribute : filter.getAttributes().entrySet()) {
+			if (attribute.getKey().equals(OrderAttribute.STATE.getValue())) {
+				continue;
+			}
+			if (attribute.getValue().length() > MAX_INDEXED_ATTRIBUTE_LENGTH) {
+				scanUserOrders = true;
+			} else {
+				addAll(candidates, ordersByAttribute.get(getAttributeKey(attribute.getKey(), attribute.getValue())));
+			}
+		}
+		if (scanUserOrders || candidates.size() > userOrders.size()) {
+			candidates = userOrders;
+		}
+		for (String orderId : candidates.values()) {
+			Order order = orders.get(orderId).getOrder();
+			if (order.isLocal() == isLocal && userId.equals(getUserId(order)) && filter.matches(order)) {
+				ordersFound.add(copy(order));
+			}
+		}
+		return ordersFound;
+	}
+
+	private static void addAll(SortedMap<Long, String> indexedIds, SortedMap<Long, String> otherIndexedIds) {
+		if (otherIndexedIds != null) {
+			indexedIds.putAll(otherIndexedIds);
+		}
+	}
+
+	public synchronized List<Order> getByInstanceId(String instanceId, OrderState... states) {
+		List<Order> instanceOrders = new ArrayList<Order>();
+		for (Order order : getOrders(ordersByInstanceId.get(instanceId), null, null)) {
+			if (order.getState().in(states)) {
+				instanceOrders.add(order);
+			}
+		}
+		return instanceOrders;
+	}
+
+	public synchronized List<Order> getByResourceKind(String resourceKind) {
+		return getOrders(ordersByResourceKind.get(resourceKind), null, null);
+	}
+
+	private List<Order> getOrders(SortedMap<Long, String> indexedIds, String resourceKind, Boolean isLocal) {
+		List<Order> ordersFound = new ArrayList<Order>();
+		if (indexedIds == null) {
+			return ordersFound;
+		}
+		for (String orderId : indexedIds.values()) {
+			Order order = orders.get(orderId).getOrder();
+			if (resourceKind != null && !resourceKind.equals(order.getResourceKing())) {
+				continue;
+			}
+			if (isLocal != null && order.isLocal() != isLocal) {
+				continue;
+			}
+			ordersFound.add(copy(order));
+		}
+		return ordersFound;
+	}
+
+	private void index(long orderSequence, Order order) {
+		IndexedOrder indexedOrder = new IndexedOrder(orderSequence, order);
+		orders.put(order.getId(), indexedOrder);
+		addKey(ordersByState, order.getState(), indexedOrder);
+		addKey(ordersByUserId, getUserId(order), indexedOrder);
+		addKey(ordersByInstanceId, order.getInstanceId(), indexedOrder);
+		addKey(ordersByResourceKind, order.getResourceKing(), indexedOrder);
+		for (Category category : order.getCategories()) {
+			addKey(ordersByCategoryTerm, category.getTerm(), indexedOrder);
+		}
+		for (String attributeKey : getAttributeKeys(order)) {
+			addKey(ordersByAttribute, attributeKey, indexedOrder);
+		}
+	}
+
+	private void unindex(IndexedOrder indexedOrder) {
+		Order order = indexedOrder.getOrder();
+		orders.remove(order.getId());
+		removeKey(ordersByState, order.getState(), indexedOrder);
+		removeKey(ordersByUserId, getUserId(order), indexedOrder);
+		removeKey(ordersByInstanceId, order.getInstanceId(), indexedOrder);
+		removeKey(ordersByResourceKind, order.getResourceKing(), indexedOrder);
+		for (Category category : order.getCategories()) {
+			removeKey(ordersByCategoryTerm, category.getTerm(), indexedOrder);
+		}
+		for (String attributeKey : getAttributeKeys(order)) {
+			removeKey(ordersByAttribute, attributeKey, indexedOrder);
+		}
+	}
+
+	private static List<String> getAttributeKeys(Order order) {
+		List<String> attributeKeys = new ArrayList<String>();
+		if (order.getxOCCIAtt() == null) {
+			return attributeKeys;
+		}
+		for (Map.Entry<String, String> attribute : order.getxOCCIAtt().entrySet()) {
+			if (attribute.getValue() != null && attribute.getValue().length() <= MAX_INDEXED_ATTRIBUTE_LENGTH) {
+				attributeKeys.add(getAttributeKey(attribute.getKey(), attribute.getValue()));
+			}
+		}
+		return attributeKeys;
+	}
+
+	private static String getAttributeKey(String name, String value) {
+		return name + "=" + value;
+	}
+
+	private static <K> void addKey(Map<K, SortedMap<Long, String>> index, K key, IndexedOrder indexedOrder) {
+		if (key == null) {
+			return;
+		}
+		SortedMap<Long, String> indexedIds = index.get(key);
+		if (indexedIds == null) {
+			indexedIds = new TreeMap<Long, String>();
+			index.put(key, indexedIds);
+		}
+		indexedIds.put(indexedOrder.getSequence(), indexedOrder.getOrder().getId());
+	}
+
+	private static <K> void removeKey(Map<K, SortedMap<Long, String>> index, K key, IndexedOrder indexedOrder) {
+		if (key == null) {
+			return;
+		}
+		SortedMap<Long, String> indexedIds = index.get(key);
+		if (indexedIds == null) {
+			return;
+		}
+		indexedIds.remove(indexedOrder.getSequence());
+		if (indexedIds.isEmpty()) {
+			index.remove(key);
+		}
+	}
+
+	protected static String getUserId(Order order) {
+		Token federationToken = order.getFederationToken();
+		if (federationToken == null || federationToken.getUser() == null) {
+			return null;
+		}
+		return federationToken.getUser().getId();
+	}
+
+	private static Order copy(Order order) {
+		return copy(order, order.getSyncronousTime(), order.isSyncronousStatus());
+	}
+
+	/**
+	 * Copies the order the same way it would be read from the table: without
+	 * null categories or null attributes.
+	 */
+	private static Order copy(Order order, long syncronousTime, boolean syncronousStatus) {
+		List<Category> categories = new ArrayList<Category>();
+		if (order.getCategories() != null) {
+			for (Category category : order.getCategories()) {
+				categories.add(new Category(category.getTerm(), category.getScheme(), category.getCatClass()));
+			}
+		}
+		Order orderCopy = new Order(order.getId(), copy(order.getFederationToken()), order.getInstanceId(),
+				order.getProvidingMemberId(), order.getRequestingMemberId(), order.getFulfilledTime(),
+				order.isLocal(), order.getState(), categories, order.getxOCCIAtt());
+		orderCopy.setSyncronousTime(syncronousTime);
+		orderCopy.setSyncronousStatus(syncronousStatus);
+		return orderCopy;
+	}
+
+	private static Token copy(Token token) {
+		if (token == null) {
+			return null;
+		}
+		Map<String, String> attributes = token.getAttributes() != null ?
+				new HashMap<String, String>(token.getAttributes()) : new HashMap<String, String>();
+		return new Token(token.getAccessId(), token.getUser(), null, attributes);
+	}
+
+	private static class IndexedOrder {
+
+		private final long sequence;
+		private final Order order;
+
+		public IndexedOrder(long sequence, Order order) {
+			this.sequence = sequence;
+			this.order = order;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public Order getOrder() {
+			return order;
+		}
+	}
+
+}
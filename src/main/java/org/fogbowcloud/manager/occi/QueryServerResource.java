@@ -5,16 +5,19 @@ import java.util.List;
 
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DiscoveryCache.Discovery;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
 import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.model.ResourceRepository;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.restlet.Response;
 import org.restlet.data.MediaType;
 import org.restlet.data.Method;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
 import org.restlet.engine.adapter.HttpRequest;
 import org.restlet.data.Header;
 import org.restlet.representation.Representation;
@@ -26,6 +29,13 @@ import org.restlet.util.Series;
 public class QueryServerResource extends ServerResource {
 
 	private static final Logger LOGGER = Logger.getLogger(QueryServerResource.class);
+	private static final String OCCI_ACCEPT_TAG_SUFFIX = "-occi";
+
+	@Override
+	protected void doInit() {
+		// If-None-Match is checked by fetch against the cached discovery
+		setConditional(false);
+	}
 
 	@SuppressWarnings("deprecation")
 	@Get
@@ -54,6 +64,8 @@ public class QueryServerResource extends ServerResource {
 		
 		String authToken = HeaderUtils.getAuthToken(headers, getResponse(),
 				application.getAuthenticationURI());
+		// read before the resources, a resource added meanwhile only causes a cache miss
+		long resourcesVersion = ResourceRepository.getInstance().getVersion();
 		List<Resource> allResources = application.getAllResources(authToken);
 		LOGGER.debug("Fogbow resources = " + allResources);
 								
@@ -81,14 +93,14 @@ public class QueryServerResource extends ServerResource {
 					localCloudResources = entity.getText();
 				}
 				LOGGER.debug("Local cloud resources: " + localCloudResources);
-				return generateResponse(allResources, localCloudResources, filterCategory,
-						acceptType);
+				return generateResponse(resourcesVersion, allResources, localCloudResources,
+						filterCategory, acceptType);
 			} catch (Exception e) {
 				LOGGER.error("Exception while reading local cloud resources ...", e);
 			}
 		}		
 
-		return generateResponse(allResources, "", filterCategory, acceptType);
+		return generateResponse(resourcesVersion, allResources, "", filterCategory, acceptType);
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -114,12 +126,53 @@ public class QueryServerResource extends ServerResource {
 		}
 	}
 	
-	private StringRepresentation generateResponse(List<Resource> fogbowResources, String localCloudResources,
-			List<String> filterCategories, String acceptType) {		
-		
-		String response = "";
+	private StringRepresentation generateResponse(long resourcesVersion, List<Resource> fogbowResources,
+			String localCloudResources, List<String> filterCategories, String acceptType) {
+		DiscoveryCache cache = ((OCCIApplication) getApplication()).getDiscoveryCache();
+		String key = DiscoveryCache.getKey(filterCategories, localCloudResources);
+		Discovery discovery = cache.get(resourcesVersion, key);
+		if (discovery == null) {
+			discovery = cache.put(resourcesVersion, key, generateCategories(fogbowResources,
+					localCloudResources, filterCategories));
+		}
+		String response = discovery.getCategories();
+
+		boolean occiAccept = acceptType.equals(OCCIHeaders.OCCI_ACCEPT);
+		Tag tag = new Tag(occiAccept ? discovery.getTag() + OCCI_ACCEPT_TAG_SUFFIX : discovery.getTag(),
+				false);
+		if (isNoneMatch(tag)) {
+			getResponse().setStatus(new Status(HttpStatus.SC_NOT_MODIFIED));
+			StringRepresentation notModified = new StringRepresentation("");
+			notModified.setTag(tag);
+			return notModified;
+		}
+
+		StringRepresentation representation;
+		if (occiAccept) {
+			setLocationHeader(response.trim().replace("\n", ", ").replace("Category: ", ""));
+			representation = new StringRepresentation(ResponseConstants.OK, new MediaType(
+					OCCIHeaders.OCCI_ACCEPT));
+		} else {
+			representation = new StringRepresentation("\n" + response.trim());
+		}
+		representation.setTag(tag);
+		return representation;
+	}
+
+	private boolean isNoneMatch(Tag tag) {
+		for (Tag noneMatch : getRequest().getConditions().getNoneMatch()) {
+			if (Tag.ALL.equals(noneMatch) || tag.getName().equals(noneMatch.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String generateCategories(List<Resource> fogbowResources, String localCloudResources,
+			List<String> filterCategories) {
+		StringBuilder response = new StringBuilder();
 		for (Resource resource : fogbowResources) {
-			response += "Category: " + resource.toHeader() + "\n"; 
+			response.append("Category: ").append(resource.toHeader()).append("\n");
 		}
 		
 		//adding local cloud resources
@@ -132,21 +185,14 @@ public class QueryServerResource extends ServerResource {
 				}
 			}
 			if (!alreadyExists) {
-				response += "Category: " + localResource.toHeader() + "\n";
+				response.append("Category: ").append(localResource.toHeader()).append("\n");
 			}
 		}
 				
 		if (filterCategories != null && filterCategories.size() != 0) {
-			response = filterQuery(filterCategories, response, true);				
+			return filterQuery(filterCategories, response.toString(), true);
 		}
-		
-		if (acceptType.equals(OCCIHeaders.OCCI_ACCEPT)) {
-			setLocationHeader(response.trim().replace("\n", ", ").replace("Category: ", ""));
-			return new StringRepresentation(ResponseConstants.OK, new MediaType(
-					OCCIHeaders.OCCI_ACCEPT));
-		}				
-		
-		return new StringRepresentation("\n" + response.trim()); 
+		return response.toString();
 	}
 
 	private String filterQuery(List<String> filterCategories, String response,
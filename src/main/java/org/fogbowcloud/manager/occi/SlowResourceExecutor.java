@@ -0,0 +1,282 @@
+package org.fogbowcloud.manager.occi;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.core.ManagerTimer;
+import org.fogbowcloud.manager.core.util.PropertiesUtil;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.ResponseConstants;
+
+/**
+ * Runs the calls of the OCCI resources that may wait for clouds or other
+ * members in a bounded pool of workers, so they can not hold every HTTP thread.
+ * At most slow_resources_workers calls run at a time and at most
+ * slow_resources_queue_size wait for a worker; at most
+ * slow_resources_max_per_key of them, by default half of the workers, are for
+ * the same key, e.g. the same member. A call keeps its place until it finishes
+ * in the worker, even after the caller gave up on it. Calls beyond these
+ * limits are rejected at once, and calls that do not finish until
+ * slow_resources_timeout are given up, both with
+ * {@link ErrorType#SERVICE_UNAVAILABLE}. The workers, the queue and the calls
+ * rejected or given up are logged every {@link #STATS_PERIOD}.
+ *
+ * When slow_resources_async_enabled is not true the calls run in the HTTP
+ * thread, as before.
+ */
+public class SlowResourceExecutor {
+
+	private static final Logger LOGGER = Logger.getLogger(SlowResourceExecutor.class);
+
+	protected static final int DEFAULT_WORKERS = 20;
+	protected static final int DEFAULT_QUEUE_SIZE = 50;
+	protected static final long DEFAULT_TIMEOUT = 60000; // 1 minute
+	protected static final long STATS_PERIOD = 60000; // 1 minute
+
+	private final boolean enabled;
+	private final int maxPerKey;
+	private final long timeout;
+	private final ThreadPoolExecutor executor;
+	private final ManagerTimer statsTimer;
+	// keys without calls are removed, so keys by user do not pile up
+	private final Map<String, Integer> callsPerKey = new HashMap<String, Integer>();
+
+	private final AtomicLong completedCalls = new AtomicLong();
+	private final AtomicLong rejectedCalls = new AtomicLong();
+	private final AtomicLong timedOutCalls = new AtomicLong();
+	private long loggedRejectedCalls;
+	private long loggedTimedOutCalls;
+
+	public SlowResourceExecutor(Properties properties) {
+		this.enabled = isEnabled(properties);
+		int workers = Math.max(1, PropertiesUtil.getInt(properties,
+				ConfigurationConstants.SLOW_RESOURCES_WORKERS_KEY, DEFAULT_WORKERS));
+		int queueSize = Math.max(1, PropertiesUtil.getInt(properties,
+				ConfigurationConstants.SLOW_RESOURCES_QUEUE_SIZE_KEY, DEFAULT_QUEUE_SIZE));
+		this.maxPerKey = Math.max(1, PropertiesUtil.getInt(properties,
+				ConfigurationConstants.SLOW_RESOURCES_MAX_PER_KEY_KEY, Math.max(1, workers / 2)));
+		this.timeout = PropertiesUtil.getLong(properties, ConfigurationConstants.SLOW_RESOURCES_TIMEOUT_KEY,
+				DEFAULT_TIMEOUT);
+		if (enabled) {
+			this.executor = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(queueSize));
+			this.executor.allowCoreThreadTimeOut(true);
+			this.statsTimer = new ManagerTimer(Executors.newScheduledThreadPool(1));
+			this.statsTimer.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					logStats();
+				}
+			}, STATS_PERIOD, STATS_PERIOD);
+		} else {
+			this.executor = null;
+			this.statsTimer = null;
+		}
+	}
+
+	/**
+	 * @param properties manager properties, may be null.
+	 */
+	public static boolean isEnabled(Properties properties) {
+		return properties != null && Boolean.parseBoolean(properties.getProperty(
+				ConfigurationConstants.SLOW_RESOURCES_ASYNC_ENABLED_KEY));
+	}
+
+	/**
+	 * Runs the call in a worker and waits for its result. The exceptions thrown
+	 * by the call are thrown as they are.
+	 *
+	 * @param key
+	 *            what the call waits for, e.g. a member id. Calls with the same
+	 *            key share the slow_resources_max_per_key limit.
+	 */
+	public <T> T execute(String key, Callable<T> call) {
+		if (!enabled) {
+			return callDirectly(call);
+		}
+		String normalizedKey = key == null ? "" : key;
+		if (!acquire(normalizedKey)) {
+			throw reject("Too many slow requests for " + key + ".");
+		}
+		KeyedTask<T> task = new KeyedTask<T>(call, normalizedKey);
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			release(normalizedKey);
+			throw reject("Slow request queue is full (" + executor.getQueue().size() + " waiting).");
+		}
+		return waitFor(task, key);
+	}
+
+	private <T> T waitFor(Future<T> future, String key) {
+		try {
+			T result = future.get(timeout, TimeUnit.MILLISECONDS);
+			completedCalls.incrementAndGet();
+			return result;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			timedOutCalls.incrementAndGet();
+			LOGGER.warn("Slow request for " + key + " did not finish in " + timeout + " ms.");
+			throw new OCCIException(ErrorType.SERVICE_UNAVAILABLE, ResponseConstants.SERVICE_UNAVAILABLE);
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new OCCIException(ErrorType.SERVICE_UNAVAILABLE, ResponseConstants.SERVICE_UNAVAILABLE);
+		} catch (ExecutionException e) {
+			completedCalls.incrementAndGet();
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new OCCIException(ErrorType.INTERNAL_SERVER_ERROR, ResponseConstants.INTERNAL_ERROR);
+		}
+	}
+
+	private static <T> T callDirectly(Callable<T> call) {
+		try {
+			return call.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new OCCIException(ErrorType.INTERNAL_SERVER_ERROR, ResponseConstants.INTERNAL_ERROR);
+		}
+	}
+
+	private OCCIException reject(String reason) {
+		rejectedCalls.incrementAndGet();
+		LOGGER.warn(reason + " Rejecting request.");
+		return new OCCIException(ErrorType.SERVICE_UNAVAILABLE, ResponseConstants.SERVICE_UNAVAILABLE);
+	}
+
+	private boolean acquire(String key) {
+		synchronized (callsPerKey) {
+			Integer keyCalls = callsPerKey.get(key);
+			int calls = keyCalls == null ? 0 : keyCalls;
+			if (calls >= maxPerKey) {
+				return false;
+			}
+			callsPerKey.put(key, calls + 1);
+			return true;
+		}
+	}
+
+	private void release(String key) {
+		synchronized (callsPerKey) {
+			Integer keyCalls = callsPerKey.get(key);
+			if (keyCalls == null || keyCalls <= 1) {
+				callsPerKey.remove(key);
+			} else {
+				callsPerKey.put(key, keyCalls - 1);
+			}
+		}
+	}
+
+	/**
+	 * Logs the workers and the queue, at info level when calls were rejected
+	 * or given up since the last time.
+	 */
+	protected synchronized void logStats() {
+		long rejected = rejectedCalls.get();
+		long timedOut = timedOutCalls.get();
+		String stats = "Slow requests: " + getActiveWorkers() + " running, " + getQueueDepth() + " waiting, "
+				+ getCompletedCalls() + " completed, " + rejected + " rejected (" + (rejected - loggedRejectedCalls)
+				+ " new), " + timedOut + " timed out (" + (timedOut - loggedTimedOutCalls) + " new).";
+		if (rejected > loggedRejectedCalls || timedOut > loggedTimedOutCalls) {
+			LOGGER.info(stats);
+		} else {
+			LOGGER.debug(stats);
+		}
+		loggedRejectedCalls = rejected;
+		loggedTimedOutCalls = timedOut;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the number of calls waiting for a worker
+	 */
+	public int getQueueDepth() {
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	public int getActiveWorkers() {
+		return executor == null ? 0 : executor.getActiveCount();
+	}
+
+	public long getCompletedCalls() {
+		return completedCalls.get();
+	}
+
+	public long getRejectedCalls() {
+		return rejectedCalls.get();
+	}
+
+	public long getTimedOutCalls() {
+		return timedOutCalls.get();
+	}
+
+	public void shutdown() {
+		if (executor != null) {
+			statsTimer.shutdown();
+			executor.shutdownNow();
+		}
+	}
+
+	protected int getMaxPerKey() {
+		return maxPerKey;
+	}
+
+	/**
+	 * @return the number of keys with calls running or waiting
+	 */
+	protected int getKeysCount() {
+		synchronized (callsPerKey) {
+			return callsPerKey.size();
+		}
+	}
+
+	/**
+	 * Releases the place of its key when it leaves the worker, whether it
+	 * finished, failed or was cancelled, and not when the caller stops waiting.
+	 * Cancelled tasks still waiting in the queue are run by the worker as a
+	 * no-op, so they are released too.
+	 */
+	private class KeyedTask<T> extends FutureTask<T> {
+
+		private final String key;
+
+		public KeyedTask(Callable<T> call, String key) {
+			super(call);
+			this.key = key;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				release(key);
+			}
+		}
+	}
+}
@@ -1,12 +1,17 @@
 package org.fogbowcloud.manager.occi.instance;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.http.HttpStatus;
@@ -14,15 +19,19 @@ import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.ManagerController;
 import org.fogbowcloud.manager.core.util.UserdataUtils;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.OCCIConstants;
 import org.fogbowcloud.manager.occi.instance.Instance.Link;
 import org.fogbowcloud.manager.occi.model.Category;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
+import org.fogbowcloud.manager.occi.model.ListingRepresentation;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.Pagination;
 import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.ResourceRepository;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.network.FedNetworkState;
@@ -37,6 +46,7 @@ import org.restlet.data.Status;
 import org.restlet.engine.adapter.HttpRequest;
 import org.restlet.engine.adapter.ServerCall;
 import org.restlet.data.Header;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Delete;
 import org.restlet.resource.Get;
@@ -51,6 +61,12 @@ public class ComputeServerResource extends ServerResource {
 	protected static final String NO_INSTANCES_MESSAGE = "There are not instances.";
 	private static final Logger LOGGER = Logger.getLogger(ComputeServerResource.class);
 	public static final String FED_INSTANCE_PREFIX = "federated_instance_";
+	public static final Pagination.Identifier<Instance> INSTANCE_IDENTIFIER = new Pagination.Identifier<Instance>() {
+		@Override
+		public String getId(Instance instance) {
+			return instance.getId();
+		}
+	};
 
 	protected static final String OCCI_NETWORK_INTERFACE_GATEWAY = "occi.networkinterface.gateway";
 	protected static final String OCCI_NETWORK_INTERFACE_MAC = "occi.networkinterface.mac";
@@ -82,7 +98,7 @@ public class ComputeServerResource extends ServerResource {
 
 	@SuppressWarnings("deprecation")
 	@Get
-	public StringRepresentation fetch() {
+	public Representation fetch() {
 
 		OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
@@ -94,14 +110,11 @@ public class ComputeServerResource extends ServerResource {
 		if (instanceId == null) {
 			LOGGER.info("Getting all instances of token :" + federationAuthToken);
 
-			List<String> filterCategory = HeaderUtils.getValueHeaderPerName(OCCIHeaders.CATEGORY, req.getHeaders());
-			List<String> filterAttribute = HeaderUtils.getValueHeaderPerName(OCCIHeaders.X_OCCI_ATTRIBUTE,
-					req.getHeaders());
+			ResourceFilter filter = ResourceFilter.fromHeaders(req.getHeaders());
 
 			List<Instance> allInstances = new ArrayList<Instance>();
-			if (filterCategory.size() != 0 || filterAttribute.size() != 0) {
-				allInstances = filterInstances(getInstancesFiltered(application, federationAuthToken), filterCategory,
-						filterAttribute);
+			if (!filter.isEmpty()) {
+				allInstances = filterInstances(getInstancesFiltered(application, federationAuthToken), filter);
 			} else {
 				allInstances = getInstances(application, federationAuthToken);
 			}			
@@ -113,9 +126,11 @@ public class ComputeServerResource extends ServerResource {
 			}
 			List<FedInstanceState> fedPostInstances = instanceDB.getAllByUser(user);
 			LOGGER.debug("There are " + fedPostInstances.size() + " owened by user " + user);
+			Map<String, Instance> instancesById = indexById(allInstances);
 			// replacing real instance id by fed_instance_id
 			for (FedInstanceState currentInstance : fedPostInstances) {
-				allInstances.add(new Instance(currentInstance.getFedInstanceId()));
+				instancesById.put(currentInstance.getFedInstanceId(),
+						new Instance(currentInstance.getFedInstanceId()));
 				
 				String globalId = currentInstance.getGlobalInstanceId();
 				if (globalId == null || globalId.isEmpty()) {
@@ -129,20 +144,29 @@ public class ComputeServerResource extends ServerResource {
 					}
 				}
 
-				if (globalId != null && allInstances.contains(new Instance(globalId))) {
-					allInstances.remove(new Instance(globalId));
+				if (globalId != null) {
+					instancesById.remove(globalId);
 				}
 			}
 
+			Pagination pagination = Pagination.fromQuery(getQuery());
+			allInstances = pagination.page(instancesById.values(), INSTANCE_IDENTIFIER);
+			pagination.setNextCursorHeader(getResponse());
+
 			if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
-				return new StringRepresentation(generateResponse(allInstances), MediaType.TEXT_PLAIN);
+				return generateResponse(allInstances);
 			} else if (acceptContent.contains(OCCIHeaders.TEXT_URI_LIST_CONTENT_TYPE)) {
-				return new StringRepresentation(generateURIListResponse(allInstances, req), MediaType.TEXT_URI_LIST);
+				return generateURIListResponse(allInstances, req);
+			} else if (HeaderUtils.isJsonAccepted(acceptContent)) {
+				return JsonSerializer.instances(allInstances);
 			}
 			throw new OCCIException(ErrorType.NOT_ACCEPTABLE, ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 
 		}
 
+		boolean textAccepted = acceptContent.size() == 0
+				|| acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE);
+		boolean jsonAccepted = !textAccepted && HeaderUtils.isJsonAccepted(acceptContent);
 		Order relatedOrder = null;
 
 		if (instanceId.startsWith(FED_INSTANCE_PREFIX)) {
@@ -160,14 +184,14 @@ public class ComputeServerResource extends ServerResource {
 			relatedOrder = application.getOrder(federationAuthToken, fedInstanceState.getOrderId());
 			if (!relatedOrder.getState().in(OrderState.FULFILLED)) {
 				// instance is not ready for using yet
-				return new StringRepresentation(generateInactiveInstanceResponse(fedInstanceState, relatedOrder),
-						MediaType.TEXT_PLAIN);
+				return generateInstanceResponse(createInactiveInstance(fedInstanceState, relatedOrder),
+						jsonAccepted);
 			}
 
 		}
 
 		LOGGER.info("Getting instance " + instanceId);
-		if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
+		if (textAccepted || jsonAccepted) {
 			try {
 
 				Instance instance;
@@ -178,18 +202,17 @@ public class ComputeServerResource extends ServerResource {
 						throw new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED);
 					}
 					
-					instance = application.getInstance(federationAuthToken, relatedOrder.getGlobalInstanceId());
+					instance = getInstance(application, federationAuthToken, relatedOrder.getGlobalInstanceId());
 
 					// updating instance DB
 					FedInstanceState fedInstanceState = instanceDB.getByInstanceId(instanceId, userId);
 					fedInstanceState.setGlobalInstanceId(relatedOrder.getGlobalInstanceId());
 					instanceDB.update(fedInstanceState);
 
-					return new StringRepresentation(
-							generateFedInstanceResponse(fedInstanceState, relatedOrder, instance),
-							MediaType.TEXT_PLAIN);
+					return generateInstanceResponse(createFedInstance(fedInstanceState, relatedOrder, instance),
+							jsonAccepted);
 				} else {
-					instance = application.getInstance(federationAuthToken, instanceId);
+					instance = getInstance(application, federationAuthToken, instanceId);
 				}
 
 				try {
@@ -203,9 +226,12 @@ public class ComputeServerResource extends ServerResource {
 					LOGGER.warn("", e);
 				}
 
-				return new StringRepresentation(instance.toOCCIMessageFormatDetails(), MediaType.TEXT_PLAIN);
+				return generateInstanceResponse(instance, jsonAccepted);
 				
 			} catch (OCCIException e) {
+				if (e.getType() == ErrorType.SERVICE_UNAVAILABLE) {
+					throw e;
+				}
 				Response response = new Response(getRequest());
 
 				normalizeURIForBypass(req);
@@ -216,7 +242,11 @@ public class ComputeServerResource extends ServerResource {
 				// if it is a local instance created out of fogbow
 				if (response.getStatus().getCode() == HttpStatus.SC_OK) {
 					try {
-						return new StringRepresentation(response.getEntity().getText(), MediaType.TEXT_PLAIN);
+						String instanceDetails = response.getEntity().getText();
+						if (jsonAccepted) {
+							return JsonSerializer.instance(Instance.parseInstance(instanceId, instanceDetails));
+						}
+						return new StringRepresentation(instanceDetails, MediaType.TEXT_PLAIN);
 					} catch (Exception e1) {
 					}
 				}
@@ -227,7 +257,7 @@ public class ComputeServerResource extends ServerResource {
 		throw new OCCIException(ErrorType.NOT_ACCEPTABLE, ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 	}
 
-	private String generateFedInstanceResponse(FedInstanceState fedInstanceState, Order relatedOrder,
+	private Instance createFedInstance(FedInstanceState fedInstanceState, Order relatedOrder,
 			Instance instance) {
 		
 		String sshInformation = instance.getAttributes().get(Instance.SSH_PUBLIC_ADDRESS_ATT);
@@ -250,7 +280,7 @@ public class ComputeServerResource extends ServerResource {
 		
 		return new Instance(fedInstanceState.getFedInstanceId(), ResourceRepository.getInstance()
 				.get(fedInstanceState.getCategories()), instance.getAttributes(), links,
-				instance.getState()).toOCCIMessageFormatDetails();
+				instance.getState());
 	}
 
 	private boolean containsLink(List<Link> links, String linkName) {
@@ -304,7 +334,7 @@ public class ComputeServerResource extends ServerResource {
 		return new Link("</network/public>", linkAttrs);
 	}
 
-	private String generateInactiveInstanceResponse(FedInstanceState fedInstanceState, Order order) {
+	private Instance createInactiveInstance(FedInstanceState fedInstanceState, Order order) {
 		Map<String, String> instanceAttrs = new HashMap<String, String>();
 		instanceAttrs.put("occi.core.id", fedInstanceState.getFedInstanceId());
 		
@@ -322,7 +352,19 @@ public class ComputeServerResource extends ServerResource {
 		
 		return new Instance(fedInstanceState.getFedInstanceId(), ResourceRepository.getInstance()
 				.get(fedInstanceState.getCategories()), instanceAttrs, fedInstanceState.getLinks(),
-				InstanceState.PENDING).toOCCIMessageFormatDetails();
+				InstanceState.PENDING);
+	}
+
+	/**
+	 * @param json
+	 *            whether the details are written as application/json instead
+	 *            of text/plain
+	 */
+	public static Representation generateInstanceResponse(Instance instance, boolean json) {
+		if (json) {
+			return JsonSerializer.instance(instance);
+		}
+		return new StringRepresentation(instance.toOCCIMessageFormatDetails(), MediaType.TEXT_PLAIN);
 	}
 
 	@Post
@@ -609,57 +651,89 @@ public class ComputeServerResource extends ServerResource {
 		return req.getProtocol().getSchemeName() + "://" + hostDomain + ":" + httpCall.getHostPort();
 	}
 
-	private List<Instance> filterInstances(List<Instance> allInstances, List<String> filterCategory,
-			List<String> filterAttribute) {
-		List<Instance> instancesFiltrated = new ArrayList<Instance>();
-		boolean thereIsntCategory = true;
+	/**
+	 * The instance attributes come from the clouds, so they are matched one by
+	 * one, each instance at most once.
+	 */
+	private List<Instance> filterInstances(List<Instance> allInstances, ResourceFilter filter) {
+		List<Instance> instancesFiltered = new ArrayList<Instance>();
+		boolean categoryFound = false;
 		for (Instance instance : allInstances) {
-			if (filterCategory.size() != 0) {
-				for (String valueCategoryFilter : filterCategory) {
-					for (Resource resource : instance.getResources()) {
-						if (valueCategoryFilter.contains(resource.getCategory().getTerm())
-								&& valueCategoryFilter.contains(resource.getCategory().getScheme())) {
-							instancesFiltrated.add(instance);
-							thereIsntCategory = false;
-						}
-					}
-				}
-			}
-			if (filterAttribute.size() != 0) {
-				for (String valueAttributeFilter : filterAttribute) {
-					Map<String, String> mapAttributes = instance.getAttributes();
-					for (String keyAttribute : mapAttributes.keySet()) {
-						if (valueAttributeFilter.contains(keyAttribute) && valueAttributeFilter.endsWith(
-								HeaderUtils.normalizeValueAttributeFilter(mapAttributes.get(keyAttribute).trim()))) {
-							instancesFiltrated.add(instance);
-						}
-					}
-				}
+			if (filter.matches(instance)) {
+				instancesFiltered.add(instance);
+				categoryFound = categoryFound || filter.matchesCategories(instance);
 			}
 		}
-		if (filterCategory.size() != 0 && thereIsntCategory) {
+		if (filter.hasCategories() && !categoryFound) {
 			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.CATEGORY_IS_NOT_REGISTERED);
 		}
-		return instancesFiltrated;
+		return instancesFiltered;
 	}
 
-	private List<Instance> getInstancesFiltered(OCCIApplication application, String authToken) {
-		List<Instance> allInstances = application.getInstancesFullInfo(authToken);
-		return allInstances;
+	private List<Instance> getInstancesFiltered(final OCCIApplication application, final String authToken) {
+		return application.getSlowResourceExecutor().execute(getUserKey(application, authToken),
+				new Callable<List<Instance>>() {
+					@Override
+					public List<Instance> call() throws Exception {
+						return application.getInstancesFullInfo(authToken);
+					}
+				});
+	}
+
+	private static Instance getInstance(final OCCIApplication application, final String authToken,
+			final String instanceId) {
+		return application.getSlowResourceExecutor().execute(getProvidingMember(instanceId),
+				new Callable<Instance>() {
+					@Override
+					public Instance call() throws Exception {
+						return application.getInstance(authToken, instanceId);
+					}
+				});
+	}
+
+	/**
+	 * The listings go out to the local cloud and to the members of the orders
+	 * of the user, so they are limited by user and a slow cloud of one user
+	 * does not block the listings of the others.
+	 */
+	private static String getUserKey(OCCIApplication application, String authToken) {
+		return OrderConstants.COMPUTE_TERM + ":" + application.getUserId(authToken);
+	}
+
+	/**
+	 * @return the member of a global instance id, as instance@member, or the
+	 *         compute term for local instances
+	 */
+	private static String getProvidingMember(String instanceId) {
+		int memberIndex = instanceId == null ? -1 : instanceId.lastIndexOf(Order.SEPARATOR_GLOBAL_ID);
+		if (memberIndex < 0) {
+			return OrderConstants.COMPUTE_TERM;
+		}
+		return instanceId.substring(memberIndex + 1);
 	}
 
 	@SuppressWarnings("deprecation")
-	private List<Instance> getInstances(OCCIApplication application, String authToken) {
-		authToken = normalizeAuthToken(authToken);
-		List<Instance> allInstances = application.getInstances(authToken);
+	private List<Instance> getInstances(final OCCIApplication application, String authToken) {
+		final String normalizedAuthToken = normalizeAuthToken(authToken);
+		List<Instance> allInstances = application.getSlowResourceExecutor().execute(
+				getUserKey(application, normalizedAuthToken), new Callable<List<Instance>>() {
+					@Override
+					public List<Instance> call() throws Exception {
+						return application.getInstances(normalizedAuthToken);
+					}
+				});
 
 		// Adding local instances created out of fogbow
 		HttpRequest req = (HttpRequest) getRequest();
 		Response response = new Response(req);
 		OCCIApplication.normalizeHeadersForBypass(req);
 		application.bypass(req, response);
+		Set<String> instanceIds = new HashSet<String>();
+		for (Instance instance : allInstances) {
+			instanceIds.add(instance.getId());
+		}
 		for (Instance instance : getInstancesCreatedOutOfFogbow(response, application)) {
-			if (!allInstances.contains(instance)) {
+			if (instanceIds.add(instance.getId())) {
 				allInstances.add(instance);
 			}
 		}
@@ -706,18 +780,27 @@ public class ComputeServerResource extends ServerResource {
 		return splitInstanceId[splitInstanceId.length - 1];
 	}
 
-	public static String generateURIListResponse(List<Instance> instances, HttpRequest req) {
+	public static Representation generateURIListResponse(List<Instance> instances, HttpRequest req) {
 		String requestEndpoint = req.getHostRef() + req.getHttpCall().getRequestUri();
-		Iterator<Instance> instanceIt = instances.iterator();
-		String result = "";
-		while (instanceIt.hasNext()) {
-			if (requestEndpoint.endsWith("/")) {
-				result += requestEndpoint + instanceIt.next().getId() + "\n";
-			} else {
-				result += requestEndpoint + "/" + instanceIt.next().getId() + "\n";
+		final String prefix = requestEndpoint.endsWith("/") ? requestEndpoint : requestEndpoint + "/";
+		return new ListingRepresentation<Instance>(instances, MediaType.TEXT_URI_LIST, "\n") {
+			@Override
+			protected void writeEntry(Writer writer, Instance instance) throws IOException {
+				writer.write(prefix);
+				writer.write(instance.getId());
 			}
+		};
+	}
+
+	/**
+	 * @return the instances by id, in the same order
+	 */
+	public static Map<String, Instance> indexById(List<Instance> instances) {
+		Map<String, Instance> instancesById = new LinkedHashMap<String, Instance>();
+		for (Instance instance : instances) {
+			instancesById.put(instance.getId(), instance);
 		}
-		return result.length() > 0 ? result.trim() : "\n";
+		return instancesById;
 	}
 
 	@Delete
@@ -809,18 +892,12 @@ public class ComputeServerResource extends ServerResource {
 		return ResponseConstants.OK;
 	}
 
-	public static String generateResponse(List<Instance> instances) {
-		if (instances == null || instances.isEmpty()) {
-			return NO_INSTANCES_MESSAGE;
-		}
-		String response = "";
-		Iterator<Instance> instanceIt = instances.iterator();
-		while (instanceIt.hasNext()) {
-			response += instanceIt.next().toOCCIMessageFormatLocation();
-			if (instanceIt.hasNext()) {
-				response += "\n";
+	public static Representation generateResponse(List<Instance> instances) {
+		return new ListingRepresentation<Instance>(instances, MediaType.TEXT_PLAIN, NO_INSTANCES_MESSAGE) {
+			@Override
+			protected void writeEntry(Writer writer, Instance instance) throws IOException {
+				writer.write(instance.toOCCIMessageFormatLocation());
 			}
-		}
-		return response;
+		};
 	}
-}
\ No newline at end of file
+}
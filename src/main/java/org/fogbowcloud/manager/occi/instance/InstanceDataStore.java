@@ -1,7 +1,6 @@
 package org.fogbowcloud.manager.occi.instance;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DataStoreConnectionPool;
 import org.fogbowcloud.manager.occi.DataStoreHelper;
 import org.fogbowcloud.manager.occi.JSONHelper;
 import org.json.JSONArray;
@@ -60,11 +60,13 @@ public class InstanceDataStore {
 	private static final String DEFAULT_DATASTORE_NAME = "datastore_instances.slite";
 
 	private String instanceDataStoreURL;
+	private DataStoreConnectionPool connectionPool;
 
 	public InstanceDataStore(String instanceDataStoreURL) {
 		
 		this.instanceDataStoreURL = DataStoreHelper.getDataStoreUrl(instanceDataStoreURL,
 				DEFAULT_DATASTORE_NAME);;
+		this.connectionPool = DataStoreConnectionPool.getPool(this.instanceDataStoreURL);
 
 		Statement statement = null;
 		Connection connection = null;
@@ -438,7 +440,7 @@ public class InstanceDataStore {
 	 */
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(instanceDataStoreURL);
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -1,26 +1,46 @@
 package org.fogbowcloud.manager.occi.member;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
+import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.restlet.data.MediaType;
 import org.restlet.engine.adapter.HttpRequest;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 import org.restlet.resource.ServerResource;
 
 public class MemberServerResource extends ServerResource {
 
+	private static final String MEMBERS_KEY = "member";
+
 	@Get
-	public String fetch() {
-		OCCIApplication application = (OCCIApplication) getApplication();
+	public Representation fetch() {
+		final OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
 		HeaderUtils.checkOCCIContentType(req.getHeaders());
 
-		String authToken = HeaderUtils.getAuthToken(req.getHeaders(), getResponse(),
+		final String authToken = HeaderUtils.getAuthToken(req.getHeaders(), getResponse(),
 				application.getAuthenticationURI());
 
-		return generateResponse(application.getFederationMembers(authToken));
+		List<FederationMember> members = application.getSlowResourceExecutor().execute(MEMBERS_KEY,
+				new Callable<List<FederationMember>>() {
+					@Override
+					public List<FederationMember> call() throws Exception {
+						return application.getFederationMembers(authToken);
+					}
+				});
+		List<String> acceptContent = HeaderUtils.getAccept(req.getHeaders());
+		if (!acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)
+				&& HeaderUtils.isJsonAccepted(acceptContent)) {
+			return JsonSerializer.members(members);
+		}
+		return new StringRepresentation(generateResponse(members), MediaType.TEXT_PLAIN);
 	}
 
 	private String generateResponse(List<FederationMember> members) {
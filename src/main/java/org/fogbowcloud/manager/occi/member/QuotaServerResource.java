@@ -1,28 +1,41 @@
 package org.fogbowcloud.manager.occi.member;
 
+import java.util.concurrent.Callable;
+
 import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.restlet.data.MediaType;
 import org.restlet.engine.adapter.HttpRequest;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
 
 public class QuotaServerResource extends MemberServerResource {
 	
 	@Get
-	public String fetch() {
-		OCCIApplication application = (OCCIApplication) getApplication();
+	public Representation fetch() {
+		final OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
 		
-		String memberId = (String) getRequestAttributes().get("memberId");
+		final String memberId = (String) getRequestAttributes().get("memberId");
 		
-		String authToken = HeaderUtils.getAuthToken(req.getHeaders(), getResponse(),
+		final String authToken = HeaderUtils.getAuthToken(req.getHeaders(), getResponse(),
 				application.getAuthenticationURI());
 		
 		if (memberId != null) {
-			return generateResponse(application.getFederationMemberQuota(memberId, authToken));
+			// a member that does not answer holds only the requests of its quota
+			FederationMember member = application.getSlowResourceExecutor().execute(memberId,
+					new Callable<FederationMember>() {
+						@Override
+						public FederationMember call() throws Exception {
+							return application.getFederationMemberQuota(memberId, authToken);
+						}
+					});
+			return new StringRepresentation(generateResponse(member), MediaType.TEXT_PLAIN);
 		} 
 		
 		throw new OCCIException(ErrorType.BAD_REQUEST, "The memberId was not specified.");
@@ -2,6 +2,6 @@ package org.fogbowcloud.manager.occi.model;
 
 public enum ErrorType {
 	
-	UNAUTHORIZED, NOT_FOUND, BAD_REQUEST, QUOTA_EXCEEDED, METHOD_NOT_ALLOWED, NOT_ACCEPTABLE, NO_VALID_HOST_FOUND, FORBIDDEN, INTERNAL_SERVER_ERROR;
+	UNAUTHORIZED, NOT_FOUND, BAD_REQUEST, QUOTA_EXCEEDED, METHOD_NOT_ALLOWED, NOT_ACCEPTABLE, NO_VALID_HOST_FOUND, FORBIDDEN, INTERNAL_SERVER_ERROR, SERVICE_UNAVAILABLE;
 	
 }
@@ -214,6 +214,19 @@ public class HeaderUtils {
 		return acceptContents;
 	}
 	
+	/**
+	 * @param acceptContents
+	 *            the values returned by {@link #getAccept(Series)}
+	 */
+	public static boolean isJsonAccepted(List<String> acceptContents) {
+		for (String acceptContent : acceptContents) {
+			if (acceptContent.startsWith(OCCIHeaders.JSON_CONTENT_TYPE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static void setResponseHeader(Response response, String header, String value) {
 		Series<Header> responseHeaders = (Series<Header>) response.getAttributes().get("org.restlet.http.headers");
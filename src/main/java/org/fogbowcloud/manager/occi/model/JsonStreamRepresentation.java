@@ -0,0 +1,30 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * application/json response written with a {@link JsonStreamWriter} as the
+ * response is sent.
+ */
+public abstract class JsonStreamRepresentation extends WriterRepresentation {
+
+	public JsonStreamRepresentation() {
+		super(MediaType.APPLICATION_JSON);
+		setCharacterSet(CharacterSet.UTF_8);
+	}
+
+	@Override
+	public void write(Writer writer) throws IOException {
+		JsonStreamWriter json = new JsonStreamWriter(writer);
+		write(json);
+		json.flush();
+	}
+
+	protected abstract void write(JsonStreamWriter json) throws IOException;
+
+}
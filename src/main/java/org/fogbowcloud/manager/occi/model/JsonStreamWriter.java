@@ -0,0 +1,181 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes a JSON document token by token to a {@link Writer}, without building
+ * the objects in memory first. Names and values are written in the order they
+ * are given; commas between them are added by the writer.
+ */
+public class JsonStreamWriter {
+
+	private static final int MAX_DEPTH = 64;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Writer writer;
+	// whether the object or array of each depth already has a value
+	private final boolean[] hasValue = new boolean[MAX_DEPTH];
+	private int depth = 0;
+	private boolean afterName = false;
+
+	public JsonStreamWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public JsonStreamWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonStreamWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonStreamWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonStreamWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	public JsonStreamWriter name(String name) throws IOException {
+		beforeValue();
+		writeString(name);
+		writer.write(':');
+		afterName = true;
+		return this;
+	}
+
+	public JsonStreamWriter value(String value) throws IOException {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	public JsonStreamWriter value(long value) throws IOException {
+		beforeValue();
+		writer.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Writes the value as org.json does, without trailing zeros, e.g. 10.0 as
+	 * 10. Values that are not finite are written as null.
+	 */
+	public JsonStreamWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return nullValue();
+		}
+		beforeValue();
+		String number = Double.toString(value);
+		if (number.indexOf('.') > 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+			int end = number.length();
+			while (number.charAt(end - 1) == '0') {
+				end--;
+			}
+			if (number.charAt(end - 1) == '.') {
+				end--;
+			}
+			number = number.substring(0, end);
+		}
+		writer.write(number);
+		return this;
+	}
+
+	public JsonStreamWriter value(boolean value) throws IOException {
+		beforeValue();
+		writer.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonStreamWriter nullValue() throws IOException {
+		beforeValue();
+		writer.write("null");
+		return this;
+	}
+
+	/**
+	 * Writes the entries of the map as an object of strings, or null if the
+	 * map is null.
+	 */
+	public JsonStreamWriter value(Map<String, String> values) throws IOException {
+		if (values == null) {
+			return nullValue();
+		}
+		beginObject();
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			name(entry.getKey()).value(entry.getValue());
+		}
+		return endObject();
+	}
+
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	private JsonStreamWriter open(char bracket) throws IOException {
+		beforeValue();
+		if (depth + 1 >= MAX_DEPTH) {
+			throw new IllegalStateException("JSON nested too deeply.");
+		}
+		writer.write(bracket);
+		hasValue[++depth] = false;
+		return this;
+	}
+
+	private JsonStreamWriter close(char bracket) throws IOException {
+		if (depth == 0 || afterName) {
+			throw new IllegalStateException("Nothing to close with " + bracket + ".");
+		}
+		writer.write(bracket);
+		depth--;
+		return this;
+	}
+
+	private void beforeValue() throws IOException {
+		if (afterName) {
+			afterName = false;
+			return;
+		}
+		if (hasValue[depth]) {
+			writer.write(',');
+		}
+		hasValue[depth] = true;
+	}
+
+	private void writeString(String value) throws IOException {
+		writer.write('"');
+		int start = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String replacement = null;
+			if (c == '"') {
+				replacement = "\\\"";
+			} else if (c == '\\') {
+				replacement = "\\\\";
+			} else if (c == '\n') {
+				replacement = "\\n";
+			} else if (c == '\r') {
+				replacement = "\\r";
+			} else if (c == '\t') {
+				replacement = "\\t";
+			} else if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+				replacement = "\\u" + HEX_DIGITS[(c >> 12) & 0xf] + HEX_DIGITS[(c >> 8) & 0xf]
+						+ HEX_DIGITS[(c >> 4) & 0xf] + HEX_DIGITS[c & 0xf];
+			}
+			if (replacement != null) {
+				writer.write(value, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(value, start, length - start);
+		writer.write('"');
+	}
+}
@@ -0,0 +1,48 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+
+/**
+ * Listing of resources written to the response one entry per line, as the
+ * response is sent, instead of building the whole listing as a string first.
+ */
+public abstract class ListingRepresentation<T> extends WriterRepresentation {
+
+	private final Iterable<T> entries;
+	private final String emptyListing;
+
+	/**
+	 * @param emptyListing
+	 *            what is written when there are no entries
+	 */
+	public ListingRepresentation(Iterable<T> entries, MediaType mediaType, String emptyListing) {
+		super(mediaType);
+		setCharacterSet(CharacterSet.UTF_8);
+		this.entries = entries;
+		this.emptyListing = emptyListing;
+	}
+
+	@Override
+	public void write(Writer writer) throws IOException {
+		boolean empty = true;
+		for (T entry : entries) {
+			if (!empty) {
+				writer.write('\n');
+			}
+			writeEntry(writer, entry);
+			empty = false;
+		}
+		if (empty) {
+			writer.write(emptyListing);
+		}
+		writer.flush();
+	}
+
+	protected abstract void writeEntry(Writer writer, T entry) throws IOException;
+
+}
@@ -34,6 +34,8 @@ public class OCCIException extends ResourceException {
 			return HttpStatus.SC_NOT_ACCEPTABLE;			
 		case METHOD_NOT_ALLOWED:
 			return HttpStatus.SC_METHOD_NOT_ALLOWED;
+		case SERVICE_UNAVAILABLE:
+			return HttpStatus.SC_SERVICE_UNAVAILABLE;
 		default:
 			break;
 		}
@@ -14,6 +14,7 @@ public class OCCIHeaders {
 	public static final String CATEGORY = "Category";
 	public static final String AUTHORIZATION = "Authorization";
 	public static final String LINK = "Link";
+	public static final String X_NEXT_CURSOR = "X-Next-Cursor";
 
 	// occi constants
 	public static final String ACTION_CLASS = "action";
@@ -0,0 +1,101 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.restlet.Response;
+import org.restlet.data.Form;
+
+/**
+ * Pages of a listing, given by the "limit" and "cursor" query parameters. The
+ * entries of a page are sorted by id and the cursor is the id of the last entry
+ * of the previous page, so entries created or removed between requests do not
+ * shift the pages. The cursor of the next page is sent in the
+ * {@link OCCIHeaders#X_NEXT_CURSOR} header while there are more entries.
+ */
+public class Pagination {
+
+	public static final String LIMIT_PARAMETER = "limit";
+	public static final String CURSOR_PARAMETER = "cursor";
+
+	public interface Identifier<T> {
+
+		public String getId(T entry);
+
+	}
+
+	private final Integer limit;
+	private final String cursor;
+	private String nextCursor;
+
+	public Pagination(Integer limit, String cursor) {
+		if (limit != null && limit <= 0) {
+			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+		}
+		this.limit = limit;
+		this.cursor = cursor == null || cursor.isEmpty() ? null : cursor;
+	}
+
+	public static Pagination fromQuery(Form query) {
+		String limitStr = query.getFirstValue(LIMIT_PARAMETER);
+		Integer limit = null;
+		if (limitStr != null && !limitStr.trim().isEmpty()) {
+			try {
+				limit = Integer.parseInt(limitStr.trim());
+			} catch (NumberFormatException e) {
+				throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+			}
+		}
+		return new Pagination(limit, query.getFirstValue(CURSOR_PARAMETER));
+	}
+
+	/**
+	 * @return false when neither the limit nor the cursor were given, and the
+	 *         whole listing is returned as before
+	 */
+	public boolean isEnabled() {
+		return limit != null || cursor != null;
+	}
+
+	public <T> List<T> page(Collection<T> entries, final Identifier<T> identifier) {
+		nextCursor = null;
+		if (!isEnabled()) {
+			return new ArrayList<T>(entries);
+		}
+		List<T> remainingEntries = new ArrayList<T>();
+		for (T entry : entries) {
+			if (cursor == null || identifier.getId(entry).compareTo(cursor) > 0) {
+				remainingEntries.add(entry);
+			}
+		}
+		Collections.sort(remainingEntries, new Comparator<T>() {
+			@Override
+			public int compare(T entry, T otherEntry) {
+				return identifier.getId(entry).compareTo(identifier.getId(otherEntry));
+			}
+		});
+		if (limit == null || remainingEntries.size() <= limit) {
+			return remainingEntries;
+		}
+		List<T> page = new ArrayList<T>(remainingEntries.subList(0, limit));
+		nextCursor = identifier.getId(page.get(limit - 1));
+		return page;
+	}
+
+	/**
+	 * @return the cursor of the page after the last one returned by
+	 *         {@link #page(Collection, Identifier)}, or null if it was the last
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursorHeader(Response response) {
+		if (nextCursor != null) {
+			HeaderUtils.setResponseHeader(response, OCCIHeaders.X_NEXT_CURSOR, nextCursor);
+		}
+	}
+}
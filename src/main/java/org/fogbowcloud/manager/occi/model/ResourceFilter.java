@@ -0,0 +1,263 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fogbowcloud.manager.occi.instance.Instance;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
+import org.fogbowcloud.manager.occi.order.OrderState;
+import org.restlet.data.Header;
+import org.restlet.util.Series;
+
+/**
+ * Filter of the order and instance listings, parsed once from the Category and
+ * X-OCCI-Attribute headers of the request, e.g. "Category: fogbow_small;
+ * scheme=..." and "X-OCCI-Attribute: org.fogbowcloud.order.type=one-time". As
+ * the listings always did, the criteria are combined by union: an entry
+ * matches when it has any category of the filter or any attribute of the
+ * filter with the same value. Orders are filtered by state with the
+ * {@link OrderAttribute#STATE} attribute.
+ */
+public class ResourceFilter {
+
+	private final List<CategoryCriterion> categories;
+	private final Map<String, String> attributes;
+
+	private ResourceFilter(List<CategoryCriterion> categories, Map<String, String> attributes) {
+		this.categories = Collections.unmodifiableList(categories);
+		this.attributes = Collections.unmodifiableMap(attributes);
+	}
+
+	public static ResourceFilter fromHeaders(Series<Header> headers) {
+		return parse(HeaderUtils.getValueHeaderPerName(OCCIHeaders.CATEGORY, headers),
+				HeaderUtils.getValueHeaderPerName(OCCIHeaders.X_OCCI_ATTRIBUTE, headers));
+	}
+
+	public static ResourceFilter parse(List<String> categoryValues, List<String> attributeValues) {
+		List<CategoryCriterion> categories = new ArrayList<CategoryCriterion>();
+		for (String categoryValue : categoryValues) {
+			for (String category : categoryValue.split(",")) {
+				if (!category.trim().isEmpty()) {
+					categories.add(parseCategory(category.trim()));
+				}
+			}
+		}
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		for (String attributeValue : attributeValues) {
+			int separator = attributeValue.indexOf("=");
+			if (separator <= 0) {
+				throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.UNSUPPORTED_ATTRIBUTES);
+			}
+			attributes.put(attributeValue.substring(0, separator).trim(),
+					unquote(attributeValue.substring(separator + 1).trim()));
+		}
+		return new ResourceFilter(categories, attributes);
+	}
+
+	private static CategoryCriterion parseCategory(String category) {
+		String categoryPrefix = OCCIHeaders.CATEGORY + ":";
+		if (category.regionMatches(true, 0, categoryPrefix, 0, categoryPrefix.length())) {
+			category = category.substring(categoryPrefix.length());
+		}
+		String[] tokens = category.split(";");
+		String term = tokens[0].trim();
+		if (term.isEmpty() || term.contains("=")) {
+			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+		}
+		String scheme = null;
+		String catClass = null;
+		for (int i = 1; i < tokens.length; i++) {
+			String token = tokens[i].trim();
+			if (token.isEmpty()) {
+				continue;
+			}
+			int separator = token.indexOf("=");
+			if (separator <= 0) {
+				throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
+			}
+			String name = token.substring(0, separator).trim();
+			String value = unquote(token.substring(separator + 1).trim());
+			if (name.equals(OCCIHeaders.SCHEME_CATEGORY)) {
+				scheme = value;
+			} else if (name.equals(OCCIHeaders.CLASS_CATEGORY)) {
+				catClass = value;
+			}
+		}
+		return new CategoryCriterion(term, scheme, catClass);
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	public boolean isEmpty() {
+		return categories.isEmpty() && attributes.isEmpty();
+	}
+
+	public boolean hasCategories() {
+		return !categories.isEmpty();
+	}
+
+	public List<CategoryCriterion> getCategories() {
+		return categories;
+	}
+
+	/**
+	 * @return the attributes and the values the entries must have, including
+	 *         the order state
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+
+	public boolean filtersState() {
+		return attributes.containsKey(OrderAttribute.STATE.getValue());
+	}
+
+	/**
+	 * @return the order state of the filter, or null if the filter has no
+	 *         state or a state that does not exist
+	 */
+	public OrderState getState() {
+		String stateValue = attributes.get(OrderAttribute.STATE.getValue());
+		if (stateValue == null) {
+			return null;
+		}
+		for (OrderState state : OrderState.values()) {
+			if (state.getValue().equalsIgnoreCase(stateValue) || state.name().equalsIgnoreCase(stateValue)) {
+				return state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return true if the filter is empty or the order has any of its
+	 *         categories or attribute values
+	 */
+	public boolean matches(Order order) {
+		if (isEmpty() || matchesCategories(order)) {
+			return true;
+		}
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			if (attribute.getKey().equals(OrderAttribute.STATE.getValue())) {
+				OrderState state = getState();
+				if (state != null && state.equals(order.getState())) {
+					return true;
+				}
+			} else if (order.getxOCCIAtt() != null
+					&& attribute.getValue().equals(order.getxOCCIAtt().get(attribute.getKey()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the order has any category of the filter, to tell
+	 *         whether the categories of a filter are known
+	 */
+	public boolean matchesCategories(Order order) {
+		for (CategoryCriterion criterion : categories) {
+			if (criterion.matchesAny(order.getCategories())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the filter is empty or the instance has any of its
+	 *         categories or attribute values
+	 */
+	public boolean matches(Instance instance) {
+		if (isEmpty() || matchesCategories(instance)) {
+			return true;
+		}
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			String value = instance.getAttributes() == null ? null : instance.getAttributes().get(
+					attribute.getKey());
+			if (value != null && attribute.getValue().equals(value.trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean matchesCategories(Instance instance) {
+		if (instance.getResources() == null) {
+			return false;
+		}
+		for (CategoryCriterion criterion : categories) {
+			for (Resource resource : instance.getResources()) {
+				if (criterion.matches(resource.getCategory())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "categories=" + categories + ", attributes=" + attributes;
+	}
+
+	/**
+	 * Category of a filter. Scheme and class are optional, null means any.
+	 */
+	public static class CategoryCriterion {
+
+		private final String term;
+		private final String scheme;
+		private final String catClass;
+
+		public CategoryCriterion(String term, String scheme, String catClass) {
+			this.term = term;
+			this.scheme = scheme;
+			this.catClass = catClass;
+		}
+
+		public String getTerm() {
+			return term;
+		}
+
+		public String getScheme() {
+			return scheme;
+		}
+
+		public String getCatClass() {
+			return catClass;
+		}
+
+		public boolean matches(Category category) {
+			return category != null && term.equals(category.getTerm())
+					&& (scheme == null || scheme.equals(category.getScheme()))
+					&& (catClass == null || catClass.equals(category.getCatClass()));
+		}
+
+		public boolean matchesAny(List<Category> categories) {
+			if (categories == null) {
+				return false;
+			}
+			for (Category category : categories) {
+				if (matches(category)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return term + "; scheme=" + scheme + "; class=" + catClass;
+		}
+	}
+}
@@ -5,6 +5,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
@@ -19,7 +23,11 @@ public class ResourceRepository {
 	private static final Logger LOGGER = Logger.getLogger(ResourceRepository.class);
 	private static ResourceRepository instance;
 	private static final String FOGBOWCLOUD_ENDPOINT = "http://localhost:8182";
-	private List<Resource> resources = new ArrayList<Resource>();
+	private List<Resource> resources = new CopyOnWriteArrayList<Resource>();
+	// resources by category term, in the order they were added
+	private ConcurrentMap<String, List<Resource>> resourcesByTerm = new ConcurrentHashMap<String, List<Resource>>();
+	// shared by the instances, so a repository created by init has a new version
+	private static final AtomicLong version = new AtomicLong();
 	
 	public static void init(Properties properties) {
 		instance = new ResourceRepository(properties);
@@ -113,7 +121,7 @@ public class ResourceRepository {
 				OrderConstants.CREDENTIALS_RESOURCE_SCHEME, OrderConstants.MIXIN_CLASS,
 				publicKeyAttributes, new ArrayList<String>(), FOGBOWCLOUD_ENDPOINT + "/"
 						+ OrderConstants.PUBLIC_KEY_TERM + "/", "", "");		
-		resources.add(fogbowPublicKey);
+		addResource(fogbowPublicKey);
 		
 		// Flavors
 		
@@ -125,17 +133,17 @@ public class ResourceRepository {
 							+ flavor.getName() + "/", flavor.getName(), OrderConstants.RESOURCE_TPL_OCCI_SCHEME));
 		}
 		
-		if (!flavorsResources.isEmpty()) {
-			resources.addAll(flavorsResources);			
-		}	
+		for (Resource flavorResource : flavorsResources) {
+			addResource(flavorResource);
+		}
 		
 		//TODO add actions	
-		resources.add(fogbowOrder);
-		resources.add(storageLink);
-		resources.add(storage);
-		resources.add(compute);
-		resources.add(fogbowUserdata);
-		resources.add(network);
+		addResource(fogbowOrder);
+		addResource(storageLink);
+		addResource(storage);
+		addResource(compute);
+		addResource(fogbowUserdata);
+		addResource(network);
 
 		Resource resourceTlp = new Resource(OrderConstants.RESOURCE_TPL_TERM,
 				OrderConstants.INFRASTRUCTURE_OCCI_SCHEME, OrderConstants.MIXIN_CLASS,
@@ -165,18 +173,16 @@ public class ResourceRepository {
 				OrderConstants.KIND_CLASS, linkAtt, new ArrayList<String>(), FOGBOWCLOUD_ENDPOINT
 						+ "/link/", "Link", "http://schemas.ogf.org/occi/core#entity");
 		
-		resources.add(resource);
-		resources.add(entity);
-		resources.add(link);
+		addResource(resource);
+		addResource(entity);
+		addResource(link);
 		
-		resources.add(resourceTlp);
-		resources.add(osTlp);
+		addResource(resourceTlp);
+		addResource(osTlp);
 		
 		List<Resource> occiExtraResources = getOCCIExtraResources(properties);		
 		for (Resource occiResource : occiExtraResources) {
-			if (!resources.contains(occiResource)) {
-				resources.add(occiResource);
-			}
+			addResourceIfAbsent(occiResource);
 		}
 	}
 		
@@ -209,6 +215,15 @@ public class ResourceRepository {
 	public List<Resource> getAll() {
 		return resources;
 	}
+
+	/**
+	 * @return a number that changes whenever a resource is added, so responses
+	 *         built from {@link #getAll()} can be cached while it does not
+	 *         change
+	 */
+	public long getVersion() {
+		return version.get();
+	}
 	
 	public static Resource generateFlavorResource(String flavorName) {
 		if (flavorName == null || flavorName.isEmpty()) {
@@ -221,9 +236,8 @@ public class ResourceRepository {
 	
 	public void addImageResource(String imageName){
 		Resource imageResource = createImageResource(imageName);
-		if (!resources.contains(imageResource)){
+		if (addResourceIfAbsent(imageResource)) {
 			LOGGER.debug("Adding image resource: " + imageResource.toHeader());
-			resources.add(imageResource);
 		}
 	}
 
@@ -237,17 +251,40 @@ public class ResourceRepository {
 	
 	public void addTemplateResource(String imageName){
 		Resource imageResource = createImageResource(imageName);
-		if (!resources.contains(imageResource)){
+		if (addResourceIfAbsent(imageResource)) {
 			LOGGER.debug("Adding image resource: " + imageResource.toHeader());
-			resources.add(imageResource);
 		}
-	}	
+	}
+
+	private synchronized boolean addResourceIfAbsent(Resource resource) {
+		List<Resource> sameTerm = resourcesByTerm.get(resource.getCategory().getTerm());
+		if (sameTerm != null && sameTerm.contains(resource)) {
+			return false;
+		}
+		addResource(resource);
+		return true;
+	}
+
+	private synchronized void addResource(Resource resource) {
+		String term = resource.getCategory().getTerm();
+		List<Resource> sameTerm = resourcesByTerm.get(term);
+		if (sameTerm == null) {
+			sameTerm = new CopyOnWriteArrayList<Resource>();
+			resourcesByTerm.put(term, sameTerm);
+		}
+		sameTerm.add(resource);
+		resources.add(resource);
+		version.incrementAndGet();
+	}
 
 	public List<Resource> get(List<Category> categories) {
-		List<Resource> allResources = getAll();
 		List<Resource> orderResources = new ArrayList<Resource>();
 		for (Category orderCategory : categories) {
-			for (Resource resource : allResources) {
+			List<Resource> sameTerm = resourcesByTerm.get(orderCategory.getTerm());
+			if (sameTerm == null) {
+				continue;
+			}
+			for (Resource resource : sameTerm) {
 				if (resource.matches(orderCategory)) {
 					orderResources.add(resource);
 					break;
@@ -258,13 +295,14 @@ public class ResourceRepository {
 	}
 
 	public Resource get(String term) {
-		List<Resource> allResources = getAll();
-		for (Resource resource : allResources) {
-			if (resource.getCategory().getTerm().equals(term)) {
-				return resource;
-			}
+		if (term == null) {
+			return null;
+		}
+		List<Resource> sameTerm = resourcesByTerm.get(term);
+		if (sameTerm == null || sameTerm.isEmpty()) {
+			return null;
 		}
-		return null;
+		return sameTerm.get(0);
 	}
 	
 	public static List<Flavor> getStaticFlavors(Properties properties) {
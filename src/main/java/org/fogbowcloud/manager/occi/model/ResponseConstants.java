@@ -48,4 +48,5 @@ public class ResponseConstants {
 	public static final String NETWORK_GATEWAY_INVALID_VALUE = "Network gateway with invalid value";
 	public static final String NETWORK_ALLOCATION_INVALID_VALUE = "Network allocation with invalid value";
 	public static final String ORDER_NOT_CREATED = "Order not created";
+	public static final String SERVICE_UNAVAILABLE = "Service Unavailable. Too many requests waiting, try again later.";
 }
@@ -1,7 +1,6 @@
 package org.fogbowcloud.manager.occi.network;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DataStoreConnectionPool;
 import org.fogbowcloud.manager.occi.DataStoreHelper;
 
 public class NetworkDataStore {
@@ -57,10 +57,12 @@ public class NetworkDataStore {
 	public static final String ERROR_WHILE_INITIALIZING_THE_DATA_STORE = "Error while initializing the Network DataStore.";
 
 	private String networkDataStoreURL;
+	private DataStoreConnectionPool connectionPool;
 
 	public NetworkDataStore(String networkDataStoreURL) {
 		this.networkDataStoreURL = DataStoreHelper.getDataStoreUrl(networkDataStoreURL,
 				DEFAULT_DATASTORE_NAME);
+		this.connectionPool = DataStoreConnectionPool.getPool(this.networkDataStoreURL);
 
 		Statement statement = null;
 		Connection connection = null;
@@ -407,7 +409,7 @@ public class NetworkDataStore {
 	 */
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(networkDataStoreURL);
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -2,7 +2,6 @@ package org.fogbowcloud.manager.occi.network;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -12,14 +11,17 @@ import org.apache.commons.codec.binary.Base64;
 import org.apache.log4j.Logger;
 import org.bouncycastle.util.IPAddress;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.OCCIConstants;
+import org.fogbowcloud.manager.occi.instance.ComputeServerResource;
 import org.fogbowcloud.manager.occi.instance.Instance;
 import org.fogbowcloud.manager.occi.model.Category;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.Pagination;
 import org.fogbowcloud.manager.occi.model.Resource;
 import org.fogbowcloud.manager.occi.model.ResourceRepository;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
@@ -32,6 +34,7 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.engine.adapter.HttpRequest;
 import org.restlet.engine.adapter.ServerCall;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Delete;
 import org.restlet.resource.Get;
@@ -61,7 +64,7 @@ public class NetworkServerResource extends ServerResource {
 	};
 	
 	@Get
-	public StringRepresentation fetch() {
+	public Representation fetch() {
 
 		OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest request = (HttpRequest) getRequest();
@@ -87,10 +90,11 @@ public class NetworkServerResource extends ServerResource {
 			List<FedNetworkState> fedPostNotworks = networkDB.getAllByUser(userId);
 			LOGGER.debug("There are " + fedPostNotworks.size() + " federated networks owened by user id " + userId);
 
+			Map<String, Instance> instancesById = ComputeServerResource.indexById(allInstances);
 			// replacing real instance id by fed_instance_id
 			for (FedNetworkState currentNetwork : fedPostNotworks) {
 				
-				allInstances.add(new Instance(currentNetwork.getFedInstanceId()));
+				instancesById.put(currentNetwork.getFedInstanceId(), new Instance(currentNetwork.getFedInstanceId()));
 
 				String globalId = currentNetwork.getGlobalInstanceId();
 				if (globalId == null || globalId.isEmpty()) {
@@ -104,16 +108,21 @@ public class NetworkServerResource extends ServerResource {
 					}
 				}
 
-				if (globalId != null && allInstances.contains(new Instance(globalId))) {
-					allInstances.remove(new Instance(globalId));
+				if (globalId != null) {
+					instancesById.remove(globalId);
 				}
 			}
 			
+			Pagination pagination = Pagination.fromQuery(getQuery());
+			allInstances = pagination.page(instancesById.values(), ComputeServerResource.INSTANCE_IDENTIFIER);
+			pagination.setNextCursorHeader(getResponse());
+			
 			if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
-				return new StringRepresentation(generateResponse(allInstances), MediaType.TEXT_PLAIN);
+				return ComputeServerResource.generateResponse(allInstances);
 			} else if (acceptContent.contains(OCCIHeaders.TEXT_URI_LIST_CONTENT_TYPE)) {
-				return new StringRepresentation(generateURIListResponse(allInstances, request),
-						MediaType.TEXT_URI_LIST);
+				return ComputeServerResource.generateURIListResponse(allInstances, request);
+			} else if (HeaderUtils.isJsonAccepted(acceptContent)) {
+				return JsonSerializer.instances(allInstances);
 			}
 			throw new OCCIException(ErrorType.NOT_ACCEPTABLE, ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 
@@ -123,6 +132,9 @@ public class NetworkServerResource extends ServerResource {
 					"Getting instance(network) with id [" + networkId + "] of token : [" + federationAuthToken + "]");
 
 
+			boolean textAccepted = acceptContent.size() == 0
+					|| acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE);
+			boolean jsonAccepted = !textAccepted && HeaderUtils.isJsonAccepted(acceptContent);
 			Instance instance = null;
 
 			if(networkId.startsWith(FED_NETWORK_PREFIX)){
@@ -163,7 +175,7 @@ public class NetworkServerResource extends ServerResource {
 				
 
 			}else{
-				if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
+				if (textAccepted || jsonAccepted) {
 
 					instance = application.getInstance(federationAuthToken, networkId,
 							OrderConstants.NETWORK_TERM);
@@ -181,7 +193,7 @@ public class NetworkServerResource extends ServerResource {
 				LOGGER.debug("Instance resources: " + instance.getResources());
 				LOGGER.debug("Instance OCCI format " + instance.toOCCIMessageFormatDetails());
 
-				return new StringRepresentation(instance.toOCCIMessageFormatDetails(), MediaType.TEXT_PLAIN);
+				return ComputeServerResource.generateInstanceResponse(instance, jsonAccepted);
 
 			} catch (OCCIException e) {
 				throw e;
@@ -330,35 +342,6 @@ public class NetworkServerResource extends ServerResource {
 		return allInstances;
 	}
 
-	private String generateResponse(List<Instance> instances) {
-		if (instances == null || instances.isEmpty()) {
-			return NO_INSTANCES_MESSAGE;
-		}
-		String response = "";
-		Iterator<Instance> instanceIt = instances.iterator();
-		while (instanceIt.hasNext()) {
-			response += instanceIt.next().toOCCIMessageFormatLocation();
-			if (instanceIt.hasNext()) {
-				response += "\n";
-			}
-		}
-		return response;
-	}
-
-	private String generateURIListResponse(List<Instance> instances, HttpRequest req) {
-		String requestEndpoint = req.getHostRef() + req.getHttpCall().getRequestUri();
-		Iterator<Instance> instanceIt = instances.iterator();
-		String result = "";
-		while (instanceIt.hasNext()) {
-			if (requestEndpoint.endsWith("/")) {
-				result += requestEndpoint + instanceIt.next().getId() + "\n";
-			} else {
-				result += requestEndpoint + "/" + instanceIt.next().getId() + "\n";
-			}
-		}
-		return result.length() > 0 ? result.trim() : "\n";
-	}
-
 	private String removeIntances(OCCIApplication application, String authToken) {
 		application.removeInstances(authToken, OrderConstants.NETWORK_TERM);
 		return ResponseConstants.OK;
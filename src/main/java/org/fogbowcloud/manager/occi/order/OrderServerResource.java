@@ -1,8 +1,9 @@
 package org.fogbowcloud.manager.occi.order;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -15,15 +16,19 @@ import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.ManagerController;
 import org.fogbowcloud.manager.core.RequirementsHelper;
 import org.fogbowcloud.manager.core.model.Flavor;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.OCCIConstants;
 import org.fogbowcloud.manager.occi.instance.Instance.Link;
 import org.fogbowcloud.manager.occi.model.Category;
 import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
+import org.fogbowcloud.manager.occi.model.ListingRepresentation;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.Pagination;
 import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.ResourceRepository;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.network.FedNetworkState;
@@ -33,6 +38,7 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.engine.adapter.HttpRequest;
 import org.restlet.engine.adapter.ServerCall;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Delete;
 import org.restlet.resource.Get;
@@ -49,6 +55,12 @@ public class OrderServerResource extends ServerResource {
 	protected static final String FED_NETWORK_PREFIX = "federated_network_";
 	
 	private static final Logger LOGGER = Logger.getLogger(OrderServerResource.class);
+	private static final Pagination.Identifier<Order> ORDER_IDENTIFIER = new Pagination.Identifier<Order>() {
+		@Override
+		public String getId(Order order) {
+			return order.getId();
+		}
+	};
 	private NetworkDataStore networkDB;
 	
 	protected void doInit() throws ResourceException {
@@ -61,7 +73,7 @@ public class OrderServerResource extends ServerResource {
 	};
 	
 	@Get
-	public StringRepresentation fetch() {
+	public Representation fetch() {
 		OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
 		String federationAccessToken = HeaderUtils.getAuthToken(
@@ -76,27 +88,26 @@ public class OrderServerResource extends ServerResource {
 			try {
 				verbose = Boolean.parseBoolean(getQuery().getValues("verbose"));
 			} catch (Exception e) {}
-			List<Order> ordersFromUser = application.getOrdersFromUser(federationAccessToken);
-			
-			List<String> filterCategory = HeaderUtils.getValueHeaderPerName(OCCIHeaders.CATEGORY,
-					req.getHeaders());
-			List<String> filterAttribute = HeaderUtils.getValueHeaderPerName(
-					OCCIHeaders.X_OCCI_ATTRIBUTE, req.getHeaders());
-			
-			if (filterCategory.size() != 0 || filterAttribute.size() != 0) {
-				ordersFromUser = filterOrders(ordersFromUser, filterCategory, filterAttribute);
+			ResourceFilter filter = ResourceFilter.fromHeaders(req.getHeaders());
+			List<Order> ordersFromUser;
+			if (filter.isEmpty()) {
+				ordersFromUser = application.getOrdersFromUser(federationAccessToken);
+			} else {
+				ordersFromUser = getFilteredOrders(application, federationAccessToken, filter);
 			}
 			
+			Pagination pagination = Pagination.fromQuery(getQuery());
+			ordersFromUser = pagination.page(ordersFromUser, ORDER_IDENTIFIER);
+			pagination.setNextCursorHeader(getResponse());
+			
 			if (acceptContent.size() == 0
 					|| acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
-				return new StringRepresentation(generateTextPlainResponse(
-						ordersFromUser, req, verbose),
-						MediaType.TEXT_PLAIN);
+				return generateTextPlainResponse(ordersFromUser, req, verbose);
 			} else if (acceptContent.contains(OCCIHeaders.TEXT_URI_LIST_CONTENT_TYPE)) {
 				getResponse().setStatus(new Status(HttpStatus.SC_OK));
-				return new StringRepresentation(generateURIListResponse(
-						ordersFromUser, req, verbose),
-						MediaType.TEXT_URI_LIST);
+				return generateURIListResponse(ordersFromUser, req, verbose);
+			} else if (HeaderUtils.isJsonAccepted(acceptContent)) {
+				return JsonSerializer.orders(ordersFromUser);
 			} else {
 				throw new OCCIException(ErrorType.NOT_ACCEPTABLE,
 						ResponseConstants.ACCEPT_NOT_ACCEPTABLE);				
@@ -107,76 +118,52 @@ public class OrderServerResource extends ServerResource {
 		Order order = application.getOrder(federationAccessToken, OrderId);		
 		if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
 			return new StringRepresentation(generateTextPlainResponseOneOrder(order), MediaType.TEXT_PLAIN);				
+		} else if (HeaderUtils.isJsonAccepted(acceptContent)) {
+			return JsonSerializer.order(order);
 		}
 		throw new OCCIException(ErrorType.NOT_ACCEPTABLE,
 				ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 	}
 
-	private List<Order> filterOrders(List<Order> ordersFromUser,
-			List<String> filterCategory, List<String> filterAttribute) {
-		List<Order> ordersFiltrated = new ArrayList<Order>();
-		boolean thereIsntCategory = true;
-		for (Order order : ordersFromUser) {
-			if (filterCategory.size() != 0) {
-				for (String valueCategoryFilter : filterCategory) {
-					for (Category category : order.getCategories()) {
-						if (valueCategoryFilter.contains(category.getTerm())) {
-							ordersFiltrated.add(order);
-							thereIsntCategory = false;
-						}
-					}
+	private List<Order> getFilteredOrders(OCCIApplication application, String federationAccessToken,
+			ResourceFilter filter) {
+		List<Order> ordersFiltered = application.getOrdersFromUser(federationAccessToken, filter);
+		if (filter.hasCategories()) {
+			boolean categoryFound = false;
+			for (Order order : ordersFiltered) {
+				if (filter.matchesCategories(order)) {
+					categoryFound = true;
+					break;
 				}
 			}
-			if (filterAttribute.size() != 0) {
-				for (String valueAttributeFilter : filterAttribute) {
-					Map<String, String> mapAttributes = order.getxOCCIAtt();
-					for (String keyAttribute : mapAttributes.keySet()) {
-						if (valueAttributeFilter.contains(keyAttribute)
-								&& valueAttributeFilter.endsWith(HeaderUtils
-								.normalizeValueAttributeFilter(mapAttributes
-								.get(keyAttribute.trim())))) {
-							ordersFiltrated.add(order);
-						}
-					}
-				}
+			if (!categoryFound) {
+				throw new OCCIException(ErrorType.BAD_REQUEST,
+						ResponseConstants.CATEGORY_IS_NOT_REGISTERED);
 			}
 		}
-		if (filterCategory.size() != 0 && thereIsntCategory) {
-			throw new OCCIException(ErrorType.BAD_REQUEST,
-					ResponseConstants.CATEGORY_IS_NOT_REGISTERED);
-		}
-		return ordersFiltrated;
+		return ordersFiltered;
 	}
 	
-	private String generateURIListResponse(List<Order> orders, HttpRequest req, boolean verbose) {
-		if (orders == null || orders.isEmpty()) { 
-			return "\n";
-		}
+	private Representation generateURIListResponse(List<Order> orders, HttpRequest req,
+			final boolean verbose) {
 		String requestEndpoint = req.getHostRef() + req.getHttpCall().getRequestUri();
-		String result = "";
-		Iterator<Order> orderIt = orders.iterator();
-		while(orderIt.hasNext()){
-			Order order = orderIt.next();
-			if (!requestEndpoint.endsWith("/")){
-				requestEndpoint += requestEndpoint + "/";
-			}
-			if (verbose) {
-				String providingMemberId = (order.getProvidingMemberId() == null) ? "None"
-						: order.getProvidingMemberId();
-
-				result += requestEndpoint + order.getId() + "; " + "State="
-						+ order.getState() + "; " + OrderAttribute.TYPE.getValue() + "="
-						+ order.getAttValue(OrderAttribute.TYPE.getValue()) + "; "
-						+ OrderAttribute.REQUESTING_MEMBER.getValue() + "=" + order.getRequestingMemberId() + "; "
-						+ OrderAttribute.PROVIDING_MEMBER.getValue() + "=" + providingMemberId + "; "
-						+ OrderAttribute.INSTANCE_ID.getValue() + "="
-						+ order.getGlobalInstanceId() + "\n";
-						
-			}else {			
-				result += requestEndpoint + order.getId() + "\n";
+		final String prefix = requestEndpoint.endsWith("/") ? requestEndpoint : requestEndpoint + "/";
+		return new ListingRepresentation<Order>(orders, MediaType.TEXT_URI_LIST, "\n") {
+			@Override
+			protected void writeEntry(Writer writer, Order order) throws IOException {
+				writer.write(prefix);
+				writer.write(order.getId());
+				if (verbose) {
+					String providingMemberId = (order.getProvidingMemberId() == null) ? "None"
+							: order.getProvidingMemberId();
+					writer.write("; " + "State=" + order.getState() + "; " + OrderAttribute.TYPE.getValue()
+							+ "=" + order.getAttValue(OrderAttribute.TYPE.getValue()) + "; "
+							+ OrderAttribute.REQUESTING_MEMBER.getValue() + "=" + order.getRequestingMemberId()
+							+ "; " + OrderAttribute.PROVIDING_MEMBER.getValue() + "=" + providingMemberId + "; "
+							+ OrderAttribute.INSTANCE_ID.getValue() + "=" + order.getGlobalInstanceId());
+				}
 			}
-		}
-		return result.length() > 0 ? result.trim() : "\n";
+		};
 	}
 	
 	private String generateTextPlainResponseOneOrder(Order order) {
@@ -390,17 +377,18 @@ public class OrderServerResource extends ServerResource {
 	}
 
 	protected String generateLocationHeader(List<Order> orders, String requestEndpoint) {
-		String response = "";
+		String prefix = requestEndpoint;
+		if (!prefix.endsWith("/")){
+			prefix += "/";
+		}
+		StringBuilder response = new StringBuilder();
 		for (Order order : orders) {
-			String prefix = requestEndpoint;
-			if (!prefix.endsWith("/")){
-				prefix += "/";
-			}			
-			String locationHeader = prefix + order.getId();		
-			
-			response += locationHeader + ",";
+			if (response.length() > 0) {
+				response.append(",");
+			}
+			response.append(prefix).append(order.getId());
 		}
-		return response.substring(0, response.length() - 1);
+		return response.toString();
 	}	
 
 	private String getAccept(List<String> listAccept) {
@@ -504,35 +492,26 @@ public class OrderServerResource extends ServerResource {
 		throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX);
 	}
 
-	protected String generateTextPlainResponse(List<Order> orders, HttpRequest req, boolean verbose) {
-		if (orders == null || orders.isEmpty()) { 
-			return NO_ORDERS_MESSAGE;
-		}
+	protected Representation generateTextPlainResponse(List<Order> orders, HttpRequest req,
+			final boolean verbose) {
 		String requestEndpoint = getHostRef(req) + req.getHttpCall().getRequestUri();
-		String response = "";
-		Iterator<Order> orderIt = orders.iterator();
-		while(orderIt.hasNext()){			
-			Order order = orderIt.next();
-			String prefixOCCILocation = "";
-			if (requestEndpoint.endsWith("/")){
-				prefixOCCILocation += HeaderUtils.X_OCCI_LOCATION_PREFIX + requestEndpoint;
-			}else {
-				prefixOCCILocation += HeaderUtils.X_OCCI_LOCATION_PREFIX + requestEndpoint + "/";
-			}
-			if (verbose) {
-				response += prefixOCCILocation + order.getId() + "; "
-						+ OrderAttribute.STATE.getValue() + "=" + order.getState() + "; "
-						+ OrderAttribute.TYPE.getValue() + "="
-						+ order.getAttValue(OrderAttribute.TYPE.getValue()) + "; "
-						+ OrderAttribute.INSTANCE_ID.getValue() + "=" + order.getGlobalInstanceId() + "; "
-						+ OrderAttribute.RESOURCE_KIND.getValue() + "=" 
-						+ order.getAttValue(OrderAttribute.RESOURCE_KIND.getValue()) 
-						+ "\n";
-			}else {			
-				response += prefixOCCILocation + order.getId() + "\n";
+		final String prefixOCCILocation = HeaderUtils.X_OCCI_LOCATION_PREFIX + requestEndpoint
+				+ (requestEndpoint.endsWith("/") ? "" : "/");
+		return new ListingRepresentation<Order>(orders, MediaType.TEXT_PLAIN, NO_ORDERS_MESSAGE) {
+			@Override
+			protected void writeEntry(Writer writer, Order order) throws IOException {
+				writer.write(prefixOCCILocation);
+				writer.write(order.getId());
+				if (verbose) {
+					writer.write("; " + OrderAttribute.STATE.getValue() + "=" + order.getState() + "; "
+							+ OrderAttribute.TYPE.getValue() + "="
+							+ order.getAttValue(OrderAttribute.TYPE.getValue()) + "; "
+							+ OrderAttribute.INSTANCE_ID.getValue() + "=" + order.getGlobalInstanceId() + "; "
+							+ OrderAttribute.RESOURCE_KIND.getValue() + "=" 
+							+ order.getAttValue(OrderAttribute.RESOURCE_KIND.getValue()));
+				}
 			}
-		}
-		return response.length() > 0 ? response.trim() : "\n";
+		};
 	}
 
 	// TODO remove this method, because there is the same method in the headerUtils class.
@@ -1,7 +1,6 @@
 package org.fogbowcloud.manager.occi.storage;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -10,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
+import org.fogbowcloud.manager.occi.DataStoreConnectionPool;
 import org.fogbowcloud.manager.occi.DataStoreHelper;
 
 public class StorageDataStore {
@@ -53,10 +53,12 @@ public class StorageDataStore {
 	private static final String DEFAULT_DATASTORE_NAME = "datastore_storage.slite";
 
 	private String storageDataStoreURL;
+	private DataStoreConnectionPool connectionPool;
 
 	public StorageDataStore(String storageDataStoreURL) {
 		this.storageDataStoreURL = DataStoreHelper.getDataStoreUrl(storageDataStoreURL,
 				DEFAULT_DATASTORE_NAME);		
+		this.connectionPool = DataStoreConnectionPool.getPool(this.storageDataStoreURL);
 
 		Statement statement = null;
 		Connection connection = null;
@@ -394,7 +396,7 @@ public class StorageDataStore {
 	 */
 	public Connection getConnection() throws SQLException {
 		try {
-			return DriverManager.getConnection(storageDataStoreURL);
+			return connectionPool.getConnection();
 		} catch (SQLException e) {
 			LOGGER.error("Error while getting a new connection from the connection pool.", e);
 			throw e;
@@ -9,6 +9,7 @@ import java.util.UUID;
 
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIApplication;
 import org.fogbowcloud.manager.occi.instance.ComputeServerResource;
 import org.fogbowcloud.manager.occi.instance.Instance;
@@ -17,6 +18,7 @@ import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.Pagination;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderAttribute;
@@ -26,6 +28,7 @@ import org.restlet.data.MediaType;
 import org.restlet.data.Status;
 import org.restlet.engine.adapter.HttpRequest;
 import org.restlet.data.Header;
+import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Delete;
 import org.restlet.resource.Get;
@@ -50,7 +53,7 @@ public class StorageServerResource extends ServerResource {
 	}
 
 	@Get
-	public StringRepresentation fetch() {
+	public Representation fetch() {
 		
 		OCCIApplication application = (OCCIApplication) getApplication();
 		HttpRequest req = (HttpRequest) getRequest();
@@ -73,11 +76,14 @@ public class StorageServerResource extends ServerResource {
 		
 	}
 	
-	private StringRepresentation fetchWithStorageId(OCCIApplication application, String federationAuthToken, String storageId,
+	private Representation fetchWithStorageId(OCCIApplication application, String federationAuthToken, String storageId,
 			List<String> acceptContent, String user) {
 		
 		LOGGER.info("Getting storage " + storageId);
-		if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
+		boolean textAccepted = acceptContent.size() == 0
+				|| acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE);
+		boolean jsonAccepted = !textAccepted && HeaderUtils.isJsonAccepted(acceptContent);
+		if (textAccepted || jsonAccepted) {
 			try {
 				
 				Instance instance = null;
@@ -119,7 +125,7 @@ public class StorageServerResource extends ServerResource {
 					LOGGER.warn("", e);
 				}
 
-				return new StringRepresentation(instance.toOCCIMessageFormatDetails(), MediaType.TEXT_PLAIN);
+				return ComputeServerResource.generateInstanceResponse(instance, jsonAccepted);
 
 			} catch (OCCIException e) {
 				throw e;
@@ -128,7 +134,7 @@ public class StorageServerResource extends ServerResource {
 		throw new OCCIException(ErrorType.NOT_ACCEPTABLE, ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 	}
 
-	private StringRepresentation fetchWithoutStorageId(OCCIApplication application, HttpRequest req,
+	private Representation fetchWithoutStorageId(OCCIApplication application, HttpRequest req,
 			String federationAuthToken, List<String> acceptContent, String userId) {
 		LOGGER.info("Getting all instance(storage) of token :" + federationAuthToken);
 
@@ -137,10 +143,11 @@ public class StorageServerResource extends ServerResource {
 		
 		List<FedStorageState> fedPostStorages = storageDB.getAllByUser(userId);
 		LOGGER.debug("There are " + fedPostStorages.size() + " owned by user id " + userId);
+		Map<String, Instance> instancesById = ComputeServerResource.indexById(allInstances);
 		// replacing real instance id by fed_instance_id
 		for (FedStorageState currentStorage : fedPostStorages) {
 			
-			allInstances.add(new Instance(currentStorage.getFedStorageId()));
+			instancesById.put(currentStorage.getFedStorageId(), new Instance(currentStorage.getFedStorageId()));
 			
 			String globalId = currentStorage.getGlobalStorageId();
 			if (globalId == null || globalId.isEmpty()) {
@@ -158,18 +165,21 @@ public class StorageServerResource extends ServerResource {
 				}
 			}
 
-			if (globalId != null && allInstances.contains(new Instance(globalId))) {
-				allInstances.remove(new Instance(globalId));
+			if (globalId != null) {
+				instancesById.remove(globalId);
 			}
 		}
 		
+		Pagination pagination = Pagination.fromQuery(getQuery());
+		allInstances = pagination.page(instancesById.values(), ComputeServerResource.INSTANCE_IDENTIFIER);
+		pagination.setNextCursorHeader(getResponse());
 
 		if (acceptContent.size() == 0 || acceptContent.contains(OCCIHeaders.TEXT_PLAIN_CONTENT_TYPE)) {
-			return new StringRepresentation(ComputeServerResource.generateResponse(allInstances),
-					MediaType.TEXT_PLAIN);
+			return ComputeServerResource.generateResponse(allInstances);
 		} else if (acceptContent.contains(OCCIHeaders.TEXT_URI_LIST_CONTENT_TYPE)) {
-			return new StringRepresentation(ComputeServerResource.generateURIListResponse(allInstances, req),
-					MediaType.TEXT_URI_LIST);
+			return ComputeServerResource.generateURIListResponse(allInstances, req);
+		} else if (HeaderUtils.isJsonAccepted(acceptContent)) {
+			return JsonSerializer.instances(allInstances);
 		}
 		throw new OCCIException(ErrorType.NOT_ACCEPTABLE, ResponseConstants.ACCEPT_NOT_ACCEPTABLE);
 	}
@@ -8,4 +8,9 @@ public interface AsyncPacketSender extends PacketSender {
 	
 	public void addPacketCallback(Packet packet, PacketCallback packetCallback);
 
+	/**
+	 * Forgets the callback of a packet whose response is no longer awaited.
+	 */
+	public void removePacketCallback(Packet packet);
+
 }
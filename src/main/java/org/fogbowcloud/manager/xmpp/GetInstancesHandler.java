@@ -0,0 +1,66 @@
+package org.fogbowcloud.manager.xmpp;
+
+import java.util.Iterator;
+
+import org.apache.log4j.Logger;
+import org.dom4j.Element;
+import org.fogbowcloud.manager.core.ManagerController;
+import org.fogbowcloud.manager.occi.instance.Instance;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.jamppa.component.handler.AbstractQueryHandler;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.PacketError.Condition;
+
+/**
+ * Batched version of {@link GetInstanceHandler}: answers several instances in a
+ * single response. An instance that can not be got is answered with its id and
+ * the error condition, so it does not fail the other instances.
+ */
+public class GetInstancesHandler extends AbstractQueryHandler {
+
+	private static final Logger LOGGER = Logger.getLogger(GetInstancesHandler.class);
+
+	private ManagerController facade;
+
+	public GetInstancesHandler(ManagerController facade) {
+		super(ManagerXmppComponent.GETINSTANCES_NAMESPACE);
+		this.facade = facade;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public IQ handle(IQ query) {
+		IQ response = IQ.createResultIQ(query);
+		Element queryEl = response.getElement().addElement("query", 
+				ManagerXmppComponent.GETINSTANCES_NAMESPACE);
+		
+		Iterator<Element> instanceIterator = query.getElement().element("query").elementIterator("instance");
+		while (instanceIterator.hasNext()) {
+			String instanceId = instanceIterator.next().elementText(ManagerPacketHelper.ID_EL);
+			Instance instance = null;
+			try {
+				instance = facade.getInstanceForRemoteMember(instanceId);
+			} catch (OCCIException e) {
+				addError(queryEl, instanceId, ManagerPacketHelper.getCondition(e));
+				continue;
+			} catch (Throwable e) {
+				LOGGER.warn("Could not get instance " + instanceId + " for remote member.", e);
+				addError(queryEl, instanceId, Condition.internal_server_error);
+				continue;
+			}
+			if (instance == null) {
+				addError(queryEl, instanceId, Condition.item_not_found);
+				continue;
+			}
+			GetInstanceHandler.addInstance(queryEl, instanceId, instance);
+		}
+		return response;
+	}
+
+	private static void addError(Element queryEl, String instanceId, Condition condition) {
+		Element instanceEl = queryEl.addElement("instance");
+		instanceEl.addElement(ManagerPacketHelper.ID_EL).setText(instanceId);
+		instanceEl.addElement(ManagerPacketHelper.ERROR_EL).setText(condition.toXMPP());
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.fogbowcloud.manager.xmpp;
+
+import java.util.Iterator;
+
+import org.dom4j.Element;
+import org.fogbowcloud.manager.core.ManagerController;
+import org.jamppa.component.handler.AbstractQueryHandler;
+import org.xmpp.packet.IQ;
+
+/**
+ * Batched version of {@link InstanceBeingUsedHandler}: checks several served
+ * orders in a single request and answers only the orders whose instance is not
+ * being used anymore.
+ */
+public class InstancesBeingUsedHandler extends AbstractQueryHandler {
+
+	private ManagerController facade;
+
+	public InstancesBeingUsedHandler(ManagerController facade) {
+		super(ManagerXmppComponent.INSTANCESBEINGUSED_NAMESPACE);
+		this.facade = facade;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public IQ handle(IQ query) {
+		IQ response = IQ.createResultIQ(query);
+		Element responseOrdersEl = response.getElement().addElement("query",
+				ManagerXmppComponent.INSTANCESBEINGUSED_NAMESPACE).addElement(ManagerPacketHelper.ORDERS_EL);
+		Element ordersEl = query.getElement().element("query").element(ManagerPacketHelper.ORDERS_EL);
+		if (ordersEl == null) {
+			return response;
+		}
+		Iterator<Element> orderIterator = ordersEl.elementIterator(ManagerPacketHelper.ORDER_EL);
+		while (orderIterator.hasNext()) {
+			Element orderEl = orderIterator.next();
+			String orderId = orderEl.elementText(ManagerPacketHelper.ID_EL);
+			String instanceId = null;
+			Element instanceEl = orderEl.element("instance");
+			if (instanceEl != null) {
+				instanceId = instanceEl.elementText(ManagerPacketHelper.ID_EL);
+			}
+			if (!facade.instanceHasOrderRelatedTo(orderId, instanceId)) {
+				responseOrdersEl.addElement(ManagerPacketHelper.ORDER_EL).addElement(
+						ManagerPacketHelper.ID_EL).setText(orderId);
+			}
+		}
+		return response;
+	}
+
+}
@@ -2,11 +2,15 @@ package org.fogbowcloud.manager.xmpp;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
@@ -52,10 +56,13 @@ public class ManagerPacketHelper {
 	public static final String SOURCE_EL = "source";
 	public static final String TARGET_EL = "target";
 	public static final String ORDER_EL = "order";
+	public static final String ORDERS_EL = "orders";
 	public static final String TOKEN_EL = "token";
 	public static final String NAME_EL = "name";
 	public static final String USER_EL = "user";
 	public static final String ID_EL = "id";
+	public static final String ERROR_EL = "error";
+	public static final int MAX_INSTANCES_PER_IQ = 50;
 	
 	public static final String I_AM_ALIVE_PERIOD = "iamalive-period";
 	private final static Logger LOGGER = Logger.getLogger(ManagerPacketHelper.class.getName());
@@ -201,12 +208,24 @@ public class ManagerPacketHelper {
 	
 	public static String remoteStorageLink(StorageLink storageLink, String memberAddress, 
 			Token userFederationToken, PacketSender packetSender) {
+		checkPacketSender(packetSender);
+		IQ iq = createRemoteStorageLinkIQ(storageLink, memberAddress, userFederationToken);
+		return parseRemoteStorageLinkResponse((IQ) packetSender.syncSendPacket(iq));
+	}
 
-		if (packetSender == null) {
-			LOGGER.warn("Packet sender not set.");
-			throw new IllegalArgumentException("Packet sender not set.");
-		}
+	public static PacketFuture remoteStorageLinkAsync(StorageLink storageLink, String memberAddress, 
+			Token userFederationToken, AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		return asyncSendPacket(createRemoteStorageLinkIQ(storageLink, memberAddress, userFederationToken),
+				packetSender);
+	}
+
+	public static String remoteStorageLink(PacketFuture response, long timeout) {
+		return parseRemoteStorageLinkResponse(waitForResponse(response, timeout));
+	}
 
+	private static IQ createRemoteStorageLinkIQ(StorageLink storageLink, String memberAddress, 
+			Token userFederationToken) {
 		IQ iq = new IQ();
 		iq.setTo(memberAddress);
 		iq.setType(Type.set);
@@ -226,9 +245,10 @@ public class ManagerPacketHelper {
 			userEl.addElement(NAME_EL).setText(
 					userFederationToken.getUser().getName());		
 		}
+		return iq;
+	}
 
-		IQ response = (IQ) packetSender.syncSendPacket(iq);
-		 
+	private static String parseRemoteStorageLinkResponse(IQ response) {
 		if (response == null) {
 			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.XMPP_RESPONSE_NULL);
 		}
@@ -245,12 +265,22 @@ public class ManagerPacketHelper {
 	}
 
 	public static Instance getRemoteInstance(String memberId, String instanceId, PacketSender packetSender) {
+		checkPacketSender(packetSender);
+		IQ iq = createGetRemoteInstanceIQ(memberId, instanceId);
+		return parseRemoteInstanceResponse((IQ) packetSender.syncSendPacket(iq));
+	}
 
-		if (packetSender == null) {
-			LOGGER.warn("Packet sender not set.");
-			throw new IllegalArgumentException("Packet sender not set.");
-		}
+	public static PacketFuture getRemoteInstanceAsync(String memberId, String instanceId,
+			AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		return asyncSendPacket(createGetRemoteInstanceIQ(memberId, instanceId), packetSender);
+	}
+
+	public static Instance getRemoteInstance(PacketFuture response, long timeout) {
+		return parseRemoteInstanceResponse(waitForResponse(response, timeout));
+	}
 
+	private static IQ createGetRemoteInstanceIQ(String memberId, String instanceId) {
 		IQ iq = new IQ();
 		iq.setTo(memberId);
 		iq.setType(Type.get);
@@ -261,39 +291,132 @@ public class ManagerPacketHelper {
 		} catch (Exception e) {
 			// TODO: handle exception
 		}
+		return iq;
+	}
 
-		IQ response = (IQ) packetSender.syncSendPacket(iq);
-		if (response == null) {
-			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.XMPP_RESPONSE_NULL);
+	private static Instance parseRemoteInstanceResponse(IQ response) {
+		checkResponse(response);
+		return parseInstance(response.getElement().element("query").element("instance"));
+	}
+
+	/**
+	 * Asks one member for several instances, in IQs of at most
+	 * {@link #MAX_INSTANCES_PER_IQ} instances each.
+	 * 
+	 * @return the responses, one for each IQ sent.
+	 */
+	public static List<PacketFuture> getRemoteInstancesAsync(String memberId, List<String> instanceIds,
+			AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		List<PacketFuture> responses = new ArrayList<PacketFuture>();
+		try {
+			for (int i = 0; i < instanceIds.size(); i += MAX_INSTANCES_PER_IQ) {
+				List<String> chunk = instanceIds.subList(i, Math.min(instanceIds.size(), i + MAX_INSTANCES_PER_IQ));
+				responses.add(asyncSendPacket(createGetRemoteInstancesIQ(memberId, chunk), packetSender));
+			}
+		} catch (RuntimeException e) {
+			cancel(responses);
+			throw e;
 		}
-		if (response.getError() != null) {
-			raiseException(response.getError());
+		return responses;
+	}
+
+	private static IQ createGetRemoteInstancesIQ(String memberId, List<String> instanceIds) {
+		IQ iq = new IQ();
+		iq.setTo(memberId);
+		iq.setType(Type.get);
+		Element queryEl = iq.getElement().addElement("query", ManagerXmppComponent.GETINSTANCES_NAMESPACE);
+		for (String instanceId : instanceIds) {
+			queryEl.addElement("instance").addElement(ID_EL).setText(instanceId);
 		}
+		return iq;
+	}
 
-		return parseInstance(response.getElement().element("query").element("instance"));
+	/**
+	 * Waits for the responses of {@link #getRemoteInstancesAsync}, all of them
+	 * within the same timeout. The responses not waited for, when one of them
+	 * fails, are cancelled.
+	 * 
+	 * @param errors filled with the error of each instance that could not be got.
+	 * @return the instances got by id, or null if the member does not support
+	 *         batched instance requests.
+	 */
+	public static Map<String, Instance> getRemoteInstances(List<PacketFuture> responses, long timeout,
+			Map<String, OCCIException> errors) {
+		long deadline = System.currentTimeMillis() + timeout;
+		Map<String, Instance> instances = new HashMap<String, Instance>();
+		try {
+			for (PacketFuture response : responses) {
+				IQ responseIQ = waitForResponse(response, Math.max(0, deadline - System.currentTimeMillis()));
+				if (!parseRemoteInstancesResponse(responseIQ, instances, errors)) {
+					return null;
+				}
+			}
+		} finally {
+			cancel(responses);
+		}
+		return instances;
 	}
 
-	public static void deleteRemoteInstace(Order order, PacketSender packetSender) {
+	/**
+	 * @return false if the member does not support batched instance requests.
+	 */
+	@SuppressWarnings("unchecked")
+	private static boolean parseRemoteInstancesResponse(IQ responseIQ, Map<String, Instance> instances,
+			Map<String, OCCIException> errors) {
+		if (responseIQ != null && responseIQ.getError() != null
+				&& responseIQ.getError().getCondition().equals(Condition.feature_not_implemented)) {
+			return false;
+		}
+		checkResponse(responseIQ);
+
+		Iterator<Element> instanceIterator = responseIQ.getElement().element("query").elementIterator("instance");
+		while (instanceIterator.hasNext()) {
+			Element instanceEl = instanceIterator.next();
+			String errorCondition = instanceEl.elementText(ERROR_EL);
+			if (errorCondition != null) {
+				errors.put(instanceEl.elementText(ID_EL), 
+						createException(new PacketError(Condition.fromXMPP(errorCondition))));
+			} else {
+				Instance instance = parseInstance(instanceEl);
+				instances.put(instance.getId(), instance);
+			}
+		}
+		return true;
+	}
 
-		if (packetSender == null) {
-			LOGGER.warn("Packet sender not set.");
-			throw new IllegalArgumentException("Packet sender not set.");
+	/**
+	 * Cancels the responses not received yet, so their callbacks do not wait
+	 * for a response that nobody will read.
+	 */
+	public static void cancel(List<PacketFuture> responses) {
+		for (PacketFuture response : responses) {
+			response.cancel(false);
 		}
+	}
+
+	public static void deleteRemoteInstace(Order order, PacketSender packetSender) {
+		checkPacketSender(packetSender);
+		checkResponse((IQ) packetSender.syncSendPacket(createDeleteRemoteInstanceIQ(order)));
+	}
+
+	public static PacketFuture deleteRemoteInstanceAsync(Order order, AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		return asyncSendPacket(createDeleteRemoteInstanceIQ(order), packetSender);
+	}
+
+	public static void deleteRemoteInstace(PacketFuture response, long timeout) {
+		checkResponse(waitForResponse(response, timeout));
+	}
 
+	private static IQ createDeleteRemoteInstanceIQ(Order order) {
 		IQ iq = new IQ();
 		iq.setTo(order.getProvidingMemberId());
 		iq.setType(Type.set);
 		Element queryEl = iq.getElement().addElement("query", ManagerXmppComponent.REMOVEINSTANCE_NAMESPACE);
 		Element instanceEl = queryEl.addElement("instance");
 		instanceEl.addElement(ID_EL).setText(order.getInstanceId());
-
-		IQ response = (IQ) packetSender.syncSendPacket(iq);
-		if (response == null) {
-			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.XMPP_RESPONSE_NULL);
-		}
-		if (response.getError() != null) {
-			raiseException(response.getError());
-		}
+		return iq;
 	}
 	
 	public static void deleteRemoteStorageLink(StorageLink storageLink, PacketSender packetSender) {
@@ -332,6 +455,50 @@ public class ManagerPacketHelper {
 		}
 	}	
 
+	/**
+	 * Sends the IQ without blocking. The returned future is completed by the
+	 * callback registered for the IQ, so several requests may be in flight at
+	 * the same time.
+	 */
+	public static PacketFuture asyncSendPacket(IQ iq, AsyncPacketSender packetSender) {
+		PacketFuture response = new PacketFuture(iq, packetSender);
+		packetSender.addPacketCallback(iq, response);
+		packetSender.sendPacket(iq);
+		return response;
+	}
+
+	/**
+	 * @return the response, or null when there is no response within the timeout,
+	 *         as {@link PacketSender#syncSendPacket(Packet)} does.
+	 */
+	public static IQ waitForResponse(PacketFuture response, long timeout) {
+		try {
+			return response.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			LOGGER.warn("No XMPP response after " + timeout + " milliseconds.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		response.cancel(false);
+		return null;
+	}
+
+	private static void checkResponse(IQ response) {
+		if (response == null) {
+			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.XMPP_RESPONSE_NULL);
+		}
+		if (response.getError() != null) {
+			raiseException(response.getError());
+		}
+	}
+
+	private static void checkPacketSender(PacketSender packetSender) {
+		if (packetSender == null) {
+			LOGGER.warn("Packet sender not set.");
+			throw new IllegalArgumentException("Packet sender not set.");
+		}
+	}
+
 	private static void raiseException(PacketError error) {
 		throw createException(error);
 	}
@@ -436,12 +603,69 @@ public class ManagerPacketHelper {
 
 	public static void checkIfInstanceIsBeingUsedByRemoteMember(String instanceId, Order servedOrder,
 			PacketSender packetSender) {
+		checkPacketSender(packetSender);
+		IQ iq = createInstanceBeingUsedIQ(instanceId, servedOrder);
+		checkResponse((IQ) packetSender.syncSendPacket(iq));
+	}
 
-		if (packetSender == null) {
-			LOGGER.warn("Packet sender not set.");
-			throw new IllegalArgumentException("Packet sender not set.");
+	public static PacketFuture checkIfInstanceIsBeingUsedByRemoteMemberAsync(String instanceId,
+			Order servedOrder, AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		return asyncSendPacket(createInstanceBeingUsedIQ(instanceId, servedOrder), packetSender);
+	}
+
+	public static void checkIfInstanceIsBeingUsedByRemoteMember(PacketFuture response, long timeout) {
+		checkResponse(waitForResponse(response, timeout));
+	}
+
+	/**
+	 * Asks the requesting member, in a single IQ, which of its served orders are
+	 * not being used anymore.
+	 */
+	public static PacketFuture checkIfInstancesAreBeingUsedByRemoteMemberAsync(String memberId,
+			List<Order> servedOrders, AsyncPacketSender packetSender) {
+		checkPacketSender(packetSender);
+		IQ iq = new IQ();
+		iq.setTo(memberId);
+		iq.setType(Type.get);
+		Element queryEl = iq.getElement().addElement("query", ManagerXmppComponent.INSTANCESBEINGUSED_NAMESPACE);
+		Element ordersEl = queryEl.addElement(ORDERS_EL);
+		for (Order servedOrder : servedOrders) {
+			Element orderEl = ordersEl.addElement(ORDER_EL);
+			orderEl.addElement(ID_EL).setText(servedOrder.getId());
+			String instanceId = servedOrder.getGlobalInstanceId();
+			if (instanceId != null) {
+				orderEl.addElement("instance").addElement(ID_EL).setText(instanceId);
+			}
 		}
+		return asyncSendPacket(iq, packetSender);
+	}
 
+	/**
+	 * @return the ids of the served orders that are not being used anymore, or
+	 *         null if the member did not answer the batched request, as members
+	 *         running a release without it do.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Set<String> getOrdersNotBeingUsedByRemoteMember(PacketFuture response, long timeout) {
+		IQ responseIQ = waitForResponse(response, timeout);
+		if (responseIQ == null || responseIQ.getError() != null) {
+			return null;
+		}
+		Set<String> orderIds = new HashSet<String>();
+		Element queryEl = responseIQ.getElement().element("query");
+		Element ordersEl = queryEl != null ? queryEl.element(ORDERS_EL) : null;
+		if (ordersEl == null) {
+			return orderIds;
+		}
+		Iterator<Element> orderIterator = ordersEl.elementIterator(ORDER_EL);
+		while (orderIterator.hasNext()) {
+			orderIds.add(orderIterator.next().elementText(ID_EL));
+		}
+		return orderIds;
+	}
+
+	private static IQ createInstanceBeingUsedIQ(String instanceId, Order servedOrder) {
 		IQ iq = new IQ();
 		iq.setTo(servedOrder.getRequestingMemberId());
 		iq.setType(Type.get);
@@ -452,13 +676,7 @@ public class ManagerPacketHelper {
 			Element instanceEl = queryEl.addElement("instance");
 			instanceEl.addElement(ID_EL).setText(instanceId);
 		}
-		IQ response = (IQ) packetSender.syncSendPacket(iq);
-		if (response == null) {
-			throw new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.XMPP_RESPONSE_NULL);
-		}
-		if (response.getError() != null) {
-			raiseException(response.getError());
-		}
+		return iq;
 	}
 
 	public static void replyToServedOrder(Order order, PacketSender packetSender) {
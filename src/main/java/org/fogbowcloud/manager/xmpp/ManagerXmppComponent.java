@@ -2,13 +2,17 @@ package org.fogbowcloud.manager.xmpp;
 
 import java.security.cert.CertificateException;
 import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 import org.fogbowcloud.manager.core.ManagerController;
 import org.fogbowcloud.manager.core.model.FederationMember;
+import org.jamppa.component.PacketCallback;
 import org.jamppa.component.XMPPComponent;
+import org.xmpp.packet.IQ;
 import org.xmpp.packet.Packet;
 
 public class ManagerXmppComponent extends XMPPComponent implements AsyncPacketSender {
@@ -18,9 +22,11 @@ public class ManagerXmppComponent extends XMPPComponent implements AsyncPacketSe
 	public static final String ORDER_NAMESPACE = "http://fogbowcloud.org/manager/order";
 	public static final String STORAGE_LINK_NAMESPACE = "http://fogbowcloud.org/manager/storagelink";
 	public static final String GETINSTANCE_NAMESPACE = "http://fogbowcloud.org/manager/getinstance";
+	public static final String GETINSTANCES_NAMESPACE = "http://fogbowcloud.org/manager/getinstances";
 	public static final String REMOVEINSTANCE_NAMESPACE = "http://fogbowcloud.org/manager/removeinstance";
 	public static final String REMOVESTORAGELINK_NAMESPACE = "http://fogbowcloud.org/manager/removestoragelink";
 	public static final String INSTANCEBEINGUSED_NAMESPACE = "http://fogbowcloud.org/manager/instancebeingused";
+	public static final String INSTANCESBEINGUSED_NAMESPACE = "http://fogbowcloud.org/manager/instancesbeingused";
 	public static final String REMOVEORDER_NAMESPACE = "http://fogbowcloud.org/manager/removeorder";
 	public static final String GETREMOTEUSERQUOTA_NAMESPACE = "http://fogbowcloud.org/manager/getremoteuserquota";
 
@@ -30,6 +36,8 @@ public class ManagerXmppComponent extends XMPPComponent implements AsyncPacketSe
 	private final Timer timer = new Timer();
 	private String rendezvousAddress;
 	private int maxWhoIsAliveManagerCount = 100;
+	// kept here rather than in XMPPComponent, which has no way to remove one
+	private final Map<String, PacketCallback> packetCallbacks = new ConcurrentHashMap<String, PacketCallback>();
 	
 	public ManagerXmppComponent(String jid, String password, String server,
 			int port, ManagerController managerFacade, long timeout) {
@@ -39,9 +47,11 @@ public class ManagerXmppComponent extends XMPPComponent implements AsyncPacketSe
 			this.maxWhoIsAliveManagerCount = managerFacade.getMaxWhoIsAliveManagerCount();
 		}
 		addGetHandler(new GetInstanceHandler(managerFacade));
+		addGetHandler(new GetInstancesHandler(managerFacade));
 		addSetHandler(new RemoveInstanceHandler(managerFacade));
 		addSetHandler(new OrderInstanceHandler(managerFacade));
 		addGetHandler(new InstanceBeingUsedHandler(managerFacade));
+		addGetHandler(new InstancesBeingUsedHandler(managerFacade));
 		addSetHandler(new RemoveOrderHandler(managerFacade));
 		addGetHandler(new GetRemoteUserQuotaHandler(managerFacade));
 		addSetHandler(new StorageLinkHandler(managerFacade));	
@@ -73,6 +83,43 @@ public class ManagerXmppComponent extends XMPPComponent implements AsyncPacketSe
 		super.send(packet);
 	}
 
+	@Override
+	public void addPacketCallback(Packet packet, PacketCallback packetCallback) {
+		packetCallbacks.put(packet.getID(), packetCallback);
+	}
+
+	@Override
+	public void removePacketCallback(Packet packet) {
+		packetCallbacks.remove(packet.getID());
+	}
+
+	@Override
+	protected void handleIQResult(IQ iq) {
+		if (!handlePacketCallback(iq)) {
+			super.handleIQResult(iq);
+		}
+	}
+
+	@Override
+	protected void handleIQError(IQ iq) {
+		if (!handlePacketCallback(iq)) {
+			super.handleIQError(iq);
+		}
+	}
+
+	private boolean handlePacketCallback(IQ iq) {
+		PacketCallback packetCallback = iq.getID() == null ? null : packetCallbacks.remove(iq.getID());
+		if (packetCallback == null) {
+			return false;
+		}
+		packetCallback.handle(iq);
+		return true;
+	}
+
+	protected int getPacketCallbacksCount() {
+		return packetCallbacks.size();
+	}
+
 	public void whoIsalive() throws Exception {
 		managerFacade.updateMembers(ManagerPacketHelper.whoIsalive(
 				rendezvousAddress, this, maxWhoIsAliveManagerCount));
@@ -0,0 +1,92 @@
+package org.fogbowcloud.manager.xmpp;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jamppa.component.PacketCallback;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.Packet;
+
+/**
+ * Response of an IQ sent through {@link AsyncPacketSender#addPacketCallback}.
+ * The future is completed by the first response handled, responses arriving
+ * after a timeout or a cancellation are ignored. Cancelling it removes its
+ * callback from the packet sender.
+ */
+public class PacketFuture implements Future<IQ>, PacketCallback {
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private final Packet packet;
+	private final AsyncPacketSender packetSender;
+	private IQ response;
+	private boolean cancelled;
+
+	public PacketFuture() {
+		this(null, null);
+	}
+
+	public PacketFuture(Packet packet, AsyncPacketSender packetSender) {
+		this.packet = packet;
+		this.packetSender = packetSender;
+	}
+
+	@Override
+	public void handle(Packet packet) {
+		synchronized (this) {
+			if (isDone()) {
+				return;
+			}
+			this.response = (IQ) packet;
+			done.countDown();
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (isDone()) {
+				return false;
+			}
+			this.cancelled = true;
+			done.countDown();
+		}
+		if (packetSender != null) {
+			packetSender.removePacketCallback(packet);
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public IQ get() throws InterruptedException {
+		done.await();
+		return getResponse();
+	}
+
+	@Override
+	public IQ get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("No response after " + unit.toMillis(timeout) + " milliseconds.");
+		}
+		return getResponse();
+	}
+
+	private synchronized IQ getResponse() {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		return response;
+	}
+}
@@ -5,6 +5,8 @@ import java.util.Properties;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.junit.Assert;
 import org.junit.Test;
+import org.restlet.data.Parameter;
+import org.restlet.util.Series;
 
 public class TestMainHelper {
 	
@@ -34,4 +36,41 @@ public class TestMainHelper {
 		MainHelper.getXMPPTimeout(properties);	
 	}	
 	
+	@Test
+	public void testSetServerThreadParameters() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.HTTP_SERVER_MAX_THREADS_KEY, "50");
+		properties.put(ConfigurationConstants.HTTP_SERVER_MAX_QUEUED_KEY, "20");
+		Series<Parameter> parameters = new Series<Parameter>(Parameter.class);
+		MainHelper.setServerThreadParameters(parameters, properties);
+
+		Assert.assertEquals("50", parameters.getFirstValue("threadPool.maxThreads"));
+		Assert.assertEquals("50", parameters.getFirstValue("maxThreads"));
+		Assert.assertEquals("20", parameters.getFirstValue("maxQueued"));
+		Assert.assertEquals(String.valueOf(MainHelper.DEFAULT_HTTP_SERVER_MIN_THREADS),
+				parameters.getFirstValue("threadPool.minThreads"));
+	}
+
+	@Test
+	public void testSetServerThreadParametersWithInvalidValues() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.HTTP_SERVER_MAX_THREADS_KEY, "many");
+		properties.put(ConfigurationConstants.HTTP_SERVER_MAX_QUEUED_KEY, "-1");
+		Series<Parameter> parameters = new Series<Parameter>(Parameter.class);
+		MainHelper.setServerThreadParameters(parameters, properties);
+
+		Assert.assertEquals(String.valueOf(MainHelper.DEFAULT_HTTP_SERVER_MAX_THREADS),
+				parameters.getFirstValue("maxThreads"));
+		Assert.assertEquals(String.valueOf(MainHelper.DEFAULT_HTTP_SERVER_MAX_QUEUED),
+				parameters.getFirstValue("maxQueued"));
+	}
+
+	@Test(expected=Error.class)
+	public void testSetServerThreadParametersMinGreaterThanMax() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.HTTP_SERVER_MIN_THREADS_KEY, "20");
+		properties.put(ConfigurationConstants.HTTP_SERVER_MAX_THREADS_KEY, "10");
+		MainHelper.setServerThreadParameters(new Series<Parameter>(Parameter.class), properties);
+	}
+
 }
@@ -471,6 +471,24 @@ public class ManagerTestHelper extends DefaultDataTestHelper {
 		});
 	}
 
+	public ScheduledExecutorService getExecutorService() {
+		return executorService;
+	}
+
+	/**
+	 * Answers the packets sent asynchronously through the mocked packet sender
+	 * with the given response.
+	 */
+	public static void mockAsyncResponse(AsyncPacketSender packetSender, final Packet response) {
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				((PacketCallback) invocation.getArguments()[1]).handle(response);
+				return null;
+			}
+		}).when(packetSender).addPacketCallback(Mockito.any(Packet.class), Mockito.any(PacketCallback.class));
+	}
+
 	public Token getDefaultFederationToken() {
 		return defaultFederationToken;
 	}
@@ -0,0 +1,88 @@
+package org.fogbowcloud.manager.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fogbowcloud.manager.core.plugins.compute.nocloud.NoCloudComputePlugin;
+import org.fogbowcloud.manager.occi.ManagerDataStore;
+import org.fogbowcloud.manager.occi.model.Category;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
+import org.fogbowcloud.manager.occi.order.OrderConstants;
+import org.fogbowcloud.manager.occi.order.OrderState;
+
+/**
+ * Measures the orders fulfilled per second by one scheduling round for each
+ * number of scheduler workers, on a {@link NoCloudComputePlugin} that accepts
+ * every request after a fixed latency, as a cloud would take to answer. It is
+ * not run with the tests, run its main with the number of orders, of batches,
+ * the latency in milliseconds and the worker counts, e.g. "200 20 50 1,2,4,8".
+ */
+public class OrderSchedulerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int orders = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int batches = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long latency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+		String[] workerCounts = (args.length > 3 ? args[3] : "1,2,4,8").split(",");
+
+		for (String workers : workerCounts) {
+			run(Integer.parseInt(workers.trim()), orders, batches, latency);
+		}
+	}
+
+	private static void run(int workers, int orders, int batches, final long latency) throws Exception {
+		File file = File.createTempFile("order-scheduler-benchmark", ".sqlite");
+		file.deleteOnExit();
+		new File(file.getPath() + "-wal").deleteOnExit();
+		new File(file.getPath() + "-shm").deleteOnExit();
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ManagerDataStore.MANAGER_DATASTORE_URL, "jdbc:sqlite:" + file.getAbsolutePath());
+		extraProperties.put(ConfigurationConstants.SCHEDULER_WORKERS_KEY, String.valueOf(workers));
+
+		ManagerController managerController = new ManagerTestHelper()
+				.createDefaultManagerController(extraProperties);
+		final AtomicInteger instances = new AtomicInteger();
+		managerController.setComputePlugin(new NoCloudComputePlugin(new Properties()) {
+			@Override
+			public String requestInstance(Token token, List<Category> categories, Map<String, String> xOCCIAtt,
+					String imageId) {
+				try {
+					Thread.sleep(latency);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "instance-" + instances.incrementAndGet();
+			}
+		});
+
+		for (int i = 0; i < orders; i++) {
+			int batch = i % batches;
+			Token token = new Token("accessId-" + batch, new Token.User("user-" + batch, "user-" + batch),
+					new Date(), new HashMap<String, String>());
+			Map<String, String> xOCCIAtt = new HashMap<String, String>();
+			xOCCIAtt.put(OrderAttribute.INSTANCE_COUNT.getValue(),
+					String.valueOf(OrderConstants.DEFAULT_INSTANCE_COUNT));
+			xOCCIAtt.put(OrderAttribute.RESOURCE_KIND.getValue(), OrderConstants.COMPUTE_TERM);
+			xOCCIAtt.put(OrderAttribute.BATCH_ID.getValue(), "batch-" + batch);
+			Order order = new Order("order-" + i, token, new ArrayList<Category>(), xOCCIAtt, true, "");
+			order.setState(OrderState.OPEN);
+			managerController.getManagerDataStoreController().addOrder(order);
+		}
+
+		long start = System.nanoTime();
+		managerController.checkAndSubmitOpenOrders();
+		long elapsed = System.nanoTime() - start;
+		managerController.shutdown();
+
+		System.out.println(String.format("%d workers: %d of %d orders fulfilled, %.1f orders/s", workers,
+				instances.get(), orders, instances.get() / (elapsed / 1e9)));
+	}
+}
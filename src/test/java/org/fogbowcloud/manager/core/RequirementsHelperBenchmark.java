@@ -0,0 +1,86 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.core.model.Flavor;
+
+/**
+ * Compares parsing the requirements of an order on every evaluation with
+ * evaluating the requirements compiled once, for the flavors of a cloud and
+ * the members of a federation. It is not run with the tests, run its main with
+ * the number of flavors or members and iterations, e.g. "50 2000".
+ */
+public class RequirementsHelperBenchmark {
+
+	private static final int WARM_UP_ITERATIONS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		final String requirements = RequirementsHelper.GLUE_VCPU_TERM + " >= 2 && "
+				+ RequirementsHelper.GLUE_MEM_RAM_TERM + " >= 2048 && "
+				+ RequirementsHelper.GLUE_DISK_TERM + " >= 20 && ("
+				+ RequirementsHelper.GLUE_LOCATION_TERM + " == \"member-1\" || "
+				+ RequirementsHelper.GLUE_LOCATION_TERM + " == \"member-7\")";
+		final List<Flavor> flavors = new ArrayList<Flavor>();
+		final List<FederationMember> members = new ArrayList<FederationMember>();
+		for (int i = 0; i < size; i++) {
+			flavors.add(new Flavor("flavor-" + i, String.valueOf(i), String.valueOf(1 + i % 8),
+					String.valueOf(512 * (1 + i % 16)), String.valueOf(10 * (1 + i % 10))));
+			members.add(new FederationMember("member-" + i));
+		}
+
+		run("flavors, parsed per call", new Evaluation() {
+			@Override
+			public int evaluate() {
+				int matches = 0;
+				for (Flavor flavor : flavors) {
+					matches += new CompiledRequirements(requirements).matches(flavor) ? 1 : 0;
+				}
+				return matches;
+			}
+		}, iterations);
+		run("flavors, compiled", new Evaluation() {
+			@Override
+			public int evaluate() {
+				return RequirementsHelper.compile(requirements).filterFlavors(flavors).size();
+			}
+		}, iterations);
+		run("members, parsed per call", new Evaluation() {
+			@Override
+			public int evaluate() {
+				int matches = 0;
+				for (FederationMember member : members) {
+					matches += new CompiledRequirements(requirements).matchLocation(member.getId()) ? 1 : 0;
+				}
+				return matches;
+			}
+		}, iterations);
+		run("members, compiled", new Evaluation() {
+			@Override
+			public int evaluate() {
+				return RequirementsHelper.compile(requirements).filterMembers(members).size();
+			}
+		}, iterations);
+	}
+
+	private static void run(String name, Evaluation evaluation, int iterations) {
+		int blackhole = 0;
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			blackhole += evaluation.evaluate();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			blackhole += evaluation.evaluate();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%s: %.3f ms/op (%d)", name, elapsed / 1e6 / iterations, blackhole));
+	}
+
+	private interface Evaluation {
+		int evaluate();
+	}
+}
@@ -0,0 +1,244 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.ResponseConstants;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestLocalTokenCache {
+
+	private static final long NOW = 1000000;
+
+	private IdentityPlugin identityPlugin;
+	private DateUtils dateUtils;
+	private LocalTokenCache localTokenCache;
+	private Map<String, String> credentials;
+
+	@Before
+	public void setUp() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.LOCAL_TOKEN_CACHE_TTL_KEY, "60000");
+		properties.put(ConfigurationConstants.LOCAL_TOKEN_CACHE_REFRESH_MARGIN_KEY, "10000");
+		this.identityPlugin = Mockito.mock(IdentityPlugin.class);
+		this.dateUtils = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW);
+		this.localTokenCache = new LocalTokenCache(identityPlugin, properties);
+		this.localTokenCache.setDateUtils(dateUtils);
+		this.credentials = new HashMap<String, String>();
+		this.credentials.put("username", "user");
+		this.credentials.put("password", "password");
+	}
+
+	@Test
+	public void testTokenIsSharedByEqualCredentials() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(createToken("accessId", null));
+
+		Assert.assertEquals("accessId", localTokenCache.getToken(credentials).getAccessId());
+		Assert.assertEquals("accessId", localTokenCache.getToken(
+				new HashMap<String, String>(credentials)).getAccessId());
+
+		Mockito.verify(identityPlugin, Mockito.times(1)).createToken(credentials);
+		Assert.assertEquals(1, localTokenCache.getLogins());
+		Assert.assertEquals(1, localTokenCache.getHits());
+	}
+
+	@Test
+	public void testTokenIsReIssuedBeforeExpiration() {
+		Token token = createToken("accessId", new Date(NOW + 30000));
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(token);
+		Mockito.when(identityPlugin.reIssueToken(token)).thenReturn(
+				createToken("reIssuedAccessId", new Date(NOW + 60000)));
+
+		localTokenCache.getToken(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 19999);
+		Assert.assertEquals("accessId", localTokenCache.getToken(credentials).getAccessId());
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 20000);
+		Assert.assertEquals("reIssuedAccessId", localTokenCache.getToken(credentials).getAccessId());
+
+		Mockito.verify(identityPlugin, Mockito.times(1)).createToken(credentials);
+		Assert.assertEquals(1, localTokenCache.getReIssues());
+	}
+
+	@Test
+	public void testExpiringTokenIsRenewedAheadOfCallers() {
+		Token token = createToken("accessId", new Date(NOW + 30000));
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(token);
+		Mockito.when(identityPlugin.reIssueToken(token)).thenReturn(
+				createToken("reIssuedAccessId", new Date(NOW + 60000)));
+
+		localTokenCache.getToken(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 19999);
+		localTokenCache.renewExpiringTokens();
+		Assert.assertEquals(0, localTokenCache.getReIssues());
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 20000);
+		localTokenCache.renewExpiringTokens();
+		Assert.assertEquals(1, localTokenCache.getReIssues());
+		Assert.assertEquals(1, localTokenCache.getEarlyRenewals());
+		Assert.assertEquals("reIssuedAccessId", localTokenCache.getToken(credentials).getAccessId());
+		Assert.assertEquals(1, localTokenCache.getReIssues());
+	}
+
+	@Test
+	public void testTokenNotRequestedIsDroppedInsteadOfRenewed() {
+		Token token = createToken("accessId", new Date(NOW + 30000));
+		Token reIssuedToken = createToken("reIssuedAccessId", new Date(NOW + 60000));
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(token);
+		Mockito.when(identityPlugin.reIssueToken(Mockito.any(Token.class))).thenReturn(reIssuedToken);
+
+		localTokenCache.getToken(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 20000);
+		localTokenCache.renewExpiringTokens();
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 50000);
+		localTokenCache.renewExpiringTokens();
+
+		Assert.assertEquals(0, localTokenCache.size());
+		Assert.assertEquals(1, localTokenCache.getReIssues());
+	}
+
+	@Test
+	public void testCallersGetCopiesOfTheCachedToken() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(
+				createToken("accessId", new Date(NOW + 30000)));
+
+		Token token = localTokenCache.getToken(credentials);
+		token.getAttributes().put("key", "value");
+		token.setExpirationDate(new Date(NOW));
+
+		Token cachedToken = localTokenCache.getToken(credentials);
+		Assert.assertNull(cachedToken.get("key"));
+		Assert.assertEquals(new Date(NOW + 30000), cachedToken.getExpirationDate());
+		Assert.assertEquals(1, localTokenCache.getLogins());
+	}
+
+	@Test
+	public void testLoginWhenReIssueFails() {
+		Token token = createToken("accessId", new Date(NOW + 30000));
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(token,
+				createToken("newAccessId", new Date(NOW + 90000)));
+		Mockito.when(identityPlugin.reIssueToken(token)).thenThrow(
+				new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED));
+
+		localTokenCache.getToken(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 30000);
+		Assert.assertEquals("newAccessId", localTokenCache.getToken(credentials).getAccessId());
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).createToken(credentials);
+	}
+
+	@Test
+	public void testTokenWithoutExpirationDateUsesTtl() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(createToken("accessId", null));
+		Mockito.when(identityPlugin.reIssueToken(Mockito.any(Token.class))).thenReturn(null);
+
+		localTokenCache.getToken(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 49999);
+		localTokenCache.getToken(credentials);
+		Mockito.verify(identityPlugin, Mockito.times(1)).createToken(credentials);
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 50000);
+		localTokenCache.getToken(credentials);
+		Mockito.verify(identityPlugin, Mockito.times(2)).createToken(credentials);
+	}
+
+	@Test
+	public void testFailedLoginIsNotCached() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenThrow(
+				new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED)).thenReturn(
+				createToken("accessId", null));
+
+		try {
+			localTokenCache.getToken(credentials);
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.UNAUTHORIZED, e.getType());
+		}
+		Assert.assertEquals("accessId", localTokenCache.getToken(credentials).getAccessId());
+	}
+
+	@Test
+	public void testInvalidate() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(createToken("accessId", null));
+
+		localTokenCache.getToken(credentials);
+		localTokenCache.invalidate(credentials);
+		Assert.assertEquals(0, localTokenCache.size());
+		localTokenCache.getToken(credentials);
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).createToken(credentials);
+	}
+
+	@Test
+	public void testInvalidateRejectedToken() {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(createToken("accessId", null),
+				createToken("newAccessId", null));
+
+		Token rejectedToken = localTokenCache.getToken(credentials);
+		localTokenCache.invalidate(credentials, rejectedToken);
+		Assert.assertEquals("newAccessId", localTokenCache.getToken(credentials).getAccessId());
+
+		// a token already replaced is kept
+		localTokenCache.invalidate(credentials, rejectedToken);
+		Assert.assertEquals("newAccessId", localTokenCache.getToken(credentials).getAccessId());
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).createToken(credentials);
+		Mockito.verify(identityPlugin, Mockito.never()).reIssueToken(Mockito.any(Token.class));
+	}
+
+	@Test
+	public void testConcurrentLoginsAreDoneOnce() throws Exception {
+		final CountDownLatch loginStarted = new CountDownLatch(1);
+		final CountDownLatch releaseLogin = new CountDownLatch(1);
+		Mockito.when(identityPlugin.createToken(credentials)).thenAnswer(new Answer<Token>() {
+			@Override
+			public Token answer(InvocationOnMock invocation) throws Throwable {
+				loginStarted.countDown();
+				releaseLogin.await(5, TimeUnit.SECONDS);
+				return createToken("accessId", null);
+			}
+		});
+
+		final Token[] tokens = new Token[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					tokens[index] = localTokenCache.getToken(credentials);
+				}
+			});
+		}
+		threads[0].start();
+		Assert.assertTrue(loginStarted.await(5, TimeUnit.SECONDS));
+		threads[1].start();
+		releaseLogin.countDown();
+		for (Thread thread : threads) {
+			thread.join(5000);
+		}
+
+		Assert.assertEquals("accessId", tokens[0].getAccessId());
+		Assert.assertEquals("accessId", tokens[1].getAccessId());
+		Mockito.verify(identityPlugin, Mockito.times(1)).createToken(credentials);
+	}
+
+	private Token createToken(String accessId, Date expirationDate) {
+		return new Token(accessId, new Token.User("user", "user"), expirationDate,
+				new HashMap<String, String>());
+	}
+}
@@ -14,6 +14,10 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.MessagingException;
 
@@ -66,6 +70,7 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
 import org.mockito.internal.verification.VerificationModeFactory;
@@ -2411,6 +2416,7 @@ public class TestManagerController {
 		
 		AsyncPacketSender packetSender = Mockito.mock(AsyncPacketSender.class);
 		Mockito.when(packetSender.syncSendPacket(Mockito.any(IQ.class))).thenReturn(response);
+		ManagerTestHelper.mockAsyncResponse(packetSender, response);
 		managerControllerSpy.setPacketSender(packetSender);
 				
 		Mockito.doReturn(true).when(managerControllerSpy).isThereEnoughQuota("manager1-test.com");
@@ -2461,11 +2467,13 @@ public class TestManagerController {
 		responseWithError.setError(Condition.bad_request);
 		AsyncPacketSender packetSenderWithError = Mockito.mock(AsyncPacketSender.class);
 		Mockito.when(packetSenderWithError.syncSendPacket(Mockito.any(IQ.class))).thenReturn(responseWithError);		
+		ManagerTestHelper.mockAsyncResponse(packetSenderWithError, responseWithError);
 		
 		// response ok
 		IQ responseOk = IQ.createResultIQ(iq);			
 		AsyncPacketSender packetSenderOk = Mockito.mock(AsyncPacketSender.class);
 		Mockito.when(packetSenderOk.syncSendPacket(Mockito.any(IQ.class))).thenReturn(responseOk);
+		ManagerTestHelper.mockAsyncResponse(packetSenderOk, responseOk);
 				
 		managerControllerSpy.setPacketSender(packetSenderWithError);
 		Mockito.doReturn(true).when(managerControllerSpy).isThereEnoughQuota("manager1-test.com");
@@ -2543,6 +2551,7 @@ public class TestManagerController {
 		
 		AsyncPacketSender packetSender = Mockito.mock(AsyncPacketSender.class);
 		Mockito.when(packetSender.syncSendPacket(Mockito.any(IQ.class))).thenReturn(response);
+		ManagerTestHelper.mockAsyncResponse(packetSender, response);
 		managerControllerSpy.setPacketSender(packetSender);
 		
 		Mockito.doReturn(true).when(managerControllerSpy).isThereEnoughQuota("manager1-test.com");
@@ -3447,6 +3456,53 @@ public class TestManagerController {
 		Assert.assertEquals("30", resourcesInfo.getInstancesIdle());
 	}	
 	
+	@Test
+	public void testGetResourceInfoSkipsSlowCredentials() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.RESOURCES_INFO_TIMEOUT_KEY, "200");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		MapperPlugin mapperPlugin = Mockito.mock(MapperPlugin.class);
+		Map<String, Map<String, String>> fedUsersCredentials = new HashMap<String, Map<String,String>>();
+		HashMap<String, String> credentialsOne = new HashMap<String, String>();
+		credentialsOne.put("one", "x1");
+		HashMap<String, String> credentialsTwo = new HashMap<String, String>();
+		credentialsTwo.put("two", "y1");
+		fedUsersCredentials.put("one", credentialsOne);
+		fedUsersCredentials.put("two", credentialsTwo);
+		Mockito.when(mapperPlugin.getAllLocalCredentials()).thenReturn(fedUsersCredentials);
+		managerController.setLocalCredentailsPlugin(mapperPlugin);
+		
+		IdentityPlugin identityPlugin = Mockito.mock(IdentityPlugin.class);
+		Token tokenOne = new Token("One", new Token.User("", ""), null, null);
+		Mockito.when(identityPlugin.createToken(credentialsOne)).thenReturn(tokenOne);
+		Token tokenTwo = new Token("Two", new Token.User("", ""), null, null);
+		Mockito.when(identityPlugin.createToken(credentialsTwo)).thenReturn(tokenTwo);
+		managerController.setLocalIdentityPlugin(identityPlugin);
+		
+		final CountDownLatch releaseSlowCloud = new CountDownLatch(1);
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getResourcesInfo(tokenOne)).thenReturn(
+				new ResourcesInfo("10", "20", "10", "20", "10", "20"));
+		Mockito.when(computePlugin.getResourcesInfo(tokenTwo)).thenAnswer(new Answer<ResourcesInfo>() {
+			@Override
+			public ResourcesInfo answer(InvocationOnMock invocation) throws Throwable {
+				releaseSlowCloud.await(5, TimeUnit.SECONDS);
+				return new ResourcesInfo("20", "20", "20", "20", "20", "20");
+			}
+		});
+		managerController.setComputePlugin(computePlugin);
+		
+		try {
+			ResourcesInfo resourcesInfo = managerController.getResourcesInfo("", true);
+			Assert.assertEquals("20", resourcesInfo.getCpuInUse());
+			Assert.assertEquals("10", resourcesInfo.getCpuIdle());
+			Assert.assertEquals("10", resourcesInfo.getInstancesIdle());
+		} finally {
+			releaseSlowCloud.countDown();
+		}
+	}
+	
 	@Test
 	public void testInitializeManager() throws SQLException, JSONException {
 		String userOne = "userOne";
@@ -4524,4 +4580,400 @@ public class TestManagerController {
 		Assert.assertEquals(CapacityControllerPlugin.MAXIMUM_CAPACITY_VALUE_ERROR, maxCapacityDefaultUser);
 	}
 	
+	@Test
+	public void testBatchesInSchedulingOrderAlternateUsers() {
+		Token tokenUserOne = new Token("accessIdOne", new Token.User("userOne", "userOne"), new Date(), 
+				new HashMap<String, String>());
+		Token tokenUserTwo = new Token("accessIdTwo", new Token.User("userTwo", "userTwo"), new Date(), 
+				new HashMap<String, String>());
+		Order orderOne = createOpenOrder("id1", tokenUserOne, "batchOne");
+		Order orderTwo = createOpenOrder("id2", tokenUserOne, "batchOne");
+		Order orderThree = createOpenOrder("id3", tokenUserOne, "batchTwo");
+		Order orderFour = createOpenOrder("id4", tokenUserTwo, "batchThree");
+		
+		List<List<Order>> batches = managerController.getBatchesInSchedulingOrder(
+				Arrays.asList(orderOne, orderTwo, orderThree, orderFour));
+		
+		Assert.assertEquals(3, batches.size());
+		Assert.assertEquals(Arrays.asList(orderOne, orderTwo), batches.get(0));
+		Assert.assertEquals(Arrays.asList(orderFour), batches.get(1));
+		Assert.assertEquals(Arrays.asList(orderThree), batches.get(2));
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSubmitOrdersWithSchedulerWorkers() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_WORKERS_KEY, "4");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		// both orders must be in the compute plugin at the same time
+		final CountDownLatch requestsInProgress = new CountDownLatch(2);
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.requestInstance(Mockito.any(Token.class), Mockito.anyList(), 
+				Mockito.anyMap(), Mockito.anyString())).thenAnswer(new Answer<String>() {
+					@Override
+					public String answer(InvocationOnMock invocation) throws Throwable {
+						requestsInProgress.countDown();
+						if (!requestsInProgress.await(10, TimeUnit.SECONDS)) {
+							throw new OCCIException(ErrorType.BAD_REQUEST, "Orders were not submitted in parallel.");
+						}
+						return "newinstanceid";
+					}
+				});
+		managerController.setComputePlugin(computePlugin);
+		
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createOpenOrder("id1", token, "batchOne"));
+		managerController.getManagerDataStoreController().addOrder(createOpenOrder("id2", token, "batchTwo"));
+		
+		managerController.checkAndSubmitOpenOrders();
+		
+		Assert.assertEquals(0, requestsInProgress.getCount());
+		for (Order order : managerController.getManagerDataStoreController().getAllOrders()) {
+			Assert.assertEquals("newinstanceid", order.getInstanceId());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testFailedBatchWithSchedulerWorkers() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_WORKERS_KEY, "4");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.requestInstance(Mockito.any(Token.class), Mockito.anyList(), 
+				Mockito.anyMap(), Mockito.anyString())).thenThrow(
+						new OCCIException(ErrorType.UNAUTHORIZED, ""));
+		managerController.setComputePlugin(computePlugin);
+		
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createOpenOrder("id1", token, "batchOne"));
+		managerController.getManagerDataStoreController().addOrder(createOpenOrder("id2", token, "batchOne"));
+		managerController.getManagerDataStoreController().addOrder(createOpenOrder("id3", token, "batchOne"));
+		
+		managerController.checkAndSubmitOpenOrders();
+		
+		Mockito.verify(computePlugin, VerificationModeFactory.times(1)).requestInstance(
+				Mockito.any(Token.class), Mockito.anyList(), Mockito.anyMap(), Mockito.anyString());
+		Assert.assertEquals(Arrays.asList("batchOne"), managerController.getFailedBatches()
+				.getFailedBatchIdsPerType(FailedBatchType.FEDERATION_USER));
+	}
+	
+	@Test
+	public void testInvalidSchedulerWorkersUsesDefault() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_WORKERS_KEY, "four");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		Assert.assertNull(managerController.getOrderSchedulerExecutor());
+	}
+	
+	@Test
+	public void testShutdownStopsTimersAndSchedulerWorkers() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_WORKERS_KEY, "4");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		ExecutorService orderSchedulerExecutor = managerController.getOrderSchedulerExecutor();
+		Assert.assertNotNull(orderSchedulerExecutor);
+		
+		managerController.shutdown();
+		
+		Assert.assertTrue(orderSchedulerExecutor.isShutdown());
+		Mockito.verify(managerTestHelper.getExecutorService(), Mockito.atLeastOnce()).shutdownNow();
+	}
+	
+	@Test
+	public void testOrderSchedulingEventsAreCoalesced() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_EVENT_DRIVEN_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		managerController.setForTest(false);
+		ScheduledExecutorService executorService = managerTestHelper.getExecutorService();
+		
+		managerController.orderSchedulingEvent();
+		managerController.orderSchedulingEvent();
+		
+		ArgumentCaptor<Runnable> round = ArgumentCaptor.forClass(Runnable.class);
+		Mockito.verify(executorService, VerificationModeFactory.times(1)).schedule(round.capture(), 
+				Mockito.eq(0L), Mockito.eq(TimeUnit.MILLISECONDS));
+		
+		round.getValue().run();
+		Mockito.verify(managerController).checkAndSubmitOpenOrders();
+		
+		// events after the round started ask for a new round
+		managerController.orderSchedulingEvent();
+		Mockito.verify(executorService, VerificationModeFactory.times(2)).schedule(Mockito.any(Runnable.class), 
+				Mockito.eq(0L), Mockito.eq(TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testDelayedOrderSchedulingEventsAreMerged() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_EVENT_DRIVEN_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		managerController.setForTest(false);
+		ScheduledExecutorService executorService = managerTestHelper.getExecutorService();
+		
+		// later rounds are served by the outstanding one
+		managerController.orderSchedulingEvent(60000);
+		managerController.orderSchedulingEvent(90000);
+		managerController.orderSchedulingEvent(120000);
+		Mockito.verify(executorService, VerificationModeFactory.times(1)).schedule(Mockito.any(Runnable.class), 
+				Mockito.anyLong(), Mockito.eq(TimeUnit.MILLISECONDS));
+		
+		// an earlier round replaces it
+		managerController.orderSchedulingEvent();
+		managerController.orderSchedulingEvent(60000);
+		Mockito.verify(executorService, VerificationModeFactory.times(2)).schedule(Mockito.any(Runnable.class), 
+				Mockito.anyLong(), Mockito.eq(TimeUnit.MILLISECONDS));
+		Mockito.verify(executorService).schedule(Mockito.any(Runnable.class), 
+				Mockito.eq(0L), Mockito.eq(TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testOrderSchedulingEventsUseTheManagerClock() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_EVENT_DRIVEN_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		managerController.setForTest(false);
+		DateUtils dateUtils = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(1000L);
+		managerController.setDateUtils(dateUtils);
+		ScheduledExecutorService executorService = managerTestHelper.getExecutorService();
+		
+		managerController.orderSchedulingEvent(60000);
+		
+		// 50 seconds later by the manager clock, a round in 30 seconds is served by the outstanding one
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(51000L);
+		managerController.orderSchedulingEvent(30000);
+		Mockito.verify(executorService, VerificationModeFactory.times(1)).schedule(Mockito.any(Runnable.class), 
+				Mockito.anyLong(), Mockito.eq(TimeUnit.MILLISECONDS));
+	}
+	
+	@Test
+	public void testForwardingBackoffAfterRemoteFailure() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.SCHEDULER_EVENT_DRIVEN_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.requestInstance(Mockito.any(Token.class), Mockito.anyList(), 
+				Mockito.anyMap(), Mockito.anyString())).thenThrow(new OCCIException(ErrorType.UNAUTHORIZED, ""));
+		managerController.setComputePlugin(computePlugin);
+		
+		// the member answers that it can not fulfill the order
+		AsyncPacketSender packetSender = Mockito.mock(AsyncPacketSender.class);
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				IQ response = IQ.createResultIQ((IQ) invocation.getArguments()[0]);
+				response.setError(Condition.item_not_found);
+				((PacketCallback) invocation.getArguments()[1]).handle(response);
+				return null;
+			}
+		}).when(packetSender).addPacketCallback(Mockito.any(Packet.class), Mockito.any(PacketCallback.class));
+		managerController.setPacketSender(packetSender);
+		
+		ResourcesInfo remoteResourcesInfo = new ResourcesInfo("", "", "", "", "", "");
+		remoteResourcesInfo.setId(DefaultDataTestHelper.REMOTE_MANAGER_COMPONENT_URL);
+		FederationMember remoteMember = new FederationMember(remoteResourcesInfo);
+		managerController.updateMembers(Arrays.asList(remoteMember));
+		FederationMemberPickerPlugin memberPicker = Mockito.mock(FederationMemberPickerPlugin.class);
+		Mockito.when(memberPicker.pick(Mockito.anyList())).thenReturn(remoteMember);
+		managerController.setMemberPickerPlugin(memberPicker);
+		
+		Order order = new Order("id1", managerTestHelper.getDefaultFederationToken(), new ArrayList<Category>(),
+				new HashMap<String, String>(), true, DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL);
+		order.setState(OrderState.OPEN);
+		managerController.getManagerDataStoreController().addOrder(order);
+		
+		managerController.checkAndSubmitOpenOrders();
+		Assert.assertEquals(OrderState.OPEN, managerController.getManagerDataStoreController()
+				.getOrder("id1").getState());
+		
+		// the order is not forwarded to the same member until the backoff is over
+		managerController.checkAndSubmitOpenOrders();
+		
+		@SuppressWarnings("rawtypes")
+		ArgumentCaptor<List> pickedFrom = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(memberPicker, VerificationModeFactory.times(2)).pick(pickedFrom.capture());
+		Assert.assertEquals(1, pickedFrom.getAllValues().get(0).size());
+		Assert.assertEquals(0, pickedFrom.getAllValues().get(1).size());
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGetInstanceLogsInAgainWhenCachedLocalTokenIsRejected() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.LOCAL_TOKEN_CACHE_ENABLED_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		Token rejectedToken = new Token("rejectedAccessId", new Token.User("user", "user"), null,
+				new HashMap<String, String>());
+		Token newToken = new Token("newAccessId", new Token.User("user", "user"), null,
+				new HashMap<String, String>());
+		IdentityPlugin identityPlugin = Mockito.mock(IdentityPlugin.class);
+		Mockito.when(identityPlugin.createToken(Mockito.anyMap())).thenReturn(rejectedToken, newToken);
+		managerController.setLocalIdentityPlugin(identityPlugin);
+		
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getInstance(rejectedToken, "instanceId")).thenThrow(
+				new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED));
+		Mockito.when(computePlugin.getInstance(newToken, "instanceId")).thenReturn(new Instance("instanceId"));
+		managerController.setComputePlugin(computePlugin);
+		
+		Instance instance = managerController.getInstanceForRemoteMember("instanceId");
+		
+		Assert.assertNotNull(instance);
+		Assert.assertEquals("instanceId", instance.getId());
+		Mockito.verify(identityPlugin, VerificationModeFactory.times(2)).createToken(Mockito.anyMap());
+		Mockito.verify(identityPlugin, Mockito.never()).reIssueToken(Mockito.any(Token.class));
+		Mockito.verify(computePlugin, VerificationModeFactory.times(2)).getInstance(Mockito.any(Token.class),
+				Mockito.eq("instanceId"));
+	}
+	
+	@Test
+	public void testOrderSchedulingEventsIgnoredWhenPolling() {
+		ManagerController managerController = managerTestHelper.createDefaultManagerController();
+		managerController.setForTest(false);
+		
+		managerController.orderSchedulingEvent();
+		
+		Mockito.verify(managerTestHelper.getExecutorService(), Mockito.never()).schedule(
+				Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.any(TimeUnit.class));
+	}
+	
+	@Test
+	public void testBatchedMonitoringListsInstancesOncePerToken() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.INSTANCE_MONITORING_BATCHED_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getInstances(Mockito.any(Token.class))).thenReturn(
+				Arrays.asList(createInstance("instanceId1", InstanceState.RUNNING),
+						createInstance("instanceId2", InstanceState.RUNNING)));
+		managerController.setComputePlugin(computePlugin);
+		
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id1", token, "instanceId1"));
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id2", token, "instanceId2"));
+		
+		managerController.monitorInstancesForLocalOrders();
+		
+		Mockito.verify(computePlugin, VerificationModeFactory.times(1)).getInstances(Mockito.any(Token.class));
+		Mockito.verify(computePlugin, Mockito.never()).getInstance(Mockito.any(Token.class), Mockito.anyString());
+		for (Order order : managerController.getManagerDataStoreController().getAllOrders()) {
+			Assert.assertEquals(OrderState.FULFILLED, order.getState());
+		}
+	}
+	
+	@Test
+	public void testBatchedMonitoringConfirmsMissingInstance() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.INSTANCE_MONITORING_BATCHED_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getInstances(Mockito.any(Token.class))).thenReturn(
+				Arrays.asList(new Instance("instanceId1")));
+		Mockito.when(computePlugin.getInstance(Mockito.any(Token.class), Mockito.eq("instanceId2"))).thenThrow(
+				new OCCIException(ErrorType.NOT_FOUND, ResponseConstants.NOT_FOUND));
+		managerController.setComputePlugin(computePlugin);
+		
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id1", token, "instanceId1"));
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id2", token, "instanceId2"));
+		
+		managerController.monitorInstancesForLocalOrders();
+		
+		Mockito.verify(computePlugin, VerificationModeFactory.times(1)).getInstance(
+				Mockito.any(Token.class), Mockito.eq("instanceId2"));
+		Assert.assertEquals(OrderState.FULFILLED, 
+				managerController.getManagerDataStoreController().getOrder("id1").getState());
+		Assert.assertEquals(OrderState.CLOSED, 
+				managerController.getManagerDataStoreController().getOrder("id2").getState());
+	}
+	
+	@Test
+	public void testBatchedMonitoringRemovesFailedLocalInstances() {
+		Map<String, String> extraProperties = new HashMap<String, String>();
+		extraProperties.put(ConfigurationConstants.INSTANCE_MONITORING_BATCHED_KEY, "true");
+		ManagerController managerController = managerTestHelper.createDefaultManagerController(extraProperties);
+		
+		// listed with its state, and listed by id only, as the Nova plugin does
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getInstances(Mockito.any(Token.class))).thenReturn(
+				Arrays.asList(createInstance("instanceId1", InstanceState.FAILED), new Instance("instanceId2")));
+		Mockito.when(computePlugin.getInstance(Mockito.any(Token.class), Mockito.eq("instanceId2"))).thenReturn(
+				createInstance("instanceId2", InstanceState.FAILED));
+		managerController.setComputePlugin(computePlugin);
+		
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id1", token, "instanceId1"));
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id2", token, "instanceId2"));
+		
+		managerController.monitorInstancesForLocalOrders();
+		
+		Mockito.verify(computePlugin, Mockito.never()).getInstance(Mockito.any(Token.class), Mockito.eq("instanceId1"));
+		Mockito.verify(computePlugin).removeInstance(Mockito.any(Token.class), Mockito.eq("instanceId1"));
+		Mockito.verify(computePlugin).removeInstance(Mockito.any(Token.class), Mockito.eq("instanceId2"));
+		Assert.assertEquals(OrderState.CLOSED, 
+				managerController.getManagerDataStoreController().getOrder("id1").getState());
+		Assert.assertEquals(OrderState.CLOSED, 
+				managerController.getManagerDataStoreController().getOrder("id2").getState());
+	}
+	
+	@Test
+	public void testGetInstancesFullInfoCancelsRemoteRequestsWhenLocalInstanceFails() {
+		AsyncPacketSender packetSender = Mockito.mock(AsyncPacketSender.class);
+		managerController.setPacketSender(packetSender);
+		ComputePlugin computePlugin = Mockito.mock(ComputePlugin.class);
+		Mockito.when(computePlugin.getInstance(Mockito.any(Token.class), Mockito.eq("instanceId1"))).thenThrow(
+				new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX));
+		managerController.setComputePlugin(computePlugin);
+		
+		// the local order is read first, the remote request is still unanswered when it fails
+		Token token = managerTestHelper.getDefaultFederationToken();
+		managerController.getManagerDataStoreController().addOrder(createFulfilledOrder("id1", token, "instanceId1"));
+		Order remoteOrder = createFulfilledOrder("id2", token, "instanceId2");
+		remoteOrder.setProvidingMemberId(DefaultDataTestHelper.REMOTE_MANAGER_COMPONENT_URL);
+		managerController.getManagerDataStoreController().addOrder(remoteOrder);
+		
+		try {
+			managerController.getInstancesFullInfo(DefaultDataTestHelper.FED_ACCESS_TOKEN_ID);
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.BAD_REQUEST, e.getType());
+		}
+		
+		ArgumentCaptor<Packet> request = ArgumentCaptor.forClass(Packet.class);
+		Mockito.verify(packetSender).addPacketCallback(request.capture(), Mockito.any(PacketCallback.class));
+		Mockito.verify(packetSender).removePacketCallback(request.getValue());
+	}
+	
+	private Instance createInstance(String instanceId, InstanceState state) {
+		return new Instance(instanceId, new LinkedList<Resource>(), new HashMap<String, String>(),
+				new LinkedList<Link>(), state);
+	}
+	
+	private Order createFulfilledOrder(String orderId, Token token, String instanceId) {
+		Order order = new Order(orderId, token, new ArrayList<Category>(), 
+				new HashMap<String, String>(xOCCIAtt), true, "");
+		order.setInstanceId(instanceId);
+		order.setProvidingMemberId(DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL);
+		order.setState(OrderState.FULFILLED);
+		return order;
+	}
+	
+	private Order createOpenOrder(String orderId, Token token, String batchId) {
+		HashMap<String, String> attributes = new HashMap<String, String>(xOCCIAtt);
+		attributes.put(OrderAttribute.BATCH_ID.getValue(), batchId);
+		Order order = new Order(orderId, token, new ArrayList<Category>(), attributes, true, "");
+		order.setState(OrderState.OPEN);
+		return order;
+	}
+	
 }
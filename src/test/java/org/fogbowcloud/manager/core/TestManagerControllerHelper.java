@@ -1,11 +1,15 @@
 package org.fogbowcloud.manager.core;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Properties;
 
+import org.fogbowcloud.manager.core.ManagerControllerHelper.ForwardingBackoff;
 import org.fogbowcloud.manager.core.ManagerControllerHelper.MonitoringHelper;
 import org.fogbowcloud.manager.core.ManagerControllerHelper.MonitoringHelper.OrderAttempt;
 import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.FederationMember;
+import org.fogbowcloud.manager.core.model.ResourcesInfo;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.junit.Assert;
 import org.junit.Before;
@@ -126,4 +130,39 @@ public class TestManagerControllerHelper {
 		Assert.assertEquals(2, monitoringHelper.getOrderFailedAttempts().keySet().size());
 	}
 	
+	@Test
+	public void testForwardingBackoffDoublesUntilSuccess() {
+		long now = System.currentTimeMillis();
+		DateUtils dateUtilsMock = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtilsMock.currentTimeMillis()).thenReturn(now);
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.SCHEDULER_FORWARD_BACKOFF_KEY, "1000");
+		ForwardingBackoff forwardingBackoff = new ManagerControllerHelper().new ForwardingBackoff(properties);
+		forwardingBackoff.setDateUtils(dateUtilsMock);
+		ResourcesInfo resourcesInfo = new ResourcesInfo("", "", "", "", "", "");
+		resourcesInfo.setId("member");
+		FederationMember member = new FederationMember(resourcesInfo);
+		
+		Assert.assertEquals(Long.MAX_VALUE, forwardingBackoff.getNextRetryTime());
+		forwardingBackoff.addFailedForward("member");
+		Assert.assertTrue(forwardingBackoff.isBackingOff("member"));
+		Assert.assertTrue(forwardingBackoff.filterMembers(Arrays.asList(member)).isEmpty());
+		Assert.assertEquals(now + 1000, forwardingBackoff.getNextRetryTime());
+		
+		forwardingBackoff.addFailedForward("member");
+		Assert.assertEquals(now + 2000, forwardingBackoff.getNextRetryTime());
+		
+		Mockito.when(dateUtilsMock.currentTimeMillis()).thenReturn(now + 2001);
+		Assert.assertFalse(forwardingBackoff.isBackingOff("member"));
+		Assert.assertEquals(1, forwardingBackoff.filterMembers(Arrays.asList(member)).size());
+		
+		for (int i = 0; i < 30; i++) {
+			forwardingBackoff.addFailedForward("member");
+		}
+		Assert.assertEquals(now + 2001 + ForwardingBackoff.MAXIMUM_BACKOFF, forwardingBackoff.getNextRetryTime());
+		
+		forwardingBackoff.eraseFailedForwards("member");
+		Assert.assertFalse(forwardingBackoff.isBackingOff("member"));
+	}
+	
 }
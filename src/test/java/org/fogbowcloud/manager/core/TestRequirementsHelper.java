@@ -1,9 +1,11 @@
 package org.fogbowcloud.manager.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.fogbowcloud.manager.core.RequirementsHelper.ValueAndOperator;
+import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.model.Flavor;
 import org.junit.Assert;
 import org.junit.Test;
@@ -440,6 +442,74 @@ public class TestRequirementsHelper {
 		Assert.assertEquals(RequirementsHelper.ZERO, RequirementsHelper.getSmallestValueForAttribute(requirementsStr, RequirementsHelper.GLUE_VCPU_TERM));
 	}	
 	
+	@Test
+	public void testCompileReusesParsedRequirements() {
+		String requirementsStr = RequirementsHelper.GLUE_VCPU_TERM + " >= 2";
+		
+		CompiledRequirements compiledRequirements = RequirementsHelper.compile(requirementsStr);
+		
+		Assert.assertSame(compiledRequirements, RequirementsHelper.compile(new String(requirementsStr)));
+		Assert.assertSame(RequirementsHelper.compile(null), RequirementsHelper.compile(""));
+	}
+	
+	@Test
+	public void testFilterFlavors() {
+		List<Flavor> flavors = new ArrayList<Flavor>();
+		flavors.add(new Flavor("One", "1", "1", "100", "10"));
+		flavors.add(new Flavor("Two", "2", "2", "200", "20"));
+		flavors.add(new Flavor("Three", "3", "4", "400", "40"));
+		String requirementsStr = RequirementsHelper.GLUE_VCPU_TERM + " >= 2 && "
+				+ RequirementsHelper.GLUE_MEM_RAM_TERM + " <= 300";
+		
+		List<Flavor> matchingFlavors = RequirementsHelper.compile(requirementsStr).filterFlavors(flavors);
+		
+		Assert.assertEquals(1, matchingFlavors.size());
+		Assert.assertEquals("Two", matchingFlavors.get(0).getName());
+		for (Flavor flavor : flavors) {
+			Assert.assertEquals(RequirementsHelper.matches(flavor, requirementsStr), 
+					matchingFlavors.contains(flavor));
+		}
+	}
+	
+	@Test
+	public void testFlavorComparatorSortsUnparseableFlavorsLast() {
+		Flavor small = new Flavor("small", "1", "512", "10");
+		Flavor large = new Flavor("large", "4", "4096", "40");
+		Flavor withoutCpu = new Flavor("withoutCpu", "many", "1024", "20");
+		Flavor withoutMem = new Flavor("withoutMem", "2", null, "20");
+		List<Flavor> flavors = new ArrayList<Flavor>();
+		flavors.add(withoutCpu);
+		flavors.add(large);
+		flavors.add(withoutMem);
+		flavors.add(small);
+		RequirementsHelper.FlavorComparator comparator = new RequirementsHelper.FlavorComparator();
+		
+		Collections.sort(flavors, comparator);
+		
+		Assert.assertEquals("small", flavors.get(0).getName());
+		Assert.assertEquals("large", flavors.get(1).getName());
+		Assert.assertTrue(comparator.compare(withoutCpu, small) > 0);
+		Assert.assertTrue(comparator.compare(small, withoutCpu) < 0);
+		Assert.assertEquals(0, comparator.compare(withoutCpu, withoutMem));
+	}
+	
+	@Test
+	public void testFilterMembers() {
+		List<FederationMember> members = new ArrayList<FederationMember>();
+		members.add(new FederationMember("member1"));
+		members.add(new FederationMember("member2"));
+		members.add(new FederationMember("member3"));
+		String requirementsStr = RequirementsHelper.GLUE_LOCATION_TERM + "==\"member1\" || "
+				+ RequirementsHelper.GLUE_LOCATION_TERM + "==\"member3\"";
+		
+		List<FederationMember> allowedMembers = RequirementsHelper.compile(requirementsStr).filterMembers(members);
+		
+		Assert.assertEquals(2, allowedMembers.size());
+		Assert.assertEquals("member1", allowedMembers.get(0).getId());
+		Assert.assertEquals("member3", allowedMembers.get(1).getId());
+		Assert.assertEquals(3, RequirementsHelper.compile(null).filterMembers(members).size());
+	}
+	
 	private Op toOp(String requirementsStr) {
 		ClassAdParser classAdParser = new ClassAdParser(requirementsStr);
 		return (Op) classAdParser.parse();
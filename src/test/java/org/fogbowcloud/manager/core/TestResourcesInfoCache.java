@@ -0,0 +1,124 @@
+package org.fogbowcloud.manager.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.ResourcesInfo;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestResourcesInfoCache {
+
+	private static final long NOW = 1000000;
+
+	private ResourcesInfoCache.Loader loader;
+	private DateUtils dateUtils;
+	private List<Runnable> refreshes;
+	private ResourcesInfoCache resourcesInfoCache;
+	private Map<String, String> credentials;
+
+	@Before
+	public void setUp() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.RESOURCES_INFO_CACHE_TTL_KEY, "1000");
+		properties.put(ConfigurationConstants.RESOURCES_INFO_CACHE_MAX_STALENESS_KEY, "10000");
+		this.loader = Mockito.mock(ResourcesInfoCache.Loader.class);
+		this.dateUtils = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW);
+		this.refreshes = new ArrayList<Runnable>();
+		this.resourcesInfoCache = new ResourcesInfoCache(loader, properties, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				refreshes.add(command);
+			}
+		});
+		this.resourcesInfoCache.setDateUtils(dateUtils);
+		this.credentials = new HashMap<String, String>();
+		this.credentials.put("username", "user");
+	}
+
+	@Test
+	public void testSnapshotIsReusedWithinTtl() {
+		Mockito.when(loader.load(credentials)).thenReturn(createResourcesInfo("10"));
+
+		Assert.assertEquals("10", resourcesInfoCache.get(credentials).getCpuIdle());
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 999);
+		Assert.assertEquals("10", resourcesInfoCache.get(new HashMap<String, String>(credentials)).getCpuIdle());
+
+		Mockito.verify(loader, Mockito.times(1)).load(credentials);
+		Assert.assertEquals(1, resourcesInfoCache.getHits());
+	}
+
+	@Test
+	public void testStaleSnapshotIsReturnedWhileRefreshing() {
+		Mockito.when(loader.load(credentials)).thenReturn(createResourcesInfo("10"), createResourcesInfo("20"));
+
+		resourcesInfoCache.get(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 1000);
+		Assert.assertEquals("10", resourcesInfoCache.get(credentials).getCpuIdle());
+		Assert.assertEquals("10", resourcesInfoCache.get(credentials).getCpuIdle());
+		Assert.assertEquals(1, refreshes.size());
+		Mockito.verify(loader, Mockito.times(1)).load(credentials);
+
+		refreshes.get(0).run();
+		Assert.assertEquals("20", resourcesInfoCache.get(credentials).getCpuIdle());
+		Assert.assertEquals(2, resourcesInfoCache.getStaleHits());
+	}
+
+	@Test
+	public void testTooStaleSnapshotIsLoadedRightAway() {
+		Mockito.when(loader.load(credentials)).thenReturn(createResourcesInfo("10"), createResourcesInfo("20"));
+
+		resourcesInfoCache.get(credentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 10000);
+		Assert.assertEquals("20", resourcesInfoCache.get(credentials).getCpuIdle());
+
+		Assert.assertTrue(refreshes.isEmpty());
+		Mockito.verify(loader, Mockito.times(2)).load(credentials);
+	}
+
+	@Test
+	public void testNullSnapshotIsNotCached() {
+		Mockito.when(loader.load(credentials)).thenReturn(null, createResourcesInfo("10"));
+
+		Assert.assertNull(resourcesInfoCache.get(credentials));
+		Assert.assertEquals("10", resourcesInfoCache.get(credentials).getCpuIdle());
+	}
+
+	@Test
+	public void testSnapshotIsNotChangedByCallers() {
+		Mockito.when(loader.load(credentials)).thenReturn(createResourcesInfo("10"));
+
+		resourcesInfoCache.get(credentials).addResource(createResourcesInfo("10"));
+		Assert.assertEquals("10", resourcesInfoCache.get(credentials).getCpuIdle());
+	}
+
+	@Test
+	public void testSnapshotsNotUsedWithinMaxStalenessAreEvicted() {
+		Map<String, String> otherCredentials = new HashMap<String, String>();
+		otherCredentials.put("username", "otherUser");
+		Mockito.when(loader.load(Mockito.anyMapOf(String.class, String.class))).thenReturn(
+				createResourcesInfo("10"));
+
+		resourcesInfoCache.get(credentials);
+		resourcesInfoCache.get(otherCredentials);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 5000);
+		resourcesInfoCache.get(credentials);
+		Assert.assertEquals(2, resourcesInfoCache.size());
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 10000);
+		resourcesInfoCache.get(credentials);
+		Assert.assertEquals(1, resourcesInfoCache.size());
+	}
+
+	private ResourcesInfo createResourcesInfo(String cpuIdle) {
+		return new ResourcesInfo(cpuIdle, "0", "0", "0", "0", "0");
+	}
+}
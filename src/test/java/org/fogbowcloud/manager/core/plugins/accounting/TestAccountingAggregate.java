@@ -0,0 +1,82 @@
+package org.fogbowcloud.manager.core.plugins.accounting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAccountingAggregate {
+
+	private static final double ACCEPTABLE_ERROR = 0.0;
+
+	@Test
+	public void testEmptyAggregate() {
+		AccountingAggregate accountingAggregate = new AccountingAggregate(null);
+
+		Assert.assertEquals(0, accountingAggregate.getUsage("local", "remote"), ACCEPTABLE_ERROR);
+		Assert.assertEquals(0, accountingAggregate.getTotalUsage(), ACCEPTABLE_ERROR);
+		Assert.assertTrue(accountingAggregate.getMembersUsage("local").isEmpty());
+		Assert.assertTrue(accountingAggregate.getAccountingInfo().isEmpty());
+		Assert.assertNull(accountingAggregate.getAccountingInfo("user", "local", "remote"));
+	}
+
+	@Test
+	public void testUsageIsSummedByMembers() {
+		List<AccountingInfo> accounting = new ArrayList<AccountingInfo>();
+		accounting.add(createAccountingInfo("user1", "local", "remote1", 10));
+		accounting.add(createAccountingInfo("user2", "local", "remote1", 5));
+		accounting.add(createAccountingInfo("user3", "remote1", "local", 3));
+		accounting.add(createAccountingInfo("user4", "remote2", "local", 7));
+		accounting.add(createAccountingInfo("user5", "remote2", "remote1", 1));
+		AccountingAggregate accountingAggregate = new AccountingAggregate(accounting);
+
+		Assert.assertEquals(15, accountingAggregate.getUsage("local", "remote1"), ACCEPTABLE_ERROR);
+		Assert.assertEquals(3, accountingAggregate.getUsage("remote1", "local"), ACCEPTABLE_ERROR);
+		Assert.assertEquals(10, accountingAggregate.getTotalProvidedBy("local"), ACCEPTABLE_ERROR);
+		Assert.assertEquals(26, accountingAggregate.getTotalUsage(), ACCEPTABLE_ERROR);
+
+		Map<String, ResourceUsage> membersUsage = accountingAggregate.getMembersUsage("local");
+		Assert.assertEquals(2, membersUsage.size());
+		Assert.assertEquals(15, membersUsage.get("remote1").getConsumed(), ACCEPTABLE_ERROR);
+		Assert.assertEquals(3, membersUsage.get("remote1").getDonated(), ACCEPTABLE_ERROR);
+		Assert.assertEquals(0, membersUsage.get("remote2").getConsumed(), ACCEPTABLE_ERROR);
+		Assert.assertEquals(7, membersUsage.get("remote2").getDonated(), ACCEPTABLE_ERROR);
+	}
+
+	@Test
+	public void testAddAccumulatesEntries() {
+		AccountingAggregate accountingAggregate = new AccountingAggregate();
+		accountingAggregate.add(createAccountingInfo("user", "local", "remote", 2));
+		accountingAggregate.add(createAccountingInfo("user", "local", "remote", 3));
+
+		Assert.assertEquals(1, accountingAggregate.getAccountingInfo().size());
+		Assert.assertEquals(5, accountingAggregate.getAccountingInfo("user", "local", "remote").getUsage(),
+				ACCEPTABLE_ERROR);
+		Assert.assertEquals(5, accountingAggregate.getUsage("local", "remote"), ACCEPTABLE_ERROR);
+	}
+
+	@Test
+	public void testOnlyChangedEntriesAreWritten() {
+		AccountingAggregate accountingAggregate = new AccountingAggregate();
+		accountingAggregate.add(createAccountingInfo("user1", "local", "remote", 2));
+
+		List<AccountingInfo> accounting = new ArrayList<AccountingInfo>();
+		accounting.add(createAccountingInfo("user1", "local", "remote", 0));
+		accounting.add(createAccountingInfo("user2", "local", "remote", 0));
+		accounting.add(createAccountingInfo("user3", "local", "remote", 1));
+		List<AccountingInfo> changedEntries = accountingAggregate.getChangedEntries(accounting);
+
+		Assert.assertEquals(2, changedEntries.size());
+		Assert.assertEquals("user2", changedEntries.get(0).getUser());
+		Assert.assertEquals("user3", changedEntries.get(1).getUser());
+	}
+
+	private AccountingInfo createAccountingInfo(String user, String requestingMember,
+			String providingMember, double usage) {
+		AccountingInfo accountingInfo = new AccountingInfo(user, requestingMember, providingMember);
+		accountingInfo.addConsumption(usage);
+		return accountingInfo;
+	}
+}
@@ -1,7 +1,7 @@
 package org.fogbowcloud.manager.core.plugins.accounting;
 
-import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -38,10 +38,7 @@ public class TestAccountingDataStore {
 
 	@After
 	public void tearDown() throws IOException {
-		File dbFile = new File(DATASTORE_PATH);
-		if (dbFile.exists()) {
-			dbFile.delete();
-		}
+		TestDataStorageHelper.removeDataStore(DATASTORE_PATH);
 	}
 	
 	@Test
@@ -484,4 +481,117 @@ public class TestAccountingDataStore {
 			Assert.assertTrue(dataStoreURL.endsWith(sufixExpected));			
 		}
 	}
+
+	@Test
+	public void testGetAccountingInfoByRange() {
+		long day = 10 * AccountingDataStore.DAY_BUCKET;
+
+		List<AccountingInfo> usage = new ArrayList<AccountingInfo>();
+		AccountingInfo accountingInfo = new AccountingInfo("user", "requestingMember", "providingMember");
+		accountingInfo.addConsumption(10);
+		usage.add(accountingInfo);
+
+		Assert.assertTrue(db.update(usage, day + 5 * AccountingDataStore.MINUTE_BUCKET));
+		Assert.assertTrue(db.update(usage, day + 3 * AccountingDataStore.HOUR_BUCKET));
+		Assert.assertTrue(db.update(usage, day + AccountingDataStore.DAY_BUCKET + 1000));
+
+		Assert.assertEquals(30, db.getAccountingInfo().get(0).getUsage(), ACCEPTABLE_ERROR);
+		Assert.assertEquals(30, getUsage(db.getAccountingInfo(day, day + 2 * AccountingDataStore.DAY_BUCKET)),
+				ACCEPTABLE_ERROR);
+		Assert.assertEquals(20, getUsage(db.getAccountingInfo(day, day + AccountingDataStore.DAY_BUCKET)),
+				ACCEPTABLE_ERROR);
+		Assert.assertEquals(10, getUsage(db.getAccountingInfo(day + 6 * AccountingDataStore.MINUTE_BUCKET,
+				day + 4 * AccountingDataStore.HOUR_BUCKET)), ACCEPTABLE_ERROR);
+		Assert.assertEquals(20, getUsage(db.getAccountingInfo(day + 2 * AccountingDataStore.HOUR_BUCKET,
+				day + AccountingDataStore.DAY_BUCKET + 2 * AccountingDataStore.MINUTE_BUCKET)), ACCEPTABLE_ERROR);
+		Assert.assertTrue(db.getAccountingInfo(day + 4 * AccountingDataStore.HOUR_BUCKET,
+				day + 5 * AccountingDataStore.HOUR_BUCKET).isEmpty());
+	}
+
+	@Test
+	public void testGetAccountingInfoByRangeGroupsEntries() {
+		long time = 10 * AccountingDataStore.DAY_BUCKET;
+
+		List<AccountingInfo> usage = new ArrayList<AccountingInfo>();
+		for (int i = 0; i < 3; i++) {
+			AccountingInfo accountingInfo = new AccountingInfo("user" + i, "requestingMember", "providingMember");
+			accountingInfo.addConsumption(i + 1);
+			usage.add(accountingInfo);
+		}
+		Assert.assertTrue(db.update(usage, time));
+		Assert.assertTrue(db.update(usage, time + AccountingDataStore.MINUTE_BUCKET));
+
+		List<AccountingInfo> accounting = db.getAccountingInfo(time, time + AccountingDataStore.HOUR_BUCKET);
+		Assert.assertEquals(3, accounting.size());
+		for (int i = 0; i < 3; i++) {
+			AccountingInfo expectedAccountingInfo = new AccountingInfo("user" + i, "requestingMember",
+					"providingMember");
+			expectedAccountingInfo.addConsumption(2 * (i + 1));
+			Assert.assertTrue(accounting.contains(expectedAccountingInfo));
+		}
+	}
+
+	@Test
+	public void testOldMinuteBucketsAreRemoved() throws SQLException {
+		long time = 10 * AccountingDataStore.DAY_BUCKET;
+
+		List<AccountingInfo> usage = new ArrayList<AccountingInfo>();
+		AccountingInfo accountingInfo = new AccountingInfo("user", "requestingMember", "providingMember");
+		accountingInfo.addConsumption(10);
+		usage.add(accountingInfo);
+
+		Assert.assertTrue(db.update(usage, time));
+		Assert.assertTrue(db.update(usage, time + AccountingDataStore.MINUTE_BUCKETS_RETENTION
+				+ AccountingDataStore.MINUTE_BUCKET));
+
+		Connection conn = db.getConnection();
+		try {
+			ResultSet rs = conn.createStatement().executeQuery("SELECT COUNT(*) FROM "
+					+ AccountingDataStore.HISTORY_TABLE_NAME + " WHERE " + AccountingDataStore.BUCKET_SIZE_COL
+					+ " = " + AccountingDataStore.MINUTE_BUCKET);
+			Assert.assertEquals(1, rs.getInt(1));
+		} finally {
+			conn.close();
+		}
+		Assert.assertEquals(20, getUsage(db.getAccountingInfo(time, time + AccountingDataStore.MINUTE_BUCKETS_RETENTION
+				+ 2 * AccountingDataStore.MINUTE_BUCKET)), ACCEPTABLE_ERROR);
+	}
+
+	@Test
+	public void testGetAccountingInfoByRangeWithEdgesPastRetention() {
+		long time = 10 * AccountingDataStore.DAY_BUCKET;
+
+		List<AccountingInfo> usage = new ArrayList<AccountingInfo>();
+		AccountingInfo accountingInfo = new AccountingInfo("user", "requestingMember", "providingMember");
+		accountingInfo.addConsumption(10);
+		usage.add(accountingInfo);
+		Assert.assertTrue(db.update(usage, time + 3 * AccountingDataStore.HOUR_BUCKET + 30
+				* AccountingDataStore.MINUTE_BUCKET));
+
+		long rangeStart = time + 3 * AccountingDataStore.HOUR_BUCKET + 20 * AccountingDataStore.MINUTE_BUCKET;
+		long rangeEnd = time + 3 * AccountingDataStore.HOUR_BUCKET + 40 * AccountingDataStore.MINUTE_BUCKET;
+		Assert.assertEquals(10, getUsage(db.getAccountingInfo(rangeStart, rangeEnd)), ACCEPTABLE_ERROR);
+
+		// only the hour bucket is left
+		Assert.assertTrue(db.update(new ArrayList<AccountingInfo>(), time + 3 * AccountingDataStore.DAY_BUCKET));
+		Assert.assertEquals(10, getUsage(db.getAccountingInfo(rangeStart, rangeEnd)), ACCEPTABLE_ERROR);
+		Assert.assertTrue(db.getAccountingInfo(time + 4 * AccountingDataStore.HOUR_BUCKET,
+				time + 5 * AccountingDataStore.HOUR_BUCKET).isEmpty());
+
+		// only the day bucket is left
+		Assert.assertTrue(db.update(new ArrayList<AccountingInfo>(), time + 100 * AccountingDataStore.DAY_BUCKET));
+		Assert.assertEquals(10, getUsage(db.getAccountingInfo(rangeStart, rangeEnd)), ACCEPTABLE_ERROR);
+		Assert.assertEquals(10, getUsage(db.getAccountingInfo(time + 4 * AccountingDataStore.HOUR_BUCKET,
+				time + 5 * AccountingDataStore.HOUR_BUCKET)), ACCEPTABLE_ERROR);
+		Assert.assertTrue(db.getAccountingInfo(time + AccountingDataStore.DAY_BUCKET,
+				time + 2 * AccountingDataStore.DAY_BUCKET).isEmpty());
+	}
+
+	private double getUsage(List<AccountingInfo> accounting) {
+		double usage = 0;
+		for (AccountingInfo accountingInfo : accounting) {
+			usage += accountingInfo.getUsage();
+		}
+		return usage;
+	}
 }
@@ -1,6 +1,5 @@
 package org.fogbowcloud.manager.core.plugins.accounting;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -12,6 +11,7 @@ import org.fogbowcloud.manager.core.model.DateUtils;
 import org.fogbowcloud.manager.core.plugins.BenchmarkingPlugin;
 import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
 import org.fogbowcloud.manager.core.plugins.accounting.FCUAccountingPlugin;
+import org.fogbowcloud.manager.occi.TestDataStorageHelper;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderState;
@@ -41,10 +41,7 @@ public class TestFCUAccountingPlugin {
 
 	@After
 	public void tearDown() throws IOException {
-		File dbFile = new File(FAKE_DB_PATH);
-		if (dbFile.exists()) {
-			dbFile.delete();
-		}
+		TestDataStorageHelper.removeDataStore(FAKE_DB_PATH);
 	}
 
 	@Test
@@ -94,6 +91,12 @@ public class TestFCUAccountingPlugin {
 		Assert.assertEquals("remoteMemberId", accountingInfo.get(0).getProvidingMember());
 		Assert.assertEquals("userId", accountingInfo.get(0).getUser());
 		Assert.assertEquals(usage, accountingInfo.get(0).getUsage(), ACCEPTABLE_ERROR);
+		
+		AccountingAggregate accountingAggregate = accountingPlugin.getAccountingAggregate();
+		Assert.assertEquals(usage, accountingAggregate.getUsage("localMemberId", "remoteMemberId"),
+				ACCEPTABLE_ERROR);
+		Assert.assertEquals(usage, accountingAggregate.getMembersUsage("localMemberId")
+				.get("remoteMemberId").getConsumed(), ACCEPTABLE_ERROR);
 	}
 
 	@Test
@@ -1,6 +1,5 @@
 package org.fogbowcloud.manager.core.plugins.accounting;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -9,6 +8,7 @@ import java.util.Properties;
 
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.occi.TestDataStorageHelper;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderAttribute;
@@ -37,10 +37,7 @@ public class TestSimpleStorageAccountingPlugin {
 
 	@After
 	public void tearDown() throws IOException {
-		File dbFile = new File(FAKE_DB_PATH);
-		if (dbFile.exists()) {
-			dbFile.delete();
-		}
+		TestDataStorageHelper.removeDataStore(FAKE_DB_PATH);
 	}
 
 	@Test
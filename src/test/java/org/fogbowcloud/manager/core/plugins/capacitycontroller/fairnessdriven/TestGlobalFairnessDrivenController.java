@@ -2,7 +2,6 @@ package org.fogbowcloud.manager.core.plugins.capacitycontroller.fairnessdriven;
 
 import static org.junit.Assert.*;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
@@ -14,6 +13,7 @@ import org.fogbowcloud.manager.core.model.FederationMember;
 import org.fogbowcloud.manager.core.plugins.BenchmarkingPlugin;
 import org.fogbowcloud.manager.core.plugins.accounting.FCUAccountingPlugin;
 import org.fogbowcloud.manager.core.plugins.capacitycontroller.fairnessdriven.GlobalFairnessDrivenController;
+import org.fogbowcloud.manager.occi.TestDataStorageHelper;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderState;
@@ -72,10 +72,7 @@ public class TestGlobalFairnessDrivenController {
 	
 	@After
 	public void tearDown() throws IOException {
-		File dbFile = new File(FAKE_DB_PATH);
-		if (dbFile.exists()) {
-			dbFile.delete();
-		}
+		TestDataStorageHelper.removeDataStore(FAKE_DB_PATH);
 	}
 	
 	@Test
@@ -324,8 +324,10 @@ public class TestNovaV2ComputeOpenStack {
 		Assert.assertEquals(2, novaV2ComputeOpenStack.getFlavors().size());
 		
 		// Adding Flavors that does not exists in the cloud
-		novaV2ComputeOpenStack.getFlavors().add(new Flavor("C", "", "", "", 0));
-		novaV2ComputeOpenStack.getFlavors().add(new Flavor("D", "", "", "", 0));
+		flavors = new ArrayList<Flavor>(novaV2ComputeOpenStack.getFlavors());
+		flavors.add(new Flavor("C", "", "", "", 0));
+		flavors.add(new Flavor("D", "", "", "", 0));
+		novaV2ComputeOpenStack.setFlavors(flavors);
 		
 		Assert.assertEquals(4, novaV2ComputeOpenStack.getFlavors().size());
 		
@@ -335,6 +337,38 @@ public class TestNovaV2ComputeOpenStack {
 		Assert.assertEquals(2, novaV2ComputeOpenStack.getFlavors().size());
 	}
 	
+	@Test
+	public void testFlavorsAreSortedAndUnmodifiable() {
+		List<Flavor> flavors = new ArrayList<Flavor>();
+		flavors.add(new Flavor("big", "4", "4000", "40"));
+		flavors.add(new Flavor("small", "1", "1000", "10"));
+		flavors.add(new Flavor("medium", "2", "2000", "20"));
+		novaV2ComputeOpenStack.setFlavors(flavors);
+		
+		List<Flavor> snapshot = novaV2ComputeOpenStack.getFlavors();
+		Assert.assertEquals("small", snapshot.get(0).getName());
+		Assert.assertEquals("medium", snapshot.get(1).getName());
+		Assert.assertEquals("big", snapshot.get(2).getName());
+		try {
+			snapshot.add(new Flavor("other", "1", "1", "1"));
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testGetFlavorDoesNotRequestTheCloud() throws Exception {
+		HttpClient client = Mockito.mock(HttpClient.class);
+		novaV2ComputeOpenStack.setClient(client);
+		
+		String requirements = RequirementsHelper.GLUE_MEM_RAM_TERM + " >= 1500";
+		Flavor flavor = novaV2ComputeOpenStack.getFlavor(defaultToken, requirements);
+		
+		Assert.assertEquals("medium", flavor.getName());
+		Mockito.verify(client, Mockito.never()).execute(Mockito.any(HttpUriRequest.class));
+	}
+	
 	public void tesGettInstanceState() {
 		Assert.assertEquals(InstanceState.RUNNING, 
 				novaV2ComputeOpenStack.getInstance(defaultToken, "active").getState());
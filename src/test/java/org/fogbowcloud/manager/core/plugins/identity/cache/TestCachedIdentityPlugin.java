@@ -0,0 +1,159 @@
+package org.fogbowcloud.manager.core.plugins.identity.cache;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Properties;
+
+import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.fogbowcloud.manager.occi.model.ResponseConstants;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestCachedIdentityPlugin {
+
+	private static final String ACCESS_ID = "accessId";
+	private static final long NOW = 1000000;
+
+	private IdentityPlugin identityPlugin;
+	private DateUtils dateUtils;
+	private CachedIdentityPlugin cachedIdentityPlugin;
+
+	@Before
+	public void setUp() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.IDENTITY_CACHE_MAX_SIZE_KEY, "2");
+		properties.put(ConfigurationConstants.IDENTITY_CACHE_TTL_KEY, "60000");
+		properties.put(ConfigurationConstants.IDENTITY_CACHE_NEGATIVE_TTL_KEY, "10000");
+		this.identityPlugin = Mockito.mock(IdentityPlugin.class);
+		this.dateUtils = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW);
+		this.cachedIdentityPlugin = new CachedIdentityPlugin(identityPlugin, properties);
+		this.cachedIdentityPlugin.setDateUtils(dateUtils);
+	}
+
+	@Test
+	public void testGetTokenIsCached() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenReturn(createToken(ACCESS_ID, null));
+
+		Assert.assertEquals(ACCESS_ID, cachedIdentityPlugin.getToken(ACCESS_ID).getAccessId());
+		Assert.assertEquals(ACCESS_ID, cachedIdentityPlugin.getToken(ACCESS_ID).getAccessId());
+		Assert.assertTrue(cachedIdentityPlugin.isValid(ACCESS_ID));
+
+		Mockito.verify(identityPlugin, Mockito.times(1)).getToken(ACCESS_ID);
+		Mockito.verify(identityPlugin, Mockito.never()).isValid(ACCESS_ID);
+		Assert.assertEquals(2, cachedIdentityPlugin.getHits());
+		Assert.assertEquals(1, cachedIdentityPlugin.getMisses());
+	}
+
+	@Test
+	public void testTokenExpiresWithTtl() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenReturn(createToken(ACCESS_ID, null));
+
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 60000);
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).getToken(ACCESS_ID);
+	}
+
+	@Test
+	public void testTokenExpiresWithItsExpirationDate() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenReturn(
+				createToken(ACCESS_ID, new Date(NOW + 1000)));
+
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 1000);
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).getToken(ACCESS_ID);
+	}
+
+	@Test
+	public void testExpiredTokenIsNotCached() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenReturn(
+				createToken(ACCESS_ID, new Date(NOW - 1)));
+
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+		cachedIdentityPlugin.getToken(ACCESS_ID);
+
+		Mockito.verify(identityPlugin, Mockito.times(2)).getToken(ACCESS_ID);
+	}
+
+	@Test
+	public void testUnauthorizedIsCachedForNegativeTtl() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenThrow(
+				new OCCIException(ErrorType.UNAUTHORIZED, ResponseConstants.UNAUTHORIZED));
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				cachedIdentityPlugin.getToken(ACCESS_ID);
+				Assert.fail();
+			} catch (OCCIException e) {
+				Assert.assertEquals(ErrorType.UNAUTHORIZED, e.getType());
+			}
+		}
+		Assert.assertFalse(cachedIdentityPlugin.isValid(ACCESS_ID));
+		Mockito.verify(identityPlugin, Mockito.times(1)).getToken(ACCESS_ID);
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(NOW + 10000);
+		Mockito.when(identityPlugin.isValid(ACCESS_ID)).thenReturn(true);
+		Assert.assertTrue(cachedIdentityPlugin.isValid(ACCESS_ID));
+	}
+
+	@Test
+	public void testOtherErrorsAreNotCached() {
+		Mockito.when(identityPlugin.getToken(ACCESS_ID)).thenThrow(
+				new OCCIException(ErrorType.BAD_REQUEST, ResponseConstants.IRREGULAR_SYNTAX));
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				cachedIdentityPlugin.getToken(ACCESS_ID);
+				Assert.fail();
+			} catch (OCCIException e) {
+				Assert.assertEquals(ErrorType.BAD_REQUEST, e.getType());
+			}
+		}
+		Mockito.verify(identityPlugin, Mockito.times(2)).getToken(ACCESS_ID);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		Mockito.when(identityPlugin.isValid(Mockito.anyString())).thenReturn(true);
+
+		cachedIdentityPlugin.isValid("one");
+		cachedIdentityPlugin.isValid("two");
+		cachedIdentityPlugin.isValid("one");
+		cachedIdentityPlugin.isValid("three");
+
+		Assert.assertEquals(2, cachedIdentityPlugin.size());
+		Assert.assertEquals(1, cachedIdentityPlugin.getEvictions());
+		cachedIdentityPlugin.isValid("one");
+		cachedIdentityPlugin.isValid("two");
+		Mockito.verify(identityPlugin, Mockito.times(1)).isValid("one");
+		Mockito.verify(identityPlugin, Mockito.times(2)).isValid("two");
+	}
+
+	@Test
+	public void testCreateTokenFillsCache() {
+		Mockito.when(identityPlugin.createToken(Mockito.anyMapOf(String.class, String.class))).thenReturn(
+				createToken(ACCESS_ID, null));
+
+		cachedIdentityPlugin.createToken(new HashMap<String, String>());
+		Assert.assertEquals(ACCESS_ID, cachedIdentityPlugin.getToken(ACCESS_ID).getAccessId());
+
+		Mockito.verify(identityPlugin, Mockito.never()).getToken(ACCESS_ID);
+		Assert.assertEquals(1.0, cachedIdentityPlugin.getHitRate(), 0);
+	}
+
+	private Token createToken(String accessId, Date expirationDate) {
+		return new Token(accessId, new Token.User("user", "user"), expirationDate,
+				new HashMap<String, String>());
+	}
+}
@@ -0,0 +1,125 @@
+package org.fogbowcloud.manager.core.plugins.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compares reading the ids of a large listing of servers with
+ * {@link JSONObject} and with {@link JsonStreamReader}. It is not run with the
+ * tests, run its main with the number of servers and iterations, e.g.
+ * "5000 200". The allocation is measured when the JVM supports it (HotSpot).
+ */
+public class JsonStreamReaderBenchmark {
+
+	private static final int WARM_UP_ITERATIONS = 50;
+
+	public static void main(String[] args) throws Exception {
+		int servers = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		String json = createServersListing(servers).toString();
+		System.out.println("Listing of " + servers + " servers, " + json.length() + " chars.");
+
+		Parser jsonObjectParser = new Parser() {
+			@Override
+			public int parse(String json) throws Exception {
+				JSONArray array = new JSONObject(json).getJSONArray("servers");
+				int ids = 0;
+				for (int i = 0; i < array.length(); i++) {
+					ids += array.getJSONObject(i).getString("id").length();
+				}
+				return ids;
+			}
+		};
+		Parser streamParser = new Parser() {
+			@Override
+			public int parse(String json) throws Exception {
+				List<Map<String, String>> objects = new JsonStreamReader(json).readObjects(
+						new String[] { "servers" }, "id");
+				int ids = 0;
+				for (Map<String, String> object : objects) {
+					ids += object.get("id").length();
+				}
+				return ids;
+			}
+		};
+
+		run("JSONObject", jsonObjectParser, json, iterations);
+		run("JsonStreamReader", streamParser, json, iterations);
+	}
+
+	private static void run(String name, Parser parser, String json, int iterations) throws Exception {
+		int blackhole = 0;
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+			blackhole += parser.parse(json);
+		}
+		long allocatedBefore = getAllocatedBytes();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			blackhole += parser.parse(json);
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = getAllocatedBytes() - allocatedBefore;
+
+		System.out.println(String.format("%s: %.3f ms/op, %s/op (%d)", name, elapsed / 1e6 / iterations,
+				allocatedBefore < 0 ? "allocation not available" : (allocated / iterations / 1024) + " KB",
+				blackhole));
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a listing like the servers/detail of Nova, with the fields
+	 *         usually returned for each server
+	 */
+	protected static JSONObject createServersListing(int servers) throws JSONException {
+		JSONArray array = new JSONArray();
+		for (int i = 0; i < servers; i++) {
+			JSONObject server = new JSONObject();
+			server.put("id", "3d6f1b2c-" + i);
+			server.put("name", "fogbow-instance-" + i);
+			server.put("status", "ACTIVE");
+			server.put("tenant_id", "4a5b6c7d8e9f");
+			server.put("user_id", "1a2b3c4d5e6f");
+			server.put("created", "2016-01-01T00:00:00Z");
+			server.put("updated", "2016-01-01T00:01:00Z");
+			server.put("hostId", "e2a8b0b56c06f5c1a2d3f4e5a6b7c8d9e0f1a2b3c4d5e6f7a8b9c0d1");
+			server.put("key_name", "fogbow_keypair_" + i);
+			server.put("OS-EXT-STS:power_state", 1);
+			server.put("progress", 0);
+			server.put("flavor", new JSONObject().put("id", "2").put("links", createLinks("flavors/2")));
+			server.put("image", new JSONObject().put("id", "image-" + (i % 10))
+					.put("links", createLinks("images/image-" + (i % 10))));
+			JSONObject addresses = new JSONObject();
+			addresses.put("private", new JSONArray().put(new JSONObject().put("addr", "10.0." + (i / 256) + "."
+					+ (i % 256)).put("version", 4).put("OS-EXT-IPS:type", "fixed")));
+			server.put("addresses", addresses);
+			server.put("metadata", new JSONObject().put("fogbow", "true"));
+			server.put("links", createLinks("servers/3d6f1b2c-" + i));
+			array.put(server);
+		}
+		return new JSONObject().put("servers", array);
+	}
+
+	private static JSONArray createLinks(String path) throws JSONException {
+		return new JSONArray().put(new JSONObject().put("rel", "self").put("href",
+				"http://localhost:8774/v2/4a5b6c7d8e9f/" + path)).put(new JSONObject().put("rel", "bookmark")
+				.put("href", "http://localhost:8774/4a5b6c7d8e9f/" + path));
+	}
+
+	private interface Parser {
+		int parse(String json) throws Exception;
+	}
+}
@@ -0,0 +1,96 @@
+package org.fogbowcloud.manager.core.plugins.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.fogbowcloud.manager.core.model.DateUtils;
+import org.fogbowcloud.manager.core.model.Flavor;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestFlavorCatalog {
+
+	private static final long REFRESH_INTERVAL = 1000;
+
+	private FlavorCatalog.Loader loader;
+	private List<Runnable> refreshes;
+	private DateUtils dateUtils;
+	private FlavorCatalog flavorCatalog;
+	private Token token;
+
+	@Before
+	public void setUp() {
+		loader = Mockito.mock(FlavorCatalog.Loader.class);
+		refreshes = new ArrayList<Runnable>();
+		dateUtils = Mockito.mock(DateUtils.class);
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(0L);
+		token = new Token("accessId", new Token.User("user", "user"), null, null);
+
+		flavorCatalog = new FlavorCatalog(loader, REFRESH_INTERVAL, new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				refreshes.add(command);
+			}
+		});
+		flavorCatalog.setDateUtils(dateUtils);
+	}
+
+	@Test
+	public void testLoadFlavorsWhenEmpty() throws Exception {
+		Mockito.when(loader.load(Mockito.eq(token), Mockito.anyListOf(Flavor.class))).thenReturn(createFlavors());
+
+		Flavor flavor = flavorCatalog.findSmallestFlavor(token, null);
+
+		Assert.assertEquals("small", flavor.getName());
+		Assert.assertEquals(2, flavorCatalog.getFlavors().size());
+		Assert.assertTrue(refreshes.isEmpty());
+	}
+
+	@Test
+	public void testRefreshInBackgroundWhenOld() throws Exception {
+		flavorCatalog.setFlavors(createFlavors());
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(REFRESH_INTERVAL - 1);
+		flavorCatalog.findSmallestFlavor(token, null);
+		Assert.assertTrue(refreshes.isEmpty());
+
+		Mockito.when(dateUtils.currentTimeMillis()).thenReturn(REFRESH_INTERVAL);
+		Flavor flavor = flavorCatalog.findSmallestFlavor(token, null);
+		flavorCatalog.findSmallestFlavor(token, null);
+
+		// the old flavors are used while a single refresh is scheduled
+		Assert.assertEquals("small", flavor.getName());
+		Assert.assertEquals(1, refreshes.size());
+		Mockito.verify(loader, Mockito.never()).load(Mockito.any(Token.class),
+				Mockito.anyListOf(Flavor.class));
+
+		List<Flavor> newFlavors = new ArrayList<Flavor>();
+		newFlavors.add(new Flavor("tiny", "1", "512", "5"));
+		Mockito.when(loader.load(Mockito.eq(token), Mockito.anyListOf(Flavor.class))).thenReturn(newFlavors);
+		refreshes.get(0).run();
+
+		Assert.assertEquals("tiny", flavorCatalog.findSmallestFlavor(token, null).getName());
+	}
+
+	@Test
+	public void testKeepFlavorsWhenUpdateFails() throws Exception {
+		flavorCatalog.setFlavors(createFlavors());
+		Mockito.when(loader.load(Mockito.eq(token), Mockito.anyListOf(Flavor.class))).thenThrow(
+				new RuntimeException());
+
+		flavorCatalog.update(token);
+
+		Assert.assertEquals(2, flavorCatalog.getFlavors().size());
+	}
+
+	private List<Flavor> createFlavors() {
+		List<Flavor> flavors = new ArrayList<Flavor>();
+		flavors.add(new Flavor("medium", "2", "2000", "20"));
+		flavors.add(new Flavor("small", "1", "1000", "10"));
+		return flavors;
+	}
+}
@@ -0,0 +1,85 @@
+package org.fogbowcloud.manager.core.plugins.util;
+
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestJsonStreamReader {
+
+	@Test
+	public void testReadObjectsKeepsOnlyTheFields() throws Exception {
+		JSONObject root = JsonStreamReaderBenchmark.createServersListing(10);
+
+		List<Map<String, String>> servers = new JsonStreamReader(root.toString()).readObjects(
+				new String[] { "servers" }, "id", "name");
+
+		JSONArray expectedServers = root.getJSONArray("servers");
+		Assert.assertEquals(expectedServers.length(), servers.size());
+		for (int i = 0; i < servers.size(); i++) {
+			Assert.assertEquals(2, servers.get(i).size());
+			Assert.assertEquals(expectedServers.getJSONObject(i).getString("id"), servers.get(i).get("id"));
+			Assert.assertEquals(expectedServers.getJSONObject(i).getString("name"), servers.get(i).get("name"));
+		}
+	}
+
+	@Test
+	public void testReadNestedFields() throws Exception {
+		String json = "{\"ports\": [{\"network_id\": \"net\", \"fixed_ips\": [{\"ip_address\": \"10.0.0.1\"}, "
+				+ "{\"subnet_id\": \"subnet\"}], \"binding\": {\"host\": \"node\", \"vnic\": [1, 2]}}]}";
+
+		List<Map<String, String>> ports = new JsonStreamReader(json).readObjects(new String[] { "ports" },
+				"network_id", "fixed_ips.subnet_id", "binding.host");
+
+		Assert.assertEquals(1, ports.size());
+		Assert.assertEquals("net", ports.get(0).get("network_id"));
+		Assert.assertEquals("subnet", ports.get(0).get("fixed_ips.subnet_id"));
+		Assert.assertEquals("node", ports.get(0).get("binding.host"));
+	}
+
+	@Test
+	public void testReadValues() throws Exception {
+		String json = "{\"a\": {\"list\": [{\"string\": \"quote \\\" \\u00e9 \\n\", \"int\": 512, "
+				+ "\"double\": -1.5e3, \"boolean\": false, \"null\": null}]}}";
+
+		List<Map<String, String>> objects = new JsonStreamReader(json).readObjects(new String[] { "a", "list" },
+				"string", "int", "double", "boolean", "null");
+
+		Map<String, String> object = objects.get(0);
+		Assert.assertEquals("quote \" \u00e9 \n", object.get("string"));
+		Assert.assertEquals("512", object.get("int"));
+		Assert.assertEquals("-1.5e3", object.get("double"));
+		Assert.assertEquals("false", object.get("boolean"));
+		Assert.assertTrue(object.containsKey("null"));
+		Assert.assertNull(object.get("null"));
+	}
+
+	@Test
+	public void testMissingArray() throws Exception {
+		String json = "{\"response\": {\"count\": 0}}";
+
+		Assert.assertNull(new JsonStreamReader(json).optObjects(new String[] { "response", "list" }, "id"));
+		Assert.assertNull(new JsonStreamReader(json).optObjects(new String[] { "other", "list" }, "id"));
+		try {
+			new JsonStreamReader(json).readObjects(new String[] { "response", "list" }, "id");
+			Assert.fail();
+		} catch (JSONException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = JSONException.class)
+	public void testMalformedJson() throws Exception {
+		new JsonStreamReader("{\"servers\": [{\"id\" \"1\"}]}").readObjects(new String[] { "servers" }, "id");
+	}
+
+	@Test(expected = JSONException.class)
+	public void testTruncatedJson() throws Exception {
+		new JsonStreamReader("{\"servers\": [{\"id\": \"1\"}, {\"id\": ").readObjects(
+				new String[] { "servers" }, "id");
+	}
+}
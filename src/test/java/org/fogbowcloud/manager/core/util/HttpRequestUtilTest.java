@@ -8,6 +8,7 @@ import org.apache.http.client.config.RequestConfig;
 import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.fogbowcloud.manager.core.ConfigurationConstants;
 import org.junit.After;
 import org.junit.Assert;
@@ -147,6 +148,38 @@ public class HttpRequestUtilTest {
         Mockito.verify(requestBuilder).setSocketTimeout(Mockito.eq(HttpRequestUtil.DEFAULT_TIMEOUT_REQUEST));        
 	}
 	
+	@Test
+	public void testCreateHttpClientWithSharedConnectionManager() {
+		HttpRequestUtil.setTimeoutHttpRequest(null);
+		
+		HttpClientBuilder httpClientBuilder = Mockito.mock(HttpClientBuilder.class);
+        PowerMockito.mockStatic(HttpClientBuilder.class);
+        BDDMockito.given(HttpClientBuilder.create()).willReturn(httpClientBuilder);
+        
+        HttpRequestUtil.createHttpClient();
+        HttpRequestUtil.createHttpClient(10000, null, null);
+        
+        Mockito.verify(httpClientBuilder, Mockito.times(2)).setConnectionManager(
+        		Mockito.eq(HttpRequestUtil.getConnectionManager()));
+        Mockito.verify(httpClientBuilder, Mockito.times(2)).setConnectionManagerShared(true);
+	}
+	
+	@Test
+	public void testInitializeConnectionPool() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_KEY, "50");
+		properties.put(ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE_KEY, "5");
+		HttpRequestUtil.init(properties);
+		
+		Assert.assertEquals(50, HttpRequestUtil.getPoolStats().getMax());
+		Assert.assertEquals(5, HttpRequestUtil.getConnectionManager().getDefaultMaxPerRoute());
+		Assert.assertEquals(0, HttpRequestUtil.getLeasedConnections());
+		Assert.assertEquals(0, HttpRequestUtil.getPendingConnections());
+		
+		HttpRequestUtil.init(null);
+		Assert.assertEquals(HttpRequestUtil.DEFAULT_MAX_CONNECTIONS, HttpRequestUtil.getPoolStats().getMax());
+	}
+	
 	@Test
 	public void testSetSSLConnection() {
 		HttpClientBuilder httpClientBuilder = Mockito.mock(HttpClientBuilder.class);
@@ -157,6 +190,26 @@ public class HttpRequestUtilTest {
 		Mockito.verify(httpClientBuilder).setSSLSocketFactory(Mockito.eq(sslsf));
 	}
 	
+	@Test
+	public void testCreateSSLConnectionManager() {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_KEY, "50");
+		properties.put(ConfigurationConstants.HTTP_CLIENT_MAX_CONNECTIONS_PER_ROUTE_KEY, "5");
+		HttpRequestUtil.init(properties);
+		int sslConnectionManagers = HttpRequestUtil.getSSLConnectionManagersCount();
+		
+		SSLConnectionSocketFactory sslsf = Mockito.mock(SSLConnectionSocketFactory.class);
+		PoolingHttpClientConnectionManager sslConnectionManager = HttpRequestUtil.createSSLConnectionManager(sslsf);
+		
+		Assert.assertNotSame(HttpRequestUtil.getConnectionManager(), sslConnectionManager);
+		Assert.assertEquals(50, sslConnectionManager.getMaxTotal());
+		Assert.assertEquals(5, sslConnectionManager.getDefaultMaxPerRoute());
+		Assert.assertEquals(sslConnectionManagers + 1, HttpRequestUtil.getSSLConnectionManagersCount());
+		HttpRequestUtil.evictIdleConnections();
+		
+		HttpRequestUtil.init(null);
+	}
+	
 	@Test
 	public void testSetConnectionManager() {
 		HttpClientBuilder httpClientBuilder = Mockito.mock(HttpClientBuilder.class);
@@ -0,0 +1,39 @@
+package org.fogbowcloud.manager.core.util;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPropertiesUtil {
+
+	private static final String KEY = "some_period";
+
+	@Test
+	public void testGetLong() {
+		Properties properties = new Properties();
+		properties.put(KEY, " 3000 ");
+
+		Assert.assertEquals(3000, PropertiesUtil.getLong(properties, KEY, 10));
+		Assert.assertEquals(3000, PropertiesUtil.getInt(properties, KEY, 10));
+	}
+
+	@Test
+	public void testMissingValueUsesDefault() {
+		Properties properties = new Properties();
+		properties.put(KEY, " ");
+
+		Assert.assertEquals(10, PropertiesUtil.getLong(properties, KEY, 10));
+		Assert.assertEquals(10, PropertiesUtil.getInt(properties, "other_key", 10));
+		Assert.assertEquals(10, PropertiesUtil.getLong(null, KEY, 10));
+	}
+
+	@Test
+	public void testInvalidValueUsesDefault() {
+		Properties properties = new Properties();
+		properties.put(KEY, "3s");
+
+		Assert.assertEquals(10, PropertiesUtil.getLong(properties, KEY, 10));
+		Assert.assertEquals(10, PropertiesUtil.getInt(properties, KEY, 10));
+	}
+}
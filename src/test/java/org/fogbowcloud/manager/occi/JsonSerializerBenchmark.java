@@ -0,0 +1,121 @@
+package org.fogbowcloud.manager.occi;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fogbowcloud.manager.core.plugins.accounting.AccountingInfo;
+import org.fogbowcloud.manager.occi.instance.Instance;
+import org.fogbowcloud.manager.occi.instance.Instance.Link;
+import org.fogbowcloud.manager.occi.instance.InstanceState;
+import org.fogbowcloud.manager.occi.model.Resource;
+import org.fogbowcloud.manager.occi.order.OrderConstants;
+import org.restlet.representation.Representation;
+
+/**
+ * Compares the bytes and the CPU time per request of the text/plain instance
+ * details with their application/json representation, and of the accounting
+ * JSON built with org.json with the one written by {@link JsonSerializer}. It
+ * is not run with the tests, run its main with the number of entries per
+ * response and of requests, e.g. "100 2000".
+ */
+public class JsonSerializerBenchmark {
+
+	private static final int WARM_UP_REQUESTS = 200;
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+		final List<Instance> instances = new ArrayList<Instance>();
+		final List<AccountingInfo> accountingInfo = new ArrayList<AccountingInfo>();
+		for (int i = 0; i < size; i++) {
+			instances.add(createInstance("instance-" + i));
+			AccountingInfo entry = new AccountingInfo("user-" + i % 10, "member-" + i % 3, "member-" + i % 5);
+			entry.addConsumption(i * 1.5);
+			accountingInfo.add(entry);
+		}
+
+		run("instances, text/plain", new Response() {
+			@Override
+			public byte[] generate() throws Exception {
+				StringBuilder details = new StringBuilder();
+				for (Instance instance : instances) {
+					details.append(instance.toOCCIMessageFormatDetails()).append("\n");
+				}
+				return details.toString().getBytes("UTF-8");
+			}
+		}, requests);
+		run("instances, application/json", new Response() {
+			@Override
+			public byte[] generate() throws Exception {
+				return write(JsonSerializer.instances(instances));
+			}
+		}, requests);
+		run("accounting, org.json", new Response() {
+			@Override
+			public byte[] generate() throws Exception {
+				return JSONHelper.mountAccountingInfoJSON(accountingInfo).toString().getBytes("UTF-8");
+			}
+		}, requests);
+		run("accounting, stream", new Response() {
+			@Override
+			public byte[] generate() throws Exception {
+				return write(JsonSerializer.accounting(accountingInfo));
+			}
+		}, requests);
+	}
+
+	private static Instance createInstance(String id) {
+		List<Resource> resources = new ArrayList<Resource>();
+		resources.add(new Resource(OrderConstants.COMPUTE_TERM, OrderConstants.INFRASTRUCTURE_OCCI_SCHEME,
+				OrderConstants.KIND_CLASS, Arrays.asList("occi.compute.cores", "occi.compute.memory"),
+				Arrays.asList("start", "stop"), "/compute/", "Compute Resource", ""));
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("occi.core.id", id);
+		attributes.put("occi.compute.cores", "2");
+		attributes.put("occi.compute.memory", "4.0");
+		attributes.put("occi.compute.state", InstanceState.RUNNING.getOcciState());
+		attributes.put("occi.compute.hostname", "host-" + id);
+		attributes.put(Instance.SSH_PUBLIC_ADDRESS_ATT, "10.0.0.1:22");
+		Map<String, String> linkAttributes = new HashMap<String, String>();
+		linkAttributes.put("rel", "http://schemas.ogf.org/occi/infrastructure#network");
+		linkAttributes.put("occi.networkinterface.address", "192.168.0.10");
+		List<Link> links = new ArrayList<Link>();
+		links.add(new Link("</network/private>", linkAttributes));
+		return new Instance(id, resources, attributes, links, InstanceState.RUNNING);
+	}
+
+	private static byte[] write(Representation representation) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		representation.write(output);
+		return output.toByteArray();
+	}
+
+	private static void run(String name, Response response, int requests) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long bytes = 0;
+		for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+			bytes += response.generate().length;
+		}
+		bytes = 0;
+		long startCpu = threads.getCurrentThreadCpuTime();
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			bytes += response.generate().length;
+		}
+		long elapsed = System.nanoTime() - start;
+		long cpu = threads.getCurrentThreadCpuTime() - startCpu;
+		System.out.println(String.format("%s: %d bytes, %.3f ms cpu, %.3f ms/request", name, bytes / requests,
+				cpu / 1e6 / requests, elapsed / 1e6 / requests));
+	}
+
+	private interface Response {
+		byte[] generate() throws Exception;
+	}
+}
@@ -0,0 +1,138 @@
+package org.fogbowcloud.manager.occi;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.occi.model.Category;
+import org.fogbowcloud.manager.occi.model.Token;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
+import org.fogbowcloud.manager.occi.order.OrderConstants;
+import org.fogbowcloud.manager.occi.order.OrderState;
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Compares the {@link ManagerDataStore} with pooled connections to the same
+ * data store opening a new connection on every call, as it did before the
+ * pool, for addOrder, updateOrder and getOrders run by concurrent threads. The
+ * order index is off, so getOrders reads SQLite instead of the memory. It is
+ * not run with the tests, run its main with the number of orders, of updates
+ * and listings, and of threads, e.g. "500 2000 4".
+ */
+public class ManagerDataStoreBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int orders = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int calls = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			benchmark("pooled", createDataStore(false), orders, calls, executor);
+			benchmark("per call", createDataStore(true), orders, calls, executor);
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	private static ManagerDataStore createDataStore(boolean connectionPerCall) throws Exception {
+		File file = File.createTempFile("manager-datastore-benchmark", ".sqlite");
+		file.deleteOnExit();
+		new File(file.getPath() + "-wal").deleteOnExit();
+		new File(file.getPath() + "-shm").deleteOnExit();
+		final String dataStoreURL = "jdbc:sqlite:" + file.getAbsolutePath();
+
+		Properties properties = new Properties();
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_URL, dataStoreURL);
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_ORDER_INDEX, "false");
+		if (!connectionPerCall) {
+			return new ManagerDataStore(properties);
+		}
+		return new ManagerDataStore(properties) {
+			@Override
+			public Connection getConnection() throws SQLException {
+				SQLiteConfig config = new SQLiteConfig();
+				config.enforceForeignKeys(true);
+				config.setBusyTimeout("30000");
+				return DriverManager.getConnection(dataStoreURL, config.toProperties());
+			}
+		};
+	}
+
+	private static void benchmark(String name, final ManagerDataStore dataStore, final int orders, int calls,
+			ExecutorService executor) throws Exception {
+		final Token token = new Token("accessId", new Token.User("user", "user"), new Date(),
+				new HashMap<String, String>());
+		final List<Category> categories = new ArrayList<Category>();
+		categories.add(new Category(OrderConstants.TERM, OrderConstants.SCHEME, OrderConstants.KIND_CLASS));
+		final Map<String, String> xOCCIAtt = new HashMap<String, String>();
+		xOCCIAtt.put(OrderAttribute.RESOURCE_KIND.getValue(), OrderConstants.COMPUTE_TERM);
+
+		run(name + ", addOrder", new Call() {
+			@Override
+			public void execute(int i) throws Exception {
+				dataStore.addOrder(createOrder(i, OrderState.OPEN, token, categories, xOCCIAtt));
+			}
+		}, orders, executor);
+		run(name + ", updateOrder", new Call() {
+			@Override
+			public void execute(int i) throws Exception {
+				OrderState state = i % 2 == 0 ? OrderState.PENDING : OrderState.OPEN;
+				dataStore.updateOrder(createOrder(i % orders, state, token, categories, xOCCIAtt));
+			}
+		}, calls, executor);
+		run(name + ", getOrders", new Call() {
+			@Override
+			public void execute(int i) throws Exception {
+				dataStore.getOrders();
+			}
+		}, calls, executor);
+	}
+
+	private static Order createOrder(int i, OrderState state, Token token, List<Category> categories,
+			Map<String, String> xOCCIAtt) {
+		return new Order("order-" + i, token, "instance-" + i, "providingMember", "requestingMember",
+				new Date().getTime(), true, state, new ArrayList<Category>(categories),
+				new HashMap<String, String>(xOCCIAtt));
+	}
+
+	private static void run(String name, final Call call, int calls, ExecutorService executor)
+			throws Exception {
+		long start = System.nanoTime();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < calls; i++) {
+			final int index = i;
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					call.execute(index);
+					return null;
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.println(String.format("%s: %.3f ms/call, %.0f calls/s", name, elapsed / 1e6 / calls,
+				calls / (elapsed / 1e9)));
+	}
+
+	private interface Call {
+		void execute(int i) throws Exception;
+	}
+}
@@ -9,6 +9,9 @@ import org.junit.Test;
 
 public class TestDataStorageHelper {
 	
+	private static final String WAL_FILE_SUFFIX = "-wal";
+	private static final String SHM_FILE_SUFFIX = "-shm";
+	
 	@Before
 	public void setUp() {
 		removeDefaultFolderDataStore();
@@ -27,7 +30,19 @@ public class TestDataStorageHelper {
 		managerDataStore.removeAllValuesInAllTable();
 	}
 	
+	/**
+	 * Removes a database file with its WAL files, after closing the pooled
+	 * connections to it.
+	 */
+	public static void removeDataStore(String path) {
+		DataStoreConnectionPool.resetPools();
+		new File(path).delete();
+		new File(path + WAL_FILE_SUFFIX).delete();
+		new File(path + SHM_FILE_SUFFIX).delete();
+	}
+	
 	public static void removeDefaultFolderDataStore() {
+		DataStoreConnectionPool.resetPools();
 		String pathFolderDataStores = DataStoreHelper.getPathFolderDataStoresFogbowManager();
 		File folder = new File(pathFolderDataStores);
 		File[] listFiles = folder.listFiles();
@@ -0,0 +1,158 @@
+package org.fogbowcloud.manager.occi;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDataStoreConnectionPool {
+
+	private static final String DATASTORE_PATH = "src/test/resources/testDataStoreConnectionPool.sqlite";
+	private static final String DATASTORE_URL = "jdbc:sqlite:" + DATASTORE_PATH;
+	private static final String SELECT_SQL = "SELECT value FROM t_test WHERE id = ?";
+
+	private DataStoreConnectionPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		Class.forName("org.sqlite.JDBC");
+		this.pool = new DataStoreConnectionPool(DATASTORE_URL, 2, 100);
+		Connection connection = pool.getConnection();
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE IF NOT EXISTS t_test (id VARCHAR(255) PRIMARY KEY, value VARCHAR(255))");
+		statement.close();
+		connection.close();
+	}
+
+	@After
+	public void tearDown() {
+		pool.reset();
+		TestDataStorageHelper.removeDataStore(DATASTORE_PATH);
+	}
+
+	@Test
+	public void testConnectionIsReused() throws SQLException {
+		Connection connection = pool.getConnection();
+		connection.close();
+		Assert.assertTrue(connection.isClosed());
+
+		connection = pool.getConnection();
+		Assert.assertEquals(1, pool.getActiveConnections());
+		connection.close();
+
+		Assert.assertEquals(1, pool.getOpenConnections());
+		Assert.assertEquals(1, pool.getIdleConnections());
+		Assert.assertEquals(0, pool.getActiveConnections());
+		Assert.assertEquals(3, pool.getBorrowCount());
+	}
+
+	@Test
+	public void testWalJournalMode() throws SQLException {
+		Connection connection = pool.getConnection();
+		Statement statement = connection.createStatement();
+		ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode");
+		Assert.assertTrue(resultSet.next());
+		Assert.assertEquals("wal", resultSet.getString(1).toLowerCase());
+		statement.close();
+		connection.close();
+	}
+
+	@Test
+	public void testPreparedStatementIsReused() throws SQLException {
+		insert("id1", "value1");
+
+		Assert.assertEquals("value1", select("id1"));
+		long misses = pool.getStatementCacheMisses();
+		Assert.assertEquals("value1", select("id1"));
+		Assert.assertNull(select("id2"));
+
+		Assert.assertEquals(misses, pool.getStatementCacheMisses());
+		Assert.assertTrue(pool.getStatementCacheHits() >= 2);
+	}
+
+	@Test
+	public void testUncommittedTransactionIsRolledBack() throws SQLException {
+		Connection connection = pool.getConnection();
+		connection.setAutoCommit(false);
+		PreparedStatement statement = connection.prepareStatement("INSERT INTO t_test VALUES (?, ?)");
+		statement.setString(1, "id1");
+		statement.setString(2, "value1");
+		statement.executeUpdate();
+		statement.close();
+		connection.close();
+
+		Assert.assertNull(select("id1"));
+		connection = pool.getConnection();
+		Assert.assertTrue(connection.getAutoCommit());
+		connection.close();
+	}
+
+	@Test
+	public void testBorrowTimesOutWhenPoolIsExhausted() throws SQLException {
+		Connection connectionOne = pool.getConnection();
+		Connection connectionTwo = pool.getConnection();
+		try {
+			pool.getConnection();
+			Assert.fail();
+		} catch (SQLException e) {
+			// expected
+		}
+		Assert.assertEquals(1, pool.getWaitCount());
+		Assert.assertEquals(1, pool.getTimeoutCount());
+
+		connectionOne.close();
+		pool.getConnection().close();
+		connectionTwo.close();
+	}
+
+	@Test
+	public void testResetClosesIdleConnections() throws SQLException {
+		Connection borrowed = pool.getConnection();
+		pool.getConnection().close();
+		Assert.assertEquals(2, pool.getOpenConnections());
+
+		pool.reset();
+		Assert.assertEquals(0, pool.getIdleConnections());
+		Assert.assertEquals(0, pool.getActiveConnections());
+
+		borrowed.close();
+		Assert.assertEquals(0, pool.getIdleConnections());
+		Assert.assertEquals(0, pool.getOpenConnections());
+	}
+
+	@Test(expected = SQLException.class)
+	public void testClosedConnectionCannotBeUsed() throws SQLException {
+		Connection connection = pool.getConnection();
+		connection.close();
+		connection.createStatement();
+	}
+
+	private void insert(String id, String value) throws SQLException {
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = connection.prepareStatement("INSERT INTO t_test VALUES (?, ?)");
+		statement.setString(1, id);
+		statement.setString(2, value);
+		statement.executeUpdate();
+		statement.close();
+		connection.close();
+	}
+
+	private String select(String id) throws SQLException {
+		Connection connection = pool.getConnection();
+		PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+		try {
+			statement.setString(1, id);
+			ResultSet resultSet = statement.executeQuery();
+			return resultSet.next() ? resultSet.getString(1) : null;
+		} finally {
+			statement.close();
+			connection.close();
+		}
+	}
+}
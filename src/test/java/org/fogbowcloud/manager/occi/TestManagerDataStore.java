@@ -1,9 +1,11 @@
 package org.fogbowcloud.manager.occi;
 
-import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -11,8 +13,10 @@ import java.util.Map;
 import java.util.Properties;
 
 import org.fogbowcloud.manager.occi.model.Category;
+import org.fogbowcloud.manager.occi.model.ResourceFilter;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
 import org.fogbowcloud.manager.occi.order.OrderState;
 import org.fogbowcloud.manager.occi.storage.StorageLink;
 import org.json.JSONException;
@@ -51,10 +55,7 @@ public class TestManagerDataStore {
 	@After
 	public void tearDown() throws IOException{
 		TestDataStorageHelper.removeDefaultFolderDataStore();
-		File dbFile = new File(DATASTORE_PATH);
-		if (dbFile.exists()) {
-			dbFile.delete();
-		}
+		TestDataStorageHelper.removeDataStore(DATASTORE_PATH);
 	}
 	
 	@Test
@@ -71,6 +72,18 @@ public class TestManagerDataStore {
 		}
 	}		
 	
+	@Test
+	public void testNewDataStoreReusesPooledConnections() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		DataStoreConnectionPool pool = DataStoreConnectionPool.getPool(DATASTORE_URL);
+		int openConnections = pool.getOpenConnections();
+		Assert.assertTrue(pool.getIdleConnections() > 0);
+		
+		ManagerDataStore otherDatabase = new ManagerDataStore(properties);
+		Assert.assertEquals(1, otherDatabase.getOrders().size());
+		Assert.assertEquals(openConnections, pool.getOpenConnections());
+	}
+	
 	@Test
 	public void testAddOrder() throws SQLException, JSONException {
 		database.addOrder(orderOne);
@@ -478,6 +491,213 @@ public class TestManagerDataStore {
 		Assert.assertEquals(0, federationMembersServered.size());
 	}
 	
+	@Test
+	public void testGetOrdersIn() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderTwo);
+		database.addOrder(orderThree);
+		database.addOrder(orderFour);
+		
+		List<Order> orders = database.getOrdersIn(null, OrderState.OPEN, OrderState.DELETED);
+		Assert.assertEquals(3, orders.size());
+		Assert.assertEquals(orderOne.getId(), orders.get(0).getId());
+		Assert.assertEquals(orderTwo.getId(), orders.get(1).getId());
+		Assert.assertEquals(orderFour.getId(), orders.get(2).getId());
+		Assert.assertEquals(0, database.getOrdersIn(null, OrderState.CLOSED).size());
+	}
+	
+	@Test
+	public void testGetOrdersByUserId() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderTwo);
+		
+		Assert.assertEquals(2, database.getOrdersByUserId("user").size());
+		Assert.assertEquals(2, database.getOrdersByUserId("user", true).size());
+		Assert.assertEquals(0, database.getOrdersByUserId("user", false).size());
+		Assert.assertEquals(0, database.getOrdersByUserId("otherUser").size());
+	}
+	
+	@Test
+	public void testGetOrdersByUserIdFiltered() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderTwo);
+		database.addOrder(orderThree);
+		database.addOrder(orderFour);
+		
+		ResourceFilter termFilter = ResourceFilter.parse(Arrays.asList("termTwo; scheme=\"schemTwo\""),
+				new ArrayList<String>());
+		ResourceFilter attributeFilter = ResourceFilter.parse(new ArrayList<String>(),
+				Arrays.asList("occiAttr2.occi=\"occiValue2=\""));
+		ResourceFilter stateFilter = ResourceFilter.parse(new ArrayList<String>(),
+				Arrays.asList(OrderAttribute.STATE.getValue() + "=" + OrderState.FULFILLED.getValue()));
+		ResourceFilter termOrStateFilter = ResourceFilter.parse(Arrays.asList("termTwo; scheme=\"schemTwo\""),
+				Arrays.asList(OrderAttribute.STATE.getValue() + "=" + OrderState.FULFILLED.getValue()));
+		
+		List<Order> orders = database.getOrdersByUserId("user", true, termFilter);
+		Assert.assertEquals(2, orders.size());
+		Assert.assertEquals(orderOne.getId(), orders.get(0).getId());
+		Assert.assertEquals(orderTwo.getId(), orders.get(1).getId());
+		Assert.assertEquals(2, database.getOrdersByUserId("user", true, attributeFilter).size());
+		Assert.assertEquals(orderThree.getId(), database.getOrdersByUserId("user", true, stateFilter)
+				.get(0).getId());
+		Assert.assertEquals(0, database.getOrdersByUserId("otherUser", true, termFilter).size());
+		Assert.assertEquals(0, database.getOrdersByUserId("user", false, termFilter).size());
+		// categories and attributes are combined by union
+		orders = database.getOrdersByUserId("user", true, termOrStateFilter);
+		Assert.assertEquals(3, orders.size());
+		Assert.assertEquals(orderThree.getId(), orders.get(2).getId());
+		
+		orderTwo.setState(OrderState.FULFILLED);
+		database.updateOrder(orderTwo);
+		Assert.assertEquals(2, database.getOrdersByUserId("user", true, stateFilter).size());
+		
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_ORDER_INDEX, "false");
+		ManagerDataStore sqlDatabase = new ManagerDataStore(properties);
+		Assert.assertEquals(database.getOrdersByUserId("user", true, termFilter),
+				sqlDatabase.getOrdersByUserId("user", true, termFilter));
+		Assert.assertEquals(database.getOrdersByUserId("user", true, stateFilter),
+				sqlDatabase.getOrdersByUserId("user", true, stateFilter));
+		Assert.assertEquals(database.getOrdersByUserId("user", true, termOrStateFilter),
+				sqlDatabase.getOrdersByUserId("user", true, termOrStateFilter));
+	}
+	
+	@Test
+	public void testGetOrderByInstanceId() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderThree);
+		database.addOrder(orderFour);
+		
+		Assert.assertEquals(orderThree.getId(), database.getOrderByInstanceId("instanceIdThree", 
+				OrderState.FULFILLED).getId());
+		Assert.assertEquals(orderFour.getId(), database.getOrderByInstanceId("instanceIdThree", 
+				OrderState.DELETED).getId());
+		Assert.assertNull(database.getOrderByInstanceId("instanceIdOne", OrderState.FULFILLED));
+	}
+	
+	@Test
+	public void testUpdateOrderChangesIndexedState() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		Assert.assertEquals(1, database.getOrders(OrderState.OPEN).size());
+		
+		orderOne.setState(OrderState.FULFILLED);
+		database.updateOrder(orderOne);
+		
+		Assert.assertEquals(0, database.getOrders(OrderState.OPEN).size());
+		Assert.assertEquals(1, database.getOrders(OrderState.FULFILLED).size());
+	}
+	
+	@Test
+	public void testOrdersReturnedAreCopies() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		
+		Order order = database.getOrder(orderOne.getId());
+		order.setState(OrderState.CLOSED);
+		
+		Assert.assertEquals(OrderState.OPEN, database.getOrder(orderOne.getId()).getState());
+	}
+	
+	@Test
+	public void testOrderIndexRebuiltAtStartup() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderThree);
+		database.updateOrderAsyncronous(orderOne.getId(), 100, true);
+		
+		ManagerDataStore newDatabase = new ManagerDataStore(properties);
+		
+		List<Order> orders = newDatabase.getOrders();
+		Assert.assertEquals(2, orders.size());
+		Assert.assertEquals(orderOne, orders.get(0));
+		Assert.assertEquals(100, orders.get(0).getSyncronousTime());
+		Assert.assertTrue(orders.get(0).isSyncronousStatus());
+		Assert.assertEquals(orderThree, orders.get(1));
+	}
+	
+	@Test
+	public void testConcurrentUpdatesOfDataStoresWithTheSameURL() throws Exception {
+		database.addOrder(orderOne);
+		final ManagerDataStore otherDatabase = new ManagerDataStore(properties);
+		final Order fulfilledOrder = database.getOrder(orderOne.getId());
+		fulfilledOrder.setState(OrderState.FULFILLED);
+		final Order closedOrder = database.getOrder(orderOne.getId());
+		closedOrder.setState(OrderState.CLOSED);
+		
+		Thread[] threads = new Thread[] { 
+				createUpdatingThread(database, fulfilledOrder), 
+				createUpdatingThread(otherDatabase, closedOrder) };
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(30000);
+		}
+		
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_ORDER_INDEX, "false");
+		ManagerDataStore sqlDatabase = new ManagerDataStore(properties);
+		OrderState storedState = sqlDatabase.getOrder(orderOne.getId()).getState();
+		Assert.assertEquals(storedState, database.getOrder(orderOne.getId()).getState());
+		Assert.assertEquals(storedState, otherDatabase.getOrder(orderOne.getId()).getState());
+	}
+	
+	private Thread createUpdatingThread(final ManagerDataStore dataStore, final Order order) {
+		return new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 50; i++) {
+						dataStore.updateOrder(order);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+	
+	@Test
+	public void testQueriesFilteredInSQLWithoutOrderIndex() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		database.addOrder(orderTwo);
+		database.addOrder(orderThree);
+		database.addOrder(orderFour);
+		
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_ORDER_INDEX, "false");
+		ManagerDataStore sqlDatabase = new ManagerDataStore(properties);
+		
+		Assert.assertEquals(database.getOrders(), sqlDatabase.getOrders());
+		Assert.assertEquals(database.getOrdersIn(null, OrderState.OPEN, OrderState.DELETED), 
+				sqlDatabase.getOrdersIn(null, OrderState.OPEN, OrderState.DELETED));
+		Assert.assertEquals(database.getOrdersByUserId("user"), sqlDatabase.getOrdersByUserId("user"));
+		Assert.assertEquals(0, sqlDatabase.getOrdersByUserId("user", false).size());
+		Assert.assertEquals(database.getOrdersByLocality(true), sqlDatabase.getOrdersByLocality(true));
+		Assert.assertEquals(orderFour.getId(), sqlDatabase.getOrderByInstanceId("instanceIdThree", 
+				OrderState.DELETED).getId());
+		Assert.assertEquals(orderTwo, sqlDatabase.getOrder(orderTwo.getId()));
+		Assert.assertNull(sqlDatabase.getOrder("unknown"));
+	}
+	
+	@Test
+	public void testOrderTableMigration() throws SQLException, JSONException {
+		database.addOrder(orderOne);
+		
+		Connection connection = database.getConnection();
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE t_order_old AS SELECT order_id, instance_id, providing_member_id, "
+				+ "requesting_member_id, federation_token, fulfilled_time, is_local, state, categories, "
+				+ "updated, asyncronous_status, asyncronous_timestamp, xocci_attributes FROM t_order");
+		statement.execute("DROP TABLE t_federation_member_servered");
+		statement.execute("DROP TABLE t_order");
+		statement.execute("ALTER TABLE t_order_old RENAME TO t_order");
+		statement.close();
+		connection.close();
+		
+		properties.put(ManagerDataStore.MANAGER_DATASTORE_ORDER_INDEX, "false");
+		ManagerDataStore migratedDatabase = new ManagerDataStore(properties);
+		
+		List<Order> orders = migratedDatabase.getOrdersByUserId("user", true);
+		Assert.assertEquals(1, orders.size());
+		Assert.assertEquals(orderOne, orders.get(0));
+	}
+	
 	private void initializeStorageLinks() {
 		HashMap<String, String> attributes = new HashMap<String, String>();
 		attributes.put("key", "value");
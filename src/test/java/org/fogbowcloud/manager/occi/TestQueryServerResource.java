@@ -266,4 +266,36 @@ public class TestQueryServerResource {
 		
 		Assert.assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
 	}		
+
+	@Test
+	public void testGetQueryNotModified() throws Exception {
+		HttpClient client = HttpClients.createMinimal();
+		HttpGet get = new HttpGet(OCCITestHelper.URI_FOGBOW_QUERY);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		HttpResponse response = client.execute(get);
+		EntityUtils.consume(response.getEntity());
+		Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+		String eTag = response.getFirstHeader("ETag").getValue();
+
+		get = new HttpGet(OCCITestHelper.URI_FOGBOW_QUERY);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		get.addHeader("If-None-Match", eTag);
+		response = client.execute(get);
+		Assert.assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+		Assert.assertEquals(eTag, response.getFirstHeader("ETag").getValue());
+
+		ResourceRepository.getInstance().addImageResource("new-image");
+
+		get = new HttpGet(OCCITestHelper.URI_FOGBOW_QUERY);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		get.addHeader("If-None-Match", eTag);
+		response = client.execute(get);
+		String responseStr = EntityUtils.toString(response.getEntity());
+		Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+		Assert.assertNotEquals(eTag, response.getFirstHeader("ETag").getValue());
+		Assert.assertTrue(responseStr.contains(ResourceRepository.createImageResource("new-image").toHeader()));
+	}
 }
@@ -0,0 +1,259 @@
+package org.fogbowcloud.manager.occi;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.core.ConfigurationConstants;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSlowResourceExecutor {
+
+	private SlowResourceExecutor executor;
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRunInCallerThreadWhenDisabled() {
+		executor = new SlowResourceExecutor(new Properties());
+		final Thread caller = Thread.currentThread();
+
+		Assert.assertFalse(executor.isEnabled());
+		Assert.assertTrue(executor.execute("member", new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return Thread.currentThread() == caller;
+			}
+		}));
+	}
+
+	@Test
+	public void testRunInWorker() {
+		executor = new SlowResourceExecutor(createProperties(1, 1, 1000));
+		final Thread caller = Thread.currentThread();
+
+		Assert.assertFalse(executor.execute("member", new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				return Thread.currentThread() == caller;
+			}
+		}));
+		Assert.assertEquals(1, executor.getCompletedCalls());
+	}
+
+	@Test
+	public void testThrowExceptionOfCall() {
+		executor = new SlowResourceExecutor(createProperties(1, 1, 1000));
+		try {
+			executor.execute("member", new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new OCCIException(ErrorType.NOT_FOUND, "not found");
+				}
+			});
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.NOT_FOUND, e.getType());
+		}
+	}
+
+	@Test
+	public void testRejectWhenQueueIsFull() throws Exception {
+		executor = new SlowResourceExecutor(createProperties(1, 1, 5000));
+		final CountDownLatch started = new CountDownLatch(1);
+		startBlockedCall("member-1", started);
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		startBlockedCall("member-2", null);
+		waitForQueueDepth(1);
+
+		try {
+			executor.execute("member-3", new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return "done";
+				}
+			});
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.SERVICE_UNAVAILABLE, e.getType());
+		}
+		Assert.assertEquals(1, executor.getRejectedCalls());
+	}
+
+	@Test
+	public void testRejectTooManyCallsOfSameKey() throws Exception {
+		Properties properties = createProperties(2, 2, 5000);
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_MAX_PER_KEY_KEY, "1");
+		executor = new SlowResourceExecutor(properties);
+		final CountDownLatch started = new CountDownLatch(1);
+		startBlockedCall("slow-member", started);
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		try {
+			executor.execute("slow-member", new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return "done";
+				}
+			});
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.SERVICE_UNAVAILABLE, e.getType());
+		}
+		Assert.assertEquals("done", executor.execute("other-member", new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "done";
+			}
+		}));
+	}
+
+	@Test
+	public void testTimeout() {
+		executor = new SlowResourceExecutor(createProperties(1, 1, 100));
+		try {
+			executor.execute("member", new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					release.await();
+					return "done";
+				}
+			});
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.SERVICE_UNAVAILABLE, e.getType());
+		}
+		Assert.assertEquals(1, executor.getTimedOutCalls());
+	}
+
+	@Test
+	public void testKeyIsHeldUntilTimedOutCallFinishes() throws Exception {
+		Properties properties = createProperties(2, 2, 100);
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_MAX_PER_KEY_KEY, "1");
+		executor = new SlowResourceExecutor(properties);
+		final CountDownLatch finished = new CountDownLatch(1);
+		Callable<String> uninterruptibleCall = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				try {
+					while (true) {
+						try {
+							release.await();
+							return "done";
+						} catch (InterruptedException e) {
+							// keeps holding the worker, as a blocking socket read does
+						}
+					}
+				} finally {
+					finished.countDown();
+				}
+			}
+		};
+		try {
+			executor.execute("slow-member", uninterruptibleCall);
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(1, executor.getTimedOutCalls());
+		}
+
+		try {
+			executor.execute("slow-member", uninterruptibleCall);
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(1, executor.getRejectedCalls());
+		}
+
+		release.countDown();
+		Assert.assertTrue(finished.await(5, TimeUnit.SECONDS));
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getActiveWorkers() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("done", executor.execute("slow-member", uninterruptibleCall));
+	}
+
+	@Test
+	public void testKeyIsRemovedWhenItsCallsFinish() throws Exception {
+		executor = new SlowResourceExecutor(createProperties(2, 2, 1000));
+		final CountDownLatch started = new CountDownLatch(1);
+		startBlockedCall("compute:user", started);
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("done", executor.execute("compute:other-user", new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "done";
+			}
+		}));
+		Assert.assertEquals(1, executor.getKeysCount());
+
+		release.countDown();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getKeysCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, executor.getKeysCount());
+		executor.logStats();
+	}
+
+	@Test
+	public void testDefaultMaxPerKeyIsFractionOfWorkers() {
+		executor = new SlowResourceExecutor(createProperties(20, 50, 1000));
+		Assert.assertEquals(10, executor.getMaxPerKey());
+		executor.shutdown();
+		executor = new SlowResourceExecutor(createProperties(1, 50, 1000));
+		Assert.assertEquals(1, executor.getMaxPerKey());
+	}
+
+	private void startBlockedCall(final String key, final CountDownLatch started) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					executor.execute(key, new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							if (started != null) {
+								started.countDown();
+							}
+							release.await();
+							return "done";
+						}
+					});
+				} catch (Exception e) {
+					// released or shut down by the test
+				}
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void waitForQueueDepth(int depth) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getQueueDepth() < depth && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(depth, executor.getQueueDepth());
+	}
+
+	private Properties createProperties(int workers, int queueSize, long timeout) {
+		Properties properties = new Properties();
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_ASYNC_ENABLED_KEY, "true");
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_WORKERS_KEY, String.valueOf(workers));
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_QUEUE_SIZE_KEY, String.valueOf(queueSize));
+		properties.put(ConfigurationConstants.SLOW_RESOURCES_TIMEOUT_KEY, String.valueOf(timeout));
+		return properties;
+	}
+}
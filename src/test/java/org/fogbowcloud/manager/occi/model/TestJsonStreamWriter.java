@@ -0,0 +1,71 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestJsonStreamWriter {
+
+	private StringWriter output;
+	private JsonStreamWriter json;
+
+	@Before
+	public void setUp() {
+		output = new StringWriter();
+		json = new JsonStreamWriter(output);
+	}
+
+	@Test
+	public void testNestedObjectsAndArrays() throws Exception {
+		Map<String, String> attributes = new LinkedHashMap<String, String>();
+		attributes.put("occi.core.id", "id1");
+		attributes.put("occi.compute.state", null);
+
+		json.beginObject();
+		json.name("items").beginArray();
+		json.beginObject().name("id").value("a").name("count").value(2).endObject();
+		json.beginObject().name("id").value("b").name("attributes").value(attributes).endObject();
+		json.endArray();
+		json.name("empty").beginArray().endArray();
+		json.name("enabled").value(true);
+		json.endObject();
+
+		Assert.assertEquals("{\"items\":[{\"id\":\"a\",\"count\":2},{\"id\":\"b\",\"attributes\":"
+				+ "{\"occi.core.id\":\"id1\",\"occi.compute.state\":null}}],\"empty\":[],\"enabled\":true}",
+				output.toString());
+	}
+
+	@Test
+	public void testEscapeStrings() throws Exception {
+		String value = "quote\" backslash\\ newline\n tab\t control\u0001 separator\u2028 accent \u00e7";
+		json.beginArray().value(value).endArray();
+
+		Assert.assertEquals(value, new JSONArray(output.toString()).getString(0));
+		Assert.assertFalse(output.toString().contains("\n"));
+	}
+
+	@Test
+	public void testDoublesAsOrgJson() throws Exception {
+		json.beginArray().value(10.0).value(0.5).value(1.25e20).value(Double.NaN).endArray();
+
+		Assert.assertEquals("[10,0.5,1.25E20,null]", output.toString());
+	}
+
+	@Test
+	public void testSameAsOrgJson() throws Exception {
+		json.beginArray().value("user1").value(20.0).value(0.25).value(3).endArray();
+
+		Assert.assertEquals(new JSONArray().put("user1").put(20.0).put(0.25).put(3).toString(),
+				output.toString());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCloseWithoutOpen() throws Exception {
+		json.endObject();
+	}
+}
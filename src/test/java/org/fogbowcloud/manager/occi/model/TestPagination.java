@@ -0,0 +1,94 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.restlet.data.Form;
+import org.restlet.data.MediaType;
+
+public class TestPagination {
+
+	private static final Pagination.Identifier<String> IDENTIFIER = new Pagination.Identifier<String>() {
+		@Override
+		public String getId(String entry) {
+			return entry;
+		}
+	};
+
+	@Test
+	public void testWithoutParameters() {
+		Pagination pagination = Pagination.fromQuery(new Form());
+		List<String> entries = Arrays.asList("c", "a", "b");
+
+		Assert.assertFalse(pagination.isEnabled());
+		Assert.assertEquals(entries, pagination.page(entries, IDENTIFIER));
+		Assert.assertNull(pagination.getNextCursor());
+	}
+
+	@Test
+	public void testPages() {
+		List<String> entries = Arrays.asList("e", "c", "a", "d", "b");
+
+		Pagination pagination = new Pagination(2, null);
+		Assert.assertEquals(Arrays.asList("a", "b"), pagination.page(entries, IDENTIFIER));
+		Assert.assertEquals("b", pagination.getNextCursor());
+
+		pagination = new Pagination(2, "b");
+		Assert.assertEquals(Arrays.asList("c", "d"), pagination.page(entries, IDENTIFIER));
+		Assert.assertEquals("d", pagination.getNextCursor());
+
+		pagination = new Pagination(2, "d");
+		Assert.assertEquals(Arrays.asList("e"), pagination.page(entries, IDENTIFIER));
+		Assert.assertNull(pagination.getNextCursor());
+	}
+
+	@Test
+	public void testCursorWithoutLimit() {
+		Pagination pagination = Pagination.fromQuery(new Form(Pagination.CURSOR_PARAMETER + "=b"));
+
+		Assert.assertEquals(Arrays.asList("c", "d"), pagination.page(Arrays.asList("d", "a", "c", "b"),
+				IDENTIFIER));
+		Assert.assertNull(pagination.getNextCursor());
+	}
+
+	@Test
+	public void testInvalidLimit() {
+		for (String limit : new String[] { "0", "-1", "many" }) {
+			try {
+				Pagination.fromQuery(new Form(Pagination.LIMIT_PARAMETER + "=" + limit));
+				Assert.fail();
+			} catch (OCCIException e) {
+				Assert.assertEquals(ErrorType.BAD_REQUEST, e.getType());
+			}
+		}
+	}
+
+	@Test
+	public void testListingRepresentation() throws Exception {
+		List<String> entries = new ArrayList<String>();
+		ListingRepresentation<String> representation = new ListingRepresentation<String>(entries,
+				MediaType.TEXT_PLAIN, "empty") {
+			@Override
+			protected void writeEntry(Writer writer, String entry) throws IOException {
+				writer.write("entry " + entry);
+			}
+		};
+		Assert.assertEquals("empty", write(representation));
+
+		entries.add("a");
+		entries.add("b");
+		Assert.assertEquals("entry a\nentry b", write(representation));
+	}
+
+	private String write(ListingRepresentation<String> representation) throws Exception {
+		StringWriter writer = new StringWriter();
+		representation.write(writer);
+		return writer.toString();
+	}
+}
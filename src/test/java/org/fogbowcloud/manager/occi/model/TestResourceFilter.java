@@ -0,0 +1,115 @@
+package org.fogbowcloud.manager.occi.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fogbowcloud.manager.occi.instance.Instance;
+import org.fogbowcloud.manager.occi.instance.InstanceState;
+import org.fogbowcloud.manager.occi.order.Order;
+import org.fogbowcloud.manager.occi.order.OrderAttribute;
+import org.fogbowcloud.manager.occi.order.OrderConstants;
+import org.fogbowcloud.manager.occi.order.OrderState;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResourceFilter {
+
+	private static final String SMALL_CATEGORY = "fogbow_small; scheme=\""
+			+ OrderConstants.TEMPLATE_RESOURCE_SCHEME + "\"; class=\"" + OrderConstants.MIXIN_CLASS + "\";";
+
+	private Order order;
+
+	@Before
+	public void setUp() {
+		List<Category> categories = new ArrayList<Category>();
+		categories.add(new Category(OrderConstants.TERM, OrderConstants.SCHEME, OrderConstants.KIND_CLASS));
+		categories.add(new Category("fogbow_small", OrderConstants.TEMPLATE_RESOURCE_SCHEME,
+				OrderConstants.MIXIN_CLASS));
+		Map<String, String> xOCCIAtt = new HashMap<String, String>();
+		xOCCIAtt.put(OrderAttribute.TYPE.getValue(), "one-time");
+		xOCCIAtt.put(OrderAttribute.RESOURCE_KIND.getValue(), OrderConstants.COMPUTE_TERM);
+		order = new Order("orderId", new Token("accessId", new Token.User("user", ""), new Date(),
+				new HashMap<String, String>()), "instanceId", "provider", "requester", new Date().getTime(),
+				true, OrderState.OPEN, categories, xOCCIAtt);
+	}
+
+	@Test
+	public void testParseHeaders() {
+		ResourceFilter filter = ResourceFilter.parse(Arrays.asList("Category: " + SMALL_CATEGORY),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + " = \"one-time\""));
+
+		Assert.assertEquals(1, filter.getCategories().size());
+		Assert.assertEquals("fogbow_small", filter.getCategories().get(0).getTerm());
+		Assert.assertEquals(OrderConstants.TEMPLATE_RESOURCE_SCHEME, filter.getCategories().get(0).getScheme());
+		Assert.assertEquals(OrderConstants.MIXIN_CLASS, filter.getCategories().get(0).getCatClass());
+		Assert.assertEquals("one-time", filter.getAttributes().get(OrderAttribute.TYPE.getValue()));
+		Assert.assertFalse(filter.isEmpty());
+	}
+
+	@Test
+	public void testMatchesOrder() {
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList(SMALL_CATEGORY),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + "=\"one-time\"")).matches(order));
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList("fogbow_small"),
+				new ArrayList<String>()).matches(order));
+		Assert.assertFalse(ResourceFilter.parse(Arrays.asList("fogbow_small; scheme=\"other#\""),
+				new ArrayList<String>()).matches(order));
+	}
+
+	@Test
+	public void testMatchesOrderWithCategoryOrAttribute() {
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList(SMALL_CATEGORY),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + "=persistent")).matches(order));
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList("fogbow_large"),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + "=one-time")).matches(order));
+		Assert.assertFalse(ResourceFilter.parse(Arrays.asList("fogbow_large"),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + "=persistent")).matches(order));
+		Assert.assertFalse(ResourceFilter.parse(Arrays.asList("fogbow_large"),
+				Arrays.asList(OrderAttribute.TYPE.getValue() + "=one-time")).matchesCategories(order));
+	}
+
+	@Test
+	public void testMatchesOrderState() {
+		ResourceFilter filter = ResourceFilter.parse(new ArrayList<String>(),
+				Arrays.asList(OrderAttribute.STATE.getValue() + "=" + OrderState.OPEN.getValue()));
+
+		Assert.assertTrue(filter.filtersState());
+		Assert.assertEquals(OrderState.OPEN, filter.getState());
+		Assert.assertTrue(filter.matches(order));
+		order.setState(OrderState.FULFILLED);
+		Assert.assertFalse(filter.matches(order));
+		Assert.assertFalse(ResourceFilter.parse(new ArrayList<String>(),
+				Arrays.asList(OrderAttribute.STATE.getValue() + "=unknown")).matches(order));
+	}
+
+	@Test
+	public void testMatchesInstance() {
+		List<Resource> resources = new ArrayList<Resource>();
+		resources.add(ResourceRepository.generateFlavorResource("fogbow_small"));
+		Map<String, String> attributes = new HashMap<String, String>();
+		attributes.put("occi.compute.cores", "2 ");
+		Instance instance = new Instance("instanceId", resources, attributes, new ArrayList<Instance.Link>(),
+				InstanceState.RUNNING);
+
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList(SMALL_CATEGORY),
+				Arrays.asList("occi.compute.cores=\"2\"")).matches(instance));
+		Assert.assertFalse(ResourceFilter.parse(new ArrayList<String>(),
+				Arrays.asList("occi.compute.memory=\"2\"")).matches(instance));
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList(SMALL_CATEGORY),
+				Arrays.asList("occi.compute.memory=\"2\"")).matches(instance));
+		Assert.assertTrue(ResourceFilter.parse(Arrays.asList("fogbow_large"),
+				Arrays.asList("occi.compute.cores=\"2\"")).matches(instance));
+		Assert.assertFalse(ResourceFilter.parse(Arrays.asList("fogbow_large"),
+				Arrays.asList("occi.compute.cores=\"2\"")).matchesCategories(instance));
+	}
+
+	@Test(expected = OCCIException.class)
+	public void testAttributeWithoutValue() {
+		ResourceFilter.parse(new ArrayList<String>(), Arrays.asList(OrderAttribute.TYPE.getValue()));
+	}
+}
@@ -75,6 +75,36 @@ public class TestResourceRepository {
 		Assert.assertTrue(ResourceRepository.getInstance().get("image1") != null);
 	}
 	
+	@Test
+	public void testVersionChangesOnlyWhenResourceIsAdded() {
+		long version = ResourceRepository.getInstance().getVersion();
+		ResourceRepository.getInstance().addImageResource("image1");
+		long versionWithImage = ResourceRepository.getInstance().getVersion();
+		Assert.assertTrue(versionWithImage > version);
+
+		int numberOfResources = ResourceRepository.getInstance().getAll().size();
+		ResourceRepository.getInstance().addImageResource("image1");
+		ResourceRepository.getInstance().addTemplateResource("image1");
+		Assert.assertEquals(versionWithImage, ResourceRepository.getInstance().getVersion());
+		Assert.assertEquals(numberOfResources, ResourceRepository.getInstance().getAll().size());
+	}
+
+	@Test
+	public void testGetResourcesWithSameTerm() {
+		Resource orderResource = ResourceRepository.getInstance().get(OrderConstants.TERM);
+		List<Category> categories = new ArrayList<Category>();
+		categories.add(new Category(OrderConstants.TERM, OrderConstants.TEMPLATE_OS_SCHEME,
+				OrderConstants.MIXIN_CLASS));
+		Assert.assertTrue(ResourceRepository.getInstance().get(categories).isEmpty());
+
+		ResourceRepository.getInstance().addImageResource(OrderConstants.TERM);
+
+		List<Resource> resources = ResourceRepository.getInstance().get(categories);
+		Assert.assertEquals(1, resources.size());
+		Assert.assertEquals(OrderConstants.TEMPLATE_OS_SCHEME, resources.get(0).getCategory().getScheme());
+		Assert.assertSame(orderResource, ResourceRepository.getInstance().get(OrderConstants.TERM));
+	}
+
 	@Test
 	public void testGetAttValue() {
 		String cpuValue = "2";
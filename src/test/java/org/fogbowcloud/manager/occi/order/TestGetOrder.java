@@ -1,10 +1,12 @@
 package org.fogbowcloud.manager.occi.order;
 
 import java.io.IOException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +27,7 @@ import org.fogbowcloud.manager.core.plugins.ComputePlugin;
 import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
 import org.fogbowcloud.manager.core.plugins.MapperPlugin;
 import org.fogbowcloud.manager.core.util.DefaultDataTestHelper;
+import org.fogbowcloud.manager.occi.JsonSerializer;
 import org.fogbowcloud.manager.occi.OCCIConstants;
 import org.fogbowcloud.manager.occi.TestDataStorageHelper;
 import org.fogbowcloud.manager.occi.model.Category;
@@ -32,10 +35,13 @@ import org.fogbowcloud.manager.occi.model.ErrorType;
 import org.fogbowcloud.manager.occi.model.HeaderUtils;
 import org.fogbowcloud.manager.occi.model.OCCIException;
 import org.fogbowcloud.manager.occi.model.OCCIHeaders;
+import org.fogbowcloud.manager.occi.model.Pagination;
 import org.fogbowcloud.manager.occi.model.ResponseConstants;
 import org.fogbowcloud.manager.occi.model.Token;
 import org.fogbowcloud.manager.occi.util.OCCIComputeApplication;
 import org.fogbowcloud.manager.occi.util.OCCITestHelper;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -290,6 +296,97 @@ public class TestGetOrder {
 		Assert.assertEquals(10, OCCITestHelper.getLocationIds(response).size());
 	}
 	
+	@Test
+	public void testGetOrdersByPage() throws URISyntaxException, HttpException, IOException {
+		// Post
+		HttpPost post = new HttpPost(OCCITestHelper.URI_FOGBOW_ORDER);
+		Category category = new Category(OrderConstants.TERM, OrderConstants.SCHEME,
+				OrderConstants.KIND_CLASS);
+		post.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		post.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		post.addHeader(OCCIHeaders.CATEGORY, category.toHeader());
+		post.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.INSTANCE_COUNT.getValue()
+				+ " = 10");
+		post.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE,
+				OrderAttribute.RESOURCE_KIND.getValue() + "=" + OrderConstants.COMPUTE_TERM);		
+		HttpClient client = HttpClients.createMinimal();
+		client.execute(post);
+		
+		// Get pages of 4 orders
+		List<URI> orderLocations = new ArrayList<URI>();
+		List<Integer> pageSizes = new ArrayList<Integer>();
+		String cursor = null;
+		do {
+			HttpGet get = new HttpGet(OCCITestHelper.URI_FOGBOW_ORDER + "?" + Pagination.LIMIT_PARAMETER
+					+ "=4" + (cursor == null ? "" : "&" + Pagination.CURSOR_PARAMETER + "=" + cursor));
+			get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+			get.addHeader(OCCIHeaders.ACCEPT, OCCIHeaders.TEXT_URI_LIST_CONTENT_TYPE);
+			get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+			client = HttpClients.createMinimal();
+			HttpResponse response = client.execute(get);
+			
+			Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+			List<URI> page = OCCITestHelper.getURIList(response);
+			pageSizes.add(page.size());
+			orderLocations.addAll(page);
+			cursor = response.getFirstHeader(OCCIHeaders.X_NEXT_CURSOR) == null ? null : response
+					.getFirstHeader(OCCIHeaders.X_NEXT_CURSOR).getValue().trim();
+		} while (cursor != null);
+		
+		Assert.assertEquals(3, pageSizes.size());
+		Assert.assertEquals(Integer.valueOf(2), pageSizes.get(2));
+		Assert.assertEquals(10, new HashSet<URI>(orderLocations).size());
+	}
+	
+	@Test
+	public void testGetOrdersWithInvalidLimit() throws URISyntaxException, HttpException, IOException {
+		HttpGet get = new HttpGet(OCCITestHelper.URI_FOGBOW_ORDER + "?" + Pagination.LIMIT_PARAMETER + "=0");
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		HttpClient client = HttpClients.createMinimal();
+		HttpResponse response = client.execute(get);
+		
+		Assert.assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
+	}
+	
+	@Test
+	public void testGetOrdersAsJson() throws Exception {
+		// Post
+		HttpPost post = new HttpPost(OCCITestHelper.URI_FOGBOW_ORDER);
+		Category category = new Category(OrderConstants.TERM, OrderConstants.SCHEME,
+				OrderConstants.KIND_CLASS);
+		post.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		post.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		post.addHeader(OCCIHeaders.CATEGORY, category.toHeader());
+		post.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.INSTANCE_COUNT.getValue()
+				+ " = 3");
+		post.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE,
+				OrderAttribute.RESOURCE_KIND.getValue() + "=" + OrderConstants.COMPUTE_TERM);		
+		HttpClient client = HttpClients.createMinimal();
+		client.execute(post);
+		
+		// Get
+		HttpGet get = new HttpGet(OCCITestHelper.URI_FOGBOW_ORDER);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.ACCEPT, OCCIHeaders.JSON_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		client = HttpClients.createMinimal();
+		HttpResponse response = client.execute(get);
+		
+		Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+		Assert.assertTrue(response.getEntity().getContentType().getValue()
+				.startsWith(OCCIHeaders.JSON_CONTENT_TYPE));
+		JSONArray orders = new JSONObject(EntityUtils.toString(response.getEntity()))
+				.getJSONArray(JsonSerializer.ORDERS);
+		Assert.assertEquals(3, orders.length());
+		for (int i = 0; i < orders.length(); i++) {
+			JSONObject order = orders.getJSONObject(i);
+			Assert.assertFalse(order.getString("state").isEmpty());
+			Assert.assertEquals(OrderConstants.COMPUTE_TERM, order.getJSONObject("attributes")
+					.getString(OrderAttribute.RESOURCE_KIND.getValue()));
+		}
+	}
+	
 	@Test
 	public void testGetResquestManyIdsURIListAccept() throws URISyntaxException, HttpException, IOException {
 		// Post
@@ -531,6 +628,65 @@ public class TestGetOrder {
 		Assert.assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
 	}
 	
+	@Test
+	public void testGetResquestFilterWithCategoryAndAttribute() throws URISyntaxException, HttpException,
+			IOException {
+		// Post
+		HttpPost post = new HttpPost(OCCITestHelper.URI_FOGBOW_ORDER);
+		Category category = new Category(OrderConstants.TERM, OrderConstants.SCHEME,
+				OrderConstants.KIND_CLASS);
+		post.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		post.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		post.addHeader(OCCIHeaders.CATEGORY, category.toHeader());
+		post.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.INSTANCE_COUNT.getValue()
+				+ " = 2");
+		Category categoryFilter = new Category(OCCITestHelper.FOGBOW_SMALL_IMAGE,
+				"http://schemas.fogbowcloud.org/template/resource#", "mixin");
+		post.addHeader(OCCIHeaders.CATEGORY, categoryFilter.toHeader());
+
+		HttpClient client = HttpClients.createMinimal();
+		HttpResponse response = client.execute(post);
+		EntityUtils.consume(response.getEntity());
+
+		// Post
+		HttpPost postTwo = new HttpPost(OCCITestHelper.URI_FOGBOW_ORDER);
+		postTwo.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		postTwo.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		postTwo.addHeader(OCCIHeaders.CATEGORY, category.toHeader());
+		postTwo.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.INSTANCE_COUNT.getValue()
+				+ " = 2");
+		postTwo.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.TYPE.getValue()
+				+ " = persistent");
+
+		client = HttpClients.createMinimal();
+		response = client.execute(postTwo);
+		EntityUtils.consume(response.getEntity());
+
+		// Get: orders with the category or the attribute
+		HttpGet get = new HttpGet(OCCITestHelper.URI_FOGBOW_ORDER);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		get.addHeader(OCCIHeaders.CATEGORY, categoryFilter.toHeader());
+		get.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.TYPE.getValue() + "=\"persistent\"");
+		client = HttpClients.createMinimal();
+		response = client.execute(get);
+
+		Assert.assertEquals(4, OCCITestHelper.getLocationIds(response).size());
+		Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+
+		// Get: orders with the category only
+		get = new HttpGet(OCCITestHelper.URI_FOGBOW_ORDER);
+		get.addHeader(OCCIHeaders.CONTENT_TYPE, OCCIHeaders.OCCI_CONTENT_TYPE);
+		get.addHeader(OCCIHeaders.X_AUTH_TOKEN, OCCITestHelper.ACCESS_TOKEN);
+		get.addHeader(OCCIHeaders.CATEGORY, categoryFilter.toHeader());
+		get.addHeader(OCCIHeaders.X_OCCI_ATTRIBUTE, OrderAttribute.TYPE.getValue() + "=\"notfound\"");
+		client = HttpClients.createMinimal();
+		response = client.execute(get);
+
+		Assert.assertEquals(2, OCCITestHelper.getLocationIds(response).size());
+		Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+	}
+
 	@Test
 	public void testGetOCCIOrderAttributes() throws URISyntaxException, HttpException, IOException {
 		
@@ -1,6 +1,7 @@
 package org.fogbowcloud.manager.xmpp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -103,6 +104,113 @@ public class TestGetRemoteInstance {
 		Assert.assertEquals(instance.getLinks().get(0).getName(), remoteInstance.getLinks().get(0).getName());
 	}
 	
+	@Test
+	public void testGetRemoteInstancesAsync() throws Exception {
+		managerTestHelper.initializeXMPPManagerComponent(false);
+		Instance instance = createInstance();
+
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(DefaultDataTestHelper.INSTANCE_ID))).thenReturn(instance);
+
+		AsyncPacketSender packetSender = managerTestHelper.createPacketSender();
+		PacketFuture firstResponse = ManagerPacketHelper.getRemoteInstanceAsync(
+				DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL, DefaultDataTestHelper.INSTANCE_ID, packetSender);
+		PacketFuture secondResponse = ManagerPacketHelper.getRemoteInstanceAsync(
+				DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL, DefaultDataTestHelper.INSTANCE_ID, packetSender);
+
+		Assert.assertEquals(instance.getId(), ManagerPacketHelper.getRemoteInstance(secondResponse, 10000).getId());
+		Assert.assertEquals(instance.getId(), ManagerPacketHelper.getRemoteInstance(firstResponse, 10000).getId());
+	}
+
+	@Test
+	public void testGetRemoteInstancesInOneRequest() throws Exception {
+		managerTestHelper.initializeXMPPManagerComponent(false);
+		Instance instance = createInstance();
+
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(DefaultDataTestHelper.INSTANCE_ID))).thenReturn(instance);
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(INSTANCE_OTHER_USER))).thenThrow(
+								new OCCIException(ErrorType.NOT_FOUND, ResponseConstants.NOT_FOUND));
+
+		List<PacketFuture> responses = ManagerPacketHelper.getRemoteInstancesAsync(
+				DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL, 
+				Arrays.asList(DefaultDataTestHelper.INSTANCE_ID, INSTANCE_OTHER_USER), 
+				managerTestHelper.createPacketSender());
+		Map<String, OCCIException> errors = new HashMap<String, OCCIException>();
+		Map<String, Instance> remoteInstances = ManagerPacketHelper.getRemoteInstances(responses, 10000, errors);
+
+		Assert.assertEquals(1, responses.size());
+		Assert.assertEquals(1, remoteInstances.size());
+		Instance remoteInstance = remoteInstances.get(DefaultDataTestHelper.INSTANCE_ID);
+		Assert.assertEquals(InstanceState.RUNNING, remoteInstance.getState());
+		Assert.assertEquals(instance.getAttributes(), remoteInstance.getAttributes());
+		Assert.assertEquals(1, errors.size());
+		Assert.assertEquals(ErrorType.NOT_FOUND, errors.get(INSTANCE_OTHER_USER).getType());
+	}
+
+	@Test
+	public void testGetRemoteInstancesWithUnexpectedError() throws Exception {
+		managerTestHelper.initializeXMPPManagerComponent(false);
+		Instance instance = createInstance();
+
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(DefaultDataTestHelper.INSTANCE_ID))).thenReturn(instance);
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(INSTANCE_OTHER_USER))).thenThrow(new IllegalStateException());
+
+		List<PacketFuture> responses = ManagerPacketHelper.getRemoteInstancesAsync(
+				DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL, 
+				Arrays.asList(INSTANCE_OTHER_USER, DefaultDataTestHelper.INSTANCE_ID), 
+				managerTestHelper.createPacketSender());
+		Map<String, OCCIException> errors = new HashMap<String, OCCIException>();
+		Map<String, Instance> remoteInstances = ManagerPacketHelper.getRemoteInstances(responses, 10000, errors);
+
+		Assert.assertEquals(1, remoteInstances.size());
+		Assert.assertNotNull(remoteInstances.get(DefaultDataTestHelper.INSTANCE_ID));
+		Assert.assertEquals(1, errors.size());
+		Assert.assertEquals(ErrorType.BAD_REQUEST, errors.get(INSTANCE_OTHER_USER).getType());
+	}
+
+	@Test
+	public void testGetRemoteInstancesInSeveralRequests() throws Exception {
+		managerTestHelper.initializeXMPPManagerComponent(false);
+		Instance instance = createInstance();
+
+		Mockito.when(
+				managerTestHelper.getComputePlugin().getInstance(
+						Mockito.any(Token.class),
+						Mockito.eq(DefaultDataTestHelper.INSTANCE_ID))).thenReturn(instance);
+
+		List<String> instanceIds = new ArrayList<String>();
+		for (int i = 0; i < ManagerPacketHelper.MAX_INSTANCES_PER_IQ; i++) {
+			instanceIds.add("missing" + i);
+		}
+		instanceIds.add(DefaultDataTestHelper.INSTANCE_ID);
+
+		List<PacketFuture> responses = ManagerPacketHelper.getRemoteInstancesAsync(
+				DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL, instanceIds,
+				managerTestHelper.createPacketSender());
+		Map<String, OCCIException> errors = new HashMap<String, OCCIException>();
+		Map<String, Instance> remoteInstances = ManagerPacketHelper.getRemoteInstances(responses, 10000, errors);
+
+		Assert.assertEquals(2, responses.size());
+		Assert.assertEquals(1, remoteInstances.size());
+		Assert.assertEquals(InstanceState.RUNNING, remoteInstances.get(DefaultDataTestHelper.INSTANCE_ID).getState());
+		Assert.assertEquals(ManagerPacketHelper.MAX_INSTANCES_PER_IQ, errors.size());
+		Assert.assertEquals(ErrorType.NOT_FOUND, errors.get("missing0").getType());
+	}
+
 	@Test(expected=OCCIException.class)
 	public void testGetRemoteInstaceNotFound() throws Exception {
 		Order order = new Order("anyvalue", new Token(WRONG_TOKEN, new Token.User(OCCITestHelper.USER_MOCK, ""),
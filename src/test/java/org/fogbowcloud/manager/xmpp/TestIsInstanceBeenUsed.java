@@ -1,5 +1,7 @@
 package org.fogbowcloud.manager.xmpp;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Properties;
 
@@ -14,8 +16,11 @@ import org.fogbowcloud.manager.occi.order.Order;
 import org.fogbowcloud.manager.occi.order.OrderState;
 import org.jivesoftware.smack.XMPPException;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.PacketError.Condition;
 
 public class TestIsInstanceBeenUsed {
 
@@ -126,6 +131,51 @@ public class TestIsInstanceBeenUsed {
 				managerTestHelper.createPacketSender());		
 	}
 	
+	@Test
+	public void testInstancesBeingUsedInOneRequest() throws Exception {
+		ManagerController managerController = createManagerController();
+		
+		managerTestHelper.initializeXMPPManagerComponent(false, managerController);
+		
+		// setting order repository
+		Order order1 = new Order("id1", managerTestHelper.getDefaultFederationToken(), null, null, true, "");
+		order1.setState(OrderState.FULFILLED);
+		order1.setInstanceId(INSTANCE_DEFAULT);
+		order1.setProvidingMemberId(DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL);
+		
+		managerController.getManagerDataStoreController().addOrder(order1);
+		
+		Order servedOrder1 = new Order(order1.getId(), new Token("accessId", new Token.User("userId1", ""), null,
+				new HashMap<String, String>()), null, null, false, MANAGER_COMPONENT_URL);
+		servedOrder1.setInstanceId(INSTANCE_DEFAULT);
+		servedOrder1.setState(OrderState.FULFILLED);
+		servedOrder1.setProvidingMemberId(DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL);
+		Order servedOrder2 = new Order("id2", new Token("accessId", new Token.User("userId1", ""), null,
+				new HashMap<String, String>()), null, null, false, MANAGER_COMPONENT_URL);
+		servedOrder2.setInstanceId(INSTANCE_DEFAULT);
+		servedOrder2.setState(OrderState.FULFILLED);
+		servedOrder2.setProvidingMemberId(DefaultDataTestHelper.LOCAL_MANAGER_COMPONENT_URL);
+		
+		// only the order not being used is answered
+		PacketFuture response = ManagerPacketHelper.checkIfInstancesAreBeingUsedByRemoteMemberAsync(
+				MANAGER_COMPONENT_URL, Arrays.asList(servedOrder1, servedOrder2), 
+				managerTestHelper.createPacketSender());
+		Assert.assertEquals(Collections.singleton("id2"), 
+				ManagerPacketHelper.getOrdersNotBeingUsedByRemoteMember(response, 10000));
+	}
+	
+	@Test
+	public void testInstancesBeingUsedNotAnswered() throws Exception {
+		// members without the batched request do not answer it
+		Assert.assertNull(ManagerPacketHelper.getOrdersNotBeingUsedByRemoteMember(new PacketFuture(), 10));
+		
+		PacketFuture errorResponse = new PacketFuture();
+		IQ error = new IQ();
+		error.setError(Condition.service_unavailable);
+		errorResponse.handle(error);
+		Assert.assertNull(ManagerPacketHelper.getOrdersNotBeingUsedByRemoteMember(errorResponse, 10));
+	}
+	
 	private ManagerController createManagerController() {
 		Properties properties = new Properties();
 		properties.put("local_proxy_account_user_name", "fogbow");
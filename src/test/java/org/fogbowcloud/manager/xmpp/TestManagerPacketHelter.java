@@ -1,10 +1,16 @@
 package org.fogbowcloud.manager.xmpp;
 
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.core.ManagerController;
+import org.fogbowcloud.manager.occi.model.ErrorType;
+import org.fogbowcloud.manager.occi.model.OCCIException;
 
 import org.jamppa.component.PacketSender;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.xmpp.packet.IQ;
 import org.xmpp.packet.IQ.Type;
@@ -39,6 +45,72 @@ public class TestManagerPacketHelter {
 		Assert.assertEquals("", ManagerPacketHelper.iAmAlive("abc", new Properties(), packetSender));
 	}
 	
+	@Test
+	public void testAsyncResponseTimeout() throws Exception {
+		AsyncPacketSender packetSender = Mockito.mock(AsyncPacketSender.class);
+		PacketFuture response = ManagerPacketHelper.getRemoteInstanceAsync("member", "instance", packetSender);
+		ArgumentCaptor<IQ> iq = ArgumentCaptor.forClass(IQ.class);
+		Mockito.verify(packetSender).addPacketCallback(iq.capture(), Mockito.eq(response));
+		Mockito.verify(packetSender).sendPacket(Mockito.any(IQ.class));
+
+		try {
+			ManagerPacketHelper.getRemoteInstance(response, 10);
+			Assert.fail();
+		} catch (OCCIException e) {
+			Assert.assertEquals(ErrorType.BAD_REQUEST, e.getType());
+		}
+
+		Mockito.verify(packetSender).removePacketCallback(iq.getValue());
+
+		// responses arriving after the timeout are ignored
+		response.handle(IQ.createResultIQ(new IQ(Type.get, "abc")));
+		Assert.assertTrue(response.isCancelled());
+	}
+
+	@Test
+	public void testTimedOutCallbackIsRemovedFromComponent() throws Exception {
+		ManagerXmppComponent component = new ManagerXmppComponent("manager.test.com", "password",
+				"localhost", 5347, Mockito.mock(ManagerController.class), 1000);
+		IQ iq = new IQ(Type.get, "abc");
+		iq.setID("packetId");
+		PacketFuture response = new PacketFuture(iq, component);
+		component.addPacketCallback(iq, response);
+		Assert.assertEquals(1, component.getPacketCallbacksCount());
+
+		Assert.assertNull(ManagerPacketHelper.waitForResponse(response, 10));
+		Assert.assertEquals(0, component.getPacketCallbacksCount());
+
+		component.handleIQResult(IQ.createResultIQ(iq));
+		Assert.assertTrue(response.isCancelled());
+	}
+
+	@Test
+	public void testCallbackIsRemovedFromComponentWhenHandled() throws Exception {
+		ManagerXmppComponent component = new ManagerXmppComponent("manager.test.com", "password",
+				"localhost", 5347, Mockito.mock(ManagerController.class), 1000);
+		IQ iq = new IQ(Type.get, "abc");
+		iq.setID("packetId");
+		PacketFuture response = new PacketFuture(iq, component);
+		component.addPacketCallback(iq, response);
+
+		IQ result = IQ.createResultIQ(iq);
+		component.handleIQResult(result);
+
+		Assert.assertEquals(result, response.get(0, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(0, component.getPacketCallbacksCount());
+	}
+
+	@Test
+	public void testAsyncResponse() throws Exception {
+		PacketFuture response = new PacketFuture();
+		IQ result = IQ.createResultIQ(new IQ(Type.get, "abc"));
+		response.handle(result);
+
+		Assert.assertTrue(response.isDone());
+		Assert.assertEquals(result, response.get(0, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(response.cancel(false));
+	}
+
 	@Test
 	public void testIAmAliveReponseWithinIAmAlivePeriod() throws Exception {
 		PacketSender packetSender = Mockito.mock(PacketSender.class);
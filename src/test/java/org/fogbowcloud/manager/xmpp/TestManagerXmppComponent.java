@@ -0,0 +1,70 @@
+package org.fogbowcloud.manager.xmpp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.core.ManagerTestHelper;
+import org.fogbowcloud.manager.occi.TestDataStorageHelper;
+import org.jamppa.client.XMPPClient;
+import org.jivesoftware.smack.PacketListener;
+import org.jivesoftware.smack.filter.PacketFilter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmpp.packet.IQ;
+import org.xmpp.packet.IQ.Type;
+import org.xmpp.packet.Packet;
+import org.xmpp.packet.PacketError.Condition;
+
+public class TestManagerXmppComponent {
+
+	private static final String FOUND_INSTANCE = "found";
+
+	private ManagerTestHelper managerTestHelper;
+
+	@Before
+	public void setUp() throws Exception {
+		this.managerTestHelper = new ManagerTestHelper();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.managerTestHelper.shutdown();
+		TestDataStorageHelper.removeDefaultFolderDataStore();
+	}
+
+	@Test
+	public void testResultAndErrorResolvePacketFutures() throws Exception {
+		ManagerXmppComponent managerXmppComponent = managerTestHelper.initializeXMPPManagerComponent(false);
+		final XMPPClient xmppClient = managerTestHelper.createXMPPClient();
+		xmppClient.on(new PacketFilter() {
+			@Override
+			public boolean accept(Packet packet) {
+				return packet instanceof IQ && ((IQ) packet).getType() == Type.get;
+			}
+		}, new PacketListener() {
+			@Override
+			public void processPacket(Packet packet) {
+				IQ iq = (IQ) packet;
+				IQ response = IQ.createResultIQ(iq);
+				if (!iq.toXML().contains(FOUND_INSTANCE)) {
+					response.setType(Type.error);
+					response.setError(Condition.item_not_found);
+				}
+				xmppClient.send(response);
+			}
+		});
+		String clientJid = xmppClient.getConnection().getUser();
+
+		PacketFuture result = ManagerPacketHelper.getRemoteInstanceAsync(clientJid, FOUND_INSTANCE,
+				managerXmppComponent);
+		PacketFuture error = ManagerPacketHelper.getRemoteInstanceAsync(clientJid, "missing",
+				managerXmppComponent);
+
+		Assert.assertEquals(Type.result, result.get(5, TimeUnit.SECONDS).getType());
+		Assert.assertEquals(Type.error, error.get(5, TimeUnit.SECONDS).getType());
+		Assert.assertEquals(Condition.item_not_found, error.get().getError().getCondition());
+		Assert.assertEquals(0, managerXmppComponent.getPacketCallbacksCount());
+		xmppClient.disconnect();
+	}
+}